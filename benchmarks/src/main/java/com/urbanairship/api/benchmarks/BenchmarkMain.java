@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/*
+Runs the benchmarks and writes JSON results named for the client version
+under test, e.g. jmh-result-0.3.2-SNAPSHOT.json, so runs against two
+releases can be diffed or loaded side by side into a JMH visualizer.
+
+Accepts the usual JMH command line; a result file, result format or
+benchmark pattern given there takes precedence.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(BenchmarkMain.class.getPackage().getName() + "\\..*Benchmark");
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(new File("jmh-result-" + clientVersion() + ".json").getPath());
+        }
+
+        new Runner(options.build()).run();
+    }
+
+    /* The version of the java-client on the classpath, from the properties file it ships with */
+    static String clientVersion() throws IOException {
+        InputStream stream = BenchmarkMain.class.getResourceAsStream("/client.properties");
+        if (stream == null) {
+            return "unknown";
+        }
+
+        try {
+            Properties props = new Properties();
+            props.load(stream);
+            return props.getProperty("client.version", "unknown");
+        } finally {
+            stream.close();
+        }
+    }
+}
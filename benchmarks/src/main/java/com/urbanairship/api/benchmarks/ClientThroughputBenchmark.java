@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.urbanairship.api.client.APIClient;
+import com.urbanairship.api.client.ConnectionPoolConfig;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIPushResponse;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+End to end APIClient.push throughput against an in-process server that
+accepts every push, so the numbers cover provisioning, serialization, the
+HTTP exchange over loopback and response parsing, but not the API itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class ClientThroughputBenchmark {
+
+    private static final int MAX_THREADS = 8;
+
+    private static final byte[] PUSH_RESPONSE = ("{\"ok\":true,\"operation_id\":\"df6a6b50-9843-0304-d5a5-743f246a4946\"," +
+            "\"push_ids\":[\"9d78a53b-b16a-c58f-b78d-181d5e242078\"]}").getBytes();
+
+    /* Device tokens in each push's audience */
+    @Param({"1", "1000"})
+    public int audienceSize;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private APIClient client;
+    private PushPayload payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream in = exchange.getRequestBody();
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // Drain the request so the connection can be reused
+                }
+                in.close();
+
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(202, PUSH_RESPONSE.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(PUSH_RESPONSE);
+                out.close();
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(MAX_THREADS);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + server.getAddress().getPort())
+                .setKey("benchmark-key")
+                .setSecret("benchmark-secret")
+                .setConnectionPoolConfig(ConnectionPoolConfig.newBuilder()
+                        .setMaxConnectionsTotal(MAX_THREADS)
+                        .setMaxConnectionsPerRoute(MAX_THREADS)
+                        .build())
+                .build();
+
+        payload = PushPayload.newBuilder()
+                .setAudience(PushPayloadSerializationBenchmark.audience(audienceSize))
+                .setDeviceTypes(DeviceTypeData.all())
+                .setNotification(PushPayloadSerializationBenchmark.notification("all"))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public APIClientResponse<APIPushResponse> push() throws IOException {
+        return client.push(payload);
+    }
+
+    /* Pushes sharing one client and its connection pool */
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public APIClientResponse<APIPushResponse> concurrentPush() throws IOException {
+        return client.push(payload);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.benchmarks;
+
+import com.urbanairship.api.client.PushDeduplicator;
+import com.urbanairship.api.client.PushPayloadHasher;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Canonical payload hashing through PushPayloadHasher, with the same
+payloads as PushPayloadSerializationBenchmark so the two can be compared,
+and the PushDeduplicator lookup that follows it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class PushPayloadHashBenchmark {
+
+    /* Device tokens in the audience; 1 is a single device selector, larger sizes an OR of tokens */
+    @Param({"1", "100", "1000", "10000"})
+    public int audienceSize;
+
+    /* Notification overrides: a plain alert, an iOS override, or an override for every platform */
+    @Param({"none", "ios", "all"})
+    public String overrides;
+
+    private PushPayload payload;
+    private PushDeduplicator deduplicator;
+    private long hash;
+
+    @Setup
+    public void setUp() {
+        payload = PushPayload.newBuilder()
+                .setAudience(PushPayloadSerializationBenchmark.audience(audienceSize))
+                .setDeviceTypes(DeviceTypeData.all())
+                .setNotification(PushPayloadSerializationBenchmark.notification(overrides))
+                .build();
+        deduplicator = PushDeduplicator.newBuilder().build();
+        hash = PushPayloadHasher.hash(payload);
+        deduplicator.shouldSend(hash);
+    }
+
+    @Benchmark
+    public long hash() {
+        return PushPayloadHasher.hash(payload);
+    }
+
+    /* A duplicate found in the table, the common case under retries */
+    @Benchmark
+    public boolean shouldSendDuplicate() {
+        return deduplicator.shouldSend(hash);
+    }
+}
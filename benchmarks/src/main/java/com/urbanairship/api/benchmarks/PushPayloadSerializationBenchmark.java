@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.benchmarks;
+
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushExpiry;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selector;
+import com.urbanairship.api.push.model.audience.SelectorType;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notification;
+import com.urbanairship.api.push.model.notification.Notifications;
+import com.urbanairship.api.push.model.notification.android.AndroidDevicePayload;
+import com.urbanairship.api.push.model.notification.ios.IOSBadgeData;
+import com.urbanairship.api.push.model.notification.ios.IOSDevicePayload;
+import com.urbanairship.api.push.parse.PushObjectMapper;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+Push payload serialization, through PushPayloadSerializer and
+SelectorSerializer, across audience sizes and notification overrides.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class PushPayloadSerializationBenchmark {
+
+    /* Device tokens in the audience; 1 is a single device selector, larger sizes an OR of tokens */
+    @Param({"1", "100", "1000", "10000"})
+    public int audienceSize;
+
+    /* Notification overrides: a plain alert, an iOS override, or an override for every platform */
+    @Param({"none", "ios", "all"})
+    public String overrides;
+
+    private PushPayload payload;
+    private Selector audience;
+    private ObjectMapper mapper;
+    private OutputStream discard;
+
+    @Setup
+    public void setUp() {
+        audience = audience(audienceSize);
+        payload = PushPayload.newBuilder()
+                .setAudience(audience)
+                .setDeviceTypes(DeviceTypeData.all())
+                .setNotification(notification(overrides))
+                .build();
+        mapper = PushObjectMapper.getInstance();
+        discard = new DiscardingOutputStream();
+    }
+
+    static Selector audience(int size) {
+        // Fixed seed so every run, and every release, serializes the same tokens
+        Random random = new Random(42);
+        List<String> tokens = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(String.format("%016X%016X%016X%016X",
+                    random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()));
+        }
+
+        if (size == 1) {
+            return Selectors.deviceToken(tokens.get(0));
+        }
+        return Selectors.compound(SelectorType.AND,
+                Selectors.deviceTokens(tokens),
+                Selectors.not(Selectors.tag("opted_out")));
+    }
+
+    static Notification notification(String overrides) {
+        String alert = "Your order has shipped";
+        if ("none".equals(overrides)) {
+            return Notifications.alert(alert);
+        }
+
+        IOSDevicePayload ios = IOSDevicePayload.newBuilder()
+                .setAlert(alert)
+                .setSound("default")
+                .setBadge(IOSBadgeData.newBuilder().setType(IOSBadgeData.Type.INCREMENT).setValue(1).build())
+                .setContentAvailable(true)
+                .setExpiry(PushExpiry.newBuilder().setExpirySeconds(3600).build())
+                .addExtraEntry("order_id", "A-10029")
+                .addExtraEntry("url", "https://example.com/orders/A-10029")
+                .build();
+        if ("ios".equals(overrides)) {
+            return Notifications.notification(alert, ios);
+        }
+
+        AndroidDevicePayload android = AndroidDevicePayload.newBuilder()
+                .setAlert(alert)
+                .setCollapseKey("orders")
+                .setTimeToLive(PushExpiry.newBuilder().setExpirySeconds(3600).build())
+                .setDelayWhileIdle(true)
+                .addExtraEntry("order_id", "A-10029")
+                .addExtraEntry("url", "https://example.com/orders/A-10029")
+                .build();
+        return Notification.newBuilder()
+                .setAlert(alert)
+                .addDeviceTypeOverride(DeviceType.IOS, ios)
+                .addDeviceTypeOverride(DeviceType.ANDROID, android)
+                .addDeviceTypeOverride(DeviceType.AMAZON, Notifications.admAlert(alert))
+                .addDeviceTypeOverride(DeviceType.BLACKBERRY, Notifications.blackberryAlert(alert))
+                .addDeviceTypeOverride(DeviceType.WNS, Notifications.wnsAlert(alert))
+                .addDeviceTypeOverride(DeviceType.MPNS, Notifications.mpnsAlert(alert))
+                .build();
+    }
+
+    /* The request body path: what APIClient writes to the connection */
+    @Benchmark
+    public void writeJSON() throws IOException {
+        payload.writeJSON(discard);
+    }
+
+    /* Serializing to a String, as toJSON and the request logging do */
+    @Benchmark
+    public String toJSON() {
+        return payload.toJSON();
+    }
+
+    /* The audience alone, through SelectorSerializer */
+    @Benchmark
+    public void writeSelector() throws IOException {
+        mapper.writeValue(discard, audience);
+    }
+
+    /* Drops everything written, so the benchmarks measure serialization rather than buffering */
+    static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
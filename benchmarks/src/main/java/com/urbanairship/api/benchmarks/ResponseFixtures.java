@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.benchmarks;
+
+import com.urbanairship.api.client.AppsOpenReportAPIResponseHandler;
+import com.urbanairship.api.client.AudienceSegmentAPIResponseHandler;
+import com.urbanairship.api.client.ListAllChannelsAPIResponseHandler;
+import com.urbanairship.api.client.ListAllSchedulesAPIResponseHandler;
+import com.urbanairship.api.client.ListAllSegmentsAPIResponseHandler;
+import com.urbanairship.api.client.ListAppStatsAPIResponseHandler;
+import com.urbanairship.api.client.ListIndividualPushAPIResponseHandler;
+import com.urbanairship.api.client.ListPerPushDetailAPIResponseHandler;
+import com.urbanairship.api.client.ListPerPushSeriesResponseHandler;
+import com.urbanairship.api.client.ListReportsListingResponseHandler;
+import com.urbanairship.api.client.ListScheduleAPIResponseHandler;
+import com.urbanairship.api.client.ListSingleChannelAPIResponseHandler;
+import com.urbanairship.api.client.ListTagsAPIResponseHandler;
+import com.urbanairship.api.client.LocationAPIResponseHandler;
+import com.urbanairship.api.client.PushAPIResponseHandler;
+import com.urbanairship.api.client.ScheduleAPIResponseHandler;
+import com.urbanairship.api.client.TimeInAppReportAPIResponseHandler;
+import org.apache.http.client.ResponseHandler;
+
+/*
+Response bodies for every API response type, in the shapes the API returns,
+each paired with the handler the client parses it with. Bodies are generated
+deterministically at the sizes a busy application sees: a full page of
+channels, a month of hourly statistics, and so on. Change a size here and
+results stop being comparable with earlier runs.
+ */
+final class ResponseFixtures {
+
+    static final int CHANNEL_PAGE_SIZE = 1000;
+    static final int HOURS_PER_MONTH = 720;
+    static final int SCHEDULE_PAGE_SIZE = 100;
+    static final int REPORT_PAGE_SIZE = 100;
+    static final int SEGMENT_PAGE_SIZE = 100;
+    static final int TAG_COUNT = 1000;
+    static final int LOCATION_COUNT = 20;
+
+    private ResponseFixtures() {
+    }
+
+    static ResponseHandler<?> handler(String fixture) {
+        if ("push".equals(fixture)) {
+            return new PushAPIResponseHandler();
+        } else if ("channel".equals(fixture)) {
+            return new ListSingleChannelAPIResponseHandler();
+        } else if ("channelPage".equals(fixture)) {
+            return new ListAllChannelsAPIResponseHandler();
+        } else if ("appStats".equals(fixture)) {
+            return new ListAppStatsAPIResponseHandler();
+        } else if ("perPushSeries".equals(fixture)) {
+            return new ListPerPushSeriesResponseHandler();
+        } else if ("perPushDetail".equals(fixture)) {
+            return new ListPerPushDetailAPIResponseHandler();
+        } else if ("individualPush".equals(fixture)) {
+            return new ListIndividualPushAPIResponseHandler();
+        } else if ("reportsListing".equals(fixture)) {
+            return new ListReportsListingResponseHandler();
+        } else if ("appsOpen".equals(fixture)) {
+            return new AppsOpenReportAPIResponseHandler();
+        } else if ("timeInApp".equals(fixture)) {
+            return new TimeInAppReportAPIResponseHandler();
+        } else if ("schedule".equals(fixture)) {
+            return new ListScheduleAPIResponseHandler();
+        } else if ("scheduleResult".equals(fixture)) {
+            return new ScheduleAPIResponseHandler();
+        } else if ("schedulePage".equals(fixture)) {
+            return new ListAllSchedulesAPIResponseHandler();
+        } else if ("tags".equals(fixture)) {
+            return new ListTagsAPIResponseHandler();
+        } else if ("segment".equals(fixture)) {
+            return new AudienceSegmentAPIResponseHandler();
+        } else if ("segmentPage".equals(fixture)) {
+            return new ListAllSegmentsAPIResponseHandler();
+        } else if ("location".equals(fixture)) {
+            return new LocationAPIResponseHandler();
+        }
+        throw new IllegalArgumentException("Unknown fixture " + fixture);
+    }
+
+    static String body(String fixture) {
+        if ("push".equals(fixture)) {
+            return "{\"ok\":true,\"operation_id\":\"df6a6b50-9843-0304-d5a5-743f246a4946\"," +
+                    "\"push_ids\":[\"9d78a53b-b16a-c58f-b78d-181d5e242078\"]}";
+        } else if ("channel".equals(fixture)) {
+            return "{\"ok\":true,\"channel\":" + channel(0) + "}";
+        } else if ("channelPage".equals(fixture)) {
+            return channelPage(CHANNEL_PAGE_SIZE);
+        } else if ("appStats".equals(fixture)) {
+            return appStats(HOURS_PER_MONTH);
+        } else if ("perPushSeries".equals(fixture)) {
+            return perPushSeries(HOURS_PER_MONTH);
+        } else if ("perPushDetail".equals(fixture)) {
+            return perPushDetail();
+        } else if ("individualPush".equals(fixture)) {
+            return pushInfo(0);
+        } else if ("reportsListing".equals(fixture)) {
+            return reportsListing(REPORT_PAGE_SIZE);
+        } else if ("appsOpen".equals(fixture)) {
+            return platformCounts("opens", "1470", "458");
+        } else if ("timeInApp".equals(fixture)) {
+            return platformCounts("timeinapp", "145436.44", "193246.86");
+        } else if ("schedule".equals(fixture)) {
+            return schedule(0);
+        } else if ("scheduleResult".equals(fixture)) {
+            return "{\"ok\":true,\"operation_id\":\"efb18e92-9a60-6689-45c2-82fedab36399\"," +
+                    "\"schedule_urls\":[\"https://go.urbanairship.com/api/schedules/2d69320c-3c91-5241-fac4-248269eed109\"]," +
+                    "\"schedules\":[" + schedule(0) + "]}";
+        } else if ("schedulePage".equals(fixture)) {
+            return schedulePage(SCHEDULE_PAGE_SIZE);
+        } else if ("tags".equals(fixture)) {
+            return tags(TAG_COUNT);
+        } else if ("segment".equals(fixture)) {
+            return segment();
+        } else if ("segmentPage".equals(fixture)) {
+            return segmentPage(SEGMENT_PAGE_SIZE);
+        } else if ("location".equals(fixture)) {
+            return locations(LOCATION_COUNT);
+        }
+        throw new IllegalArgumentException("Unknown fixture " + fixture);
+    }
+
+    private static String uuid(int i) {
+        return String.format("00662346-9e39-4f5f-80e7-%012d", i);
+    }
+
+    private static String channel(int i) {
+        return new StringBuilder()
+                .append("{\"channel_id\":\"").append(uuid(i)).append("\",")
+                .append("\"device_type\":\"").append(i % 2 == 0 ? "android" : "ios").append("\",")
+                .append("\"installed\":true,\"opt_in\":true,\"background\":true,")
+                .append("\"push_address\":\"APA91bFPOUF6KNHXjoG0vaQSP4VLXirGDpy0_CRcb6Jhvnrya2bdRmlUoMiJ12JJevjONZzUwFETYa8uzyiE\",")
+                .append("\"created\":\"2014-03-06T18:52:59\",\"last_registration\":\"2014-10-07T21:28:35\",")
+                .append("\"alias\":\"alias-").append(i).append("\",\"tags\":[\"tag1\",\"tag2\",\"tag3\"]}")
+                .toString();
+    }
+
+    private static String channelPage(int channels) {
+        StringBuilder json = new StringBuilder("{\"ok\":true,\"channels\":[");
+        for (int i = 0; i < channels; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(channel(i));
+        }
+        json.append("],\"next_page\":\"https://go.urbanairship.com/api/channels?start=next\"}");
+        return json.toString();
+    }
+
+    private static String hour(int i) {
+        return String.format("2014-06-%02d %02d:00:00", 1 + i / 24, i % 24);
+    }
+
+    private static String appStats(int hours) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < hours; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"start\":\"").append(hour(i)).append("\",")
+                    .append("\"messages\":").append(i % 7).append(",\"gcm_messages\":").append(i % 5).append(',')
+                    .append("\"c2dm_messages\":0,\"android_messages\":0,\"wns_messages\":0,")
+                    .append("\"mpns_messages\":0,\"bb_messages\":0}");
+        }
+        json.append("]");
+        return json.toString();
+    }
+
+    private static String perPushSeries(int hours) {
+        StringBuilder json = new StringBuilder("{\"app_key\":\"some_app_key\",")
+                .append("\"push_id\":\"57ef3728-79dc-46b1-a6b9-20081e561f97\",")
+                .append("\"start\":\"2014-06-01 00:00:00\",\"end\":\"2014-07-01 00:00:00\",")
+                .append("\"precision\":\"HOURLY\",\"counts\":[");
+        for (int i = 0; i < hours; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"push_platforms\":{")
+                    .append("\"all\":{\"direct_responses\":").append(i % 9).append(",\"influenced_responses\":2,\"sends\":58},")
+                    .append("\"android\":{\"direct_responses\":3,\"influenced_responses\":4,\"sends\":22},")
+                    .append("\"ios\":{\"direct_responses\":5,\"influenced_responses\":6,\"sends\":36}},")
+                    .append("\"rich_push_platforms\":{\"all\":{\"responses\":7,\"sends\":8}},")
+                    .append("\"time\":\"").append(hour(i)).append("\"}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static String perPushDetail() {
+        return "{\"app_key\":\"some_app_key\",\"push_id\":\"57ef3728-79dc-46b1-a6b9-20081e561f97\"," +
+                "\"created\":\"2013-07-31 22:05:53\",\"push_body\":\"PEJhc2U2NC1lbmNvZGVkIHN0cmluZz4=\"," +
+                "\"rich_deletions\":1,\"rich_responses\":2,\"rich_sends\":3,\"sends\":58," +
+                "\"direct_responses\":4,\"influenced_responses\":5,\"platforms\":{" +
+                "\"android\":{\"direct_responses\":6,\"influenced_responses\":7,\"sends\":22}," +
+                "\"ios\":{\"direct_responses\":8,\"influenced_responses\":9,\"sends\":36}}}";
+    }
+
+    private static String pushInfo(int i) {
+        return "{\"push_uuid\":\"" + uuid(i) + "\",\"push_time\":\"2013-07-31 22:05:53\"," +
+                "\"push_type\":\"BROADCAST_PUSH\",\"direct_responses\":4,\"sends\":176," +
+                "\"group_id\":\"5e42ddfc-fa2d-11e2-9ca2-90e2ba025cd0\"}";
+    }
+
+    private static String reportsListing(int pushes) {
+        StringBuilder json = new StringBuilder("{\"next_page\":\"https://go.urbanairship.com/api/reports/responses/list?start=next\",\"pushes\":[");
+        for (int i = 0; i < pushes; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(pushInfo(i));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /* A year of monthly counts, as the opens and time in app reports return them */
+    private static String platformCounts(String field, String ios, String android) {
+        StringBuilder json = new StringBuilder("{\"").append(field).append("\":[");
+        for (int month = 1; month <= 12; month++) {
+            if (month > 1) {
+                json.append(',');
+            }
+            json.append(String.format("{\"date\":\"2013-%02d-01 00:00:00\",", month))
+                    .append("\"ios\":").append(ios).append(",\"android\":").append(android).append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static String schedule(int i) {
+        return "{\"url\":\"https://go.urbanairship.com/api/schedules/" + uuid(i) + "\"," +
+                "\"schedule\":{\"scheduled_time\":\"2015-01-01T08:00:00\"}," +
+                "\"name\":\"Scheduled push " + i + "\"," +
+                "\"push\":{\"audience\":{\"tag\":\"sports\"},\"device_types\":[\"android\",\"ios\"]," +
+                "\"notification\":{\"alert\":\"Happy New Year!\",\"android\":{},\"ios\":{\"badge\":\"+1\"}}}," +
+                "\"push_ids\":[\"8430f2e0-ec07-4c1e-adc4-0c7c7978e648\"]}";
+    }
+
+    private static String schedulePage(int schedules) {
+        StringBuilder json = new StringBuilder("{\"ok\":true,\"count\":").append(schedules)
+                .append(",\"total_count\":").append(schedules * 3)
+                .append(",\"next_page\":\"https://go.urbanairship.com/api/schedules?start=next\",\"schedules\":[");
+        for (int i = 0; i < schedules; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(schedule(i));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static String tags(int tags) {
+        StringBuilder json = new StringBuilder("{\"tags\":[");
+        for (int i = 0; i < tags; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\"tag-").append(i).append('"');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static String segment() {
+        return "{\"display_name\":\"Recent west coast visitors\",\"criteria\":{\"and\":[" +
+                "{\"location\":{\"us_state\":\"OR\",\"date\":{\"days\":{\"start\":\"2014-11-02\",\"end\":\"2014-11-07\"}}}}," +
+                "{\"location\":{\"us_state\":\"CA\",\"date\":{\"recent\":{\"months\":3}}}}," +
+                "{\"or\":[{\"tag\":\"tag1\"},{\"tag\":\"tag2\"}]}," +
+                "{\"not\":{\"tag\":\"not-tag\"}}," +
+                "{\"not\":{\"and\":[{\"location\":{\"us_state\":\"WA\",\"date\":{\"months\":{\"start\":\"2011-05\",\"end\":\"2012-02\"}}}}," +
+                "{\"tag\":\"woot\"}]}}]}}";
+    }
+
+    private static String segmentPage(int segments) {
+        StringBuilder json = new StringBuilder("{\"next_page\":\"https://go.urbanairship.com/api/segments?start=next\",\"segments\":[");
+        for (int i = 0; i < segments; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"creation_date\":").append(1346248822220L + i)
+                    .append(",\"display_name\":\"Segment ").append(i).append("\",")
+                    .append("\"id\":\"").append(uuid(i)).append("\",")
+                    .append("\"modification_date\":").append(1346248822221L + i).append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static String locations(int features) {
+        StringBuilder json = new StringBuilder("{\"features\":[");
+        for (int i = 0; i < features; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"type\":\"Feature\",\"id\":\"4oFkxX7RcUdirjtaenEQ").append(i).append("\",")
+                    .append("\"properties\":{\"source\":\"tiger.census.gov\",\"boundary_type_string\":\"City/Place\",")
+                    .append("\"name\":\"San Francisco\",\"context\":{\"us_state_name\":\"California\",\"us_state\":\"CA\"},")
+                    .append("\"boundary_type\":\"city\"},")
+                    .append("\"bounds\":[37.63983,-123.173825,37.929824,-122.28178],")
+                    .append("\"centroid\":[37.759715,-122.693976]}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.benchmarks;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Response handling for every API response type, from the entity stream to
+the response model, through the same handlers APIClient uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class ResponseParsingBenchmark {
+
+    /* A fixture name from ResponseFixtures */
+    @Param({"push", "channel", "channelPage", "appStats", "perPushSeries", "perPushDetail", "individualPush",
+            "reportsListing", "appsOpen", "timeInApp", "schedule", "scheduleResult", "schedulePage", "tags",
+            "segment", "segmentPage", "location"})
+    public String fixture;
+
+    private ResponseHandler<?> handler;
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws Exception {
+        handler = ResponseFixtures.handler(fixture);
+        body = ResponseFixtures.body(fixture).getBytes("UTF-8");
+
+        // Fail the run up front rather than benchmark an error path
+        handler.handleResponse(response(body));
+    }
+
+    private static HttpResponse response(byte[] body) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        return response;
+    }
+
+    @Benchmark
+    public Object handleResponse() throws Exception {
+        return handler.handleResponse(response(body));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.channel.export;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.urbanairship.api.channel.information.model.ChannelView;
+import com.urbanairship.api.channel.information.util.Constants;
+import com.urbanairship.api.common.parse.DateFormats;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes channels as RFC 4180 CSV with a header row. Tags are joined with
+ * semicolons into a single column; iOS settings are not exported.
+ */
+public final class CSVChannelSink implements ChannelSink {
+
+    private static final String[] COLUMNS = {
+            Constants.CHANNEL_ID,
+            Constants.DEVICE_TYPE,
+            Constants.INSTALLED,
+            Constants.OPT_IN,
+            Constants.BACKGROUND,
+            Constants.PUSH_ADDRESS,
+            Constants.CREATED,
+            Constants.LAST_REGISTRATION,
+            Constants.ALIAS,
+            Constants.TAGS
+    };
+
+    private static final Joiner TAG_JOINER = Joiner.on(';');
+
+    private final Writer writer;
+    private boolean headerWritten;
+
+    /**
+     * @param out Stream to write UTF-8 encoded rows to. Closed when the sink is closed.
+     * @param writeHeader Whether to start with a header row; pass false when appending to an existing export
+     */
+    public CSVChannelSink(OutputStream out, boolean writeHeader) {
+        this(new OutputStreamWriter(Preconditions.checkNotNull(out, "out cannot be null"), Charsets.UTF_8), writeHeader);
+    }
+
+    /**
+     * @param writer Writer to write rows to. Closed when the sink is closed.
+     * @param writeHeader Whether to start with a header row; pass false when appending to an existing export
+     */
+    public CSVChannelSink(Writer writer, boolean writeHeader) {
+        Preconditions.checkNotNull(writer, "writer cannot be null");
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+        this.headerWritten = !writeHeader;
+    }
+
+    @Override
+    public void write(ChannelView channel) throws IOException {
+        if (!headerWritten) {
+            writeRow(COLUMNS);
+            headerWritten = true;
+        }
+
+        writeRow(new String[] {
+                channel.getChannelId(),
+                channel.getDeviceType().getIdentifier(),
+                String.valueOf(channel.isInstalled()),
+                String.valueOf(channel.isOptedIn()),
+                channel.getBackground().isPresent() ? String.valueOf(channel.getBackground().get()) : null,
+                channel.getPushAddress().orNull(),
+                DateFormats.DATE_FORMATTER.print(channel.getCreatedMillis()),
+                channel.getLastRegistrationMillis().isPresent() ?
+                        DateFormats.DATE_FORMATTER.print(channel.getLastRegistrationMillis().get()) : null,
+                channel.getAlias().orNull(),
+                TAG_JOINER.join(channel.getTags())
+        });
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeRow(String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeValue(values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeValue(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (StringUtils.containsNone(value, ",\"\r\n")) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(StringUtils.replace(value, "\"", "\"\""));
+        writer.write('"');
+    }
+}
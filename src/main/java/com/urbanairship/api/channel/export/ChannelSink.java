@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.channel.export;
+
+import com.urbanairship.api.channel.information.model.ChannelView;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Destination for channels streamed out of the channels API by a
+ * ChannelExporter. Channels are written one at a time as they are parsed,
+ * so a sink should not hold on to them if memory use is to stay bounded.
+ * <p>
+ * flush is called after every page, before the page's cursor is handed to
+ * the exporter's listener, so everything written before a saved cursor has
+ * reached the underlying stream.
+ */
+public interface ChannelSink extends Closeable, Flushable {
+
+    /**
+     * Write a single channel.
+     *
+     * @param channel ChannelView
+     * @throws IOException if the channel cannot be written
+     */
+    void write(ChannelView channel) throws IOException;
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.channel.export;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.urbanairship.api.channel.information.model.ChannelView;
+import com.urbanairship.api.channel.information.parse.ChannelViewSerializer;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes channels as newline delimited JSON, one channel object per line
+ * in the same format the channels API returns them in.
+ */
+public final class NDJSONChannelSink implements ChannelSink {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    static {
+        JSON_FACTORY.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // Otherwise closing each line's generator flushes the writer, and the stream under it
+        JSON_FACTORY.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+    }
+
+    private final Writer writer;
+
+    /**
+     * @param out Stream to write UTF-8 encoded lines to. Closed when the sink is closed.
+     */
+    public NDJSONChannelSink(OutputStream out) {
+        this(new OutputStreamWriter(Preconditions.checkNotNull(out, "out cannot be null"), Charsets.UTF_8));
+    }
+
+    /**
+     * @param writer Writer to write lines to. Closed when the sink is closed.
+     */
+    public NDJSONChannelSink(Writer writer) {
+        Preconditions.checkNotNull(writer, "writer cannot be null");
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+    }
+
+    @Override
+    public void write(ChannelView channel) throws IOException {
+        // Generators recycle their buffers, so one per line is cheap and keeps
+        // Jackson from separating root values with spaces
+        JsonGenerator jgen = JSON_FACTORY.createJsonGenerator(writer);
+        ChannelViewSerializer.INSTANCE.serialize(channel, jgen, null);
+        jgen.close();
+        writer.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.channel.information.parse;
+
+import com.urbanairship.api.channel.information.model.ChannelView;
+import com.urbanairship.api.channel.information.model.ios.IosSettings;
+import com.urbanairship.api.channel.information.model.ios.QuietTime;
+import com.urbanairship.api.channel.information.util.Constants;
+import com.urbanairship.api.common.parse.DateFormats;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+
+import java.io.IOException;
+
+/*
+Writes a channel in the format the channels API returns it in, so exported
+channels can be read back with ChannelViewDeserializer.
+ */
+public class ChannelViewSerializer extends JsonSerializer<ChannelView> {
+
+    public static final ChannelViewSerializer INSTANCE = new ChannelViewSerializer();
+
+    @Override
+    public void serialize(ChannelView channel, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        jgen.writeStartObject();
+
+        jgen.writeStringField(Constants.CHANNEL_ID, channel.getChannelId());
+        jgen.writeStringField(Constants.DEVICE_TYPE, channel.getDeviceType().getIdentifier());
+        jgen.writeBooleanField(Constants.INSTALLED, channel.isInstalled());
+        jgen.writeBooleanField(Constants.OPT_IN, channel.isOptedIn());
+        if (channel.getBackground().isPresent()) {
+            jgen.writeBooleanField(Constants.BACKGROUND, channel.getBackground().get());
+        }
+        jgen.writeStringField(Constants.PUSH_ADDRESS, channel.getPushAddress().orNull());
+        jgen.writeStringField(Constants.CREATED, DateFormats.DATE_FORMATTER.print(channel.getCreatedMillis()));
+        if (channel.getLastRegistrationMillis().isPresent()) {
+            jgen.writeStringField(Constants.LAST_REGISTRATION,
+                    DateFormats.DATE_FORMATTER.print(channel.getLastRegistrationMillis().get()));
+        } else {
+            jgen.writeNullField(Constants.LAST_REGISTRATION);
+        }
+        jgen.writeStringField(Constants.ALIAS, channel.getAlias().orNull());
+
+        jgen.writeArrayFieldStart(Constants.TAGS);
+        for (String tag : channel.getTags()) {
+            jgen.writeString(tag);
+        }
+        jgen.writeEndArray();
+
+        if (channel.getIosSettings().isPresent()) {
+            IosSettings ios = channel.getIosSettings().get();
+            jgen.writeObjectFieldStart(Constants.IOS);
+            jgen.writeNumberField(Constants.BADGE, ios.getBadge());
+            if (ios.getQuietTime().isPresent()) {
+                QuietTime quietTime = ios.getQuietTime().get();
+                jgen.writeObjectFieldStart(Constants.QUIETTIME);
+                jgen.writeStringField(Constants.START, quietTime.getStart());
+                jgen.writeStringField(Constants.END, quietTime.getEnd());
+                jgen.writeEndObject();
+            }
+            jgen.writeStringField(Constants.TZ, ios.getTimezone().orNull());
+            jgen.writeEndObject();
+        }
+
+        jgen.writeEndObject();
+    }
+}
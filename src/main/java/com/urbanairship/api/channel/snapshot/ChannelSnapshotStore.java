@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.channel.snapshot;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.urbanairship.api.channel.export.ChannelSink;
+import com.urbanairship.api.channel.export.NDJSONChannelSink;
+import com.urbanairship.api.channel.information.model.ChannelView;
+import com.urbanairship.api.client.APIClient;
+import com.urbanairship.api.client.ChannelExporter;
+import com.urbanairship.api.client.parse.APIResponseObjectMapper;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Local copy of an app's channels, keyed by channel id, that is kept on
+ * disk so a restarted service can start from it instead of downloading
+ * every channel again.
+ * <p>
+ * The store is a ChannelSink: refresh streams the channel listing into it,
+ * and a channel is only applied when it is new or was registered more
+ * recently than the stored copy, using its last registration time, or its
+ * creation time if it has never registered. Applied channels are appended
+ * to a change log, so a refresh writes only what changed. Once the log
+ * holds more records than the snapshot, the snapshot is rewritten with
+ * the current channels and the log is emptied; close also compacts.
+ * <p>
+ * On disk the store is two newline delimited JSON files in its directory,
+ * channels.ndjson and channels.log. Both are read back on open, the log
+ * replayed over the snapshot with the same newer-wins rule, so an
+ * interrupted refresh or compaction loses at most the last partial line.
+ * <p>
+ * Reads can happen from any thread while a refresh is running; writes are
+ * serialized.
+ */
+public final class ChannelSnapshotStore implements ChannelSink {
+
+    private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
+    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
+
+    static final String SNAPSHOT_FILE = "channels.ndjson";
+    static final String LOG_FILE = "channels.log";
+    static final String SNAPSHOT_TEMP_FILE = SNAPSHOT_FILE + ".tmp";
+
+    private final File snapshotFile;
+    private final File snapshotTempFile;
+    private final File logFile;
+    private final ConcurrentMap<String, ChannelView> channels = new ConcurrentHashMap<String, ChannelView>();
+
+    private volatile long watermarkMillis = Long.MIN_VALUE;
+    private long snapshotRecords;
+    private long logRecords;
+    private boolean incompleteRecord;
+    private FileOutputStream logStream;
+    private NDJSONChannelSink logSink;
+
+    private ChannelSnapshotStore(File directory) {
+        this.snapshotFile = new File(directory, SNAPSHOT_FILE);
+        this.snapshotTempFile = new File(directory, SNAPSHOT_TEMP_FILE);
+        this.logFile = new File(directory, LOG_FILE);
+    }
+
+    /**
+     * Opens the store in the given directory, loading any snapshot and
+     * change log already there. The directory is created if needed.
+     *
+     * @param directory Directory holding the store's files
+     * @return ChannelSnapshotStore
+     * @throws IOException if the directory or its files cannot be read
+     */
+    public static ChannelSnapshotStore open(File directory) throws IOException {
+        Preconditions.checkNotNull(directory, "directory cannot be null");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create snapshot directory " + directory);
+        }
+
+        ChannelSnapshotStore store = new ChannelSnapshotStore(directory);
+        store.recoverSnapshot();
+        store.snapshotRecords = store.load(store.snapshotFile);
+        store.logRecords = store.load(store.logFile);
+        store.openLog(true);
+        if (store.incompleteRecord) {
+            // Appending after a partial line would corrupt the next record
+            store.compact();
+        }
+
+        logger.info(String.format("Loaded %d channels from snapshot in %s", store.channels.size(), directory));
+        return store;
+    }
+
+    /*
+    A temporary snapshot is complete, and synced, before the snapshot is
+    replaced, so it is kept if a crash left no snapshot and dropped
+    otherwise.
+     */
+    private void recoverSnapshot() throws IOException {
+        if (!snapshotTempFile.exists()) {
+            return;
+        }
+        if (snapshotFile.exists()) {
+            if (!snapshotTempFile.delete()) {
+                throw new IOException("Unable to delete " + snapshotTempFile);
+            }
+        } else if (!snapshotTempFile.renameTo(snapshotFile)) {
+            throw new IOException("Unable to recover snapshot " + snapshotTempFile);
+        }
+    }
+
+    /**
+     * Returns the stored copy of a channel.
+     *
+     * @param channelId Channel id
+     * @return Optional ChannelView
+     */
+    public Optional<ChannelView> get(String channelId) {
+        return Optional.fromNullable(channels.get(channelId));
+    }
+
+    /**
+     * Returns a live, unmodifiable view of the stored channels.
+     *
+     * @return Collection of ChannelView
+     */
+    public Collection<ChannelView> getChannels() {
+        return Collections.unmodifiableCollection(channels.values());
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * Latest registration time of any stored channel, or Long.MIN_VALUE if
+     * the store is empty.
+     *
+     * @return Time in milliseconds since the epoch
+     */
+    public long getWatermarkMillis() {
+        return watermarkMillis;
+    }
+
+    /**
+     * Streams the app's channel listing into the store, applying new and
+     * re-registered channels, then persists the changes.
+     *
+     * @param client APIClient for the app
+     * @return Number of channels applied
+     * @throws IOException if the listing cannot be fetched or the store cannot be written
+     */
+    public long refresh(APIClient client) throws IOException {
+        long before;
+        synchronized (this) {
+            before = logRecords;
+        }
+
+        ChannelExporter.newBuilder()
+                .setClient(client)
+                .setSink(this)
+                .build()
+                .export();
+
+        synchronized (this) {
+            long applied = logRecords - before;
+            logger.info(String.format("Refreshed channel snapshot: %d of %d channels changed, watermark %d",
+                    applied, channels.size(), watermarkMillis));
+            if (logRecords > snapshotRecords) {
+                compact();
+            }
+            return applied;
+        }
+    }
+
+    /**
+     * Applies a channel if it is not stored yet or was registered more
+     * recently than the stored copy, appending it to the change log.
+     *
+     * @param channel ChannelView
+     * @throws IOException if the change log cannot be written
+     */
+    @Override
+    public synchronized void write(ChannelView channel) throws IOException {
+        Preconditions.checkState(logSink != null, "Snapshot store is closed");
+        if (apply(channel)) {
+            logSink.write(channel);
+            logRecords++;
+        }
+    }
+
+    /**
+     * Flushes the change log and syncs it to disk.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (logSink != null) {
+            logSink.flush();
+            logStream.getFD().sync();
+        }
+    }
+
+    /**
+     * Rewrites the snapshot with the current channels and empties the
+     * change log. The new snapshot is written to a temporary file and
+     * renamed over the old one, so a crash leaves either snapshot and the
+     * log intact; replaying the log over the new snapshot changes nothing.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        Preconditions.checkState(logSink != null, "Snapshot store is closed");
+
+        FileOutputStream out = new FileOutputStream(snapshotTempFile);
+        NDJSONChannelSink sink = new NDJSONChannelSink(out);
+        long records = 0;
+        try {
+            for (ChannelView channel : channels.values()) {
+                sink.write(channel);
+                records++;
+            }
+            sink.flush();
+            out.getFD().sync();
+        } finally {
+            sink.close();
+        }
+
+        // Atomic on POSIX; where renaming over a file fails, open recovers the temporary file
+        if (!snapshotTempFile.renameTo(snapshotFile) &&
+                (!snapshotFile.delete() || !snapshotTempFile.renameTo(snapshotFile))) {
+            throw new IOException("Unable to replace snapshot " + snapshotFile);
+        }
+
+        logSink.close();
+        openLog(false);
+        snapshotRecords = records;
+        logRecords = 0;
+
+        logger.info(String.format("Compacted channel snapshot to %d channels", records));
+    }
+
+    /**
+     * Compacts the store and closes its files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (logSink == null) {
+            return;
+        }
+        try {
+            if (logRecords > 0) {
+                compact();
+            }
+        } finally {
+            logSink.close();
+            logSink = null;
+            logStream = null;
+        }
+    }
+
+    private boolean apply(ChannelView channel) {
+        long registered = registrationMillis(channel);
+        ChannelView stored = channels.get(channel.getChannelId());
+        if (stored != null && registered <= registrationMillis(stored)) {
+            return false;
+        }
+
+        channels.put(channel.getChannelId(), channel);
+        if (registered > watermarkMillis) {
+            watermarkMillis = registered;
+        }
+        return true;
+    }
+
+    private static long registrationMillis(ChannelView channel) {
+        return channel.getLastRegistrationMillis().or(channel.getCreatedMillis());
+    }
+
+    private void openLog(boolean append) throws IOException {
+        logStream = new FileOutputStream(logFile, append);
+        logSink = new NDJSONChannelSink(logStream);
+    }
+
+    private long load(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        long records = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                ChannelView channel;
+                try {
+                    channel = mapper.readValue(line, ChannelView.class);
+                } catch (IOException e) {
+                    // Only the last line can be partially written
+                    if (reader.readLine() == null) {
+                        logger.warn(String.format("Ignoring incomplete last record in %s", file));
+                        incompleteRecord = true;
+                        break;
+                    }
+                    throw e;
+                }
+                apply(channel);
+                records++;
+            }
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+}
@@ -7,7 +7,14 @@ package com.urbanairship.api.client;
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.urbanairship.api.channel.information.model.ChannelView;
 import com.urbanairship.api.client.model.*;
+import com.urbanairship.api.common.model.APIModelObject;
+import com.urbanairship.api.common.trace.Span;
+import com.urbanairship.api.common.trace.Tracing;
 import com.urbanairship.api.location.model.BoundedBox;
 import com.urbanairship.api.location.model.Point;
 import com.urbanairship.api.push.model.PushPayload;
@@ -17,29 +24,52 @@ import com.urbanairship.api.segments.model.AudienceSegment;
 import com.urbanairship.api.tag.model.AddRemoveDeviceFromTagPayload;
 import com.urbanairship.api.tag.model.BatchModificationPayload;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Request;
+import org.apache.http.client.fluent.Response;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.DecompressingHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.params.CoreProtocolPNames;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * The APIClient class handles HTTP requests to the Urban Airship API
+ * The APIClient class handles HTTP requests to the Urban Airship API.
+ * All requests share a single pooled HTTP transport, so one instance should
+ * be created and reused for the lifetime of the application, then closed.
  */
 
-public class APIClient {
+public class APIClient implements Closeable {
 
     /* Static Strings */
     private final static String HOURLY = "HOURLY";
@@ -52,11 +82,11 @@ public class APIClient {
     private final static String UA_APPLICATION_JSON = "application/vnd.urbanairship+json;";
 
     /* URI Paths */
-    private final static String API_PUSH_PATH = "/api/push/";
+    final static String API_PUSH_PATH = "/api/push/";
     private final static String API_VALIDATE_PATH = "/api/push/validate/";
     private final static String API_SCHEDULE_PATH = "/api/schedules/";
-    private final static String API_TAGS_PATH = "/api/tags/";
-    private final static String API_TAGS_BATCH_PATH = "/api/tags/batch/";
+    final static String API_TAGS_PATH = "/api/tags/";
+    final static String API_TAGS_BATCH_PATH = "/api/tags/batch/";
     private final static String API_LOCATION_PATH = "/api/location/";
     private final static String API_SEGMENTS_PATH = "/api/segments/";
     private final static String API_DEVICE_CHANNELS_PATH = "/api/channels/";
@@ -76,9 +106,35 @@ public class APIClient {
     /* HTTP */
     private final HttpHost uaHost;
     private final Optional<ProxyInfo> proxyInfo;
-
-
-    private APIClient(String appKey, String appSecret, String baseURI, Number version, Optional<ProxyInfo> proxyInfoOptional) {
+    private final String userAgent;
+    /* Shared transport */
+    private final ConnectionPoolConfig connectionPoolConfig;
+    private final PoolingClientConnectionManager connectionManager;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService connectionEvictor;
+    /* Compression */
+    private final Optional<Integer> requestCompressionThreshold;
+    /* Retries */
+    private final RetryPolicy retryPolicy;
+    /* Rate limiting */
+    private final Optional<APIRateLimiter> rateLimiter;
+    /* Circuit breakers */
+    private final Optional<CircuitBreakerConfig> circuitBreakerConfig;
+    private final ImmutableMap<EndpointGroup, CircuitBreaker> circuitBreakers;
+    /* Response cache */
+    private final Optional<ResponseCache> responseCache;
+    /* Metrics */
+    private final Optional<APIClientMetrics> metrics;
+    private final ConcurrentMap<Request, CountingHttpEntity> requestBodies = new MapMaker().weakKeys().makeMap();
+
+
+    private APIClient(String appKey, String appSecret, String baseURI, Number version, Optional<ProxyInfo> proxyInfoOptional,
+                      ConnectionPoolConfig connectionPoolConfig, Optional<Integer> requestCompressionThreshold,
+                      RetryPolicy retryPolicy, Optional<APIRateLimiter> rateLimiter,
+                      Optional<CircuitBreakerConfig> circuitBreakerConfig,
+                      Optional<CircuitBreakerListener> circuitBreakerListener,
+                      Optional<ResponseCacheConfig> responseCacheConfig,
+                      Optional<APIClientMetrics> metrics) {
         Preconditions.checkArgument(StringUtils.isNotBlank(appKey),
                 "App key must be provided.");
         Preconditions.checkArgument(StringUtils.isNotBlank(appSecret),
@@ -87,8 +143,48 @@ public class APIClient {
         this.appSecret = appSecret;
         this.baseURI = URI.create(baseURI);
         this.version = version;
-        this.uaHost = new HttpHost(URI.create(baseURI).getHost(), 443, "https");
+        this.uaHost = authHost(this.baseURI);
         this.proxyInfo = proxyInfoOptional;
+        this.userAgent = loadUserAgent();
+        this.connectionPoolConfig = connectionPoolConfig;
+        this.requestCompressionThreshold = requestCompressionThreshold;
+        this.retryPolicy = retryPolicy;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreakerConfig = circuitBreakerConfig;
+
+        ImmutableMap.Builder<EndpointGroup, CircuitBreaker> breakers = ImmutableMap.builder();
+        if (circuitBreakerConfig.isPresent()) {
+            for (EndpointGroup group : EndpointGroup.values()) {
+                breakers.put(group, new CircuitBreaker(group, circuitBreakerConfig.get(), circuitBreakerListener));
+            }
+        }
+        this.circuitBreakers = breakers.build();
+
+        this.responseCache = responseCacheConfig.isPresent() ?
+                Optional.of(new ResponseCache(responseCacheConfig.get())) : Optional.<ResponseCache>absent();
+        this.metrics = metrics;
+
+        this.connectionManager = new PoolingClientConnectionManager(SchemeRegistryFactory.createDefault());
+        connectionManager.setMaxTotal(connectionPoolConfig.getMaxConnectionsTotal());
+        connectionManager.setDefaultMaxPerRoute(connectionPoolConfig.getMaxConnectionsPerRoute());
+
+        DefaultHttpClient client = new DefaultHttpClient(connectionManager);
+        client.setKeepAliveStrategy(new BoundedKeepAliveStrategy(connectionPoolConfig.getKeepAliveMillis()));
+        // Sends Accept-Encoding and transparently inflates gzip or deflate responses before the handlers see them
+        this.httpClient = new DecompressingHttpClient(client);
+
+        this.connectionEvictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("ua-connection-evictor-%d")
+                .build());
+        final long idleTimeout = connectionPoolConfig.getIdleConnectionTimeoutMillis();
+        connectionEvictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+            }
+        }, connectionPoolConfig.getEvictionIntervalMillis(), connectionPoolConfig.getEvictionIntervalMillis(), TimeUnit.MILLISECONDS);
     }
 
     public static Builder newBuilder() {
@@ -107,6 +203,102 @@ public class APIClient {
         return appKey;
     }
 
+    public ConnectionPoolConfig getConnectionPoolConfig() {
+        return connectionPoolConfig;
+    }
+
+    /**
+     * Returns the minimum size in bytes of a request body that is sent gzip
+     * compressed, or absent if request bodies are never compressed.
+     *
+     * @return Optional threshold in bytes
+     */
+    public Optional<Integer> getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public Optional<APIRateLimiter> getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Returns how long a request to the endpoint group made now would wait
+     * for the client side rate limiter. Zero if no rate limiter is set.
+     *
+     * @param group Endpoint group
+     * @return Wait in milliseconds
+     */
+    public long getRateLimitWaitMillis(EndpointGroup group) {
+        if (!rateLimiter.isPresent()) {
+            return 0L;
+        }
+        return rateLimiter.get().getWaitMillis(appKey, group);
+    }
+
+    public Optional<CircuitBreakerConfig> getCircuitBreakerConfig() {
+        return circuitBreakerConfig;
+    }
+
+    /**
+     * Returns the state of the circuit breaker for the endpoint group.
+     * Always CLOSED if circuit breakers are not enabled.
+     *
+     * @param group Endpoint group
+     * @return CircuitState
+     */
+    public CircuitState getCircuitState(EndpointGroup group) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(group);
+        return circuitBreaker == null ? CircuitState.CLOSED : circuitBreaker.getState();
+    }
+
+    public Optional<ResponseCacheConfig> getResponseCacheConfig() {
+        if (!responseCache.isPresent()) {
+            return Optional.absent();
+        }
+        return Optional.of(responseCache.get().getConfig());
+    }
+
+    /**
+     * Returns the response cache's hit, miss and eviction counters, or
+     * absent if the response cache is not enabled.
+     *
+     * @return Optional ResponseCacheStats
+     */
+    public Optional<ResponseCacheStats> getResponseCacheStats() {
+        if (!responseCache.isPresent()) {
+            return Optional.absent();
+        }
+        return Optional.of(responseCache.get().getStats());
+    }
+
+    public Optional<APIClientMetrics> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns a snapshot of the leased, available and pending connections in
+     * the shared connection pool.
+     *
+     * @return PoolStats
+     */
+    public PoolStats getConnectionPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Shuts down the shared connection pool and closes all of its
+     * connections. The client cannot be used once it has been closed.
+     */
+    @Override
+    public void close() {
+        connectionEvictor.shutdownNow();
+        connectionManager.shutdown();
+    }
+
     /* Add the version number to the default version header */
 
     private String versionedAcceptHeader(Number version) {
@@ -116,7 +308,11 @@ public class APIClient {
     /* Retrieves Java Client API Version */
 
     public String getUserAgent() {
-        InputStream stream = getClass().getResourceAsStream("/client.properties");
+        return userAgent;
+    }
+
+    private static String loadUserAgent() {
+        InputStream stream = APIClient.class.getResourceAsStream("/client.properties");
 
         if (stream == null) {
             return "UNKNOWN";
@@ -132,23 +328,48 @@ public class APIClient {
             return "UNKNOWN";
         }
     }
-    
+
+    /* The host credentials are sent to, on the base URI's scheme and port */
+
+    private static HttpHost authHost(URI baseURI) {
+        String scheme = baseURI.getScheme() == null ? "https" : baseURI.getScheme();
+        int port = baseURI.getPort();
+        if (port == -1) {
+            port = scheme.equalsIgnoreCase("http") ? 80 : 443;
+        }
+        return new HttpHost(baseURI.getHost(), port, scheme);
+    }
+
     /* Provisioning Methods */
 
     private Request provisionRequest(Request object) {
-        object.config(CoreProtocolPNames.USER_AGENT, getUserAgent())
-                .addHeader(CONTENT_TYPE_KEY, versionedAcceptHeader(version))
-                .addHeader(ACCEPT_KEY, versionedAcceptHeader(version));
+        Span span = Tracing.begin(Tracing.Stage.PROVISIONING);
+        try {
+            object.config(CoreProtocolPNames.USER_AGENT, getUserAgent())
+                    .addHeader(CONTENT_TYPE_KEY, versionedAcceptHeader(version))
+                    .addHeader(ACCEPT_KEY, versionedAcceptHeader(version));
 
-        if (proxyInfo.isPresent()) {
-            object.viaProxy(proxyInfo.get().getProxyHost());
-        }
+            if (proxyInfo.isPresent()) {
+                object.viaProxy(proxyInfo.get().getProxyHost());
+            }
 
-        return object;
+            return object;
+        } finally {
+            if (span.isRecording()) {
+                String[] requestLine = StringUtils.split(object.toString(), ' ');
+                span.setMethod(requestLine[0]).setEndpoint(endpointGroup(requestLine[1]).name());
+            }
+            span.end();
+        }
     }
 
+    /*
+    The fluent Executor keeps per-request state in its HttpContext, so a new
+    one is created for each call. It is a thin wrapper around the shared,
+    pooled HttpClient and does not open any connections itself.
+     */
     private Executor provisionExecutor() {
-        Executor executor = Executor.newInstance()
+        Executor executor = Executor.newInstance(httpClient)
                 .auth(uaHost, appKey, appSecret)
                 .authPreemptive(uaHost);
 
@@ -165,30 +386,272 @@ public class APIClient {
         return executor;
     }
 
+    /*
+    When requests may be retried the body has to be sent again. The JSON and
+    gzip entities are repeatable, writing the same bytes on every attempt, so
+    only an entity that can be read once is buffered in memory up front.
+     */
+    private HttpEntity requestEntity(APIModelObject payload) throws IOException {
+        HttpEntity entity;
+        if (requestCompressionThreshold.isPresent()) {
+            entity = GzipJSONRequestEntity.compressIfLarger(payload, requestCompressionThreshold.get());
+        } else {
+            entity = new JSONRequestEntity(payload);
+        }
+
+        if (retryPolicy.getMaxAttempts() > 1 && !entity.isRepeatable()) {
+            return new BufferedHttpEntity(entity);
+        }
+        return entity;
+    }
+
+    /*
+    With metrics enabled the body is wrapped to count the bytes sent, and
+    kept by request so execute can find it; the fluent Request does not
+    expose its body.
+     */
+    private void setBody(Request request, APIModelObject payload) throws IOException {
+        setBody(request, requestEntity(payload));
+    }
+
+    private void setBody(Request request, HttpEntity entity) {
+        if (metrics.isPresent()) {
+            CountingHttpEntity counted = new CountingHttpEntity(entity);
+            requestBodies.put(request, counted);
+            entity = counted;
+        }
+        request.body(entity);
+    }
+
+    /* Request execution */
+
+    private HttpResponse execute(Request request) throws IOException {
+        return execute(request, BUFFERED_RESPONSE_HANDLER);
+    }
+
+    /*
+    Executes the request, retrying it according to the retry policy. Only
+    failed attempts are inspected here; successful responses go straight to
+    the handler, so they are still parsed from the stream. Each attempt must
+    pass the endpoint group's circuit breaker, then the rate limiter, and
+    its outcome is recorded by the circuit breaker.
+
+    With the response cache enabled, cacheable GETs are looked up first and
+    a fresh entry never reaches the network; any other method invalidates
+    its endpoint group once it completes.
+
+    With metrics set, every attempt that reaches the network is reported to
+    them, along with API errors and retries. Cache hits are not.
+     */
+    private <T> T execute(Request request, ResponseHandler<T> handler) throws IOException {
+        // Request.toString() is the request line: method, URI and protocol version
+        String[] requestLine = StringUtils.split(request.toString(), ' ');
+        String method = requestLine.length > 0 ? requestLine[0] : null;
+        EndpointGroup endpointGroup = requestLine.length > 1 ? endpointGroup(requestLine[1]) : EndpointGroup.OTHER;
+
+        if (!responseCache.isPresent() || requestLine.length < 2) {
+            return executeWithRetries(request, handler, method, endpointGroup);
+        }
+
+        ResponseCache cache = responseCache.get();
+        if (!"GET".equals(method)) {
+            try {
+                return executeWithRetries(request, handler, method, endpointGroup);
+            } finally {
+                cache.invalidate(endpointGroup);
+            }
+        }
+        if (!cache.isCacheable(endpointGroup)) {
+            return executeWithRetries(request, handler, method, endpointGroup);
+        }
+
+        ResponseCache.Lookup<T> lookup = cache.lookup(requestLine[1], endpointGroup, request, handler);
+        if (lookup.isHit()) {
+            return lookup.getResult();
+        }
+        return executeWithRetries(request, lookup.getHandler(), method, endpointGroup);
+    }
+
+    private <T> T executeWithRetries(Request request, ResponseHandler<T> handler, String method,
+                                     EndpointGroup endpointGroup) throws IOException {
+        Optional<CircuitBreaker> circuitBreaker = Optional.fromNullable(circuitBreakers.get(endpointGroup));
+        CountingHttpEntity requestBody = metrics.isPresent() ? requestBodies.remove(request) : null;
+
+        for (int attempt = 1; ; attempt++) {
+            long permit = circuitBreaker.isPresent() ?
+                    circuitBreaker.get().acquirePermission() : CircuitBreaker.CLOSED_PERMIT;
+
+            if (rateLimiter.isPresent()) {
+                try {
+                    rateLimiter.get().acquire(appKey, endpointGroup);
+                } catch (IOException e) {
+                    releaseCircuitPermission(circuitBreaker, permit);
+                    throw e;
+                } catch (RuntimeException e) {
+                    releaseCircuitPermission(circuitBreaker, permit);
+                    throw e;
+                }
+            }
+
+            Span exchange = Tracing.begin(Tracing.Stage.EXCHANGE)
+                    .setMethod(method)
+                    .setEndpoint(endpointGroup.name());
+            if (exchange.isRecording()) {
+                exchange.setDetail("attempt " + attempt);
+            }
+
+            long start = System.nanoTime();
+            long requestBytesBefore = requestBody == null ? 0L : requestBody.getByteCount();
+            Response response;
+            try {
+                response = provisionExecutor().execute(request);
+            } catch (RuntimeException e) {
+                exchange.end();
+                releaseCircuitPermission(circuitBreaker, permit);
+                throw e;
+            } catch (IOException e) {
+                exchange.end();
+                long failedAfter = System.nanoTime() - start;
+                recordCircuitOutcome(circuitBreaker, permit, true, failedAfter);
+                if (metrics.isPresent()) {
+                    metrics.get().onFailure(endpointGroup, method, e, failedAfter);
+                }
+
+                long delay = retryPolicy.retryDelayMillis(method, attempt, e);
+                if (delay < 0) {
+                    throw e;
+                }
+                if (metrics.isPresent()) {
+                    metrics.get().onRetry(endpointGroup, method, attempt);
+                }
+                logger.info(String.format("Retrying %s in %d ms after attempt %d of %d failed: %s",
+                        request, delay, attempt, retryPolicy.getMaxAttempts(), e));
+                sleep(delay);
+                continue;
+            }
+
+            long elapsed = System.nanoTime() - start;
+
+            RetryingResponseHandler<T> retryingHandler =
+                    new RetryingResponseHandler<T>(handler, method, endpointGroup, attempt);
+            T result;
+            try {
+                result = response.handleResponse(retryingHandler);
+            } catch (APIRequestException e) {
+                if (metrics.isPresent() && e.getError().isPresent() && retryingHandler.statusLine != null) {
+                    metrics.get().onAPIError(endpointGroup, retryingHandler.statusLine.getStatusCode(),
+                            e.getError().get());
+                }
+                throw e;
+            } finally {
+                boolean serverError = retryingHandler.statusLine != null &&
+                        retryingHandler.statusLine.getStatusCode() >= 500;
+                recordCircuitOutcome(circuitBreaker, permit, serverError, elapsed);
+                if (retryingHandler.statusLine != null) {
+                    exchange.setStatusCode(retryingHandler.statusLine.getStatusCode());
+                }
+                exchange.end();
+                if (metrics.isPresent() && retryingHandler.statusLine != null) {
+                    long requestBytes = requestBody == null ? 0L : requestBody.getByteCount() - requestBytesBefore;
+                    metrics.get().onResponse(endpointGroup, method, retryingHandler.statusLine.getStatusCode(),
+                            System.nanoTime() - start, requestBytes, retryingHandler.getResponseBytes());
+                }
+            }
+            if (retryingHandler.retryDelayMillis < 0) {
+                return result;
+            }
+            if (metrics.isPresent()) {
+                metrics.get().onRetry(endpointGroup, method, attempt);
+            }
+
+            logger.info(String.format("Retrying %s in %d ms after attempt %d of %d returned %s",
+                    request, retryingHandler.retryDelayMillis, attempt, retryPolicy.getMaxAttempts(),
+                    retryingHandler.statusLine));
+            sleep(retryingHandler.retryDelayMillis);
+        }
+    }
+
+    private static void releaseCircuitPermission(Optional<CircuitBreaker> circuitBreaker, long permit) {
+        if (circuitBreaker.isPresent()) {
+            circuitBreaker.get().release(permit);
+        }
+    }
+
+    private static void recordCircuitOutcome(Optional<CircuitBreaker> circuitBreaker, long permit, boolean failure,
+                                             long durationNanos) {
+        if (circuitBreaker.isPresent()) {
+            circuitBreaker.get().onResult(permit, failure, durationNanos);
+        }
+    }
+
+    private static EndpointGroup endpointGroup(String uri) {
+        try {
+            return EndpointGroup.forPath(URI.create(uri).getPath());
+        } catch (IllegalArgumentException e) {
+            return EndpointGroup.OTHER;
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry request");
+        }
+    }
+
     /* Push API */
 
     public APIClientResponse<APIPushResponse> push(PushPayload payload) throws IOException {
         Preconditions.checkNotNull(payload, "Payload required when executing a push operation");
         Request request = provisionRequest(Request.Post(baseURI.resolve(API_PUSH_PATH)));
-        request.bodyString(payload.toJSON(), ContentType.APPLICATION_JSON);
+        setBody(request, payload);
 
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Executing push request %s", request));
         }
 
-        return provisionExecutor().execute(request).handleResponse(new PushAPIResponseHandler());
+        return execute(request, new PushAPIResponseHandler());
+    }
+
+    /**
+     * Send several payloads in one request, as a JSON array. The API
+     * accepts or rejects the request as a whole, and the response has one
+     * push id per payload, in order. To send more payloads than fit in one
+     * request use a BatchPushSender.
+     *
+     * @param payloads Payloads to send
+     * @return APIClientResponse of APIPushResponse
+     * @throws IOException
+     */
+    public APIClientResponse<APIPushResponse> push(List<PushPayload> payloads) throws IOException {
+        Preconditions.checkNotNull(payloads, "Payloads required when executing a push operation");
+        Preconditions.checkArgument(!payloads.isEmpty(), "At least one payload is required");
+        return push(PushBatch.of(payloads));
+    }
+
+    APIClientResponse<APIPushResponse> push(PushBatch batch) throws IOException {
+        Request request = provisionRequest(Request.Post(baseURI.resolve(API_PUSH_PATH)));
+        setBody(request, batch);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Executing push request for %d payloads %s", batch.size(), request));
+        }
+
+        return execute(request, new PushAPIResponseHandler());
     }
 
     public APIClientResponse<APIPushResponse> validate(PushPayload payload) throws IOException {
         Preconditions.checkNotNull(payload, "Payload required when executing a validate push operation");
         Request request = provisionRequest(Request.Post(baseURI.resolve(API_VALIDATE_PATH)));
-        request.bodyString(payload.toJSON(), ContentType.APPLICATION_JSON);
+        setBody(request, payload);
 
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Executing validate push request %s", request));
         }
 
-        return provisionExecutor().execute(request).handleResponse(new PushAPIResponseHandler());
+        return execute(request, new PushAPIResponseHandler());
     }
 
     /* Schedules API */
@@ -196,13 +659,13 @@ public class APIClient {
     public APIClientResponse<APIScheduleResponse> schedule(SchedulePayload payload) throws IOException {
         Preconditions.checkNotNull(payload, "Payload required when scheduling a push request");
         Request request = provisionRequest(Request.Post(baseURI.resolve(API_SCHEDULE_PATH)));
-        request.bodyString(payload.toJSON(), ContentType.APPLICATION_JSON);
+        setBody(request, payload);
 
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Executing schedule request %s", request));
         }
 
-        return provisionExecutor().execute(request).handleResponse(new ScheduleAPIResponseHandler());
+        return execute(request, new ScheduleAPIResponseHandler());
     }
 
     public APIClientResponse<APIListAllSchedulesResponse> listAllSchedules() throws IOException {
@@ -212,7 +675,7 @@ public class APIClient {
             logger.debug(String.format("Executing list all schedules request %s", request));
         }
 
-        return provisionExecutor().execute(request).handleResponse(new ListAllSchedulesAPIResponseHandler());
+        return execute(request, new ListAllSchedulesAPIResponseHandler());
     }
 
     public APIClientResponse<APIListAllSchedulesResponse> listAllSchedules(String start, int limit, String order) throws IOException {
@@ -223,7 +686,7 @@ public class APIClient {
             logger.debug(String.format("Executing list all schedules request %s", request));
         }
 
-        return provisionExecutor().execute(request).handleResponse(new ListAllSchedulesAPIResponseHandler());
+        return execute(request, new ListAllSchedulesAPIResponseHandler());
     }
 
     public APIClientResponse<APIListAllSchedulesResponse> listAllSchedules(String next_page) throws IOException, URISyntaxException {
@@ -234,7 +697,30 @@ public class APIClient {
             logger.debug(String.format("Executing list all schedules request %s", request));
         }
 
-        return provisionExecutor().execute(request).handleResponse(new ListAllSchedulesAPIResponseHandler());
+        return execute(request, new ListAllSchedulesAPIResponseHandler());
+    }
+
+    /**
+     * Iterates over all schedules, following next_page links and fetching
+     * up to prefetchPages pages ahead in the background.
+     *
+     * @param prefetchPages Pages to fetch ahead, or 0 to fetch each page when it is needed
+     * @return PageIterator
+     */
+    public PageIterator<SchedulePayload> iterateSchedules(int prefetchPages) {
+        return new PageIterator<SchedulePayload>(new PageIterator.PageFetcher<SchedulePayload>() {
+            @Override
+            public PageIterator.Page<SchedulePayload> fetch(Optional<String> nextPage) throws IOException {
+                APIListAllSchedulesResponse response;
+                try {
+                    response = (nextPage.isPresent() ? listAllSchedules(nextPage.get()) : listAllSchedules())
+                            .getApiResponse();
+                } catch (URISyntaxException e) {
+                    throw new IOException("Invalid next page " + nextPage.get(), e);
+                }
+                return PageIterator.Page.of(response.getSchedules(), nextPageOf(response.getNext_Page()));
+            }
+        }, prefetchPages);
     }
 
     public APIClientResponse<SchedulePayload> listSchedule(String id) throws IOException {
@@ -244,19 +730,19 @@ public class APIClient {
             logger.debug(String.format("Executing list specific schedule request %s", request));
         }
 
-        return provisionExecutor().execute(request).handleResponse(new ListScheduleAPIResponseHandler());
+        return execute(request, new ListScheduleAPIResponseHandler());
     }
 
     public APIClientResponse<APIScheduleResponse> updateSchedule(SchedulePayload payload, String id) throws IOException {
         Preconditions.checkNotNull(payload, "Payload is required when updating schedule");
         Request req = provisionRequest(Request.Put(baseURI.resolve(API_SCHEDULE_PATH + id)));
-        req.bodyString(payload.toJSON(), ContentType.APPLICATION_JSON);
+        setBody(req, payload);
 
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Executing update schedule request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ScheduleAPIResponseHandler());
+        return execute(req, new ScheduleAPIResponseHandler());
     }
 
     public HttpResponse deleteSchedule(String id) throws IOException {
@@ -266,7 +752,7 @@ public class APIClient {
             logger.debug(String.format("Executing delete schedule request %s", req));
         }
 
-        return provisionExecutor().execute(req).returnResponse();
+        return execute(req);
     }
 
     /* Tags API */
@@ -278,7 +764,7 @@ public class APIClient {
             logger.debug(String.format("Executing list tags request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListTagsAPIResponseHandler());
+        return execute(req, new ListTagsAPIResponseHandler());
     }
 
     public HttpResponse createTag(String tag) throws IOException {
@@ -288,7 +774,7 @@ public class APIClient {
             logger.debug(String.format("Executing create tag request %s", req));
         }
 
-        return provisionExecutor().execute(req).returnResponse();
+        return execute(req);
     }
 
     public HttpResponse deleteTag(String tag) throws IOException {
@@ -298,31 +784,50 @@ public class APIClient {
             logger.debug(String.format("Executing delete tag request %s", req));
         }
 
-        return provisionExecutor().execute(req).returnResponse();
+        return execute(req);
     }
 
     public HttpResponse addRemoveDevicesFromTag(String tag, AddRemoveDeviceFromTagPayload payload) throws IOException {
         Preconditions.checkNotNull(payload, "Payload is required when adding and/or removing devices from a tag");
         Request req = provisionRequest(Request.Post(baseURI.resolve(API_TAGS_PATH + tag)));
-        req.bodyString(payload.toJSON(), ContentType.APPLICATION_JSON);
+        setBody(req, payload);
 
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Executing add/remove devices from tag request %s", req));
         }
 
-        return provisionExecutor().execute(req).returnResponse();
+        return execute(req);
     }
 
     public HttpResponse batchModificationOfTags(BatchModificationPayload payload) throws IOException {
         Preconditions.checkNotNull(payload, "Payload is required when performing batch modification of tags");
         Request req = provisionRequest(Request.Post(baseURI.resolve(API_TAGS_BATCH_PATH)));
-        req.bodyString(payload.toJSON(), ContentType.APPLICATION_JSON);
+        setBody(req, payload);
 
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Executing batch modification of tags request %s", req));
         }
 
-        return provisionExecutor().execute(req).returnResponse();
+        return execute(req);
+    }
+
+    /* Spooled requests */
+
+    /*
+    Posts a JSON body serialized earlier, such as a request read back from
+    a RequestSpool. It is sent as is, with the same headers, retry policy,
+    circuit breaker and rate limiter as the typed calls, and the response
+    is returned whatever its status.
+     */
+    HttpResponse post(String path, byte[] body) throws IOException {
+        Request request = provisionRequest(Request.Post(baseURI.resolve(path)));
+        setBody(request, new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Executing spooled request %s", request));
+        }
+
+        return execute(request);
     }
 
     /* Location API */
@@ -341,7 +846,7 @@ public class APIClient {
             logger.debug(String.format("Executing query location information without type request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new LocationAPIResponseHandler());
+        return execute(req, new LocationAPIResponseHandler());
     }
 
     public APIClientResponse<APILocationResponse> queryLocationInformation(String query, String type) throws IOException {
@@ -359,7 +864,7 @@ public class APIClient {
             logger.debug(String.format("Executing query location information without type request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new LocationAPIResponseHandler());
+        return execute(req, new LocationAPIResponseHandler());
     }
 
     public APIClientResponse<APILocationResponse> queryLocationInformation(Point point) throws IOException {
@@ -376,7 +881,7 @@ public class APIClient {
             logger.debug(String.format("Executing query location information without type request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new LocationAPIResponseHandler());
+        return execute(req, new LocationAPIResponseHandler());
     }
 
     public APIClientResponse<APILocationResponse> queryLocationInformation(Point point, String type) throws IOException {
@@ -394,7 +899,7 @@ public class APIClient {
             logger.debug(String.format("Executing query location information without type request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new LocationAPIResponseHandler());
+        return execute(req, new LocationAPIResponseHandler());
     }
 
     public APIClientResponse<APILocationResponse> queryLocationInformation(BoundedBox box) throws IOException {
@@ -416,7 +921,7 @@ public class APIClient {
             logger.debug(String.format("Executing query location information without type request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new LocationAPIResponseHandler());
+        return execute(req, new LocationAPIResponseHandler());
     }
 
     public APIClientResponse<APILocationResponse> queryLocationInformation(BoundedBox box, String type) throws IOException {
@@ -440,7 +945,7 @@ public class APIClient {
             logger.debug(String.format("Executing query location information without type request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new LocationAPIResponseHandler());
+        return execute(req, new LocationAPIResponseHandler());
     }
 
     /* Segments API */
@@ -452,7 +957,7 @@ public class APIClient {
             logger.debug(String.format("Executing list all segments request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListAllSegmentsAPIResponseHandler());
+        return execute(req, new ListAllSegmentsAPIResponseHandler());
     }
 
     public APIClientResponse<APIListAllSegmentsResponse> listAllSegments(String nextPage) throws IOException, URISyntaxException {
@@ -463,7 +968,7 @@ public class APIClient {
             logger.debug(String.format("Executing list all segments request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListAllSegmentsAPIResponseHandler());
+        return execute(req, new ListAllSegmentsAPIResponseHandler());
     }
 
     public APIClientResponse<APIListAllSegmentsResponse> listAllSegments(String start, int limit, String order) throws IOException, URISyntaxException {
@@ -474,7 +979,30 @@ public class APIClient {
             logger.debug(String.format("Executing list all segments request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListAllSegmentsAPIResponseHandler());
+        return execute(req, new ListAllSegmentsAPIResponseHandler());
+    }
+
+    /**
+     * Iterates over all segments, following next_page links and fetching
+     * up to prefetchPages pages ahead in the background.
+     *
+     * @param prefetchPages Pages to fetch ahead, or 0 to fetch each page when it is needed
+     * @return PageIterator
+     */
+    public PageIterator<SegmentInformation> iterateSegments(int prefetchPages) {
+        return new PageIterator<SegmentInformation>(new PageIterator.PageFetcher<SegmentInformation>() {
+            @Override
+            public PageIterator.Page<SegmentInformation> fetch(Optional<String> nextPage) throws IOException {
+                APIListAllSegmentsResponse response;
+                try {
+                    response = (nextPage.isPresent() ? listAllSegments(nextPage.get()) : listAllSegments())
+                            .getApiResponse();
+                } catch (URISyntaxException e) {
+                    throw new IOException("Invalid next page " + nextPage.get(), e);
+                }
+                return PageIterator.Page.of(response.getSegments(), nextPageOf(response.getNextPage()));
+            }
+        }, prefetchPages);
     }
 
     public APIClientResponse<AudienceSegment> listSegment(String segmentID) throws IOException, URISyntaxException {
@@ -487,7 +1015,7 @@ public class APIClient {
             logger.debug(String.format("Executing list all segments request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new AudienceSegmentAPIResponseHandler());
+        return execute(req, new AudienceSegmentAPIResponseHandler());
     }
 
     public HttpResponse createSegment(AudienceSegment payload) throws IOException {
@@ -495,13 +1023,13 @@ public class APIClient {
         Request req = provisionRequest(Request.Post(baseURI.resolve(API_SEGMENTS_PATH)));
 
 
-        req.bodyString(payload.toJSON(), ContentType.APPLICATION_JSON);
+        setBody(req, payload);
 
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Executing create segment request %s", req));
         }
 
-        return provisionExecutor().execute(req).returnResponse();
+        return execute(req);
     }
 
     public HttpResponse changeSegment(String segmentID, AudienceSegment payload) throws IOException {
@@ -512,13 +1040,13 @@ public class APIClient {
         Request req = provisionRequest(Request.Put(baseURI.resolve(path)));
 
 
-        req.bodyString(payload.toJSON(), ContentType.APPLICATION_JSON);
+        setBody(req, payload);
 
         if (logger.isDebugEnabled()) {
             logger.debug(String.format("Executing change segment request %s", req));
         }
 
-        return provisionExecutor().execute(req).returnResponse();
+        return execute(req);
     }
 
     public HttpResponse deleteSegment(String segmentID) throws IOException, URISyntaxException {
@@ -531,7 +1059,7 @@ public class APIClient {
             logger.debug(String.format("Executing delete segment request %s", req));
         }
 
-        return provisionExecutor().execute(req).returnResponse();
+        return execute(req);
     }
 
     /* Device Information API */
@@ -545,7 +1073,7 @@ public class APIClient {
             logger.debug(String.format("Executing get single channels request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListSingleChannelAPIResponseHandler());
+        return execute(req, new ListSingleChannelAPIResponseHandler());
     }
 
     public APIClientResponse<APIListAllChannelsResponse> listAllChannels() throws IOException {
@@ -555,7 +1083,62 @@ public class APIClient {
             logger.debug(String.format("Executing list all channels request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListAllChannelsAPIResponseHandler());
+        return execute(req, new ListAllChannelsAPIResponseHandler());
+    }
+
+    public APIClientResponse<APIListAllChannelsResponse> listAllChannels(String nextPage) throws IOException, URISyntaxException {
+        URI np = new URI(nextPage);
+        Request req = provisionRequest(Request.Get(baseURI.resolve(np.getPath() + "?" + np.getQuery())));
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Executing list all channels request %s", req));
+        }
+
+        return execute(req, new ListAllChannelsAPIResponseHandler());
+    }
+
+    /*
+    Streams one page of the channel listing through the handler's sink,
+    returning the page's next_page.
+     */
+    Optional<String> exportChannels(Optional<String> nextPage, ExportChannelsResponseHandler handler)
+            throws IOException, URISyntaxException {
+        String path = API_DEVICE_CHANNELS_PATH;
+        if (nextPage.isPresent()) {
+            URI np = new URI(nextPage.get());
+            path = np.getQuery() == null ? np.getPath() : np.getPath() + "?" + np.getQuery();
+        }
+        Request req = provisionRequest(Request.Get(baseURI.resolve(path)));
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Executing export channels request %s", req));
+        }
+
+        // Bypasses the response cache, which would buffer the whole page
+        return executeWithRetries(req, handler, "GET", EndpointGroup.CHANNELS);
+    }
+
+    /**
+     * Iterates over all channels, following next_page links and fetching
+     * up to prefetchPages pages ahead in the background.
+     *
+     * @param prefetchPages Pages to fetch ahead, or 0 to fetch each page when it is needed
+     * @return PageIterator
+     */
+    public PageIterator<ChannelView> iterateChannels(int prefetchPages) {
+        return new PageIterator<ChannelView>(new PageIterator.PageFetcher<ChannelView>() {
+            @Override
+            public PageIterator.Page<ChannelView> fetch(Optional<String> nextPage) throws IOException {
+                APIListAllChannelsResponse response;
+                try {
+                    response = (nextPage.isPresent() ? listAllChannels(nextPage.get()) : listAllChannels())
+                            .getApiResponse();
+                } catch (URISyntaxException e) {
+                    throw new IOException("Invalid next page " + nextPage.get(), e);
+                }
+                return PageIterator.Page.of(response.getChannelObjects(), nextPageOf(response.getNextPage().orNull()));
+            }
+        }, prefetchPages);
     }
 
     /* Reports API */
@@ -569,7 +1152,7 @@ public class APIClient {
             logger.debug(String.format("Executing list per push detail request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListPerPushDetailAPIResponseHandler());
+        return execute(req, new ListPerPushDetailAPIResponseHandler());
     }
 
     public APIClientResponse<PerPushSeriesResponse> listPerPushSeries(String pushID) throws IOException {
@@ -581,7 +1164,7 @@ public class APIClient {
             logger.debug(String.format("Executing list per push series request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListPerPushSeriesResponseHandler());
+        return execute(req, new ListPerPushSeriesResponseHandler());
     }
 
     public APIClientResponse<PerPushSeriesResponse> listPerPushSeries(String pushID, String precision) throws IOException {
@@ -600,7 +1183,7 @@ public class APIClient {
             logger.debug(String.format("Executing list per push series with precision request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListPerPushSeriesResponseHandler());
+        return execute(req, new ListPerPushSeriesResponseHandler());
     }
 
     public APIClientResponse<PerPushSeriesResponse> listPerPushSeries(String pushID,
@@ -628,7 +1211,7 @@ public class APIClient {
             logger.debug(String.format("Executing list per push series with precision and range request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListPerPushSeriesResponseHandler());
+        return execute(req, new ListPerPushSeriesResponseHandler());
     }
 
     public APIClientResponse<SinglePushInfoResponse> listIndividualPushResponseStatistics(String id) throws IOException {
@@ -642,7 +1225,7 @@ public class APIClient {
             logger.debug(String.format("Executing list Statistics in CSV String format request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListIndividualPushAPIResponseHandler());
+        return execute(req, new ListIndividualPushAPIResponseHandler());
     }
 
     public APIClientResponse<APIReportsPushListingResponse> listReportsResponseListing(DateTime start,
@@ -673,8 +1256,62 @@ public class APIClient {
             logger.debug(String.format("Executing list Statistics in CSV String format request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListReportsListingResponseHandler());
+        return execute(req, new ListReportsListingResponseHandler());
+
+    }
+
+    public APIClientResponse<APIReportsPushListingResponse> listReportsResponseListing(String nextPage)
+            throws IOException, URISyntaxException {
+        URI np = new URI(nextPage);
+        Request req = provisionRequest(Request.Get(baseURI.resolve(np.getPath() + "?" + np.getQuery())));
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Executing list Statistics in CSV String format request %s", req));
+        }
+
+        return execute(req, new ListReportsListingResponseHandler());
+    }
+
+    /**
+     * Iterates over the push statistics listing between start and end,
+     * following next_page links and fetching up to prefetchPages pages
+     * ahead in the background.
+     *
+     * @param start Start time
+     * @param end End time
+     * @param limit Optional page size
+     * @param pushIDStart Optional push id to start at
+     * @param prefetchPages Pages to fetch ahead, or 0 to fetch each page when it is needed
+     * @return PageIterator
+     */
+    public PageIterator<SinglePushInfoResponse> iterateReportsResponseListing(final DateTime start,
+                                                                             final DateTime end,
+                                                                             final Optional<Integer> limit,
+                                                                             final Optional<String> pushIDStart,
+                                                                             int prefetchPages) {
+        Preconditions.checkNotNull(start, "Start time is required when performing listing of push statistics");
+        Preconditions.checkNotNull(end, "End time is required when performing listing of push statistics");
+        Preconditions.checkArgument(start.isBefore(end), "Start time must be before End time");
+
+        return new PageIterator<SinglePushInfoResponse>(new PageIterator.PageFetcher<SinglePushInfoResponse>() {
+            @Override
+            public PageIterator.Page<SinglePushInfoResponse> fetch(Optional<String> nextPage) throws IOException {
+                APIReportsPushListingResponse response;
+                try {
+                    response = (nextPage.isPresent() ? listReportsResponseListing(nextPage.get()) :
+                            listReportsResponseListing(start, end, limit, pushIDStart)).getApiResponse();
+                } catch (URISyntaxException e) {
+                    throw new IOException("Invalid next page " + nextPage.get(), e);
+                }
+                return PageIterator.Page.of(response.getSinglePushInfoResponseObjects(),
+                        nextPageOf(response.getNextPage().orNull()));
+            }
+        }, prefetchPages);
+    }
 
+    /* Listings mark their last page with a missing or empty next_page */
+    private static Optional<String> nextPageOf(String value) {
+        return StringUtils.isEmpty(value) ? Optional.<String>absent() : Optional.of(value);
     }
 
     public APIClientResponse<ReportsAPIOpensResponse> listAppsOpenReport(DateTime start, DateTime end, String precision) throws IOException {
@@ -700,7 +1337,7 @@ public class APIClient {
             logger.debug(String.format("Executing list apps open report request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new AppsOpenReportAPIResponseHandler());
+        return execute(req, new AppsOpenReportAPIResponseHandler());
     }
 
     public APIClientResponse<ReportsAPITimeInAppResponse> listTimeInAppReport(DateTime start, DateTime end, String precision) throws IOException {
@@ -726,7 +1363,7 @@ public class APIClient {
             logger.debug(String.format("Executing list time in app report request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new TimeInAppReportAPIResponseHandler());
+        return execute(req, new TimeInAppReportAPIResponseHandler());
     }
 
     /**
@@ -757,7 +1394,7 @@ public class APIClient {
             logger.debug(String.format("Executing list Statistics in CSV String format request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new ListAppStatsAPIResponseHandler());
+        return execute(req, new ListAppStatsAPIResponseHandler());
     }
 
     /**
@@ -789,14 +1426,15 @@ public class APIClient {
             logger.debug(String.format("Executing list Statistics in CSV String format request %s", req));
         }
 
-        return provisionExecutor().execute(req).handleResponse(new StringAPIResponseHandler());
+        return execute(req, new StringAPIResponseHandler());
     }
 
     /* Object methods */
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(appKey, appSecret, baseURI, version, uaHost, proxyInfo);
+        return Objects.hashCode(appKey, appSecret, baseURI, version, uaHost, proxyInfo, connectionPoolConfig,
+                requestCompressionThreshold, retryPolicy, rateLimiter, circuitBreakerConfig, getResponseCacheConfig());
     }
 
     @Override
@@ -808,7 +1446,7 @@ public class APIClient {
             return false;
         }
         final APIClient other = (APIClient) obj;
-        return Objects.equal(this.appKey, other.appKey) && Objects.equal(this.appSecret, other.appSecret) && Objects.equal(this.baseURI, other.baseURI) && Objects.equal(this.version, other.version) && Objects.equal(this.uaHost, other.uaHost) && Objects.equal(this.proxyInfo, other.proxyInfo);
+        return Objects.equal(this.appKey, other.appKey) && Objects.equal(this.appSecret, other.appSecret) && Objects.equal(this.baseURI, other.baseURI) && Objects.equal(this.version, other.version) && Objects.equal(this.uaHost, other.uaHost) && Objects.equal(this.proxyInfo, other.proxyInfo) && Objects.equal(this.connectionPoolConfig, other.connectionPoolConfig) && Objects.equal(this.requestCompressionThreshold, other.requestCompressionThreshold) && Objects.equal(this.retryPolicy, other.retryPolicy) && Objects.equal(this.rateLimiter, other.rateLimiter) && Objects.equal(this.circuitBreakerConfig, other.circuitBreakerConfig) && Objects.equal(this.getResponseCacheConfig(), other.getResponseCacheConfig());
     }
 
     @Override
@@ -825,6 +1463,14 @@ public class APIClient {
         private String baseURI;
         private Number version;
         private ProxyInfo proxyInfoOptional;
+        private ConnectionPoolConfig connectionPoolConfig;
+        private Integer requestCompressionThreshold;
+        private RetryPolicy retryPolicy;
+        private APIRateLimiter rateLimiter;
+        private CircuitBreakerConfig circuitBreakerConfig;
+        private CircuitBreakerListener circuitBreakerListener;
+        private ResponseCacheConfig responseCacheConfig;
+        private APIClientMetrics metrics;
 
         private Builder() {
             baseURI = "https://go.urbanairship.com";
@@ -856,14 +1502,250 @@ public class APIClient {
             return this;
         }
 
+        /**
+         * Configure the connection pool shared by all requests made through
+         * the client. Defaults are used when this is not set.
+         *
+         * @param value ConnectionPoolConfig
+         * @return Builder
+         */
+        public Builder setConnectionPoolConfig(ConnectionPoolConfig value) {
+            this.connectionPoolConfig = value;
+            return this;
+        }
+
+        /**
+         * Gzip compress request bodies of at least the given size in bytes,
+         * sending them with a "Content-Encoding: gzip" header. Request bodies
+         * are not compressed unless this is set. Responses are always
+         * accepted compressed and inflated transparently.
+         *
+         * @param thresholdBytes Minimum uncompressed body size to compress
+         * @return Builder
+         */
+        public Builder setRequestCompressionThreshold(int thresholdBytes) {
+            this.requestCompressionThreshold = thresholdBytes;
+            return this;
+        }
+
+        /**
+         * Retry requests that fail with a transient error according to the
+         * given policy. Requests are attempted once when this is not set.
+         *
+         * @param value RetryPolicy
+         * @return Builder
+         */
+        public Builder setRetryPolicy(RetryPolicy value) {
+            this.retryPolicy = value;
+            return this;
+        }
+
+        /**
+         * Pace requests with a client side rate limiter. The limiter keeps
+         * separate allowances per app key, and can be shared between
+         * clients so that together they stay under the API's limits.
+         *
+         * @param value APIRateLimiter
+         * @return Builder
+         */
+        public Builder setRateLimiter(APIRateLimiter value) {
+            this.rateLimiter = value;
+            return this;
+        }
+
+        /**
+         * Guard each endpoint group with a circuit breaker, so requests fail
+         * fast with a CircuitOpenException while the API is failing or slow
+         * instead of tying up threads. Circuit breakers are off unless this
+         * is set.
+         *
+         * @param value CircuitBreakerConfig
+         * @return Builder
+         */
+        public Builder setCircuitBreakerConfig(CircuitBreakerConfig value) {
+            this.circuitBreakerConfig = value;
+            return this;
+        }
+
+        public Builder setCircuitBreakerListener(CircuitBreakerListener value) {
+            this.circuitBreakerListener = value;
+            return this;
+        }
+
+        /**
+         * Cache GET responses from read endpoints, revalidating them with
+         * ETag and Last-Modified once they expire. Writes made through the
+         * client drop the cached responses of their endpoint group. Responses
+         * are not cached unless this is set.
+         *
+         * @param value ResponseCacheConfig
+         * @return Builder
+         */
+        public Builder setResponseCacheConfig(ResponseCacheConfig value) {
+            this.responseCacheConfig = value;
+            return this;
+        }
+
+        /**
+         * Report the latency, status code and body sizes of every attempt,
+         * as well as API errors and retries, to the given metrics. No
+         * measurements are taken unless this is set.
+         *
+         * @param value APIClientMetrics
+         * @return Builder
+         */
+        public Builder setMetrics(APIClientMetrics value) {
+            this.metrics = value;
+            return this;
+        }
+
         public APIClient build() {
             Preconditions.checkNotNull(key, "app key needed to build APIClient");
             Preconditions.checkNotNull(secret, "app secret needed to build APIClient");
             Preconditions.checkNotNull(baseURI, "base URI needed to build APIClient");
             Preconditions.checkNotNull(version, "version needed to build APIClient");
 
-            return new APIClient(key, secret, baseURI, version, Optional.fromNullable(proxyInfoOptional));
+            if (connectionPoolConfig == null) {
+                connectionPoolConfig = ConnectionPoolConfig.newBuilder().build();
+            }
+            if (retryPolicy == null) {
+                retryPolicy = RetryPolicy.noRetries();
+            }
+            Preconditions.checkArgument(requestCompressionThreshold == null || requestCompressionThreshold >= 0,
+                    "request compression threshold cannot be negative");
+
+            return new APIClient(key, secret, baseURI, version, Optional.fromNullable(proxyInfoOptional), connectionPoolConfig,
+                    Optional.fromNullable(requestCompressionThreshold), retryPolicy, Optional.fromNullable(rateLimiter),
+                    Optional.fromNullable(circuitBreakerConfig), Optional.fromNullable(circuitBreakerListener),
+                    Optional.fromNullable(responseCacheConfig), Optional.fromNullable(metrics));
         }
 
     }
+
+    /*
+    Honors a Keep-Alive timeout sent by the server, but never keeps a
+    connection around for longer than the configured maximum.
+     */
+    private static final class BoundedKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+        private final ConnectionKeepAliveStrategy serverStrategy = new DefaultConnectionKeepAliveStrategy();
+        private final long maxKeepAliveMillis;
+
+        private BoundedKeepAliveStrategy(long maxKeepAliveMillis) {
+            this.maxKeepAliveMillis = maxKeepAliveMillis;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long serverKeepAlive = serverStrategy.getKeepAliveDuration(response, context);
+            if (serverKeepAlive > 0) {
+                return Math.min(serverKeepAlive, maxKeepAliveMillis);
+            }
+            return maxKeepAliveMillis;
+        }
+    }
+
+    /* Reads the response entity into memory, releasing the connection, as Response.returnResponse() does */
+    private static final ResponseHandler<HttpResponse> BUFFERED_RESPONSE_HANDLER = new ResponseHandler<HttpResponse>() {
+        @Override
+        public HttpResponse handleResponse(HttpResponse response) throws IOException {
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                response.setEntity(new BufferedHttpEntity(entity));
+            }
+            return response;
+        }
+    };
+
+    /*
+    Passes the response to the wrapped handler unless it should be retried,
+    in which case the response is discarded and the delay before the next
+    attempt is recorded. Error bodies are buffered first so the APIError can
+    be read both here and by the handler.
+     */
+    private final class RetryingResponseHandler<T> implements ResponseHandler<T> {
+
+        private final ResponseHandler<T> handler;
+        private final String method;
+        private final EndpointGroup endpointGroup;
+        private final int attempt;
+        private long retryDelayMillis = -1;
+        private StatusLine statusLine;
+        private CountingHttpEntity responseBody;
+
+        private RetryingResponseHandler(ResponseHandler<T> handler, String method, EndpointGroup endpointGroup,
+                                        int attempt) {
+            this.handler = handler;
+            this.method = method;
+            this.endpointGroup = endpointGroup;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public T handleResponse(HttpResponse response) throws IOException {
+            statusLine = response.getStatusLine();
+            if (metrics.isPresent() && response.getEntity() != null) {
+                responseBody = new CountingHttpEntity(response.getEntity());
+                response.setEntity(responseBody);
+            }
+            int statusCode = statusLine.getStatusCode();
+            if ((statusCode >= 200 && statusCode < 300) || attempt >= retryPolicy.getMaxAttempts()) {
+                return deserialize(response);
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                response.setEntity(new BufferedHttpEntity(entity));
+            }
+
+            long delay = retryPolicy.retryDelayMillis(method, attempt, response, errorCode(response));
+            if (delay < 0) {
+                return deserialize(response);
+            }
+
+            retryDelayMillis = delay;
+            return null;
+        }
+
+        private T deserialize(HttpResponse response) throws IOException {
+            Span span = Tracing.begin(Tracing.Stage.DESERIALIZATION);
+            if (!span.isRecording()) {
+                return handler.handleResponse(response);
+            }
+
+            CountingHttpEntity body = null;
+            if (response.getEntity() != null) {
+                body = new CountingHttpEntity(response.getEntity());
+                response.setEntity(body);
+            }
+            try {
+                return handler.handleResponse(response);
+            } finally {
+                span.setMethod(method)
+                        .setEndpoint(endpointGroup.name())
+                        .setStatusCode(statusLine.getStatusCode())
+                        .setDetail(handler.getClass().getName())
+                        .setPayloadBytes(body == null ? 0L : body.getByteCount())
+                        .end();
+            }
+        }
+
+        private long getResponseBytes() {
+            return responseBody == null ? 0L : responseBody.getByteCount();
+        }
+
+        private Optional<Number> errorCode(HttpResponse response) {
+            if (retryPolicy.getRetryableErrorCodes().isEmpty() || response.getEntity() == null) {
+                return Optional.absent();
+            }
+            try {
+                return APIError.errorFromResponse(response).getErrorCode();
+            } catch (IOException e) {
+                return Optional.absent();
+            } catch (RuntimeException e) {
+                // Error bodies that are not valid JSON, or are missing a message
+                return Optional.absent();
+            }
+        }
+    }
 }
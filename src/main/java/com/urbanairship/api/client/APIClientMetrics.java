@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import java.io.IOException;
+
+/**
+ * Receives measurements of the requests an APIClient sends. Methods are
+ * called once per attempt, on the thread making the request, so
+ * implementations must be thread safe, should return quickly and must not
+ * make requests through the client.
+ * <p>
+ * See com.urbanairship.api.client.metrics.InMemoryAPIClientMetrics for an
+ * implementation that keeps counters and histograms in memory and can be
+ * exported over JMX. No measurements are taken unless metrics are set on
+ * the client.
+ */
+public interface APIClientMetrics {
+
+    /**
+     * Called when an attempt received a response and its body has been
+     * handled.
+     *
+     * @param group Endpoint group
+     * @param method HTTP method
+     * @param statusCode HTTP status code
+     * @param latencyNanos Time from sending the request until the response body was handled
+     * @param requestBytes Request body bytes sent, after any compression
+     * @param responseBytes Response body bytes read, after any decompression
+     */
+    void onResponse(EndpointGroup group, String method, int statusCode, long latencyNanos, long requestBytes,
+                    long responseBytes);
+
+    /**
+     * Called when an attempt failed without a response, for example because
+     * the connection timed out.
+     *
+     * @param group Endpoint group
+     * @param method HTTP method
+     * @param cause Failure
+     * @param latencyNanos Time from sending the request until it failed
+     */
+    void onFailure(EndpointGroup group, String method, IOException cause, long latencyNanos);
+
+    /**
+     * Called when the API answered with an error that was parsed into an
+     * APIError and thrown as an APIRequestException.
+     *
+     * @param group Endpoint group
+     * @param statusCode HTTP status code
+     * @param error APIError
+     */
+    void onAPIError(EndpointGroup group, int statusCode, APIError error);
+
+    /**
+     * Called when a failed attempt is about to be retried.
+     *
+     * @param group Endpoint group
+     * @param method HTTP method
+     * @param attempt Number of the attempt that failed, starting at 1
+     */
+    void onRetry(EndpointGroup group, String method, int attempt);
+}
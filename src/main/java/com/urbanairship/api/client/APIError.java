@@ -6,7 +6,9 @@ package com.urbanairship.api.client;
 
 import com.google.common.base.Optional;
 import com.urbanairship.api.client.parse.APIResponseObjectMapper;
+import org.apache.http.Header;
 import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.util.EntityUtils;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -57,8 +59,13 @@ public final class APIError {
      */
     public static APIError errorFromResponse(HttpResponse response) throws IOException {
 
-        HeaderElement[] headerElements = response.getFirstHeader(CONTENT_TYPE_KEY)
-                .getElements();
+        Header contentTypeHeader = response.getFirstHeader(CONTENT_TYPE_KEY);
+        if (contentTypeHeader == null) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            return unknownError();
+        }
+
+        HeaderElement[] headerElements = contentTypeHeader.getElements();
         String contentType = headerElements[0].getName();
 
         // Text/html
@@ -73,19 +80,28 @@ public final class APIError {
 
         // v3 JSON parsing
         else if (contentType.equalsIgnoreCase(UA_APPLICATION_JSON)) {
-            String responseBody = EntityUtils.toString(response.getEntity());
-            ObjectMapper mapper = APIResponseObjectMapper.getInstance();
-            return mapper.readValue(responseBody, APIError.class);
+            HttpEntity entity = response.getEntity();
+            try {
+                ObjectMapper mapper = APIResponseObjectMapper.getInstance();
+                return mapper.readValue(entity.getContent(), APIError.class);
+            } finally {
+                EntityUtils.consumeQuietly(entity);
+            }
         }
 
         // wut?
         else {
-            return APIError.newBuilder()
-                    .setError("Unknown response parsing error")
-                    .build();
+            EntityUtils.consumeQuietly(response.getEntity());
+            return unknownError();
         }
     }
 
+    private static APIError unknownError() {
+        return APIError.newBuilder()
+                .setError("Unknown response parsing error")
+                .build();
+    }
+
     /*
     Currently sending text/plain errors for some requests, currently 404's
     do this. API-291, 12JUL13
@@ -107,14 +123,17 @@ public final class APIError {
     @Deprecated
     private static APIError nonV3JSONError(HttpResponse response) throws
             IOException {
-        String responseBody = EntityUtils.toString(response.getEntity());
-        EntityUtils.consume(response.getEntity());
+        HttpEntity entity = response.getEntity();
         ObjectMapper mapper = APIResponseObjectMapper.getInstance();
 
-        Map<String, String> errorMsg =
-                mapper.readValue(responseBody,
-                        new TypeReference<Map<String, String>>() {
-                        });
+        Map<String, String> errorMsg;
+        try {
+            errorMsg = mapper.readValue(entity.getContent(),
+                    new TypeReference<Map<String, String>>() {
+                    });
+        } finally {
+            EntityUtils.consumeQuietly(entity);
+        }
 
         return APIError.newBuilder()
                 .setError(errorMsg.get("message"))
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side rate limiter that paces requests to stay under the API's rate
+ * limits, rather than sending them and handling the resulting 429s.
+ * <p>
+ * Limits are set per endpoint group, and optionally overridden for a
+ * specific app key. Each app key gets its own buckets, so one limiter can be
+ * shared by every APIClient in the process, including clients for the same
+ * app key that should draw from the same allowance. Groups without a limit
+ * are not limited.
+ * <p>
+ * When a request would exceed its limit the limiter either blocks until a
+ * permit is available, or fails fast with a RateLimitExceededException,
+ * depending on its mode. Taking a permit is lock free.
+ */
+public final class APIRateLimiter {
+
+    /**
+     * What to do with a request that would exceed its limit.
+     */
+    public enum Mode {
+        /** Wait for a permit, for up to the max wait */
+        BLOCK,
+        /** Throw a RateLimitExceededException immediately */
+        FAIL_FAST
+    }
+
+    private final Mode mode;
+    private final long maxWaitMillis;
+    private final ImmutableMap<EndpointGroup, Limit> limits;
+    private final ImmutableMap<String, ImmutableMap<EndpointGroup, Limit>> appKeyLimits;
+    private final ConcurrentMap<String, Map<EndpointGroup, TokenBucket>> buckets =
+            new ConcurrentHashMap<String, Map<EndpointGroup, TokenBucket>>();
+
+    private APIRateLimiter(Mode mode,
+                           long maxWaitMillis,
+                           ImmutableMap<EndpointGroup, Limit> limits,
+                           ImmutableMap<String, ImmutableMap<EndpointGroup, Limit>> appKeyLimits) {
+        this.mode = mode;
+        this.maxWaitMillis = maxWaitMillis;
+        this.limits = limits;
+        this.appKeyLimits = appKeyLimits;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Longest a request will block waiting for a permit in BLOCK mode.
+     * Requests that would have to wait longer fail with a
+     * RateLimitExceededException.
+     *
+     * @return Maximum wait in milliseconds
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Returns the limit for the endpoint group and app key, if it is limited.
+     *
+     * @param appKey App key
+     * @param group Endpoint group
+     * @return Optional limit
+     */
+    public Optional<Limit> getLimit(String appKey, EndpointGroup group) {
+        ImmutableMap<EndpointGroup, Limit> overrides = appKeyLimits.get(appKey);
+        if (overrides != null && overrides.containsKey(group)) {
+            return Optional.of(overrides.get(group));
+        }
+        return Optional.fromNullable(limits.get(group));
+    }
+
+    /**
+     * Returns how long a request to the endpoint group made now would wait
+     * for a permit. Zero when a permit is available or the group is not
+     * limited.
+     *
+     * @param appKey App key
+     * @param group Endpoint group
+     * @return Wait in milliseconds
+     */
+    public long getWaitMillis(String appKey, EndpointGroup group) {
+        Optional<TokenBucket> bucket = bucket(appKey, group);
+        if (!bucket.isPresent()) {
+            return 0L;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(bucket.get().waitNanos());
+    }
+
+    /**
+     * Takes a permit for a request, blocking or failing according to the
+     * limiter's mode if none is available.
+     *
+     * @param appKey App key
+     * @param group Endpoint group
+     * @throws RateLimitExceededException if no permit is available in time
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void acquire(String appKey, EndpointGroup group) throws InterruptedIOException {
+        Optional<TokenBucket> bucket = bucket(appKey, group);
+        if (!bucket.isPresent()) {
+            return;
+        }
+
+        long maxWaitNanos = mode == Mode.BLOCK ? TimeUnit.MILLISECONDS.toNanos(maxWaitMillis) : 0L;
+        long waitNanos = bucket.get().reserve(maxWaitNanos);
+        if (waitNanos < 0) {
+            throw new RateLimitExceededException(group, TimeUnit.NANOSECONDS.toMillis(bucket.get().waitNanos()));
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a rate limit permit");
+            }
+        }
+    }
+
+    private Optional<TokenBucket> bucket(String appKey, EndpointGroup group) {
+        Map<EndpointGroup, TokenBucket> appKeyBuckets = buckets.get(appKey);
+        if (appKeyBuckets == null) {
+            appKeyBuckets = newBuckets(appKey);
+            Map<EndpointGroup, TokenBucket> existing = buckets.putIfAbsent(appKey, appKeyBuckets);
+            if (existing != null) {
+                appKeyBuckets = existing;
+            }
+        }
+        return Optional.fromNullable(appKeyBuckets.get(group));
+    }
+
+    /* Buckets are only read once created, so an EnumMap is safe to share */
+    private Map<EndpointGroup, TokenBucket> newBuckets(String appKey) {
+        Map<EndpointGroup, TokenBucket> appKeyBuckets = Maps.newEnumMap(EndpointGroup.class);
+        for (EndpointGroup group : EndpointGroup.values()) {
+            Optional<Limit> limit = getLimit(appKey, group);
+            if (limit.isPresent()) {
+                appKeyBuckets.put(group, new TokenBucket(limit.get().getPermitsPerSecond(), limit.get().getBurst()));
+            }
+        }
+        return appKeyBuckets;
+    }
+
+    @Override
+    public String toString() {
+        return "APIRateLimiter{" +
+                "mode=" + mode +
+                ", maxWaitMillis=" + maxWaitMillis +
+                ", limits=" + limits +
+                ", appKeyLimits=" + appKeyLimits +
+                '}';
+    }
+
+    /**
+     * A sustained rate of requests per second, and the number of requests
+     * that may be sent at once after a quiet period.
+     */
+    public static final class Limit {
+
+        private final double permitsPerSecond;
+        private final int burst;
+
+        private Limit(double permitsPerSecond, int burst) {
+            Preconditions.checkArgument(permitsPerSecond > 0, "permitsPerSecond must be positive");
+            Preconditions.checkArgument(burst > 0, "burst must be positive");
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+
+        public static Limit of(double permitsPerSecond, int burst) {
+            return new Limit(permitsPerSecond, burst);
+        }
+
+        public double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        @Override
+        public String toString() {
+            return "Limit{permitsPerSecond=" + permitsPerSecond + ", burst=" + burst + '}';
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(permitsPerSecond, burst);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Limit other = (Limit) obj;
+            return Objects.equal(this.permitsPerSecond, other.permitsPerSecond) &&
+                    Objects.equal(this.burst, other.burst);
+        }
+    }
+
+    public static class Builder {
+
+        private Mode mode = Mode.BLOCK;
+        private long maxWaitMillis = 30000L;
+        private final Map<EndpointGroup, Limit> limits = Maps.newEnumMap(EndpointGroup.class);
+        private final Map<String, Map<EndpointGroup, Limit>> appKeyLimits = Maps.newHashMap();
+
+        private Builder() {
+        }
+
+        public Builder setMode(Mode value) {
+            this.mode = value;
+            return this;
+        }
+
+        public Builder setMaxWaitMillis(long value) {
+            this.maxWaitMillis = value;
+            return this;
+        }
+
+        /**
+         * Limit requests to an endpoint group, for every app key.
+         *
+         * @param group Endpoint group
+         * @param limit Limit
+         * @return Builder
+         */
+        public Builder setLimit(EndpointGroup group, Limit limit) {
+            Preconditions.checkNotNull(group, "group cannot be null");
+            Preconditions.checkNotNull(limit, "limit cannot be null");
+            limits.put(group, limit);
+            return this;
+        }
+
+        /**
+         * Limit requests to an endpoint group for one app key, overriding
+         * the limit for every app key.
+         *
+         * @param appKey App key
+         * @param group Endpoint group
+         * @param limit Limit
+         * @return Builder
+         */
+        public Builder setLimit(String appKey, EndpointGroup group, Limit limit) {
+            Preconditions.checkNotNull(appKey, "appKey cannot be null");
+            Preconditions.checkNotNull(group, "group cannot be null");
+            Preconditions.checkNotNull(limit, "limit cannot be null");
+            Map<EndpointGroup, Limit> overrides = appKeyLimits.get(appKey);
+            if (overrides == null) {
+                overrides = Maps.newEnumMap(EndpointGroup.class);
+                appKeyLimits.put(appKey, overrides);
+            }
+            overrides.put(group, limit);
+            return this;
+        }
+
+        public APIRateLimiter build() {
+            Preconditions.checkNotNull(mode, "mode cannot be null");
+            Preconditions.checkArgument(maxWaitMillis >= 0, "maxWaitMillis cannot be negative");
+
+            ImmutableMap.Builder<String, ImmutableMap<EndpointGroup, Limit>> appKeys = ImmutableMap.builder();
+            for (Map.Entry<String, Map<EndpointGroup, Limit>> entry : appKeyLimits.entrySet()) {
+                appKeys.put(entry.getKey(), ImmutableMap.copyOf(entry.getValue()));
+            }
+            return new APIRateLimiter(mode, maxWaitMillis, ImmutableMap.copyOf(limits), appKeys.build());
+        }
+    }
+}
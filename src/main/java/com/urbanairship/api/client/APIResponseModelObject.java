@@ -7,6 +7,9 @@ package com.urbanairship.api.client;
 import com.urbanairship.api.client.parse.APIResponseObjectMapper;
 import com.urbanairship.api.common.model.APIModelObject;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 public class APIResponseModelObject extends APIModelObject {
 
     @Override
@@ -17,4 +20,9 @@ public class APIResponseModelObject extends APIModelObject {
             return toJSON(e);
         }
     }
+
+    @Override
+    public void writeJSON(OutputStream out) throws IOException {
+        writeJSON(APIResponseObjectMapper.getInstance(), out);
+    }
 }
@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIPushResponse;
+import com.urbanairship.api.client.model.APIScheduleResponse;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.schedule.model.SchedulePayload;
+import com.urbanairship.api.segments.model.AudienceSegment;
+import com.urbanairship.api.tag.model.AddRemoveDeviceFromTagPayload;
+import com.urbanairship.api.tag.model.BatchModificationPayload;
+import org.apache.http.HttpResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous companion to the APIClient. Requests are dispatched on a
+ * bounded pool of worker threads sharing the APIClient's pooled connections,
+ * and results are returned as ListenableFutures that can be composed with
+ * Guava's Futures utilities.
+ * <p>
+ * At most maxInFlight requests run at once, and up to queueCapacity more
+ * wait for a worker. Submitting beyond that either blocks the caller until a
+ * request completes, or, in SHED mode, fails the returned future at once
+ * with a RejectedExecutionException. Either way the work queue cannot grow
+ * without bound when the API slows down; shedding also keeps callers from
+ * piling up behind it.
+ * <p>
+ * BLOCK is the default, so every request method may block the calling
+ * thread before it returns its future. Callers that must never block, such
+ * as event loop threads, should build the client with OverflowMode.SHED and
+ * retry or drop shed requests themselves.
+ * <p>
+ * Failed futures carry the same exceptions the synchronous calls throw:
+ * an APIRequestException for non 2xx responses and an IOException for
+ * transport errors.
+ */
+public class AsyncAPIClient implements Closeable {
+
+    /**
+     * What to do with a request submitted when maxInFlight requests are
+     * running and the queue is full.
+     */
+    public enum OverflowMode {
+        /** Block the calling thread in the request method until there is room */
+        BLOCK,
+        /** Fail the request's future immediately with a RejectedExecutionException */
+        SHED
+    }
+
+    private final APIClient client;
+    private final ListeningExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int maxInFlight;
+    private final int queueCapacity;
+    private final OverflowMode overflowMode;
+    private final Semaphore inFlight;
+    private final AtomicLong shedCount = new AtomicLong();
+
+    private AsyncAPIClient(APIClient client, ExecutorService executor, boolean ownsExecutor, int maxInFlight,
+                           int queueCapacity, OverflowMode overflowMode) {
+        this.client = client;
+        this.executor = MoreExecutors.listeningDecorator(executor);
+        this.ownsExecutor = ownsExecutor;
+        this.maxInFlight = maxInFlight;
+        this.queueCapacity = queueCapacity;
+        this.overflowMode = overflowMode;
+        this.inFlight = new Semaphore(maxInFlight + queueCapacity);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public APIClient getClient() {
+        return client;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public OverflowMode getOverflowMode() {
+        return overflowMode;
+    }
+
+    /**
+     * Number of requests that have been submitted and not yet completed,
+     * including those waiting in the queue.
+     *
+     * @return int
+     */
+    public int getInFlightCount() {
+        return maxInFlight + queueCapacity - inFlight.availablePermits();
+    }
+
+    /**
+     * Number of requests rejected in SHED mode because the queue was full.
+     *
+     * @return long
+     */
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    /* Push API */
+
+    public ListenableFuture<APIClientResponse<APIPushResponse>> push(final PushPayload payload) {
+        Preconditions.checkNotNull(payload, "Payload required when executing a push operation");
+        return acquireAndSubmit(new Callable<APIClientResponse<APIPushResponse>>() {
+            @Override
+            public APIClientResponse<APIPushResponse> call() throws Exception {
+                return client.push(payload);
+            }
+        });
+    }
+
+    public ListenableFuture<APIClientResponse<APIPushResponse>> push(final List<PushPayload> payloads) {
+        Preconditions.checkNotNull(payloads, "Payloads required when executing a push operation");
+        Preconditions.checkArgument(!payloads.isEmpty(), "At least one payload is required");
+        return acquireAndSubmit(new Callable<APIClientResponse<APIPushResponse>>() {
+            @Override
+            public APIClientResponse<APIPushResponse> call() throws Exception {
+                return client.push(payloads);
+            }
+        });
+    }
+
+    ListenableFuture<APIClientResponse<APIPushResponse>> push(final PushBatch batch) {
+        return acquireAndSubmit(new Callable<APIClientResponse<APIPushResponse>>() {
+            @Override
+            public APIClientResponse<APIPushResponse> call() throws Exception {
+                return client.push(batch);
+            }
+        });
+    }
+
+    public ListenableFuture<APIClientResponse<APIPushResponse>> validate(final PushPayload payload) {
+        Preconditions.checkNotNull(payload, "Payload required when executing a validate push operation");
+        return acquireAndSubmit(new Callable<APIClientResponse<APIPushResponse>>() {
+            @Override
+            public APIClientResponse<APIPushResponse> call() throws Exception {
+                return client.validate(payload);
+            }
+        });
+    }
+
+    /* Schedules API */
+
+    public ListenableFuture<APIClientResponse<APIScheduleResponse>> schedule(final SchedulePayload payload) {
+        Preconditions.checkNotNull(payload, "Payload required when scheduling a push request");
+        return acquireAndSubmit(new Callable<APIClientResponse<APIScheduleResponse>>() {
+            @Override
+            public APIClientResponse<APIScheduleResponse> call() throws Exception {
+                return client.schedule(payload);
+            }
+        });
+    }
+
+    public ListenableFuture<APIClientResponse<APIScheduleResponse>> updateSchedule(final SchedulePayload payload,
+                                                                                  final String id) {
+        Preconditions.checkNotNull(payload, "Payload is required when updating schedule");
+        Preconditions.checkNotNull(id, "Schedule id is required when updating schedule");
+        return acquireAndSubmit(new Callable<APIClientResponse<APIScheduleResponse>>() {
+            @Override
+            public APIClientResponse<APIScheduleResponse> call() throws Exception {
+                return client.updateSchedule(payload, id);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous deletion of a schedule. The returned future fails with an
+     * APIRequestException when the API responds with a non 2xx status.
+     *
+     * @param id Schedule id
+     * @return Future of the HttpResponse
+     */
+    public ListenableFuture<HttpResponse> deleteSchedule(final String id) {
+        Preconditions.checkNotNull(id, "Schedule id is required when deleting schedule");
+        return acquireAndSubmit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return checkStatus(client.deleteSchedule(id));
+            }
+        });
+    }
+
+    /* Segments API */
+
+    public ListenableFuture<APIClientResponse<AudienceSegment>> listSegment(final String id) {
+        Preconditions.checkNotNull(id, "Segment id is required when listing segment");
+        return acquireAndSubmit(new Callable<APIClientResponse<AudienceSegment>>() {
+            @Override
+            public APIClientResponse<AudienceSegment> call() throws Exception {
+                return client.listSegment(id);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous creation of a segment. The returned future fails with an
+     * APIRequestException when the API responds with a non 2xx status.
+     *
+     * @param segment AudienceSegment
+     * @return Future of the HttpResponse
+     */
+    public ListenableFuture<HttpResponse> createSegment(final AudienceSegment segment) {
+        Preconditions.checkNotNull(segment, "Segment is required when creating segment");
+        return acquireAndSubmit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return checkStatus(client.createSegment(segment));
+            }
+        });
+    }
+
+    /**
+     * Asynchronous change of a segment. The returned future fails with an
+     * APIRequestException when the API responds with a non 2xx status.
+     *
+     * @param id Segment id
+     * @param segment AudienceSegment
+     * @return Future of the HttpResponse
+     */
+    public ListenableFuture<HttpResponse> changeSegment(final String id, final AudienceSegment segment) {
+        Preconditions.checkNotNull(id, "Segment id is required when changing segment");
+        Preconditions.checkNotNull(segment, "Segment is required when changing segment");
+        return acquireAndSubmit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return checkStatus(client.changeSegment(id, segment));
+            }
+        });
+    }
+
+    /**
+     * Asynchronous deletion of a segment. The returned future fails with an
+     * APIRequestException when the API responds with a non 2xx status.
+     *
+     * @param id Segment id
+     * @return Future of the HttpResponse
+     */
+    public ListenableFuture<HttpResponse> deleteSegment(final String id) {
+        Preconditions.checkNotNull(id, "Segment id is required when deleting segment");
+        return acquireAndSubmit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return checkStatus(client.deleteSegment(id));
+            }
+        });
+    }
+
+    /* Tags API */
+
+    /**
+     * Asynchronous addition and removal of devices from a tag. The returned
+     * future fails with an APIRequestException when the API responds with a
+     * non 2xx status.
+     *
+     * @param tag Tag
+     * @param payload AddRemoveDeviceFromTagPayload
+     * @return Future of the HttpResponse
+     */
+    public ListenableFuture<HttpResponse> addRemoveDevicesFromTag(final String tag,
+                                                                  final AddRemoveDeviceFromTagPayload payload) {
+        Preconditions.checkNotNull(tag, "Tag is required when adding and/or removing devices from a tag");
+        Preconditions.checkNotNull(payload, "Payload is required when adding and/or removing devices from a tag");
+        return acquireAndSubmit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return checkStatus(client.addRemoveDevicesFromTag(tag, payload));
+            }
+        });
+    }
+
+    /**
+     * Asynchronous batch modification of tags. Unlike the synchronous call,
+     * which hands back the raw response, the returned future fails with an
+     * APIRequestException when the API responds with a non 2xx status.
+     *
+     * @param payload BatchModificationPayload
+     * @return Future of the HttpResponse
+     */
+    public ListenableFuture<HttpResponse> batchModificationOfTags(final BatchModificationPayload payload) {
+        Preconditions.checkNotNull(payload, "Payload is required when performing batch modification of tags");
+        return acquireAndSubmit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return checkStatus(client.batchModificationOfTags(payload));
+            }
+        });
+    }
+
+    private static HttpResponse checkStatus(HttpResponse response) throws IOException {
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode < 200 || statusCode >= 300) {
+            throw APIRequestException.exceptionForResponse(response);
+        }
+        return response;
+    }
+
+    /*
+    Takes a permit before handing the task to the executor. In BLOCK mode
+    this waits on the calling thread while maxInFlight + queueCapacity
+    requests are outstanding; in SHED mode it fails the future instead.
+     */
+    private <T> ListenableFuture<T> acquireAndSubmit(final Callable<T> task) {
+        if (overflowMode == OverflowMode.SHED) {
+            if (!inFlight.tryAcquire()) {
+                shedCount.incrementAndGet();
+                return Futures.immediateFailedFuture(new RejectedExecutionException(String.format(
+                        "Request shed, %d requests in flight and %d queued", maxInFlight, queueCapacity)));
+            }
+        } else {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Futures.immediateFailedFuture(e);
+            }
+        }
+
+        try {
+            return executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    try {
+                        return task.call();
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops accepting new requests and shuts down the worker threads if they
+     * were created by this client. The underlying APIClient is left open.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    public static class Builder {
+
+        private APIClient client;
+        private ExecutorService executorService;
+        private Integer maxInFlight;
+        private int queueCapacity = 0;
+        private OverflowMode overflowMode = OverflowMode.BLOCK;
+
+        private Builder() {
+        }
+
+        public Builder setClient(APIClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Maximum number of requests running at once. Defaults to the
+         * per route connection limit of the APIClient's connection pool.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setMaxInFlight(int value) {
+            this.maxInFlight = value;
+            return this;
+        }
+
+        /**
+         * Number of requests that may wait for a worker once maxInFlight
+         * requests are running. Defaults to 0.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setQueueCapacity(int value) {
+            this.queueCapacity = value;
+            return this;
+        }
+
+        /**
+         * Whether to block or shed requests submitted when the queue is
+         * full. Defaults to BLOCK.
+         *
+         * @param value OverflowMode
+         * @return Builder
+         */
+        public Builder setOverflowMode(OverflowMode value) {
+            this.overflowMode = value;
+            return this;
+        }
+
+        /**
+         * Executor used to run requests. When this is not set a daemon pool
+         * sized to maxInFlight is created and owned by the AsyncAPIClient.
+         *
+         * @param value ExecutorService
+         * @return Builder
+         */
+        public Builder setExecutorService(ExecutorService value) {
+            this.executorService = value;
+            return this;
+        }
+
+        public AsyncAPIClient build() {
+            Preconditions.checkNotNull(client, "APIClient needed to build AsyncAPIClient");
+            if (maxInFlight == null) {
+                maxInFlight = client.getConnectionPoolConfig().getMaxConnectionsPerRoute();
+            }
+            Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+            Preconditions.checkArgument(queueCapacity >= 0, "queueCapacity cannot be negative");
+            Preconditions.checkNotNull(overflowMode, "overflowMode cannot be null");
+
+            if (executorService == null) {
+                ExecutorService workers = Executors.newFixedThreadPool(maxInFlight, new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("ua-async-client-%d")
+                        .build());
+                return new AsyncAPIClient(client, workers, true, maxInFlight, queueCapacity, overflowMode);
+            }
+
+            return new AsyncAPIClient(client, executorService, false, maxInFlight, queueCapacity, overflowMode);
+        }
+    }
+}
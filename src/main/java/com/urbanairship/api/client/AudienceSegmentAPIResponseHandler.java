@@ -5,44 +5,16 @@
 package com.urbanairship.api.client;
 
 import com.urbanairship.api.client.model.APIClientResponse;
-import com.urbanairship.api.client.parse.APIResponseObjectMapper;
 import com.urbanairship.api.segments.model.AudienceSegment;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.util.EntityUtils;
-import org.codehaus.jackson.map.ObjectMapper;
 
-import java.io.IOException;
+public class AudienceSegmentAPIResponseHandler extends JSONResponseHandler<AudienceSegment> {
 
-public class AudienceSegmentAPIResponseHandler implements ResponseHandler<APIClientResponse<AudienceSegment>> {
-
-    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
-    private static final APIClientResponse.Builder<AudienceSegment> builder = APIClientResponse.newAudienceSegmentResponseBuilder();
-
-    @Override
-    public APIClientResponse<AudienceSegment> handleResponse(HttpResponse response) throws IOException {
-
-        int statusCode = response.getStatusLine().getStatusCode();
-
-        if (statusCode >= 200 && statusCode < 300) {
-            return handleSuccessfulListSegments(response);
-        } else {
-            throw APIRequestException.exceptionForResponse(response);
-        }
+    public AudienceSegmentAPIResponseHandler() {
+        super(AudienceSegment.class);
     }
 
-    private APIClientResponse<AudienceSegment> handleSuccessfulListSegments(HttpResponse response) throws IOException {
-
-        builder.setHttpResponse(response);
-
-        try {
-            String jsonPayload = EntityUtils.toString(response.getEntity());
-            AudienceSegment segmentsResponse = mapper.readValue(jsonPayload, AudienceSegment.class);
-            builder.setApiResponse(segmentsResponse);
-        } finally {
-            EntityUtils.consumeQuietly(response.getEntity());
-        }
-
-        return builder.build();
+    @Override
+    protected APIClientResponse.Builder<AudienceSegment> newResponseBuilder() {
+        return APIClientResponse.newAudienceSegmentResponseBuilder();
     }
 }
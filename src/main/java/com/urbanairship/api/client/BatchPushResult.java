@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.urbanairship.api.push.model.PushPayload;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a BatchPushSender run, mapped back to the payloads sent.
+ * Payloads are identified by their position in the input, counting from 0.
+ * <p>
+ * Each batch is accepted or rejected as a whole, so failures are reported
+ * per batch, with the payloads it carried so they can be retried or fixed.
+ * Payloads that were never sent, because one could not be serialized, are
+ * reported as one more failure.
+ */
+public final class BatchPushResult {
+
+    private final ImmutableList<Optional<String>> pushIds;
+    private final ImmutableList<String> operationIds;
+    private final ImmutableList<Failure> failures;
+    private final int batchCount;
+
+    BatchPushResult(ImmutableList<Optional<String>> pushIds, ImmutableList<String> operationIds,
+                    ImmutableList<Failure> failures, int batchCount) {
+        this.pushIds = pushIds;
+        this.operationIds = operationIds;
+        this.failures = failures;
+        this.batchCount = batchCount;
+    }
+
+    public int getPayloadCount() {
+        return pushIds.size();
+    }
+
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Push id of each payload, in input order. Absent for payloads whose
+     * batch failed, or when the API returned a different number of push ids
+     * than the batch had payloads.
+     *
+     * @return ImmutableList of Optional push ids
+     */
+    public ImmutableList<Optional<String>> getPushIds() {
+        return pushIds;
+    }
+
+    public Optional<String> getPushId(int index) {
+        return pushIds.get(index);
+    }
+
+    /**
+     * Operation ids of the batches that were accepted.
+     *
+     * @return ImmutableList of operation ids
+     */
+    public ImmutableList<String> getOperationIds() {
+        return operationIds;
+    }
+
+    public ImmutableList<Failure> getFailures() {
+        return failures;
+    }
+
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    public int getFailedPayloadCount() {
+        int count = 0;
+        for (Failure failure : failures) {
+            count += failure.getPayloads().size();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchPushResult{" +
+                "payloads=" + pushIds.size() +
+                ", batches=" + batchCount +
+                ", failedPayloads=" + getFailedPayloadCount() +
+                ", failures=" + failures +
+                '}';
+    }
+
+    /**
+     * A batch that was not accepted, or the payloads left unsent.
+     */
+    public static final class Failure {
+
+        private final int firstIndex;
+        private final List<PushPayload> payloads;
+        private final Throwable cause;
+
+        Failure(int firstIndex, List<PushPayload> payloads, Throwable cause) {
+            this.firstIndex = firstIndex;
+            // Not an ImmutableList, which rejects the null payload that may have stopped the packing
+            this.payloads = Collections.unmodifiableList(Lists.newArrayList(payloads));
+            this.cause = cause;
+        }
+
+        /**
+         * Input position of the batch's first payload; the rest follow it.
+         *
+         * @return int
+         */
+        public int getFirstIndex() {
+            return firstIndex;
+        }
+
+        public List<PushPayload> getPayloads() {
+            return payloads;
+        }
+
+        /**
+         * Why the batch failed: an APIRequestException for a non 2xx
+         * response, an IOException for a transport error, or a
+         * RejectedExecutionException if the AsyncAPIClient shed it. For
+         * unsent payloads, the exception serializing the first of them.
+         *
+         * @return Throwable
+         */
+        public Throwable getCause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            return "Failure{" +
+                    "firstIndex=" + firstIndex +
+                    ", payloads=" + payloads.size() +
+                    ", cause=" + cause +
+                    '}';
+        }
+    }
+}
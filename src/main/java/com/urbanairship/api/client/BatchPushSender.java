@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIPushResponse;
+import com.urbanairship.api.push.model.PushPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Sends a stream of push payloads as array requests to the Push API, for
+ * high volumes of personalized one to one pushes.
+ * <p>
+ * Payloads are packed in input order into batches of at most maxBatchSize
+ * payloads and maxBatchBytes of JSON. A payload larger than maxBatchBytes
+ * on its own is sent in a batch by itself. Batches are dispatched through
+ * an AsyncAPIClient as soon as they fill, so the next batch is serialized
+ * while earlier ones are in flight, and the AsyncAPIClient's maxInFlight and
+ * queueCapacity bound how many are sent at once. In BLOCK mode send waits
+ * for room before dispatching; in SHED mode batches that do not fit fail.
+ * <p>
+ * send returns once every batch has completed. The push ids the API returns
+ * are mapped back to the input payloads, and batches that failed are
+ * reported with their payloads. Payloads of accepted batches are not kept,
+ * so the stream can be much larger than memory.
+ * <p>
+ * A payload that is null or cannot be serialized stops the packing: the
+ * batches before it are still sent, and it and every payload after it are
+ * reported as one failure, so it is known exactly which payloads were sent.
+ * <p>
+ * <pre>
+ * BatchPushSender sender = BatchPushSender.newBuilder()
+ *         .setClient(AsyncAPIClient.newBuilder().setClient(client).setMaxInFlight(8).build())
+ *         .build();
+ * BatchPushResult result = sender.send(payloads);
+ * for (BatchPushResult.Failure failure : result.getFailures()) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class BatchPushSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchPushSender.class);
+
+    private final AsyncAPIClient client;
+    private final int maxBatchSize;
+    private final long maxBatchBytes;
+
+    private BatchPushSender(AsyncAPIClient client, int maxBatchSize, long maxBatchBytes) {
+        this.client = client;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public AsyncAPIClient getClient() {
+        return client;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public BatchPushResult send(Iterable<PushPayload> payloads) {
+        Preconditions.checkNotNull(payloads, "Payloads cannot be null");
+        return send(payloads.iterator());
+    }
+
+    /**
+     * Send every payload, waiting for all batches to complete.
+     *
+     * @param payloads Payloads to send, consumed as batches fill
+     * @return BatchPushResult
+     */
+    public BatchPushResult send(Iterator<PushPayload> payloads) {
+        Preconditions.checkNotNull(payloads, "Payloads cannot be null");
+
+        List<PendingBatch> pending = Lists.newArrayList();
+        Optional<BatchPushResult.Failure> unsent = Optional.absent();
+        int index = 0;
+        PushBatch.Builder batch = new PushBatch.Builder();
+        List<PushPayload> batchPayloads = Lists.newArrayList();
+
+        while (payloads.hasNext()) {
+            boolean read = false;
+            PushPayload payload = null;
+            byte[] json;
+            try {
+                payload = payloads.next();
+                read = true;
+                json = PushBatch.serialize(payload);
+            } catch (IOException e) {
+                unsent = Optional.of(unsent(index, read, payload, payloads, e));
+                break;
+            } catch (RuntimeException e) {
+                unsent = Optional.of(unsent(index, read, payload, payloads, e));
+                break;
+            }
+
+            if (batch.size() > 0 &&
+                    (batch.size() == maxBatchSize || batch.byteCountWith(json.length) > maxBatchBytes)) {
+                pending.add(dispatch(index - batch.size(), batch.build(), batchPayloads));
+                batch = new PushBatch.Builder();
+                batchPayloads = Lists.newArrayList();
+            }
+
+            batch.add(json);
+            batchPayloads.add(payload);
+            index++;
+        }
+        if (batch.size() > 0) {
+            pending.add(dispatch(index - batch.size(), batch.build(), batchPayloads));
+        }
+
+        return collect(pending, unsent);
+    }
+
+    /*
+    The payload that stopped packing, unless reading it failed, and every
+    payload after it, none of which were sent.
+     */
+    private static BatchPushResult.Failure unsent(int index, boolean read, PushPayload payload,
+                                                  Iterator<PushPayload> rest, Exception cause) {
+        List<PushPayload> payloads = Lists.newArrayList();
+        if (read) {
+            payloads.add(payload);
+            try {
+                while (rest.hasNext()) {
+                    payloads.add(rest.next());
+                }
+            } catch (RuntimeException e) {
+                logger.warn(String.format("Stopped reading payloads after payload %d", index + payloads.size()), e);
+            }
+        }
+        logger.error(String.format("Stopped sending at payload %d; it and the %d payloads after it were not sent",
+                index, Math.max(0, payloads.size() - 1)), cause);
+        return new BatchPushResult.Failure(index, payloads, cause);
+    }
+
+    private PendingBatch dispatch(int firstIndex, PushBatch batch, List<PushPayload> payloads) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Dispatching push batch of %d payloads, %d bytes, from payload %d",
+                    batch.size(), batch.getByteCount(), firstIndex));
+        }
+
+        final PendingBatch pending = new PendingBatch(firstIndex, payloads);
+        ListenableFuture<APIClientResponse<APIPushResponse>> future = client.push(batch);
+        pending.future = future;
+        Futures.addCallback(future, new FutureCallback<APIClientResponse<APIPushResponse>>() {
+            @Override
+            public void onSuccess(APIClientResponse<APIPushResponse> result) {
+                pending.accepted();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // The payloads are reported with the failure by collect
+            }
+        });
+        return pending;
+    }
+
+    private BatchPushResult collect(List<PendingBatch> pending, Optional<BatchPushResult.Failure> unsent) {
+        ImmutableList.Builder<Optional<String>> pushIds = ImmutableList.builder();
+        ImmutableList.Builder<String> operationIds = ImmutableList.builder();
+        ImmutableList.Builder<BatchPushResult.Failure> failures = ImmutableList.builder();
+
+        for (PendingBatch batch : pending) {
+            APIPushResponse response;
+            try {
+                response = Uninterruptibles.getUninterruptibly(batch.future).getApiResponse();
+            } catch (ExecutionException e) {
+                failures.add(new BatchPushResult.Failure(batch.firstIndex, batch.payloads, e.getCause()));
+                addAbsent(pushIds, batch.size);
+                continue;
+            }
+
+            if (response.getOperationId().isPresent()) {
+                operationIds.add(response.getOperationId().get());
+            }
+
+            Optional<ImmutableList<String>> ids = response.getPushIds();
+            if (ids.isPresent() && ids.get().size() == batch.size) {
+                for (String id : ids.get()) {
+                    pushIds.add(Optional.of(id));
+                }
+            } else {
+                logger.warn(String.format("Push batch from payload %d had %d payloads but the response had %s " +
+                        "push ids", batch.firstIndex, batch.size, ids.isPresent() ? ids.get().size() : "no"));
+                addAbsent(pushIds, batch.size);
+            }
+        }
+
+        if (unsent.isPresent()) {
+            failures.add(unsent.get());
+            addAbsent(pushIds, unsent.get().getPayloads().size());
+        }
+
+        return new BatchPushResult(pushIds.build(), operationIds.build(), failures.build(), pending.size());
+    }
+
+    private static void addAbsent(ImmutableList.Builder<Optional<String>> pushIds, int count) {
+        for (int i = 0; i < count; i++) {
+            pushIds.add(Optional.<String>absent());
+        }
+    }
+
+    /*
+    A dispatched batch. Its payloads are kept only until it is accepted, to
+    report them if it fails.
+     */
+    private static final class PendingBatch {
+        private final int firstIndex;
+        private final int size;
+        private volatile List<PushPayload> payloads;
+        private ListenableFuture<APIClientResponse<APIPushResponse>> future;
+
+        private PendingBatch(int firstIndex, List<PushPayload> payloads) {
+            this.firstIndex = firstIndex;
+            this.size = payloads.size();
+            this.payloads = payloads;
+        }
+
+        private void accepted() {
+            payloads = null;
+        }
+    }
+
+    public static class Builder {
+
+        private AsyncAPIClient client;
+        private int maxBatchSize = 100;
+        private long maxBatchBytes = 1024 * 1024;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the AsyncAPIClient batches are sent through. Its maxInFlight
+         * bounds how many batches are sent at once.
+         *
+         * @param value AsyncAPIClient
+         * @return Builder
+         */
+        public Builder setClient(AsyncAPIClient value) {
+            this.client = value;
+            return this;
+        }
+
+        /**
+         * Maximum number of payloads in one request. Defaults to 100.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setMaxBatchSize(int value) {
+            this.maxBatchSize = value;
+            return this;
+        }
+
+        /**
+         * Maximum size of one request body in bytes, before any compression.
+         * Defaults to 1 MiB.
+         *
+         * @param value long
+         * @return Builder
+         */
+        public Builder setMaxBatchBytes(long value) {
+            this.maxBatchBytes = value;
+            return this;
+        }
+
+        public BatchPushSender build() {
+            Preconditions.checkNotNull(client, "AsyncAPIClient needed to build BatchPushSender");
+            Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+            Preconditions.checkArgument(maxBatchBytes > 0, "maxBatchBytes must be positive");
+
+            return new BatchPushSender(client, maxBatchSize, maxBatchBytes);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+
+/**
+ * Receives progress from a ChannelExporter after each page of channels has
+ * been written and the sink flushed.
+ */
+public interface ChannelExportListener {
+
+    /**
+     * Called after a page has been exported. Persist nextPage to be able to
+     * resume the export from this point with ChannelExporter.Builder.setCursor.
+     *
+     * @param nextPage Cursor for the next page, absent once the last page has been exported
+     * @param channelsExported Channels exported so far by this run
+     */
+    void onPageExported(Optional<String> nextPage, long channelsExported);
+}
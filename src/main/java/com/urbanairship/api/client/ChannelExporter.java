@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.urbanairship.api.channel.export.ChannelSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+/**
+ * Exports every channel of an app to a ChannelSink. Each page of the
+ * channel listing is parsed as it arrives and its channels are written to
+ * the sink one at a time, so memory use does not grow with the number of
+ * channels.
+ * <p>
+ * After each page the sink is flushed and the listener is given the cursor
+ * for the next page. An interrupted export can be resumed by building a new
+ * exporter with the last cursor. Channels on the page that was in progress
+ * when the export stopped are written again on resume, so exports are at
+ * least once.
+ * <p>
+ * The exporter does not close the sink.
+ */
+public final class ChannelExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
+
+    private final APIClient client;
+    private final ChannelSink sink;
+    private final Optional<String> cursor;
+    private final Optional<ChannelExportListener> listener;
+
+    private ChannelExporter(APIClient client, ChannelSink sink, Optional<String> cursor,
+                            Optional<ChannelExportListener> listener) {
+        this.client = client;
+        this.sink = sink;
+        this.cursor = cursor;
+        this.listener = listener;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs the export to completion.
+     *
+     * @return Number of channels exported
+     * @throws IOException if a page cannot be fetched or the sink fails
+     */
+    public long export() throws IOException {
+        Optional<String> nextPage = cursor;
+        long exported = 0;
+
+        do {
+            ExportChannelsResponseHandler handler = new ExportChannelsResponseHandler(sink);
+            try {
+                nextPage = client.exportChannels(nextPage, handler);
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid next page " + nextPage.get(), e);
+            }
+            exported += handler.getChannelCount();
+            sink.flush();
+
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Exported %d channels, next page %s", exported, nextPage.orNull()));
+            }
+            if (listener.isPresent()) {
+                listener.get().onPageExported(nextPage, exported);
+            }
+        } while (nextPage.isPresent());
+
+        return exported;
+    }
+
+    public static class Builder {
+
+        private APIClient client;
+        private ChannelSink sink;
+        private String cursor;
+        private ChannelExportListener listener;
+
+        private Builder() {
+        }
+
+        public Builder setClient(APIClient value) {
+            this.client = value;
+            return this;
+        }
+
+        public Builder setSink(ChannelSink value) {
+            this.sink = value;
+            return this;
+        }
+
+        /**
+         * Resume from a next_page cursor saved by a ChannelExportListener
+         * instead of starting from the first page.
+         *
+         * @param value next_page URL
+         * @return Builder
+         */
+        public Builder setCursor(String value) {
+            this.cursor = value;
+            return this;
+        }
+
+        public Builder setListener(ChannelExportListener value) {
+            this.listener = value;
+            return this;
+        }
+
+        public ChannelExporter build() {
+            Preconditions.checkNotNull(client, "client must be set");
+            Preconditions.checkNotNull(sink, "sink must be set");
+
+            return new ChannelExporter(client, sink, Optional.fromNullable(cursor), Optional.fromNullable(listener));
+        }
+    }
+}
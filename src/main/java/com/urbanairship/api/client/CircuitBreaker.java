@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Circuit breaker for one endpoint group, see CircuitBreakerConfig. While
+closed, letting a request through is a single volatile read; outcomes are
+recorded in a ring buffer under the breaker's lock.
+ */
+final class CircuitBreaker {
+
+    /* Permit for a request made while the breaker was closed */
+    static final long CLOSED_PERMIT = -1L;
+
+    private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
+
+    private final EndpointGroup group;
+    private final CircuitBreakerConfig config;
+    private final Optional<CircuitBreakerListener> listener;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    private volatile CircuitState state = CircuitState.CLOSED;
+
+    /* Guarded by this */
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private long openedAt;
+    private long halfOpenGeneration;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    CircuitBreaker(EndpointGroup group, CircuitBreakerConfig config, Optional<CircuitBreakerListener> listener) {
+        this.group = group;
+        this.config = config;
+        this.listener = listener;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDurationMillis());
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(config.getOpenDurationMillis());
+        this.failed = new boolean[config.getWindowSize()];
+        this.slow = new boolean[config.getWindowSize()];
+    }
+
+    CircuitState getState() {
+        return state;
+    }
+
+    /*
+    Returns a permit to pass to onResult or release, or throws if the
+    request may not be sent.
+     */
+    long acquirePermission() {
+        if (state == CircuitState.CLOSED) {
+            return CLOSED_PERMIT;
+        }
+
+        synchronized (this) {
+            if (state == CircuitState.OPEN) {
+                long remaining = openedAt + openNanos - System.nanoTime();
+                if (remaining > 0) {
+                    throw rejected(TimeUnit.NANOSECONDS.toMillis(remaining));
+                }
+                transition(CircuitState.HALF_OPEN);
+                halfOpenGeneration++;
+                probesInFlight = 0;
+                probeSuccesses = 0;
+            }
+
+            if (state == CircuitState.HALF_OPEN) {
+                if (probesInFlight >= config.getHalfOpenProbes()) {
+                    throw rejected(0L);
+                }
+                probesInFlight++;
+                return halfOpenGeneration;
+            }
+
+            return CLOSED_PERMIT;
+        }
+    }
+
+    /* Gives back a permit for a request that was not sent */
+    synchronized void release(long permit) {
+        if (isCurrentProbe(permit)) {
+            probesInFlight--;
+        }
+    }
+
+    void onResult(long permit, boolean failure, long durationNanos) {
+        boolean slowCall = durationNanos >= slowCallNanos;
+
+        synchronized (this) {
+            if (permit == CLOSED_PERMIT) {
+                // Requests started before the breaker opened are not counted against it
+                if (state == CircuitState.CLOSED) {
+                    record(failure, slowCall);
+                }
+            } else if (isCurrentProbe(permit)) {
+                probesInFlight--;
+                if (failure || slowCall) {
+                    open();
+                } else if (++probeSuccesses >= config.getHalfOpenProbes()) {
+                    reset();
+                    transition(CircuitState.CLOSED);
+                }
+            }
+        }
+    }
+
+    private boolean isCurrentProbe(long permit) {
+        return state == CircuitState.HALF_OPEN && permit == halfOpenGeneration;
+    }
+
+    private void record(boolean failure, boolean slowCall) {
+        if (recorded == failed.length) {
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+
+        failed[next] = failure;
+        slow[next] = slowCall;
+        failures += failure ? 1 : 0;
+        slowCalls += slowCall ? 1 : 0;
+        next = (next + 1) % failed.length;
+
+        if (recorded >= config.getMinimumCalls() &&
+                ((double) failures / recorded >= config.getFailureRateThreshold() ||
+                        (double) slowCalls / recorded >= config.getSlowCallRateThreshold())) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        reset();
+        transition(CircuitState.OPEN);
+    }
+
+    private void reset() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    private void transition(CircuitState to) {
+        CircuitState from = state;
+        state = to;
+
+        logger.info(String.format("Circuit for %s endpoints changed from %s to %s", group, from, to));
+        if (listener.isPresent()) {
+            try {
+                listener.get().onStateChange(group, from, to);
+            } catch (RuntimeException e) {
+                logger.warn("Circuit breaker listener failed", e);
+            }
+        }
+    }
+
+    private CircuitOpenException rejected(long retryAfterMillis) {
+        if (listener.isPresent()) {
+            try {
+                listener.get().onRequestRejected(group);
+            } catch (RuntimeException e) {
+                logger.warn("Circuit breaker listener failed", e);
+            }
+        }
+        return new CircuitOpenException(group, retryAfterMillis);
+    }
+}
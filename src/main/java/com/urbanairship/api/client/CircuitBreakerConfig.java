@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Settings for the circuit breakers an APIClient keeps for each endpoint
+ * group.
+ * <p>
+ * A breaker records the outcome of the last windowSize requests. Once at
+ * least minimumCalls have been recorded, it opens when the share of failed
+ * requests (transport errors and 5xx responses) or of slow requests reaches
+ * its threshold. While open, requests fail fast. After openDurationMillis
+ * the breaker lets halfOpenProbes requests through; it closes if they all
+ * succeed quickly and opens again if any of them fails or is slow.
+ */
+public final class CircuitBreakerConfig {
+
+    private final double failureRateThreshold;
+    private final long slowCallDurationMillis;
+    private final double slowCallRateThreshold;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final long openDurationMillis;
+    private final int halfOpenProbes;
+
+    private CircuitBreakerConfig(double failureRateThreshold,
+                                 long slowCallDurationMillis,
+                                 double slowCallRateThreshold,
+                                 int windowSize,
+                                 int minimumCalls,
+                                 long openDurationMillis,
+                                 int halfOpenProbes) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallDurationMillis = slowCallDurationMillis;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Share of failed requests in the window, between 0 and 1, at which the
+     * breaker opens.
+     *
+     * @return double
+     */
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * Requests that take at least this long to receive a response are
+     * counted as slow.
+     *
+     * @return Duration in milliseconds
+     */
+    public long getSlowCallDurationMillis() {
+        return slowCallDurationMillis;
+    }
+
+    /**
+     * Share of slow requests in the window, between 0 and 1, at which the
+     * breaker opens.
+     *
+     * @return double
+     */
+    public double getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    /**
+     * Number of most recent requests the rates are computed over.
+     *
+     * @return int
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Number of requests that must be recorded before the breaker can open.
+     *
+     * @return int
+     */
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * How long the breaker stays open before letting probe requests through.
+     *
+     * @return Duration in milliseconds
+     */
+    public long getOpenDurationMillis() {
+        return openDurationMillis;
+    }
+
+    /**
+     * Number of probe requests let through while half open.
+     *
+     * @return int
+     */
+    public int getHalfOpenProbes() {
+        return halfOpenProbes;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreakerConfig{" +
+                "failureRateThreshold=" + failureRateThreshold +
+                ", slowCallDurationMillis=" + slowCallDurationMillis +
+                ", slowCallRateThreshold=" + slowCallRateThreshold +
+                ", windowSize=" + windowSize +
+                ", minimumCalls=" + minimumCalls +
+                ", openDurationMillis=" + openDurationMillis +
+                ", halfOpenProbes=" + halfOpenProbes +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(failureRateThreshold, slowCallDurationMillis, slowCallRateThreshold, windowSize,
+                minimumCalls, openDurationMillis, halfOpenProbes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final CircuitBreakerConfig other = (CircuitBreakerConfig) obj;
+        return Objects.equal(this.failureRateThreshold, other.failureRateThreshold) &&
+                Objects.equal(this.slowCallDurationMillis, other.slowCallDurationMillis) &&
+                Objects.equal(this.slowCallRateThreshold, other.slowCallRateThreshold) &&
+                Objects.equal(this.windowSize, other.windowSize) &&
+                Objects.equal(this.minimumCalls, other.minimumCalls) &&
+                Objects.equal(this.openDurationMillis, other.openDurationMillis) &&
+                Objects.equal(this.halfOpenProbes, other.halfOpenProbes);
+    }
+
+    public static class Builder {
+
+        private double failureRateThreshold = 0.5;
+        private long slowCallDurationMillis = 10000L;
+        private double slowCallRateThreshold = 0.5;
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private long openDurationMillis = 30000L;
+        private int halfOpenProbes = 3;
+
+        private Builder() {
+        }
+
+        public Builder setFailureRateThreshold(double value) {
+            this.failureRateThreshold = value;
+            return this;
+        }
+
+        public Builder setSlowCallDurationMillis(long value) {
+            this.slowCallDurationMillis = value;
+            return this;
+        }
+
+        public Builder setSlowCallRateThreshold(double value) {
+            this.slowCallRateThreshold = value;
+            return this;
+        }
+
+        public Builder setWindowSize(int value) {
+            this.windowSize = value;
+            return this;
+        }
+
+        public Builder setMinimumCalls(int value) {
+            this.minimumCalls = value;
+            return this;
+        }
+
+        public Builder setOpenDurationMillis(long value) {
+            this.openDurationMillis = value;
+            return this;
+        }
+
+        public Builder setHalfOpenProbes(int value) {
+            this.halfOpenProbes = value;
+            return this;
+        }
+
+        public CircuitBreakerConfig build() {
+            Preconditions.checkArgument(failureRateThreshold > 0 && failureRateThreshold <= 1,
+                    "failureRateThreshold must be greater than 0 and at most 1");
+            Preconditions.checkArgument(slowCallDurationMillis > 0, "slowCallDurationMillis must be positive");
+            Preconditions.checkArgument(slowCallRateThreshold > 0 && slowCallRateThreshold <= 1,
+                    "slowCallRateThreshold must be greater than 0 and at most 1");
+            Preconditions.checkArgument(windowSize > 0, "windowSize must be positive");
+            Preconditions.checkArgument(minimumCalls > 0 && minimumCalls <= windowSize,
+                    "minimumCalls must be positive and cannot exceed windowSize");
+            Preconditions.checkArgument(openDurationMillis > 0, "openDurationMillis must be positive");
+            Preconditions.checkArgument(halfOpenProbes > 0, "halfOpenProbes must be positive");
+
+            return new CircuitBreakerConfig(failureRateThreshold, slowCallDurationMillis, slowCallRateThreshold,
+                    windowSize, minimumCalls, openDurationMillis, halfOpenProbes);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+/**
+ * Receives notifications from the circuit breakers of an APIClient. Methods
+ * are called on the thread making the request, while the breaker's state is
+ * locked, so implementations should return quickly and must not make
+ * requests through the client.
+ */
+public interface CircuitBreakerListener {
+
+    /**
+     * Called when the circuit for an endpoint group changes state.
+     *
+     * @param group Endpoint group
+     * @param from Previous state
+     * @param to New state
+     */
+    void onStateChange(EndpointGroup group, CircuitState from, CircuitState to);
+
+    /**
+     * Called when a request is rejected because the circuit for its
+     * endpoint group is open, or all half open probes are in use.
+     *
+     * @param group Endpoint group
+     */
+    void onRequestRejected(EndpointGroup group);
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+/**
+ * Thrown instead of sending a request when the circuit breaker for its
+ * endpoint group is open, because recent requests to those endpoints have
+ * been failing or slow. The request was not sent.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private final EndpointGroup endpointGroup;
+    private final long retryAfterMillis;
+
+    public CircuitOpenException(EndpointGroup endpointGroup, long retryAfterMillis) {
+        super(String.format("Circuit open for %s endpoints, probing again in %d ms", endpointGroup, retryAfterMillis));
+        this.endpointGroup = endpointGroup;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * The endpoint group whose circuit is open
+     *
+     * @return EndpointGroup
+     */
+    public EndpointGroup getEndpointGroup() {
+        return endpointGroup;
+    }
+
+    /**
+     * How long until the circuit lets probe requests through, at the time
+     * the exception was thrown. Zero if it is already half open and all
+     * probes are in use.
+     *
+     * @return Duration in milliseconds
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,17 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+/**
+ * States of the circuit breaker guarding an endpoint group.
+ */
+public enum CircuitState {
+    /** Requests are sent and their outcomes recorded */
+    CLOSED,
+    /** Requests fail fast with a CircuitOpenException without being sent */
+    OPEN,
+    /** A limited number of probe requests are sent to test whether the API has recovered */
+    HALF_OPEN
+}
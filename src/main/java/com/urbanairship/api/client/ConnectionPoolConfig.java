@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Settings for the pooled HTTP transport shared by every call made through
+ * an APIClient. Connections are kept alive and reused between requests, so
+ * TLS sessions are only negotiated when a new connection is opened.
+ */
+public final class ConnectionPoolConfig {
+
+    private final int maxConnectionsTotal;
+    private final int maxConnectionsPerRoute;
+    private final long keepAliveMillis;
+    private final long idleConnectionTimeoutMillis;
+    private final long evictionIntervalMillis;
+
+    private ConnectionPoolConfig(int maxConnectionsTotal,
+                                 int maxConnectionsPerRoute,
+                                 long keepAliveMillis,
+                                 long idleConnectionTimeoutMillis,
+                                 long evictionIntervalMillis) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.keepAliveMillis = keepAliveMillis;
+        this.idleConnectionTimeoutMillis = idleConnectionTimeoutMillis;
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Maximum number of connections held by the pool across all routes.
+     *
+     * @return int
+     */
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * Maximum number of connections held by the pool for a single route.
+     * Most traffic goes to a single API host, so this is usually the
+     * effective limit on concurrent requests.
+     *
+     * @return int
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Upper bound on how long an idle connection is kept alive. A shorter
+     * duration sent by the server in a Keep-Alive header takes precedence.
+     *
+     * @return Keep alive duration in milliseconds
+     */
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * Connections left idle in the pool for longer than this are closed by
+     * the background evictor.
+     *
+     * @return Idle timeout in milliseconds
+     */
+    public long getIdleConnectionTimeoutMillis() {
+        return idleConnectionTimeoutMillis;
+    }
+
+    /**
+     * How often the background evictor checks for expired and idle
+     * connections.
+     *
+     * @return Eviction interval in milliseconds
+     */
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolConfig{" +
+                "maxConnectionsTotal=" + maxConnectionsTotal +
+                ", maxConnectionsPerRoute=" + maxConnectionsPerRoute +
+                ", keepAliveMillis=" + keepAliveMillis +
+                ", idleConnectionTimeoutMillis=" + idleConnectionTimeoutMillis +
+                ", evictionIntervalMillis=" + evictionIntervalMillis +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(maxConnectionsTotal, maxConnectionsPerRoute, keepAliveMillis,
+                idleConnectionTimeoutMillis, evictionIntervalMillis);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ConnectionPoolConfig other = (ConnectionPoolConfig) obj;
+        return Objects.equal(this.maxConnectionsTotal, other.maxConnectionsTotal) &&
+                Objects.equal(this.maxConnectionsPerRoute, other.maxConnectionsPerRoute) &&
+                Objects.equal(this.keepAliveMillis, other.keepAliveMillis) &&
+                Objects.equal(this.idleConnectionTimeoutMillis, other.idleConnectionTimeoutMillis) &&
+                Objects.equal(this.evictionIntervalMillis, other.evictionIntervalMillis);
+    }
+
+    public static class Builder {
+
+        private int maxConnectionsTotal = 50;
+        private int maxConnectionsPerRoute = 50;
+        private long keepAliveMillis = 30000L;
+        private long idleConnectionTimeoutMillis = 60000L;
+        private long evictionIntervalMillis = 5000L;
+
+        private Builder() {
+        }
+
+        public Builder setMaxConnectionsTotal(int value) {
+            this.maxConnectionsTotal = value;
+            return this;
+        }
+
+        public Builder setMaxConnectionsPerRoute(int value) {
+            this.maxConnectionsPerRoute = value;
+            return this;
+        }
+
+        public Builder setKeepAliveMillis(long value) {
+            this.keepAliveMillis = value;
+            return this;
+        }
+
+        public Builder setIdleConnectionTimeoutMillis(long value) {
+            this.idleConnectionTimeoutMillis = value;
+            return this;
+        }
+
+        public Builder setEvictionIntervalMillis(long value) {
+            this.evictionIntervalMillis = value;
+            return this;
+        }
+
+        public ConnectionPoolConfig build() {
+            Preconditions.checkArgument(maxConnectionsTotal > 0, "maxConnectionsTotal must be positive");
+            Preconditions.checkArgument(maxConnectionsPerRoute > 0, "maxConnectionsPerRoute must be positive");
+            Preconditions.checkArgument(maxConnectionsPerRoute <= maxConnectionsTotal,
+                    "maxConnectionsPerRoute cannot exceed maxConnectionsTotal");
+            Preconditions.checkArgument(keepAliveMillis > 0, "keepAliveMillis must be positive");
+            Preconditions.checkArgument(idleConnectionTimeoutMillis > 0, "idleConnectionTimeoutMillis must be positive");
+            Preconditions.checkArgument(evictionIntervalMillis > 0, "evictionIntervalMillis must be positive");
+
+            return new ConnectionPoolConfig(maxConnectionsTotal, maxConnectionsPerRoute, keepAliveMillis,
+                    idleConnectionTimeoutMillis, evictionIntervalMillis);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Counts the bytes written from, or read out of, the wrapped entity, for the
+body size metrics. Repeated writes of a retried request add up, so callers
+take the difference across an attempt.
+ */
+final class CountingHttpEntity extends HttpEntityWrapper {
+
+    private final AtomicLong byteCount = new AtomicLong();
+
+    CountingHttpEntity(HttpEntity entity) {
+        super(entity);
+    }
+
+    long getByteCount() {
+        return byteCount.get();
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new FilterInputStream(wrappedEntity.getContent()) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    byteCount.incrementAndGet();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    byteCount.addAndGet(n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                byteCount.addAndGet(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        wrappedEntity.writeTo(new FilterOutputStream(outstream) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                byteCount.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                byteCount.addAndGet(len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                // The connection's stream is not ours to close
+                flush();
+            }
+        });
+    }
+}
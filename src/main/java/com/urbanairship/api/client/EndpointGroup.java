@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+/**
+ * Groups of API endpoints that are limited and monitored together. The
+ * group of a request is determined by its path.
+ */
+public enum EndpointGroup {
+
+    PUSH("/api/push/"),
+    SCHEDULES("/api/schedules"),
+    TAGS("/api/tags/"),
+    LOCATION("/api/location/"),
+    SEGMENTS("/api/segments"),
+    CHANNELS("/api/channels/"),
+    REPORTS("/api/reports/"),
+    OTHER("/");
+
+    private static final String PUSH_STATISTICS_PATH = "/api/push/stats/";
+
+    private final String pathPrefix;
+
+    private EndpointGroup(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    /**
+     * Returns the group of the endpoint at the given request path.
+     *
+     * @param path Request path, for example "/api/push/"
+     * @return EndpointGroup
+     */
+    public static EndpointGroup forPath(String path) {
+        if (path == null) {
+            return OTHER;
+        }
+        // Push statistics live under the push path but are reports
+        if (path.startsWith(PUSH_STATISTICS_PATH)) {
+            return REPORTS;
+        }
+        for (EndpointGroup group : values()) {
+            if (group != OTHER && path.startsWith(group.pathPrefix)) {
+                return group;
+            }
+        }
+        return OTHER;
+    }
+}
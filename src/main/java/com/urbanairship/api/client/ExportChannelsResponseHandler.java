@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.urbanairship.api.channel.export.ChannelSink;
+import com.urbanairship.api.channel.information.model.ChannelView;
+import com.urbanairship.api.client.parse.APIResponseObjectMapper;
+import com.urbanairship.api.common.parse.APIParsingException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.util.EntityUtils;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+
+/*
+Parses a page of the channel listing token by token, handing each channel
+to the sink as soon as it has been read, and returns the page's next_page.
+Unlike ListAllChannelsAPIResponseHandler it never holds more than one
+channel. Used for a single response; the channel count is read afterwards.
+ */
+final class ExportChannelsResponseHandler implements ResponseHandler<Optional<String>> {
+
+    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
+
+    private final ChannelSink sink;
+    private long channelCount;
+
+    ExportChannelsResponseHandler(ChannelSink sink) {
+        this.sink = sink;
+    }
+
+    long getChannelCount() {
+        return channelCount;
+    }
+
+    @Override
+    public Optional<String> handleResponse(HttpResponse response) throws IOException {
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode < 200 || statusCode >= 300) {
+            throw APIRequestException.exceptionForResponse(response);
+        }
+
+        HttpEntity entity = response.getEntity();
+        JsonParser parser = mapper.getJsonFactory().createJsonParser(entity.getContent());
+        try {
+            return parse(parser);
+        } finally {
+            parser.close();
+            EntityUtils.consumeQuietly(entity);
+        }
+    }
+
+    private Optional<String> parse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new APIParsingException("Expected a JSON object listing channels");
+        }
+
+        Optional<String> nextPage = Optional.absent();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            if ("channels".equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    sink.write(parser.readValueAs(ChannelView.class));
+                    channelCount++;
+                }
+            } else if ("next_page".equals(field) && token == JsonToken.VALUE_STRING) {
+                String value = parser.getText();
+                nextPage = value.isEmpty() ? Optional.<String>absent() : Optional.of(value);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return nextPage;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.urbanairship.api.common.model.APIModelObject;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Request entity that serializes an API model object as JSON through a gzip
+ * stream straight to the connection, sent with a "Content-Encoding: gzip"
+ * header and chunked encoding.
+ * <p>
+ * Use {@link #compressIfLarger(APIModelObject, int)} to only pay for
+ * compression on bodies that are big enough to benefit from it.
+ */
+final class GzipJSONRequestEntity extends AbstractHttpEntity {
+
+    private static final String GZIP_CONTENT_ENCODING = "gzip";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final APIModelObject object;
+
+    GzipJSONRequestEntity(APIModelObject object) {
+        Preconditions.checkNotNull(object, "Request body object cannot be null");
+        this.object = object;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+        setContentEncoding(GZIP_CONTENT_ENCODING);
+        setChunked(true);
+    }
+
+    /**
+     * Returns an entity for the object, gzip compressed if its JSON is at
+     * least thresholdBytes long. Serialization stops as soon as the threshold
+     * is reached, so large bodies are never held in memory; small bodies are
+     * sent uncompressed from the buffer with a known content length.
+     *
+     * @param object Object to send
+     * @param thresholdBytes Minimum uncompressed size to compress
+     * @return HttpEntity
+     * @throws IOException
+     */
+    static HttpEntity compressIfLarger(APIModelObject object, int thresholdBytes) throws IOException {
+        Preconditions.checkNotNull(object, "Request body object cannot be null");
+        Preconditions.checkArgument(thresholdBytes >= 0, "Compression threshold cannot be negative");
+
+        BoundedBuffer buffer = new BoundedBuffer(thresholdBytes);
+        try {
+            object.writeJSON(buffer);
+        } catch (IOException e) {
+            // Jackson may wrap exceptions thrown by the stream, so look through the causes
+            if (Throwables.getRootCause(e) instanceof ThresholdReachedException) {
+                return new GzipJSONRequestEntity(object);
+            }
+            throw e;
+        }
+        return new ByteArrayEntity(buffer.toByteArray(), ContentType.APPLICATION_JSON);
+    }
+
+    APIModelObject getObject() {
+        return object;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /*
+    Returns the compressed body, as it is sent on the wire.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeTo(buffer);
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        Preconditions.checkNotNull(outstream, "Output stream cannot be null");
+
+        // Closing the gzip stream releases its native Deflater, but must not close the connection's stream.
+        GZIPOutputStream gzip = new GZIPOutputStream(new NonClosingOutputStream(outstream), BUFFER_SIZE);
+        try {
+            object.writeJSON(gzip);
+        } finally {
+            gzip.close();
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        private NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /* Buffer that aborts serialization once the body reaches the threshold */
+    private static final class BoundedBuffer extends OutputStream {
+
+        private final ByteArrayOutputStream buffer;
+        private final int limit;
+
+        private BoundedBuffer(int limit) {
+            this.buffer = new ByteArrayOutputStream(Math.min(limit, BUFFER_SIZE));
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkLimit(1);
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkLimit(len);
+            buffer.write(b, off, len);
+        }
+
+        private void checkLimit(int len) throws ThresholdReachedException {
+            if (buffer.size() + len >= limit) {
+                throw new ThresholdReachedException();
+            }
+        }
+
+        private byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+
+    private static final class ThresholdReachedException extends IOException {
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.api.common.model.APIModelObject;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Request entity that serializes an API model object as JSON straight to the
+ * connection's output stream when the request is sent. No String or byte
+ * array of the whole body is built, which matters for large audiences.
+ * <p>
+ * The entity is repeatable; each write serializes the object again. Since the
+ * length is not known up front the body is sent with chunked encoding.
+ */
+final class JSONRequestEntity extends AbstractHttpEntity {
+
+    private final APIModelObject object;
+
+    JSONRequestEntity(APIModelObject object) {
+        Preconditions.checkNotNull(object, "Request body object cannot be null");
+        this.object = object;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+        setChunked(true);
+    }
+
+    APIModelObject getObject() {
+        return object;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /*
+    Only used by code that needs to read the body back, such as wire
+    logging. Requests themselves go through writeTo.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        object.writeJSON(buffer);
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        Preconditions.checkNotNull(outstream, "Output stream cannot be null");
+        object.writeJSON(outstream);
+        outstream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
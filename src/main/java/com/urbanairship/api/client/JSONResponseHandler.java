@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.parse.APIResponseObjectMapper;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.util.EntityUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.JavaType;
+import org.codehaus.jackson.type.TypeReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Base class for handlers of JSON API responses. Successful responses are
+ * parsed directly from the entity stream, so the body is never held in
+ * memory as a String alongside the parsed object graph. Responses outside
+ * of the 2xx range are turned into an APIRequestException.
+ * <p>
+ * Handlers hold no mutable state and can be shared between threads.
+ *
+ * @param <T> The API response type produced by the handler
+ */
+public abstract class JSONResponseHandler<T> implements ResponseHandler<APIClientResponse<T>> {
+
+    private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
+    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
+
+    private final JavaType responseType;
+
+    protected JSONResponseHandler(Class<T> responseType) {
+        this.responseType = mapper.getTypeFactory().constructType(responseType);
+    }
+
+    protected JSONResponseHandler(TypeReference<T> responseType) {
+        this.responseType = mapper.getTypeFactory().constructType(responseType);
+    }
+
+    /**
+     * Returns a new builder for the response. Called once per response, so
+     * builders are never shared between requests.
+     *
+     * @return Builder
+     */
+    protected abstract APIClientResponse.Builder<T> newResponseBuilder();
+
+    @Override
+    public APIClientResponse<T> handleResponse(HttpResponse response) throws IOException {
+
+        int statusCode = response.getStatusLine().getStatusCode();
+
+        if (statusCode >= 200 && statusCode < 300) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Handling response code:%s", statusCode));
+            }
+            return handleSuccessfulResponse(response);
+        } else {
+            throw APIRequestException.exceptionForResponse(response);
+        }
+    }
+
+    private APIClientResponse<T> handleSuccessfulResponse(HttpResponse response) throws IOException {
+
+        APIClientResponse.Builder<T> builder = newResponseBuilder();
+        builder.setHttpResponse(response);
+
+        HttpEntity entity = response.getEntity();
+        try {
+            InputStream stream = entity.getContent();
+            T apiResponse = mapper.readValue(stream, responseType);
+            builder.setApiResponse(apiResponse);
+        } finally {
+            EntityUtils.consumeQuietly(entity);
+        }
+
+        return builder.build();
+    }
+}
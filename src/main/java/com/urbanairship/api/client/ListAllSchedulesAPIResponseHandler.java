@@ -6,43 +6,15 @@ package com.urbanairship.api.client;
 
 import com.urbanairship.api.client.model.APIClientResponse;
 import com.urbanairship.api.client.model.APIListAllSchedulesResponse;
-import com.urbanairship.api.client.parse.APIResponseObjectMapper;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.util.EntityUtils;
-import org.codehaus.jackson.map.ObjectMapper;
 
-import java.io.IOException;
+public final class ListAllSchedulesAPIResponseHandler extends JSONResponseHandler<APIListAllSchedulesResponse> {
 
-public final class ListAllSchedulesAPIResponseHandler implements ResponseHandler<APIClientResponse<APIListAllSchedulesResponse>> {
-
-    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
-    private static final APIClientResponse.Builder<APIListAllSchedulesResponse> builder = APIClientResponse.newListAllSchedulesResponseBuilder();
-
-    @Override
-    public APIClientResponse<APIListAllSchedulesResponse> handleResponse(HttpResponse response) throws IOException {
-
-        int statusCode = response.getStatusLine().getStatusCode();
-
-        if (statusCode >= 200 && statusCode < 300) {
-            return handleSuccessfulSchedule(response);
-        } else {
-            throw APIRequestException.exceptionForResponse(response);
-        }
+    public ListAllSchedulesAPIResponseHandler() {
+        super(APIListAllSchedulesResponse.class);
     }
 
-    private APIClientResponse<APIListAllSchedulesResponse> handleSuccessfulSchedule(HttpResponse response) throws IOException {
-
-        builder.setHttpResponse(response);
-
-        try {
-            String jsonPayload = EntityUtils.toString(response.getEntity());
-            APIListAllSchedulesResponse scheduleResponse = mapper.readValue(jsonPayload, APIListAllSchedulesResponse.class);
-            builder.setApiResponse(scheduleResponse);
-        } finally {
-            EntityUtils.consumeQuietly(response.getEntity());
-        }
-
-        return builder.build();
+    @Override
+    protected APIClientResponse.Builder<APIListAllSchedulesResponse> newResponseBuilder() {
+        return APIClientResponse.newListAllSchedulesResponseBuilder();
     }
 }
@@ -5,47 +5,20 @@
 package com.urbanairship.api.client;
 
 import com.urbanairship.api.client.model.APIClientResponse;
-import com.urbanairship.api.client.parse.APIResponseObjectMapper;
 import com.urbanairship.api.reports.model.AppStats;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.util.EntityUtils;
-import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
 
-import java.io.IOException;
 import java.util.List;
 
-public final class ListAppStatsAPIResponseHandler implements ResponseHandler<APIClientResponse<List<AppStats>>> {
+public final class ListAppStatsAPIResponseHandler extends JSONResponseHandler<List<AppStats>> {
 
-    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
-    private static final APIClientResponse.Builder<List<AppStats>> builder = APIClientResponse.newListAppStatsBuilder();
-
-    @Override
-    public APIClientResponse<List<AppStats>> handleResponse(HttpResponse response) throws IOException {
-
-        int statusCode = response.getStatusLine().getStatusCode();
-
-        if (statusCode >= 200 && statusCode < 300) {
-            return handleSuccessfulResponse(response);
-        } else {
-            throw APIRequestException.exceptionForResponse(response);
-        }
+    public ListAppStatsAPIResponseHandler() {
+        super(new TypeReference<List<AppStats>>() {
+        });
     }
 
-    private APIClientResponse<List<AppStats>> handleSuccessfulResponse(HttpResponse response) throws IOException {
-
-        builder.setHttpResponse(response);
-
-        try {
-            String jsonPayload = EntityUtils.toString(response.getEntity());
-            List<AppStats> listOfAppStats = mapper.readValue(jsonPayload, new TypeReference<List<AppStats>>() {
-            });
-            builder.setApiResponse(listOfAppStats);
-        } finally {
-            EntityUtils.consumeQuietly(response.getEntity());
-        }
-
-        return builder.build();
+    @Override
+    protected APIClientResponse.Builder<List<AppStats>> newResponseBuilder() {
+        return APIClientResponse.newListAppStatsBuilder();
     }
 }
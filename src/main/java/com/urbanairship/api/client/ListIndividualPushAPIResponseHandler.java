@@ -5,47 +5,16 @@
 package com.urbanairship.api.client;
 
 import com.urbanairship.api.client.model.APIClientResponse;
-import com.urbanairship.api.client.parse.APIResponseObjectMapper;
 import com.urbanairship.api.reports.model.SinglePushInfoResponse;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.util.EntityUtils;
-import org.codehaus.jackson.map.ObjectMapper;
 
-import java.io.IOException;
+public final class ListIndividualPushAPIResponseHandler extends JSONResponseHandler<SinglePushInfoResponse> {
 
-
-public final class ListIndividualPushAPIResponseHandler implements ResponseHandler<APIClientResponse<SinglePushInfoResponse>> {
-
-    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
-    private static final APIClientResponse.Builder<SinglePushInfoResponse> builder =
-            APIClientResponse.newSinglePushInfoResponseBuilder();
-
-    @Override
-    public APIClientResponse<SinglePushInfoResponse> handleResponse(HttpResponse response) throws IOException {
-
-        int statusCode = response.getStatusLine().getStatusCode();
-
-        if (statusCode >= 200 && statusCode < 300) {
-            return handleSuccessfulResponse(response);
-        } else {
-            throw APIRequestException.exceptionForResponse(response);
-        }
+    public ListIndividualPushAPIResponseHandler() {
+        super(SinglePushInfoResponse.class);
     }
 
-    private APIClientResponse<SinglePushInfoResponse> handleSuccessfulResponse(HttpResponse response) throws IOException {
-
-        builder.setHttpResponse(response);
-
-        try {
-            String jsonPayload = EntityUtils.toString(response.getEntity());
-            SinglePushInfoResponse obj = mapper.readValue(jsonPayload, SinglePushInfoResponse.class);
-            builder.setApiResponse(obj);
-        } finally {
-            EntityUtils.consumeQuietly(response.getEntity());
-        }
-
-        return builder.build();
+    @Override
+    protected APIClientResponse.Builder<SinglePushInfoResponse> newResponseBuilder() {
+        return APIClientResponse.newSinglePushInfoResponseBuilder();
     }
-
 }
@@ -6,44 +6,15 @@ package com.urbanairship.api.client;
 
 import com.urbanairship.api.client.model.APIClientResponse;
 import com.urbanairship.api.client.model.APIReportsPushListingResponse;
-import com.urbanairship.api.client.parse.APIResponseObjectMapper;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.util.EntityUtils;
-import org.codehaus.jackson.map.ObjectMapper;
 
-import java.io.IOException;
+public class ListReportsListingResponseHandler extends JSONResponseHandler<APIReportsPushListingResponse> {
 
-public class ListReportsListingResponseHandler implements ResponseHandler<APIClientResponse<APIReportsPushListingResponse>> {
-
-    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
-    private static final APIClientResponse.Builder<APIReportsPushListingResponse> builder = APIClientResponse.newReportsListingResponseBuilder();
-
-    @Override
-    public APIClientResponse<APIReportsPushListingResponse> handleResponse(HttpResponse response) throws IOException {
-
-        int statusCode = response.getStatusLine().getStatusCode();
-
-        if (statusCode >= 200 && statusCode < 300) {
-            return handleSuccessfulRequest(response);
-        } else {
-            throw APIRequestException.exceptionForResponse(response);
-        }
+    public ListReportsListingResponseHandler() {
+        super(APIReportsPushListingResponse.class);
     }
 
-    private APIClientResponse<APIReportsPushListingResponse> handleSuccessfulRequest(HttpResponse response) throws IOException {
-
-        builder.setHttpResponse(response);
-
-        try {
-            String jsonPayload = EntityUtils.toString(response.getEntity());
-            APIReportsPushListingResponse reportsListingResponse = mapper.readValue(jsonPayload, APIReportsPushListingResponse.class);
-            builder.setApiResponse(reportsListingResponse);
-        } finally {
-            EntityUtils.consumeQuietly(response.getEntity());
-        }
-
-        return builder.build();
+    @Override
+    protected APIClientResponse.Builder<APIReportsPushListingResponse> newResponseBuilder() {
+        return APIClientResponse.newReportsListingResponseBuilder();
     }
 }
-
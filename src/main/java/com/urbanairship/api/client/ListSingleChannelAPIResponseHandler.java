@@ -6,44 +6,15 @@ package com.urbanairship.api.client;
 
 import com.urbanairship.api.client.model.APIClientResponse;
 import com.urbanairship.api.client.model.APIListSingleChannelResponse;
-import com.urbanairship.api.client.parse.APIResponseObjectMapper;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.util.EntityUtils;
-import org.codehaus.jackson.map.ObjectMapper;
 
-import java.io.IOException;
+public final class ListSingleChannelAPIResponseHandler extends JSONResponseHandler<APIListSingleChannelResponse> {
 
-public final class ListSingleChannelAPIResponseHandler implements ResponseHandler<APIClientResponse<APIListSingleChannelResponse>> {
-
-    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
-    private static final APIClientResponse.Builder<APIListSingleChannelResponse> builder = APIClientResponse.newSingleChannelResponseBuilder();
-
-    @Override
-    public APIClientResponse<APIListSingleChannelResponse> handleResponse(HttpResponse response) throws IOException {
-
-        int statusCode = response.getStatusLine().getStatusCode();
-
-        if (statusCode >= 200 && statusCode < 300) {
-            return handleSuccessfulRequest(response);
-        } else {
-            throw APIRequestException.exceptionForResponse(response);
-        }
+    public ListSingleChannelAPIResponseHandler() {
+        super(APIListSingleChannelResponse.class);
     }
 
-    private APIClientResponse<APIListSingleChannelResponse> handleSuccessfulRequest(HttpResponse response) throws IOException {
-
-        builder.setHttpResponse(response);
-
-        try {
-            String jsonPayload = EntityUtils.toString(response.getEntity());
-            APIListSingleChannelResponse channelsResponse = mapper.readValue(jsonPayload, APIListSingleChannelResponse.class);
-            builder.setApiResponse(channelsResponse);
-        } finally {
-            EntityUtils.consumeQuietly(response.getEntity());
-        }
-
-        return builder.build();
+    @Override
+    protected APIClientResponse.Builder<APIListSingleChannelResponse> newResponseBuilder() {
+        return APIClientResponse.newSingleChannelResponseBuilder();
     }
-
-}
\ No newline at end of file
+}
@@ -1,44 +1,20 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
 package com.urbanairship.api.client;
 
 import com.urbanairship.api.client.model.APIClientResponse;
 import com.urbanairship.api.client.model.APILocationResponse;
-import com.urbanairship.api.client.parse.APIResponseObjectMapper;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.util.EntityUtils;
-import org.codehaus.jackson.map.ObjectMapper;
-
-import java.io.IOException;
-
-public class LocationAPIResponseHandler implements ResponseHandler<APIClientResponse<APILocationResponse>> {
-
-    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
-    private static final APIClientResponse.Builder<APILocationResponse> builder = APIClientResponse.newLocationResponseBuilder();
-
-    @Override
-    public APIClientResponse<APILocationResponse> handleResponse(HttpResponse response) throws IOException {
 
-        int statusCode = response.getStatusLine().getStatusCode();
+public class LocationAPIResponseHandler extends JSONResponseHandler<APILocationResponse> {
 
-        if (statusCode >= 200 && statusCode < 300) {
-            return handleSuccessfulLocationRequest(response);
-        } else {
-            throw APIRequestException.exceptionForResponse(response);
-        }
+    public LocationAPIResponseHandler() {
+        super(APILocationResponse.class);
     }
 
-    private APIClientResponse<APILocationResponse> handleSuccessfulLocationRequest(HttpResponse response) throws IOException {
-
-        builder.setHttpResponse(response);
-
-        try {
-            String jsonPayload = EntityUtils.toString(response.getEntity());
-            APILocationResponse locationResponse = mapper.readValue(jsonPayload, APILocationResponse.class);
-            builder.setApiResponse(locationResponse);
-        } finally {
-            EntityUtils.consumeQuietly(response.getEntity());
-        }
-
-        return builder.build();
+    @Override
+    protected APIClientResponse.Builder<APILocationResponse> newResponseBuilder() {
+        return APIClientResponse.newLocationResponseBuilder();
     }
 }
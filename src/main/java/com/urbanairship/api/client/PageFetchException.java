@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a PageIterator when a page cannot be fetched because of a
+ * transport error. The IOException is the cause.
+ */
+public class PageFetchException extends RuntimeException {
+
+    public PageFetchException(IOException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized IOException getCause() {
+        return (IOException) super.getCause();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Iterates over every item of a paged listing, following next_page links
+ * as it goes. Pages are fetched lazily; with a prefetch depth above zero a
+ * background thread fetches up to that many pages ahead of the caller, so
+ * the next page is usually ready by the time the current one is consumed.
+ * <p>
+ * Errors fetching a page are thrown from hasNext or next: an
+ * APIRequestException for non 2xx responses, or a PageFetchException
+ * wrapping the IOException for transport errors. Close the iterator when
+ * abandoning it early to stop the prefetch thread; it is closed
+ * automatically once the last page has been fetched or a fetch fails.
+ * <p>
+ * A PageIterator is not thread safe.
+ *
+ * @param <T> Item type
+ */
+public final class PageIterator<T> implements Iterator<T>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder()
+            .setNameFormat("ua-page-prefetch-%d")
+            .setDaemon(true)
+            .build();
+
+    /*
+    Fetches one page of a listing: the first page when nextPage is absent,
+    otherwise the page at the next_page URL returned with the previous one.
+     */
+    interface PageFetcher<T> {
+        Page<T> fetch(Optional<String> nextPage) throws IOException;
+    }
+
+    static final class Page<T> {
+        private final List<T> items;
+        private final Optional<String> nextPage;
+        private final Throwable error;
+
+        private Page(List<T> items, Optional<String> nextPage, Throwable error) {
+            this.items = items;
+            this.nextPage = nextPage;
+            this.error = error;
+        }
+
+        static <T> Page<T> of(List<T> items, Optional<String> nextPage) {
+            return new Page<T>(items, nextPage, null);
+        }
+
+        static <T> Page<T> failed(Throwable error) {
+            return new Page<T>(ImmutableList.<T>of(), Optional.<String>absent(), error);
+        }
+    }
+
+    private final PageFetcher<T> fetcher;
+    private final int prefetchPages;
+    private final BlockingQueue<Page<T>> prefetched;
+
+    private Iterator<T> current = Iterators.emptyIterator();
+    private Optional<String> nextPage = Optional.absent();
+    private boolean lastPage;
+    private Thread prefetchThread;
+    private volatile boolean closed;
+
+    PageIterator(PageFetcher<T> fetcher, int prefetchPages) {
+        Preconditions.checkArgument(prefetchPages >= 0, "prefetchPages cannot be negative");
+        this.fetcher = fetcher;
+        this.prefetchPages = prefetchPages;
+        this.prefetched = prefetchPages > 0 ? new ArrayBlockingQueue<Page<T>>(prefetchPages) : null;
+    }
+
+    /**
+     * Number of pages fetched ahead of the caller, or zero if pages are
+     * fetched on the calling thread as they are needed.
+     *
+     * @return int
+     */
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (lastPage || closed) {
+                return false;
+            }
+
+            Page<T> page = prefetched == null ? fetch(nextPage) : take();
+            if (page.error != null) {
+                close();
+                if (page.error instanceof RuntimeException) {
+                    throw (RuntimeException) page.error;
+                }
+                if (page.error instanceof Error) {
+                    throw (Error) page.error;
+                }
+                throw new PageFetchException((IOException) page.error);
+            }
+
+            current = page.items.iterator();
+            nextPage = page.nextPage;
+            lastPage = !nextPage.isPresent();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Listings are read only");
+    }
+
+    /**
+     * Stops fetching pages. Items already returned are unaffected; hasNext
+     * returns false from now on.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (prefetchThread != null) {
+            prefetchThread.interrupt();
+        }
+    }
+
+    private Page<T> fetch(Optional<String> page) {
+        try {
+            return fetcher.fetch(page);
+        } catch (IOException e) {
+            return Page.failed(e);
+        } catch (RuntimeException e) {
+            return Page.failed(e);
+        } catch (Error e) {
+            return Page.failed(e);
+        }
+    }
+
+    private Page<T> take() {
+        if (prefetchThread == null) {
+            prefetchThread = THREAD_FACTORY.newThread(new Prefetcher());
+            prefetchThread.start();
+        }
+
+        try {
+            return prefetched.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            return Page.failed(new PageFetchException(new InterruptedIOException("Interrupted waiting for page")));
+        }
+    }
+
+    /*
+    Fetches pages in order until the last one, blocking while prefetchPages
+    pages are waiting to be consumed.
+     */
+    private final class Prefetcher implements Runnable {
+        @Override
+        public void run() {
+            Optional<String> page = Optional.absent();
+            try {
+                while (!closed) {
+                    Page<T> fetched = fetch(page);
+                    prefetched.put(fetched);
+                    if (fetched.error != null || !fetched.nextPage.isPresent()) {
+                        return;
+                    }
+                    page = fetched.nextPage;
+                }
+            } catch (InterruptedException e) {
+                logger.debug("Page prefetch stopped");
+            }
+        }
+    }
+}
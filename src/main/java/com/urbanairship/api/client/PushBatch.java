@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.urbanairship.api.common.model.APIModelObject;
+import com.urbanairship.api.push.model.PushPayload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/*
+An array of push payloads sent in one request. Each payload is serialized
+once, when it is added, so a batch can be capped by its size in bytes
+without serializing it twice, and retries resend the same bytes.
+ */
+final class PushBatch extends APIModelObject {
+
+    private final ImmutableList<byte[]> payloads;
+    private final long byteCount;
+
+    private PushBatch(ImmutableList<byte[]> payloads, long byteCount) {
+        this.payloads = payloads;
+        this.byteCount = byteCount;
+    }
+
+    static PushBatch of(List<PushPayload> payloads) throws IOException {
+        Builder builder = new Builder();
+        for (PushPayload payload : payloads) {
+            builder.add(serialize(payload));
+        }
+        return builder.build();
+    }
+
+    static byte[] serialize(PushPayload payload) throws IOException {
+        Preconditions.checkNotNull(payload, "Payload cannot be null");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+        payload.writeJSON(buffer);
+        return buffer.toByteArray();
+    }
+
+    int size() {
+        return payloads.size();
+    }
+
+    /* Length of the JSON array in bytes */
+    long getByteCount() {
+        return byteCount;
+    }
+
+    @Override
+    public String toJSON() {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) byteCount);
+            writeJSON(buffer);
+            return new String(buffer.toByteArray(), Charsets.UTF_8);
+        } catch (IOException e) {
+            return toJSON(e);
+        }
+    }
+
+    @Override
+    public void writeJSON(OutputStream out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < payloads.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(payloads.get(i));
+        }
+        out.write(']');
+        out.flush();
+    }
+
+    @Override
+    public String toString() {
+        return "PushBatch{" +
+                "payloads=" + payloads.size() +
+                ", byteCount=" + byteCount +
+                '}';
+    }
+
+    static final class Builder {
+
+        private final ImmutableList.Builder<byte[]> payloads = ImmutableList.builder();
+        private int size = 0;
+        // The brackets
+        private long byteCount = 2;
+
+        int size() {
+            return size;
+        }
+
+        /* Length of the array once a payload of this many bytes is added */
+        long byteCountWith(int payloadBytes) {
+            return byteCount + payloadBytes + (size > 0 ? 1 : 0);
+        }
+
+        Builder add(byte[] payload) {
+            byteCount = byteCountWith(payload.length);
+            payloads.add(payload);
+            size++;
+            return this;
+        }
+
+        PushBatch build() {
+            Preconditions.checkState(size > 0, "A push batch needs at least one payload");
+            return new PushBatch(payloads.build(), byteCount);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Preconditions;
+import com.urbanairship.api.push.model.PushPayload;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suppresses pushes identical to one already sent within a time window,
+ * for callers fed by retries or at least once queues that may hand them
+ * the same push more than once.
+ * <p>
+ * Pushes are compared by their PushPayloadHasher hash. shouldSend records
+ * a push the first time it is seen and returns false for the same push
+ * until windowMillis have passed; if the send then fails, forget lets the
+ * push through again.
+ * <p>
+ * At most maxEntries hashes are remembered. They are kept in an open
+ * addressing table of primitive longs, with no per entry objects, and in
+ * a ring in the order they were added, so expired hashes are dropped
+ * oldest first as new ones arrive. When the ring is full the oldest hash
+ * is dropped even if its window has not passed, so a duplicate can get
+ * through under more distinct pushes than maxEntries per window.
+ * <p>
+ * <pre>
+ * if (deduplicator.shouldSend(payload)) {
+ *     try {
+ *         client.push(payload);
+ *     } catch (IOException e) {
+ *         deduplicator.forget(payload);
+ *         throw e;
+ *     }
+ * }
+ * </pre>
+ * Thread safe.
+ */
+public final class PushDeduplicator {
+
+    private static final long EMPTY = 0L;
+    // Stands in for a hash of zero, which marks an empty slot
+    private static final long ZERO_HASH = 0x5851F42D4C957F2DL;
+
+    private final long windowMillis;
+    private final long windowNanos;
+    private final int maxEntries;
+
+    private final long[] keys;
+    private final long[] addedAt;
+    private final int mask;
+    private int size;
+
+    private final long[] ringKeys;
+    private final long[] ringTimes;
+    private int ringHead;
+    private int ringCount;
+
+    private long suppressedCount;
+
+    private PushDeduplicator(long windowMillis, int maxEntries) {
+        this.windowMillis = windowMillis;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxEntries = maxEntries;
+
+        // At most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(maxEntries, 2) - 1) << 2;
+        this.keys = new long[capacity];
+        this.addedAt = new long[capacity];
+        this.mask = capacity - 1;
+        this.ringKeys = new long[maxEntries];
+        this.ringTimes = new long[maxEntries];
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Number of pushes currently remembered, including any whose window
+     * has passed but that have not been dropped yet.
+     *
+     * @return int
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Number of times shouldSend has returned false.
+     *
+     * @return long
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    /**
+     * Records the push and returns true, unless the same push was recorded
+     * within the window, in which case it returns false.
+     *
+     * @param payload PushPayload
+     * @return boolean
+     */
+    public boolean shouldSend(PushPayload payload) {
+        return shouldSend(PushPayloadHasher.hash(payload));
+    }
+
+    /**
+     * shouldSend for a hash computed by the caller, such as one kept with
+     * a queued push.
+     *
+     * @param hash Hash from PushPayloadHasher
+     * @return boolean
+     */
+    public synchronized boolean shouldSend(long hash) {
+        long key = key(hash);
+        long now = System.nanoTime();
+        expire(now);
+
+        int slot = find(key);
+        if (keys[slot] == key) {
+            suppressedCount++;
+            return false;
+        }
+
+        if (ringCount == maxEntries) {
+            dropOldest();
+            slot = find(key);
+        }
+        keys[slot] = key;
+        addedAt[slot] = now;
+        size++;
+
+        int tail = (ringHead + ringCount) % maxEntries;
+        ringKeys[tail] = key;
+        ringTimes[tail] = now;
+        ringCount++;
+        return true;
+    }
+
+    /**
+     * Forget a push, so the next shouldSend for it returns true.
+     *
+     * @param payload PushPayload
+     */
+    public void forget(PushPayload payload) {
+        forget(PushPayloadHasher.hash(payload));
+    }
+
+    public synchronized void forget(long hash) {
+        long key = key(hash);
+        int slot = find(key);
+        if (keys[slot] == key) {
+            removeAt(slot);
+        }
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = EMPTY;
+        }
+        size = 0;
+        ringHead = 0;
+        ringCount = 0;
+    }
+
+    private static long key(long hash) {
+        return hash == EMPTY ? ZERO_HASH : hash;
+    }
+
+    private void expire(long now) {
+        while (ringCount > 0 && now - ringTimes[ringHead] >= windowNanos) {
+            dropOldest();
+        }
+    }
+
+    /*
+    Removes the oldest ring entry, and its hash from the table unless the
+    hash was forgotten and added again since.
+     */
+    private void dropOldest() {
+        long key = ringKeys[ringHead];
+        long time = ringTimes[ringHead];
+        ringHead = (ringHead + 1) % maxEntries;
+        ringCount--;
+
+        int slot = find(key);
+        if (keys[slot] == key && addedAt[slot] == time) {
+            removeAt(slot);
+        }
+    }
+
+    /* The slot holding the key, or the empty slot where it would go */
+    private int find(long key) {
+        int slot = index(key);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int index(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    /*
+    Linear probing removal: entries after the slot that were displaced past
+    it are shifted back, so no probe sequence is broken by the hole.
+     */
+    private void removeAt(int slot) {
+        int hole = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            long key = keys[i];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = index(key);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = key;
+                addedAt[hole] = addedAt[i];
+                hole = i;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    public static class Builder {
+
+        private long windowMillis = TimeUnit.MINUTES.toMillis(10);
+        private int maxEntries = 100000;
+
+        private Builder() {
+        }
+
+        /**
+         * How long a push is remembered after it is first sent. Defaults
+         * to 10 minutes.
+         *
+         * @param value long
+         * @return Builder
+         */
+        public Builder setWindowMillis(long value) {
+            this.windowMillis = value;
+            return this;
+        }
+
+        /**
+         * Most pushes remembered at once. Each takes 48 to 80 bytes.
+         * Defaults to 100000.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setMaxEntries(int value) {
+            this.maxEntries = value;
+            return this;
+        }
+
+        public PushDeduplicator build() {
+            Preconditions.checkArgument(windowMillis > 0, "windowMillis must be positive");
+            Preconditions.checkArgument(maxEntries > 0, "maxEntries must be positive");
+            Preconditions.checkArgument(maxEntries <= 1 << 28, "maxEntries cannot be more than 2^28");
+
+            return new PushDeduplicator(windowMillis, maxEntries);
+        }
+    }
+}
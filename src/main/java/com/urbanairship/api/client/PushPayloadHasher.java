@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.CompoundSelector;
+import com.urbanairship.api.push.model.audience.Selector;
+import com.urbanairship.api.push.model.audience.SelectorType;
+import com.urbanairship.api.push.model.audience.ValueSelector;
+import com.urbanairship.api.push.parse.PushObjectMapper;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Canonical 64 bit hash of a push payload, for recognizing the same push
+ * sent twice, such as by a PushDeduplicator.
+ * <p>
+ * Payloads that send the same push hash the same even when they were built
+ * differently: the operands of an AND or OR may be in any order, as may the
+ * device types, the fields of JSON objects, and the attributes of a
+ * selector. Everything else counts, including the order of JSON arrays
+ * within notifications, messages and options, where it can be significant.
+ * <p>
+ * The audience is walked directly, so hashing a push to a long list of
+ * devices costs about as much as reading the identifiers once and nothing
+ * is serialized. Notifications, including their device type overrides,
+ * rich push messages, options, and selectors other than values and
+ * compounds, such as location, are hashed from their JSON tree.
+ * <p>
+ * The hash is stable across runs and JVMs, but it is not cryptographic;
+ * it should not be used where payloads could be crafted to collide.
+ */
+public final class PushPayloadHasher {
+
+    private static final ObjectMapper mapper = PushObjectMapper.getInstance();
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    // Distinguish what is hashed, so for example "1" and 1 differ
+    private static final long ABSENT = 0x1L;
+    private static final long OBJECT = 0x2L;
+    private static final long ARRAY = 0x3L;
+    private static final long TEXT = 0x4L;
+    private static final long NUMBER = 0x5L;
+    private static final long BOOLEAN = 0x6L;
+    private static final long NULL = 0x7L;
+    private static final long ALL_DEVICE_TYPES = 0x8L;
+
+    private PushPayloadHasher() {
+    }
+
+    /**
+     * Hash a push payload.
+     *
+     * @param payload PushPayload
+     * @return long
+     */
+    public static long hash(PushPayload payload) {
+        Preconditions.checkNotNull(payload, "Payload cannot be null");
+        long h = SEED;
+        h = ordered(h, hash(payload.getAudience()));
+        h = ordered(h, hash(payload.getDeviceTypes()));
+        h = ordered(h, tree(payload.getNotification()));
+        h = ordered(h, tree(payload.getMessage()));
+        h = ordered(h, tree(payload.getPushOptions()));
+        return mix(h);
+    }
+
+    /**
+     * Hash an audience selector on its own.
+     *
+     * @param selector Selector
+     * @return long
+     */
+    public static long hash(Selector selector) {
+        Preconditions.checkNotNull(selector, "Selector cannot be null");
+        SelectorType type = selector.getType();
+        long h = string(type.getIdentifier());
+
+        if (selector instanceof ValueSelector) {
+            ValueSelector value = (ValueSelector) selector;
+            h = ordered(h, string(value.getValue()));
+            if (value.getAttributes().isPresent()) {
+                long attributes = 0;
+                for (Map.Entry<String, String> attribute : value.getAttributes().get().entrySet()) {
+                    attributes += mix(ordered(string(attribute.getKey()), string(attribute.getValue())));
+                }
+                h = ordered(h, attributes);
+            }
+            return mix(h);
+        }
+
+        if (selector instanceof CompoundSelector) {
+            Iterable<Selector> children = ((CompoundSelector) selector).getChildren();
+            if (type == SelectorType.NOT) {
+                for (Selector child : children) {
+                    h = ordered(h, hash(child));
+                }
+                return mix(h);
+            }
+            long operands = 0;
+            long count = 0;
+            for (Selector child : children) {
+                operands += mix(hash(child));
+                count++;
+            }
+            return mix(ordered(ordered(h, count), operands));
+        }
+
+        return mix(ordered(h, hash(toTree(selector))));
+    }
+
+    private static long hash(DeviceTypeData deviceTypes) {
+        if (deviceTypes.isAll() || !deviceTypes.getDeviceTypes().isPresent()) {
+            return ALL_DEVICE_TYPES;
+        }
+        long h = 0;
+        for (DeviceType deviceType : deviceTypes.getDeviceTypes().get()) {
+            h += mix(string(deviceType.getIdentifier()));
+        }
+        return mix(h);
+    }
+
+    private static long tree(Optional<?> value) {
+        if (!value.isPresent()) {
+            return ABSENT;
+        }
+        return hash(toTree(value.get()));
+    }
+
+    /*
+    Read back from the serialized JSON rather than valueToTree, which leaves
+    values with custom serializers as POJO nodes that hash their toString.
+     */
+    private static JsonNode toTree(Object value) {
+        try {
+            return mapper.readTree(mapper.writeValueAsBytes(value));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private static long hash(JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return NULL;
+        }
+        if (node.isObject()) {
+            long fields = 0;
+            Iterator<Map.Entry<String, JsonNode>> iterator = node.getFields();
+            while (iterator.hasNext()) {
+                Map.Entry<String, JsonNode> field = iterator.next();
+                fields += mix(ordered(string(field.getKey()), hash(field.getValue())));
+            }
+            return mix(ordered(OBJECT, fields));
+        }
+        if (node.isArray()) {
+            long h = ARRAY;
+            for (JsonNode element : node) {
+                h = ordered(h, hash(element));
+            }
+            return mix(h);
+        }
+        if (node.isBoolean()) {
+            return mix(ordered(BOOLEAN, node.getBooleanValue() ? 1 : 0));
+        }
+        if (node.isNumber()) {
+            return mix(ordered(NUMBER, string(node.asText())));
+        }
+        return mix(ordered(TEXT, string(node.asText())));
+    }
+
+    /* FNV-1a over the UTF-16 code units */
+    private static long string(String value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long ordered(long h, long value) {
+        return mix(h) * 31 + value;
+    }
+
+    /* The MurmurHash3 finalizer */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85EC3L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.BasicCompoundSelector;
+import com.urbanairship.api.push.model.audience.CompoundSelector;
+import com.urbanairship.api.push.model.audience.Selector;
+import com.urbanairship.api.push.model.audience.SelectorType;
+import com.urbanairship.api.push.model.audience.ValueSelector;
+
+import java.util.List;
+
+/**
+ * Splits pushes to long lists of devices into several smaller pushes, and
+ * sends them in parallel.
+ * <p>
+ * An audience is split when it is an OR of device identifiers, such as one
+ * built with Selectors.deviceTokens, iosChannel or apids, or an AND with
+ * such an OR among its operands, and the OR has more than maxAudienceSize
+ * identifiers or more than maxAudienceBytes of them. The identifiers are
+ * partitioned in order, and each part gets a copy of the payload with the
+ * same notification, message, device types and options; the other operands
+ * of an AND are repeated in every part. ORs of tags, aliases or segments
+ * are never split, since a device matching more than one part would be sent
+ * the push more than once.
+ * <p>
+ * <pre>
+ * PushSplitter splitter = PushSplitter.newBuilder()
+ *         .setClient(asyncClient)
+ *         .setMaxAudienceSize(1000)
+ *         .build();
+ * BatchPushResult result = splitter.push(payload);
+ * </pre>
+ */
+public final class PushSplitter {
+
+    // Braces, quotes, colon and comma around each identifier in the JSON
+    private static final int VALUE_OVERHEAD_BYTES = 8;
+
+    private final Optional<AsyncAPIClient> client;
+    private final int maxAudienceSize;
+    private final long maxAudienceBytes;
+
+    private PushSplitter(Optional<AsyncAPIClient> client, int maxAudienceSize, long maxAudienceBytes) {
+        this.client = client;
+        this.maxAudienceSize = maxAudienceSize;
+        this.maxAudienceBytes = maxAudienceBytes;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public Optional<AsyncAPIClient> getClient() {
+        return client;
+    }
+
+    public int getMaxAudienceSize() {
+        return maxAudienceSize;
+    }
+
+    public long getMaxAudienceBytes() {
+        return maxAudienceBytes;
+    }
+
+    /**
+     * Split a payload whose audience is too large. Payloads that cannot or
+     * need not be split are returned alone.
+     *
+     * @param payload PushPayload
+     * @return Payloads that together reach the original audience
+     */
+    public ImmutableList<PushPayload> split(PushPayload payload) {
+        Preconditions.checkNotNull(payload, "Payload cannot be null");
+        Selector audience = payload.getAudience();
+
+        if (isDeviceList(audience)) {
+            if (!isTooLarge((CompoundSelector) audience)) {
+                return ImmutableList.of(payload);
+            }
+            ImmutableList.Builder<PushPayload> parts = ImmutableList.builder();
+            for (Selector part : partition((CompoundSelector) audience)) {
+                parts.add(withAudience(payload, part));
+            }
+            return parts.build();
+        }
+
+        if (audience.getType() == SelectorType.AND) {
+            List<Selector> operands = ImmutableList.copyOf(((CompoundSelector) audience).getChildren());
+            int largest = -1;
+            for (int i = 0; i < operands.size(); i++) {
+                Selector operand = operands.get(i);
+                if (isDeviceList(operand) && (largest < 0 || size(operand) > size(operands.get(largest)))) {
+                    largest = i;
+                }
+            }
+            if (largest < 0 || !isTooLarge((CompoundSelector) operands.get(largest))) {
+                return ImmutableList.of(payload);
+            }
+
+            ImmutableList.Builder<PushPayload> parts = ImmutableList.builder();
+            for (Selector part : partition((CompoundSelector) operands.get(largest))) {
+                BasicCompoundSelector.Builder and = BasicCompoundSelector.newBuilder().setType(SelectorType.AND);
+                for (int i = 0; i < operands.size(); i++) {
+                    and.addSelector(i == largest ? part : operands.get(i));
+                }
+                parts.add(withAudience(payload, and.build()));
+            }
+            return parts.build();
+        }
+
+        return ImmutableList.of(payload);
+    }
+
+    /**
+     * Split the payload if its audience is too large, and send the parts in
+     * parallel through the AsyncAPIClient, waiting for all of them. The
+     * result has one entry per part, in the order split returns them.
+     *
+     * @param payload PushPayload
+     * @return BatchPushResult
+     */
+    public BatchPushResult push(PushPayload payload) {
+        Preconditions.checkState(client.isPresent(), "An AsyncAPIClient is needed to push");
+        // Parts are already as large as a request should be, so each is sent on its own
+        return BatchPushSender.newBuilder()
+                .setClient(client.get())
+                .setMaxBatchSize(1)
+                .build()
+                .send(split(payload));
+    }
+
+    private static boolean isDeviceList(Selector selector) {
+        if (selector.getType() != SelectorType.OR) {
+            return false;
+        }
+        for (Selector child : ((CompoundSelector) selector).getChildren()) {
+            if (!(child instanceof ValueSelector) || !child.getType().isDeviceId()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int size(Selector deviceList) {
+        return Iterables.size(((CompoundSelector) deviceList).getChildren());
+    }
+
+    private static long byteCount(Selector value) {
+        return value.getType().getIdentifier().length() + ((ValueSelector) value).getValue().length() +
+                VALUE_OVERHEAD_BYTES;
+    }
+
+    private boolean isTooLarge(CompoundSelector deviceList) {
+        int count = 0;
+        long bytes = 0;
+        for (Selector child : deviceList.getChildren()) {
+            count++;
+            bytes += byteCount(child);
+            if (count > maxAudienceSize || bytes > maxAudienceBytes) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Selector> partition(CompoundSelector deviceList) {
+        ImmutableList.Builder<Selector> parts = ImmutableList.builder();
+        BasicCompoundSelector.Builder part = null;
+        int count = 0;
+        long bytes = 0;
+
+        for (Selector child : deviceList.getChildren()) {
+            long childBytes = byteCount(child);
+            if (part != null && (count == maxAudienceSize || bytes + childBytes > maxAudienceBytes)) {
+                parts.add(part.build());
+                part = null;
+            }
+            if (part == null) {
+                part = BasicCompoundSelector.newBuilder().setType(SelectorType.OR);
+                count = 0;
+                bytes = 0;
+            }
+            part.addSelector(child);
+            count++;
+            bytes += childBytes;
+        }
+        if (part != null) {
+            parts.add(part.build());
+        }
+        return parts.build();
+    }
+
+    private static PushPayload withAudience(PushPayload payload, Selector audience) {
+        PushPayload.Builder builder = PushPayload.newBuilder()
+                .setAudience(audience)
+                .setDeviceTypes(payload.getDeviceTypes());
+        if (payload.getNotification().isPresent()) {
+            builder.setNotification(payload.getNotification().get());
+        }
+        if (payload.getMessage().isPresent()) {
+            builder.setMessage(payload.getMessage().get());
+        }
+        if (payload.getPushOptions().isPresent()) {
+            builder.setPushOptions(payload.getPushOptions().get());
+        }
+        return builder.build();
+    }
+
+    public static class Builder {
+
+        private AsyncAPIClient client = null;
+        private int maxAudienceSize = 1000;
+        private long maxAudienceBytes = 256 * 1024;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the AsyncAPIClient parts are sent through. Its maxInFlight
+         * bounds how many are sent at once. Only needed to push.
+         *
+         * @param value AsyncAPIClient
+         * @return Builder
+         */
+        public Builder setClient(AsyncAPIClient value) {
+            this.client = value;
+            return this;
+        }
+
+        /**
+         * Maximum number of device identifiers in one push. Defaults to 1000.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setMaxAudienceSize(int value) {
+            this.maxAudienceSize = value;
+            return this;
+        }
+
+        /**
+         * Maximum size in bytes of the device identifiers in one push, as
+         * JSON. Defaults to 256 KiB.
+         *
+         * @param value long
+         * @return Builder
+         */
+        public Builder setMaxAudienceBytes(long value) {
+            this.maxAudienceBytes = value;
+            return this;
+        }
+
+        public PushSplitter build() {
+            Preconditions.checkArgument(maxAudienceSize > 0, "maxAudienceSize must be positive");
+            Preconditions.checkArgument(maxAudienceBytes > 0, "maxAudienceBytes must be positive");
+
+            return new PushSplitter(Optional.fromNullable(client), maxAudienceSize, maxAudienceBytes);
+        }
+    }
+}
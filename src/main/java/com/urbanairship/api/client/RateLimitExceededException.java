@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+/**
+ * Thrown when the client side rate limiter has no permit available for a
+ * request in time. The request was not sent.
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private final EndpointGroup endpointGroup;
+    private final long waitMillis;
+
+    public RateLimitExceededException(EndpointGroup endpointGroup, long waitMillis) {
+        super(String.format("Rate limit exceeded for %s endpoints, next permit in %d ms", endpointGroup, waitMillis));
+        this.endpointGroup = endpointGroup;
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * The endpoint group whose limit was exceeded
+     *
+     * @return EndpointGroup
+     */
+    public EndpointGroup getEndpointGroup() {
+        return endpointGroup;
+    }
+
+    /**
+     * How long until a permit was expected to become available, at the time
+     * the exception was thrown.
+     *
+     * @return Wait in milliseconds
+     */
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+}
@@ -0,0 +1,666 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.urbanairship.api.common.model.APIModelObject;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.tag.model.AddRemoveDeviceFromTagPayload;
+import com.urbanairship.api.tag.model.BatchModificationPayload;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable queue of pushes and tag operations, for sends that must survive
+ * an API outage or a restart of the service making them.
+ * <p>
+ * Each request is serialized and appended to a log on disk, and a single
+ * background thread sends the requests through the APIClient in the order
+ * they were spooled, with the client's retry policy. When a request still
+ * fails with a transport error, a 5xx or a 429, or is refused by the
+ * client's circuit breaker or rate limiter, the thread waits
+ * recoveryIntervalMillis and sends the same request again, so nothing
+ * behind it is sent until the API recovers. Other 4xx responses mean the
+ * request will never succeed; it is logged and dropped.
+ * <p>
+ * The log is a series of segment files, each memory mapped at
+ * segmentBytes, so spooled requests take no heap however long the outage.
+ * A new segment is started when a request does not fit in the current
+ * one, and a segment is deleted once every request in it has been sent.
+ * The position of the next request to send is kept in a cursor file.
+ * <p>
+ * Opening a spool on a directory that already holds segments resumes from
+ * the cursor. Records are checksummed, and a record torn by a crash is
+ * discarded along with anything after it in its segment. Delivery is at
+ * least once: a request sent just before a crash, before the cursor moved
+ * past it, is sent again.
+ * <p>
+ * How often appends and the cursor are forced to disk is set by the
+ * SyncPolicy. Without a sync, spooled requests survive the process
+ * crashing but not the machine.
+ * <p>
+ * <pre>
+ * RequestSpool spool = RequestSpool.newBuilder()
+ *         .setClient(client)
+ *         .setDirectory(new File("/var/spool/ua"))
+ *         .build();
+ * spool.start();
+ * spool.push(payload);
+ * </pre>
+ */
+public final class RequestSpool implements Closeable {
+
+    /**
+     * When spooled requests are forced from memory to disk.
+     */
+    public enum SyncPolicy {
+        /** Before each append returns, and after each request is sent */
+        EVERY_RECORD,
+        /** At most syncIntervalMillis after an append or a send */
+        INTERVAL,
+        /** Only on close, otherwise when the operating system writes them */
+        NONE
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
+
+    static final String CURSOR_FILE = "spool.cursor";
+
+    private final APIClient client;
+    private final File directory;
+    private final int segmentBytes;
+    private final SyncPolicy syncPolicy;
+    private final long syncIntervalMillis;
+    private final long recoveryIntervalMillis;
+
+    private final Object lock = new Object();
+    private final Deque<SpoolSegment> segments = new ArrayDeque<SpoolSegment>();
+    private final ByteBuffer cursor = ByteBuffer.allocate(16);
+    private RandomAccessFile cursorFile;
+    private int readPosition;
+    private long pendingCount;
+    private long deliveredCount;
+    private long droppedCount;
+    private boolean dirty;
+    private long lastSyncMillis;
+    private boolean started;
+    private boolean closed;
+    private volatile Thread sender;
+
+    private RequestSpool(APIClient client, File directory, int segmentBytes, SyncPolicy syncPolicy,
+                         long syncIntervalMillis, long recoveryIntervalMillis) {
+        this.client = client;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.recoveryIntervalMillis = recoveryIntervalMillis;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    public long getRecoveryIntervalMillis() {
+        return recoveryIntervalMillis;
+    }
+
+    /**
+     * Number of spooled requests not yet sent.
+     *
+     * @return long
+     */
+    public long getPendingCount() {
+        synchronized (lock) {
+            return pendingCount;
+        }
+    }
+
+    /**
+     * Number of requests sent successfully since the spool was started.
+     *
+     * @return long
+     */
+    public long getDeliveredCount() {
+        synchronized (lock) {
+            return deliveredCount;
+        }
+    }
+
+    /**
+     * Number of requests dropped since the spool was started because the
+     * API rejected them with a 4xx status other than 429.
+     *
+     * @return long
+     */
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return droppedCount;
+        }
+    }
+
+    /**
+     * Number of segment files on disk.
+     *
+     * @return int
+     */
+    public int getSegmentCount() {
+        synchronized (lock) {
+            return segments.size();
+        }
+    }
+
+    /**
+     * Opens the segments and cursor in the directory, creating it if
+     * needed, and starts sending whatever they hold.
+     *
+     * @throws IOException if the directory or its files cannot be opened
+     */
+    public void start() throws IOException {
+        synchronized (lock) {
+            Preconditions.checkState(!started, "Spool has already been started");
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create spool directory " + directory);
+            }
+            recover();
+            started = true;
+        }
+
+        sender = new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("ua-request-spool-%d")
+                .build()
+                .newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        send();
+                    }
+                });
+        sender.start();
+    }
+
+    /* Spooled requests */
+
+    public void push(PushPayload payload) throws IOException {
+        Preconditions.checkNotNull(payload, "Payload required when executing a push operation");
+        append(APIClient.API_PUSH_PATH, PushBatch.serialize(payload));
+    }
+
+    public void addRemoveDevicesFromTag(String tag, AddRemoveDeviceFromTagPayload payload) throws IOException {
+        Preconditions.checkNotNull(tag, "Tag is required when adding and/or removing devices from a tag");
+        Preconditions.checkNotNull(payload, "Payload is required when adding and/or removing devices from a tag");
+        append(APIClient.API_TAGS_PATH + tag, serialize(payload));
+    }
+
+    public void batchModificationOfTags(BatchModificationPayload payload) throws IOException {
+        Preconditions.checkNotNull(payload, "Payload is required when performing batch modification of tags");
+        append(APIClient.API_TAGS_BATCH_PATH, serialize(payload));
+    }
+
+    private static byte[] serialize(APIModelObject payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+        payload.writeJSON(buffer);
+        return buffer.toByteArray();
+    }
+
+    private void append(String path, byte[] body) throws IOException {
+        byte[] pathBytes = path.getBytes(Charsets.UTF_8);
+        Preconditions.checkArgument(pathBytes.length <= Short.MAX_VALUE, "Request path is too long");
+        Preconditions.checkArgument(SpoolSegment.recordBytes(pathBytes, body) <= segmentBytes,
+                "Request of %s bytes does not fit in a segment of %s bytes", body.length, segmentBytes);
+
+        synchronized (lock) {
+            Preconditions.checkState(started && !closed, "Spool is not running");
+            SpoolSegment segment = segments.getLast();
+            if (!segment.append(pathBytes, body)) {
+                segment = SpoolSegment.open(directory, segment.getSequence() + 1, segmentBytes);
+                segments.addLast(segment);
+                segment.append(pathBytes, body);
+            }
+            pendingCount++;
+            dirty = true;
+            if (syncPolicy != SyncPolicy.NONE) {
+                syncIfDue();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every spooled request has been sent or dropped.
+     *
+     * @param timeout Longest time to wait
+     * @param unit TimeUnit of the timeout
+     * @return true if the spool is empty, false if the time ran out
+     * @throws InterruptedException
+     */
+    public boolean awaitEmpty(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (pendingCount > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops sending and forces the segments and cursor to disk. Requests
+     * not yet sent stay in the directory and are sent once a spool is
+     * started on it again. A request being sent when close is called is
+     * allowed to finish. The APIClient is left open.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+
+        if (sender != null) {
+            sender.interrupt();
+            try {
+                sender.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (lock) {
+            if (!started) {
+                return;
+            }
+            try {
+                sync();
+                cursorFile.close();
+            } catch (IOException e) {
+                logger.error("Error closing request spool", e);
+            }
+            if (pendingCount > 0) {
+                logger.info(String.format("Closed request spool with %d requests unsent", pendingCount));
+            }
+        }
+    }
+
+    /*
+    Opens every segment in the directory, oldest first, and positions the
+    reader at the cursor. Segments older than the cursor were sent before
+    they could be deleted. A missing or damaged cursor, or one pointing at a
+    segment that no longer exists, starts again from the oldest segment.
+     */
+    private void recover() throws IOException {
+        long[] sequences = segmentSequences();
+        cursorFile = new RandomAccessFile(new File(directory, CURSOR_FILE), "rw");
+
+        long cursorSequence = -1;
+        int cursorPosition = 0;
+        if (cursorFile.length() >= cursor.capacity()) {
+            cursorFile.readFully(cursor.array());
+            if (cursor.getInt(12) == checksum(cursor.array(), 12)) {
+                cursorSequence = cursor.getLong(0);
+                cursorPosition = cursor.getInt(8);
+            } else {
+                logger.warn("Request spool cursor is damaged, sending from the oldest segment");
+            }
+        }
+        boolean cursorFound = Arrays.binarySearch(sequences, cursorSequence) >= 0;
+        if (!cursorFound) {
+            cursorPosition = 0;
+        }
+
+        for (long sequence : sequences) {
+            if (cursorFound && sequence < cursorSequence) {
+                SpoolSegment.fileFor(directory, sequence).delete();
+                continue;
+            }
+            segments.addLast(SpoolSegment.open(directory, sequence, segmentBytes));
+        }
+        if (segments.isEmpty()) {
+            long sequence = sequences.length > 0 ? sequences[sequences.length - 1] + 1 : 0;
+            segments.addLast(SpoolSegment.open(directory, sequence, segmentBytes));
+        }
+
+        readPosition = Math.min(cursorPosition, segments.getFirst().getWritePosition());
+        boolean first = true;
+        for (SpoolSegment segment : segments) {
+            pendingCount += segment.countFrom(first ? readPosition : 0);
+            first = false;
+        }
+        writeCursor();
+        lastSyncMillis = System.currentTimeMillis();
+
+        if (pendingCount > 0) {
+            logger.info(String.format("Request spool has %d requests to send in %d segments",
+                    pendingCount, segments.size()));
+        }
+    }
+
+    private long[] segmentSequences() {
+        File[] files = directory.listFiles();
+        long[] sequences = new long[files == null ? 0 : files.length];
+        int count = 0;
+        for (int i = 0; i < sequences.length; i++) {
+            long sequence = SpoolSegment.sequenceOf(files[i]);
+            if (sequence >= 0) {
+                sequences[count++] = sequence;
+            }
+        }
+        sequences = Arrays.copyOf(sequences, count);
+        Arrays.sort(sequences);
+        return sequences;
+    }
+
+    /* Sender thread */
+
+    /*
+    Errors reading or writing the spool, or unexpected ones from the client,
+    are logged and the same record tried again after recoveryIntervalMillis,
+    so the thread only stops when the spool is closed.
+     */
+    private void send() {
+        try {
+            while (true) {
+                try {
+                    SpoolSegment.Record record = next();
+                    if (record == null) {
+                        return;
+                    }
+                    boolean delivered = deliver(record);
+                    synchronized (lock) {
+                        if (delivered) {
+                            deliveredCount++;
+                        } else {
+                            droppedCount++;
+                        }
+                        consume(record);
+                    }
+                } catch (IOException e) {
+                    logger.error(String.format("Request spool error, sending again in %d ms",
+                            recoveryIntervalMillis), e);
+                    pause();
+                } catch (RuntimeException e) {
+                    logger.error(String.format("Request spool error, sending again in %d ms",
+                            recoveryIntervalMillis), e);
+                    pause();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed while waiting to send again
+        }
+    }
+
+    /*
+    Waits for the next record, moving on to the following segment when the
+    reader has reached the end of one the writer has left. Returns null once
+    the spool is closed.
+     */
+    private SpoolSegment.Record next() throws InterruptedException, IOException {
+        synchronized (lock) {
+            while (!closed) {
+                SpoolSegment segment = segments.getFirst();
+                SpoolSegment.Record record = segment.read(readPosition);
+                if (record != null) {
+                    return record;
+                }
+                if (segments.size() > 1) {
+                    segments.removeFirst();
+                    readPosition = 0;
+                    writeCursor();
+                    if (!segment.delete()) {
+                        logger.warn("Could not delete sent request spool segment " + segment.getFile());
+                    }
+                    continue;
+                }
+                if (dirty && syncPolicy == SyncPolicy.INTERVAL) {
+                    syncIfDue();
+                    lock.wait(dirty ? syncIntervalMillis : 0);
+                } else {
+                    lock.wait();
+                }
+            }
+            return null;
+        }
+    }
+
+    private void consume(SpoolSegment.Record record) throws IOException {
+        readPosition = record.getNextPosition();
+        pendingCount--;
+        writeCursor();
+        dirty = true;
+        if (syncPolicy != SyncPolicy.NONE) {
+            syncIfDue();
+        }
+        lock.notifyAll();
+    }
+
+    /*
+    Sends the record until it succeeds or is rejected for good, returning
+    false in the latter case.
+     */
+    private boolean deliver(SpoolSegment.Record record) throws InterruptedException {
+        while (true) {
+            String failure;
+            try {
+                HttpResponse response = client.post(record.getPath(), record.getBody());
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode >= 200 && statusCode < 300) {
+                    return true;
+                }
+                if (statusCode != 429 && statusCode < 500) {
+                    logger.error(String.format("Dropping spooled request to %s, status %d: %s",
+                            record.getPath(), statusCode, body(response)));
+                    return false;
+                }
+                failure = "status " + statusCode;
+            } catch (IOException e) {
+                failure = e.toString();
+            } catch (CircuitOpenException e) {
+                failure = e.getMessage();
+            } catch (RateLimitExceededException e) {
+                failure = e.getMessage();
+            }
+
+            logger.warn(String.format("Spooled request to %s failed with %s, sending again in %d ms",
+                    record.getPath(), failure, recoveryIntervalMillis));
+            pause();
+        }
+    }
+
+    /*
+    Waits recoveryIntervalMillis, throwing InterruptedException once the
+    spool is closed. Requests appended meanwhile are synced when due, as
+    next does while the sender is idle, since during an outage the sender
+    never gets back to next.
+     */
+    private void pause() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + recoveryIntervalMillis;
+        synchronized (lock) {
+            while (!closed) {
+                long now = System.currentTimeMillis();
+                if (now >= deadline) {
+                    return;
+                }
+                long wait = deadline - now;
+                if (dirty && syncPolicy == SyncPolicy.INTERVAL) {
+                    try {
+                        syncIfDue();
+                    } catch (IOException e) {
+                        logger.warn("Error syncing request spool", e);
+                    }
+                    long due = lastSyncMillis + syncIntervalMillis - System.currentTimeMillis();
+                    if (dirty) {
+                        wait = Math.min(wait, due > 0 ? due : syncIntervalMillis);
+                    }
+                }
+                lock.wait(wait);
+            }
+            throw new InterruptedException();
+        }
+    }
+
+    private static String body(HttpResponse response) {
+        try {
+            return response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /* Disk state, called holding the lock */
+
+    private void writeCursor() throws IOException {
+        cursor.putLong(0, segments.getFirst().getSequence());
+        cursor.putInt(8, readPosition);
+        cursor.putInt(12, checksum(cursor.array(), 12));
+        cursorFile.seek(0);
+        cursorFile.write(cursor.array());
+    }
+
+    private void syncIfDue() throws IOException {
+        if (syncPolicy == SyncPolicy.EVERY_RECORD ||
+                System.currentTimeMillis() - lastSyncMillis >= syncIntervalMillis) {
+            sync();
+        }
+    }
+
+    private void sync() throws IOException {
+        for (SpoolSegment segment : segments) {
+            segment.force();
+        }
+        cursorFile.getChannel().force(false);
+        dirty = false;
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    public static class Builder {
+
+        private APIClient client;
+        private File directory;
+        private int segmentBytes = 64 * 1024 * 1024;
+        private SyncPolicy syncPolicy = SyncPolicy.INTERVAL;
+        private long syncIntervalMillis = 1000;
+        private long recoveryIntervalMillis = 5000;
+
+        private Builder() {
+        }
+
+        public Builder setClient(APIClient value) {
+            this.client = value;
+            return this;
+        }
+
+        /**
+         * Directory holding the spool's segments and cursor. It should not
+         * be shared with anything else, including another spool.
+         *
+         * @param value File
+         * @return Builder
+         */
+        public Builder setDirectory(File value) {
+            this.directory = value;
+            return this;
+        }
+
+        /**
+         * Size of each segment file, which also caps the size of a single
+         * request. Defaults to 64 MiB.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setSegmentBytes(int value) {
+            this.segmentBytes = value;
+            return this;
+        }
+
+        /**
+         * When spooled requests are forced to disk. Defaults to INTERVAL.
+         *
+         * @param value SyncPolicy
+         * @return Builder
+         */
+        public Builder setSyncPolicy(SyncPolicy value) {
+            this.syncPolicy = value;
+            return this;
+        }
+
+        /**
+         * Longest time between syncs with the INTERVAL policy. Defaults
+         * to 1000 ms.
+         *
+         * @param value long
+         * @return Builder
+         */
+        public Builder setSyncIntervalMillis(long value) {
+            this.syncIntervalMillis = value;
+            return this;
+        }
+
+        /**
+         * Time to wait before sending a request again after it failed with
+         * a transport error, a 5xx or a 429. Defaults to 5000 ms.
+         *
+         * @param value long
+         * @return Builder
+         */
+        public Builder setRecoveryIntervalMillis(long value) {
+            this.recoveryIntervalMillis = value;
+            return this;
+        }
+
+        public RequestSpool build() {
+            Preconditions.checkNotNull(client, "APIClient needed to build RequestSpool");
+            Preconditions.checkNotNull(directory, "Directory needed to build RequestSpool");
+            Preconditions.checkArgument(segmentBytes >= 1024, "segmentBytes must be at least 1024");
+            Preconditions.checkNotNull(syncPolicy, "syncPolicy cannot be null");
+            Preconditions.checkArgument(syncIntervalMillis > 0, "syncIntervalMillis must be positive");
+            Preconditions.checkArgument(recoveryIntervalMillis > 0, "recoveryIntervalMillis must be positive");
+
+            return new RequestSpool(client, directory, segmentBytes, syncPolicy, syncIntervalMillis,
+                    recoveryIntervalMillis);
+        }
+    }
+}
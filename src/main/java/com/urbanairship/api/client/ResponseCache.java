@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+GET response cache behind APIClient.execute, see ResponseCacheConfig.
+Entries hold the buffered body and headers of a 200 response and are
+replayed to the caller's handler as a new HttpResponse, so handlers parse a
+cached response exactly like a fresh one.
+
+Each endpoint group has a generation that writes bump. A response is only
+stored if its group's generation did not change while it was in flight, so
+a read racing a write cannot put the pre-write data back.
+ */
+final class ResponseCache {
+
+    /* Hop by hop and framing headers that do not apply to a replayed body */
+    private static final ImmutableSet<String> UNCACHED_HEADERS = ImmutableSet.of(
+            "content-length", "content-encoding", "transfer-encoding", "connection", "keep-alive");
+
+    private final ResponseCacheConfig config;
+    private final Cache<String, Entry> cache;
+    private final ImmutableMap<EndpointGroup, AtomicLong> generations;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    ResponseCache(ResponseCacheConfig config) {
+        this.config = config;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(config.getMaxEntries())
+                .removalListener(new RemovalListener<String, Entry>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, Entry> notification) {
+                        if (notification.getCause() == RemovalCause.SIZE) {
+                            evictions.incrementAndGet();
+                        }
+                    }
+                })
+                .build();
+
+        ImmutableMap.Builder<EndpointGroup, AtomicLong> builder = ImmutableMap.builder();
+        for (EndpointGroup group : EndpointGroup.values()) {
+            builder.put(group, new AtomicLong());
+        }
+        this.generations = builder.build();
+    }
+
+    ResponseCacheConfig getConfig() {
+        return config;
+    }
+
+    boolean isCacheable(EndpointGroup group) {
+        return config.getTtlMillis(group) > 0;
+    }
+
+    /*
+    Result of looking a request up: either the handler's result for a fresh
+    entry, or the handler to execute the request with, which stores the
+    response or replays a stale entry when the API answers 304.
+     */
+    static final class Lookup<T> {
+        private final boolean hit;
+        private final T result;
+        private final ResponseHandler<T> handler;
+
+        private Lookup(boolean hit, T result, ResponseHandler<T> handler) {
+            this.hit = hit;
+            this.result = result;
+            this.handler = handler;
+        }
+
+        boolean isHit() {
+            return hit;
+        }
+
+        T getResult() {
+            return result;
+        }
+
+        ResponseHandler<T> getHandler() {
+            return handler;
+        }
+    }
+
+    /*
+    Answers the request from a fresh entry, or adds validators for a stale
+    entry to the request before it is sent.
+     */
+    <T> Lookup<T> lookup(String uri, EndpointGroup group, Request request, ResponseHandler<T> handler)
+            throws IOException {
+        Entry entry = cache.getIfPresent(uri);
+        if (entry != null && entry.isFresh()) {
+            hits.incrementAndGet();
+            return new Lookup<T>(true, handler.handleResponse(entry.toHttpResponse()), null);
+        }
+
+        if (entry != null) {
+            if (entry.etag.isPresent()) {
+                request.addHeader("If-None-Match", entry.etag.get());
+            }
+            if (entry.lastModified.isPresent()) {
+                request.addHeader("If-Modified-Since", entry.lastModified.get());
+            }
+        }
+        return new Lookup<T>(false, null, storingHandler(uri, group, entry, handler));
+    }
+
+    private <T> ResponseHandler<T> storingHandler(final String uri, final EndpointGroup group, final Entry stale,
+                                                  final ResponseHandler<T> handler) {
+        final long generation = generations.get(group).get();
+        final long ttlNanos = TimeUnit.MILLISECONDS.toNanos(config.getTtlMillis(group));
+
+        return new ResponseHandler<T>() {
+            @Override
+            public T handleResponse(HttpResponse response) throws IOException {
+                int status = response.getStatusLine().getStatusCode();
+
+                if (status == 304 && stale != null) {
+                    EntityUtils.consume(response.getEntity());
+                    revalidated.incrementAndGet();
+                    Entry entry = stale.revalidated(System.nanoTime() + ttlNanos);
+                    store(uri, group, generation, entry);
+                    return handler.handleResponse(entry.toHttpResponse());
+                }
+
+                misses.incrementAndGet();
+                if (status != 200) {
+                    return handler.handleResponse(response);
+                }
+
+                HttpEntity entity = response.getEntity();
+                byte[] body = entity == null ? new byte[0] : EntityUtils.toByteArray(entity);
+                Entry entry = new Entry(group, response.getStatusLine(), cacheableHeaders(response), body,
+                        System.nanoTime() + ttlNanos);
+                store(uri, group, generation, entry);
+                return handler.handleResponse(entry.toHttpResponse());
+            }
+        };
+    }
+
+    /*
+    Drops the entries a write to the group may have changed. Channel views
+    include tags, so tag writes also drop cached channels.
+     */
+    void invalidate(EndpointGroup group) {
+        invalidateGroup(group);
+        if (group == EndpointGroup.TAGS) {
+            invalidateGroup(EndpointGroup.CHANNELS);
+        }
+    }
+
+    ResponseCacheStats getStats() {
+        return new ResponseCacheStats(hits.get(), revalidated.get(), misses.get(), evictions.get(),
+                invalidations.get(), cache.size());
+    }
+
+    private void invalidateGroup(EndpointGroup group) {
+        generations.get(group).incrementAndGet();
+
+        Iterator<Map.Entry<String, Entry>> entries = cache.asMap().entrySet().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().getValue().group == group) {
+                entries.remove();
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    private void store(String uri, EndpointGroup group, long generation, Entry entry) {
+        if (generations.get(group).get() == generation) {
+            cache.put(uri, entry);
+        }
+    }
+
+    private static Header[] cacheableHeaders(HttpResponse response) {
+        List<Header> headers = Lists.newArrayList();
+        for (Header header : response.getAllHeaders()) {
+            if (!UNCACHED_HEADERS.contains(header.getName().toLowerCase())) {
+                headers.add(header);
+            }
+        }
+        return headers.toArray(new Header[headers.size()]);
+    }
+
+    private static Optional<String> header(Header[] headers, String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return Optional.of(header.getValue());
+            }
+        }
+        return Optional.absent();
+    }
+
+    private static final class Entry {
+        private final EndpointGroup group;
+        private final StatusLine statusLine;
+        private final Header[] headers;
+        private final byte[] body;
+        private final long expiresAtNanos;
+        private final Optional<String> etag;
+        private final Optional<String> lastModified;
+
+        private Entry(EndpointGroup group, StatusLine statusLine, Header[] headers, byte[] body, long expiresAtNanos) {
+            this.group = group;
+            this.statusLine = statusLine;
+            this.headers = headers;
+            this.body = body;
+            this.expiresAtNanos = expiresAtNanos;
+            this.etag = header(headers, "ETag");
+            this.lastModified = header(headers, "Last-Modified");
+        }
+
+        private boolean isFresh() {
+            return expiresAtNanos - System.nanoTime() > 0;
+        }
+
+        private Entry revalidated(long expiresAtNanos) {
+            return new Entry(group, statusLine, headers, body, expiresAtNanos);
+        }
+
+        private HttpResponse toHttpResponse() {
+            BasicHttpResponse response = new BasicHttpResponse(statusLine);
+            response.setHeaders(headers);
+            ByteArrayEntity entity = new ByteArrayEntity(body);
+            entity.setContentType(response.getFirstHeader("Content-Type"));
+            response.setEntity(entity);
+            return response;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+/**
+ * Settings for the response cache of an APIClient.
+ * <p>
+ * GET responses from an endpoint group with a TTL are kept for that long
+ * and served without a request. Once an entry is stale it is revalidated
+ * with If-None-Match or If-Modified-Since when the API sent an ETag or
+ * Last-Modified header, and served again if the API answers 304 Not
+ * Modified. By default tags, segments, schedules and channels are cached
+ * for a minute; push, reports and location responses are not cached.
+ * <p>
+ * At most maxEntries responses are kept, evicting the least recently used.
+ */
+public final class ResponseCacheConfig {
+
+    public static final long DEFAULT_TTL_MILLIS = 60000L;
+
+    private final long maxEntries;
+    private final ImmutableMap<EndpointGroup, Long> ttlMillis;
+
+    private ResponseCacheConfig(long maxEntries, ImmutableMap<EndpointGroup, Long> ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Maximum number of cached responses.
+     *
+     * @return long
+     */
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * How long responses from the endpoint group are served from the cache
+     * before being revalidated. Zero if they are not cached.
+     *
+     * @param group Endpoint group
+     * @return Duration in milliseconds
+     */
+    public long getTtlMillis(EndpointGroup group) {
+        Long ttl = ttlMillis.get(group);
+        return ttl == null ? 0L : ttl;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCacheConfig{" +
+                "maxEntries=" + maxEntries +
+                ", ttlMillis=" + ttlMillis +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(maxEntries, ttlMillis);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ResponseCacheConfig other = (ResponseCacheConfig) obj;
+        return Objects.equal(this.maxEntries, other.maxEntries) &&
+                Objects.equal(this.ttlMillis, other.ttlMillis);
+    }
+
+    public static class Builder {
+
+        private long maxEntries = 1000L;
+        private final Map<EndpointGroup, Long> ttlMillis = Maps.newEnumMap(EndpointGroup.class);
+
+        private Builder() {
+            ttlMillis.put(EndpointGroup.TAGS, DEFAULT_TTL_MILLIS);
+            ttlMillis.put(EndpointGroup.SEGMENTS, DEFAULT_TTL_MILLIS);
+            ttlMillis.put(EndpointGroup.SCHEDULES, DEFAULT_TTL_MILLIS);
+            ttlMillis.put(EndpointGroup.CHANNELS, DEFAULT_TTL_MILLIS);
+        }
+
+        public Builder setMaxEntries(long value) {
+            this.maxEntries = value;
+            return this;
+        }
+
+        /**
+         * Set how long responses from an endpoint group are cached. Zero
+         * disables caching for the group.
+         *
+         * @param group Endpoint group
+         * @param value Duration in milliseconds
+         * @return Builder
+         */
+        public Builder setTtlMillis(EndpointGroup group, long value) {
+            Preconditions.checkNotNull(group, "group cannot be null");
+            Preconditions.checkArgument(value >= 0, "TTL cannot be negative");
+            if (value == 0) {
+                ttlMillis.remove(group);
+            } else {
+                ttlMillis.put(group, value);
+            }
+            return this;
+        }
+
+        public ResponseCacheConfig build() {
+            Preconditions.checkArgument(maxEntries > 0, "maxEntries must be positive");
+
+            return new ResponseCacheConfig(maxEntries, ImmutableMap.copyOf(ttlMillis));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Objects;
+
+/**
+ * Point in time counters of an APIClient's response cache.
+ */
+public final class ResponseCacheStats {
+
+    private final long hitCount;
+    private final long revalidatedCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long invalidationCount;
+    private final long size;
+
+    ResponseCacheStats(long hitCount, long revalidatedCount, long missCount, long evictionCount,
+                       long invalidationCount, long size) {
+        this.hitCount = hitCount;
+        this.revalidatedCount = revalidatedCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+        this.size = size;
+    }
+
+    /**
+     * Requests answered from a fresh entry without contacting the API.
+     *
+     * @return long
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Requests for stale entries the API confirmed with 304 Not Modified.
+     *
+     * @return long
+     */
+    public long getRevalidatedCount() {
+        return revalidatedCount;
+    }
+
+    /**
+     * Cacheable requests that needed a full response from the API.
+     *
+     * @return long
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Entries evicted to stay within maxEntries.
+     *
+     * @return long
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Entries removed because a write went through the client.
+     *
+     * @return long
+     */
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    /**
+     * Number of entries currently cached.
+     *
+     * @return long
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCacheStats{" +
+                "hitCount=" + hitCount +
+                ", revalidatedCount=" + revalidatedCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", invalidationCount=" + invalidationCount +
+                ", size=" + size +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(hitCount, revalidatedCount, missCount, evictionCount, invalidationCount, size);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ResponseCacheStats other = (ResponseCacheStats) obj;
+        return Objects.equal(this.hitCount, other.hitCount) &&
+                Objects.equal(this.revalidatedCount, other.revalidatedCount) &&
+                Objects.equal(this.missCount, other.missCount) &&
+                Objects.equal(this.evictionCount, other.evictionCount) &&
+                Objects.equal(this.invalidationCount, other.invalidationCount) &&
+                Objects.equal(this.size, other.size);
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Controls how an APIClient retries requests that fail with a transient
+ * error, such as the API throttling requests with a 429 or a load balancer
+ * returning a 503.
+ * <p>
+ * A response is retried when its status code, or the error code of its
+ * APIError body, is retryable and the request method is idempotent. A 429
+ * means the request was rejected before it was processed, so it is retried
+ * for any method, as are failures to connect. Delays grow exponentially
+ * from the initial backoff, with random jitter so that many clients
+ * throttled at once do not retry in lockstep. A Retry-After header sent by
+ * the server is honored, unless it asks for a longer wait than
+ * maxRetryAfterMillis, in which case the error is returned instead.
+ */
+public final class RetryPolicy {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String RETRY_AFTER_KEY = "Retry-After";
+    private static final Random random = new Random();
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double backoffMultiplier;
+    private final double jitterFactor;
+    private final long maxRetryAfterMillis;
+    private final ImmutableSet<Integer> retryableStatusCodes;
+    private final ImmutableSet<String> retryableMethods;
+    private final ImmutableSet<Integer> retryableErrorCodes;
+
+    private RetryPolicy(int maxAttempts,
+                        long initialBackoffMillis,
+                        long maxBackoffMillis,
+                        double backoffMultiplier,
+                        double jitterFactor,
+                        long maxRetryAfterMillis,
+                        ImmutableSet<Integer> retryableStatusCodes,
+                        ImmutableSet<String> retryableMethods,
+                        ImmutableSet<Integer> retryableErrorCodes) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.backoffMultiplier = backoffMultiplier;
+        this.jitterFactor = jitterFactor;
+        this.maxRetryAfterMillis = maxRetryAfterMillis;
+        this.retryableStatusCodes = retryableStatusCodes;
+        this.retryableMethods = retryableMethods;
+        this.retryableErrorCodes = retryableErrorCodes;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * A policy that makes a single attempt, which is what APIClient uses when
+     * no retry policy is configured.
+     *
+     * @return RetryPolicy
+     */
+    public static RetryPolicy noRetries() {
+        return newBuilder().setMaxAttempts(1).build();
+    }
+
+    /**
+     * Total number of attempts for a request, including the first.
+     *
+     * @return int
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Delay before the first retry, before jitter is applied.
+     *
+     * @return Backoff in milliseconds
+     */
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    /**
+     * Upper bound on the delay between attempts, before jitter is applied.
+     *
+     * @return Backoff in milliseconds
+     */
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * Factor the delay grows by after each attempt.
+     *
+     * @return double
+     */
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    /**
+     * Fraction of each delay that is randomized, between 0 (no jitter) and 1
+     * (anywhere from no delay to the full delay).
+     *
+     * @return double
+     */
+    public double getJitterFactor() {
+        return jitterFactor;
+    }
+
+    /**
+     * Longest Retry-After the client will wait for. Responses asking for a
+     * longer wait are not retried.
+     *
+     * @return Duration in milliseconds
+     */
+    public long getMaxRetryAfterMillis() {
+        return maxRetryAfterMillis;
+    }
+
+    public Set<Integer> getRetryableStatusCodes() {
+        return retryableStatusCodes;
+    }
+
+    public Set<String> getRetryableMethods() {
+        return retryableMethods;
+    }
+
+    /**
+     * Urban Airship error codes, as returned in the APIError body, that are
+     * retried regardless of the HTTP status code.
+     *
+     * @return Set of error codes
+     */
+    public Set<Integer> getRetryableErrorCodes() {
+        return retryableErrorCodes;
+    }
+
+    /*
+    Returns the delay before retrying a request that got the given response,
+    or -1 if the response should be returned to the caller.
+     */
+    long retryDelayMillis(String method, int attempt, HttpResponse response, Optional<Number> errorCode) {
+        if (attempt >= maxAttempts) {
+            return -1;
+        }
+
+        int statusCode = response.getStatusLine().getStatusCode();
+        boolean retryableError = retryableStatusCodes.contains(statusCode) ||
+                (errorCode.isPresent() && retryableErrorCodes.contains(errorCode.get().intValue()));
+
+        if (!retryableError || !(statusCode == TOO_MANY_REQUESTS || isIdempotent(method))) {
+            return -1;
+        }
+
+        long delay = backoffMillis(attempt);
+        Optional<Long> retryAfter = retryAfterMillis(response);
+        if (retryAfter.isPresent()) {
+            if (retryAfter.get() > maxRetryAfterMillis) {
+                return -1;
+            }
+            delay = Math.max(delay, retryAfter.get());
+        }
+        return delay;
+    }
+
+    /*
+    Returns the delay before retrying a request that failed with the given
+    exception, or -1 if the exception should be thrown to the caller.
+     */
+    long retryDelayMillis(String method, int attempt, IOException exception) {
+        if (attempt >= maxAttempts) {
+            return -1;
+        }
+        if (exception instanceof UnknownHostException || exception instanceof SSLException) {
+            return -1;
+        }
+
+        // Nothing was sent if the connection could not be opened
+        boolean notSent = exception instanceof ConnectException || exception instanceof ConnectTimeoutException;
+        if (!notSent && !isIdempotent(method)) {
+            return -1;
+        }
+        return backoffMillis(attempt);
+    }
+
+    private boolean isIdempotent(String method) {
+        return method != null && retryableMethods.contains(method.toUpperCase());
+    }
+
+    /* Exponential backoff for the given attempt, with the configured fraction of it randomized */
+    long backoffMillis(int attempt) {
+        double backoff = initialBackoffMillis * Math.pow(backoffMultiplier, attempt - 1);
+        backoff = Math.min(backoff, maxBackoffMillis);
+        return (long) (backoff * (1 - jitterFactor * random.nextDouble()));
+    }
+
+    /* Retry-After is either a number of seconds or an HTTP date */
+    private static Optional<Long> retryAfterMillis(HttpResponse response) {
+        Header header = response.getFirstHeader(RETRY_AFTER_KEY);
+        if (header == null || header.getValue() == null) {
+            return Optional.absent();
+        }
+
+        String value = header.getValue().trim();
+        try {
+            return Optional.of(Math.max(0L, Long.parseLong(value) * 1000L));
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, try a date
+        }
+
+        try {
+            long millis = DateUtils.parseDate(value).getTime() - System.currentTimeMillis();
+            return Optional.of(Math.max(0L, millis));
+        } catch (DateParseException e) {
+            return Optional.absent();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" +
+                "maxAttempts=" + maxAttempts +
+                ", initialBackoffMillis=" + initialBackoffMillis +
+                ", maxBackoffMillis=" + maxBackoffMillis +
+                ", backoffMultiplier=" + backoffMultiplier +
+                ", jitterFactor=" + jitterFactor +
+                ", maxRetryAfterMillis=" + maxRetryAfterMillis +
+                ", retryableStatusCodes=" + retryableStatusCodes +
+                ", retryableMethods=" + retryableMethods +
+                ", retryableErrorCodes=" + retryableErrorCodes +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(maxAttempts, initialBackoffMillis, maxBackoffMillis, backoffMultiplier,
+                jitterFactor, maxRetryAfterMillis, retryableStatusCodes, retryableMethods, retryableErrorCodes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final RetryPolicy other = (RetryPolicy) obj;
+        return Objects.equal(this.maxAttempts, other.maxAttempts) &&
+                Objects.equal(this.initialBackoffMillis, other.initialBackoffMillis) &&
+                Objects.equal(this.maxBackoffMillis, other.maxBackoffMillis) &&
+                Objects.equal(this.backoffMultiplier, other.backoffMultiplier) &&
+                Objects.equal(this.jitterFactor, other.jitterFactor) &&
+                Objects.equal(this.maxRetryAfterMillis, other.maxRetryAfterMillis) &&
+                Objects.equal(this.retryableStatusCodes, other.retryableStatusCodes) &&
+                Objects.equal(this.retryableMethods, other.retryableMethods) &&
+                Objects.equal(this.retryableErrorCodes, other.retryableErrorCodes);
+    }
+
+    public static class Builder {
+
+        private int maxAttempts = 3;
+        private long initialBackoffMillis = 250L;
+        private long maxBackoffMillis = 10000L;
+        private double backoffMultiplier = 2.0;
+        private double jitterFactor = 0.5;
+        private long maxRetryAfterMillis = 60000L;
+        private ImmutableSet<Integer> retryableStatusCodes = ImmutableSet.of(429, 502, 503, 504);
+        private ImmutableSet<String> retryableMethods = ImmutableSet.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS");
+        private ImmutableSet<Integer> retryableErrorCodes = ImmutableSet.of();
+
+        private Builder() {
+        }
+
+        public Builder setMaxAttempts(int value) {
+            this.maxAttempts = value;
+            return this;
+        }
+
+        public Builder setInitialBackoffMillis(long value) {
+            this.initialBackoffMillis = value;
+            return this;
+        }
+
+        public Builder setMaxBackoffMillis(long value) {
+            this.maxBackoffMillis = value;
+            return this;
+        }
+
+        public Builder setBackoffMultiplier(double value) {
+            this.backoffMultiplier = value;
+            return this;
+        }
+
+        public Builder setJitterFactor(double value) {
+            this.jitterFactor = value;
+            return this;
+        }
+
+        public Builder setMaxRetryAfterMillis(long value) {
+            this.maxRetryAfterMillis = value;
+            return this;
+        }
+
+        public Builder setRetryableStatusCodes(Set<Integer> value) {
+            this.retryableStatusCodes = ImmutableSet.copyOf(value);
+            return this;
+        }
+
+        public Builder setRetryableMethods(Set<String> value) {
+            ImmutableSet.Builder<String> methods = ImmutableSet.builder();
+            for (String method : value) {
+                methods.add(method.toUpperCase());
+            }
+            this.retryableMethods = methods.build();
+            return this;
+        }
+
+        public Builder setRetryableErrorCodes(Set<Integer> value) {
+            this.retryableErrorCodes = ImmutableSet.copyOf(value);
+            return this;
+        }
+
+        public RetryPolicy build() {
+            Preconditions.checkArgument(maxAttempts > 0, "maxAttempts must be positive");
+            Preconditions.checkArgument(initialBackoffMillis >= 0, "initialBackoffMillis cannot be negative");
+            Preconditions.checkArgument(maxBackoffMillis >= initialBackoffMillis,
+                    "maxBackoffMillis cannot be less than initialBackoffMillis");
+            Preconditions.checkArgument(backoffMultiplier >= 1.0, "backoffMultiplier must be at least 1");
+            Preconditions.checkArgument(jitterFactor >= 0.0 && jitterFactor <= 1.0, "jitterFactor must be between 0 and 1");
+            Preconditions.checkArgument(maxRetryAfterMillis >= 0, "maxRetryAfterMillis cannot be negative");
+
+            return new RetryPolicy(maxAttempts, initialBackoffMillis, maxBackoffMillis, backoffMultiplier,
+                    jitterFactor, maxRetryAfterMillis, retryableStatusCodes, retryableMethods, retryableErrorCodes);
+        }
+    }
+}
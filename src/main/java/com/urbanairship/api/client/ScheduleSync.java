@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.urbanairship.api.schedule.model.Schedule;
+import com.urbanairship.api.schedule.model.SchedulePayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Brings the schedules on the API in line with a set of schedule payloads
+ * kept locally, making only the calls needed instead of updating every
+ * schedule.
+ * <p>
+ * All schedules are listed, and each local payload is matched with one of
+ * them: by id when the payload has a url, as one read back from the API
+ * does, and otherwise by name, so local payloads without a url must be
+ * named, and names must be unique. A matched schedule is updated only when
+ * its name, scheduled time or push differ, with pushes compared by their
+ * PushPayloadHasher hash. Unmatched local payloads are created and, unless
+ * deleteUnmatched is turned off, unmatched schedules on the API are
+ * deleted.
+ * <p>
+ * The calls are made in parallel through the AsyncAPIClient, whose
+ * maxInFlight bounds how many run at once, and every change is attempted
+ * even if others fail. plan works out the same changes without making
+ * them.
+ * <p>
+ * <pre>
+ * ScheduleSync sync = ScheduleSync.newBuilder()
+ *         .setClient(asyncClient)
+ *         .build();
+ * SyncReport&lt;SchedulePayload&gt; report = sync.sync(schedules);
+ * </pre>
+ */
+public final class ScheduleSync {
+
+    private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
+
+    private static final Comparator<SyncReport.Change<SchedulePayload>> ORDER =
+            new Comparator<SyncReport.Change<SchedulePayload>>() {
+                @Override
+                public int compare(SyncReport.Change<SchedulePayload> a, SyncReport.Change<SchedulePayload> b) {
+                    int action = a.getAction().compareTo(b.getAction());
+                    return action != 0 ? action : a.getName().compareTo(b.getName());
+                }
+            };
+
+    private final AsyncAPIClient client;
+    private final int prefetchPages;
+    private final boolean deleteUnmatched;
+
+    private ScheduleSync(AsyncAPIClient client, int prefetchPages, boolean deleteUnmatched) {
+        this.client = client;
+        this.prefetchPages = prefetchPages;
+        this.deleteUnmatched = deleteUnmatched;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public AsyncAPIClient getClient() {
+        return client;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    public boolean isDeleteUnmatched() {
+        return deleteUnmatched;
+    }
+
+    /**
+     * Work out the changes needed without making them.
+     *
+     * @param schedules The schedules there should be
+     * @return SyncReport marked as a dry run
+     * @throws IOException if the schedules cannot be listed
+     */
+    public SyncReport<SchedulePayload> plan(Iterable<SchedulePayload> schedules) throws IOException {
+        Map<String, SchedulePayload> byId = Maps.newHashMap();
+        Map<String, SchedulePayload> byName = Maps.newHashMap();
+        for (SchedulePayload schedule : schedules) {
+            Preconditions.checkNotNull(schedule, "Schedules cannot be null");
+            if (schedule.getUrl().isPresent()) {
+                Preconditions.checkArgument(byId.put(idOf(schedule.getUrl().get()), schedule) == null,
+                        "Schedule %s appears more than once", schedule.getUrl().get());
+            } else {
+                Preconditions.checkArgument(schedule.getName().isPresent(),
+                        "Schedules without a url need a name to be matched by");
+                Preconditions.checkArgument(byName.put(schedule.getName().get(), schedule) == null,
+                        "Schedule name %s appears more than once", schedule.getName().get());
+            }
+        }
+
+        List<SyncReport.Change<SchedulePayload>> changes = Lists.newArrayList();
+        int unchanged = 0;
+
+        PageIterator<SchedulePayload> current = client.getClient().iterateSchedules(prefetchPages);
+        try {
+            while (current.hasNext()) {
+                SchedulePayload existing = current.next();
+                if (!existing.getUrl().isPresent()) {
+                    continue;
+                }
+                String id = idOf(existing.getUrl().get());
+
+                SchedulePayload wanted = byId.remove(id);
+                if (wanted == null && existing.getName().isPresent()) {
+                    wanted = byName.remove(existing.getName().get());
+                }
+
+                if (wanted == null) {
+                    if (deleteUnmatched) {
+                        changes.add(new SyncReport.Change<SchedulePayload>(SyncReport.Action.DELETE,
+                                nameOf(existing, id), Optional.of(id), Optional.<SchedulePayload>absent(),
+                                Optional.<Throwable>absent()));
+                    }
+                } else if (sameDefinition(wanted, existing)) {
+                    unchanged++;
+                } else {
+                    changes.add(new SyncReport.Change<SchedulePayload>(SyncReport.Action.UPDATE,
+                            nameOf(wanted, id), Optional.of(id), Optional.of(wanted), Optional.<Throwable>absent()));
+                }
+            }
+        } catch (PageFetchException e) {
+            throw e.getCause();
+        } finally {
+            current.close();
+        }
+
+        for (Map.Entry<String, SchedulePayload> missing : byId.entrySet()) {
+            // Gone from the API since it was read; created anew, as the id cannot be reused
+            changes.add(new SyncReport.Change<SchedulePayload>(SyncReport.Action.CREATE,
+                    nameOf(missing.getValue(), missing.getKey()), Optional.<String>absent(),
+                    Optional.of(withoutUrl(missing.getValue())), Optional.<Throwable>absent()));
+        }
+        for (SchedulePayload missing : byName.values()) {
+            changes.add(new SyncReport.Change<SchedulePayload>(SyncReport.Action.CREATE,
+                    missing.getName().get(), Optional.<String>absent(), Optional.of(missing),
+                    Optional.<Throwable>absent()));
+        }
+
+        Collections.sort(changes, ORDER);
+        return new SyncReport<SchedulePayload>(ImmutableList.copyOf(changes), unchanged, true);
+    }
+
+    /**
+     * Work out the changes needed and make them, waiting for all of them
+     * to complete.
+     *
+     * @param schedules The schedules there should be
+     * @return SyncReport with the outcome of each change
+     * @throws IOException if the schedules cannot be listed
+     */
+    public SyncReport<SchedulePayload> sync(Iterable<SchedulePayload> schedules) throws IOException {
+        SyncReport<SchedulePayload> plan = plan(schedules);
+
+        List<ListenableFuture<?>> futures = Lists.newArrayList();
+        for (SyncReport.Change<SchedulePayload> change : plan.getChanges()) {
+            switch (change.getAction()) {
+                case CREATE:
+                    futures.add(client.schedule(change.getDefinition().get()));
+                    break;
+                case UPDATE:
+                    futures.add(client.updateSchedule(change.getDefinition().get(), change.getId().get()));
+                    break;
+                case DELETE:
+                    futures.add(client.deleteSchedule(change.getId().get()));
+                    break;
+            }
+        }
+
+        ImmutableList.Builder<SyncReport.Change<SchedulePayload>> applied = ImmutableList.builder();
+        for (int i = 0; i < futures.size(); i++) {
+            SyncReport.Change<SchedulePayload> change = plan.getChanges().get(i);
+            try {
+                Uninterruptibles.getUninterruptibly(futures.get(i));
+                applied.add(change);
+            } catch (ExecutionException e) {
+                logger.warn(String.format("Schedule sync could not apply %s", change), e.getCause());
+                applied.add(change.withFailure(e.getCause()));
+            }
+        }
+        return new SyncReport<SchedulePayload>(applied.build(), plan.getUnchangedCount(), false);
+    }
+
+    /* Last segment of a schedule url, e.g. https://go.urbanairship.com/api/schedules/<id> */
+    static String idOf(String url) {
+        String path = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static String nameOf(SchedulePayload schedule, String id) {
+        return schedule.getName().isPresent() ? schedule.getName().get() : id;
+    }
+
+    private static boolean sameDefinition(SchedulePayload wanted, SchedulePayload existing) {
+        return Objects.equal(wanted.getName(), existing.getName()) &&
+                sameSchedule(wanted.getSchedule(), existing.getSchedule()) &&
+                PushPayloadHasher.hash(wanted.getPushPayload()) == PushPayloadHasher.hash(existing.getPushPayload());
+    }
+
+    /* Compared by instant, since the time zone a DateTime was parsed in does not matter */
+    private static boolean sameSchedule(Schedule wanted, Schedule existing) {
+        return wanted.getScheduledTimestamp().getMillis() == existing.getScheduledTimestamp().getMillis() &&
+                Objects.equal(wanted.getLocalTimePresent(), existing.getLocalTimePresent());
+    }
+
+    private static SchedulePayload withoutUrl(SchedulePayload schedule) {
+        SchedulePayload.Builder builder = SchedulePayload.newBuilder()
+                .setSchedule(schedule.getSchedule())
+                .setPushPayload(schedule.getPushPayload());
+        if (schedule.getName().isPresent()) {
+            builder.setName(schedule.getName().get());
+        }
+        return builder.build();
+    }
+
+    public static class Builder {
+
+        private AsyncAPIClient client;
+        private int prefetchPages = 1;
+        private boolean deleteUnmatched = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the AsyncAPIClient schedules are listed and changed through.
+         * Its maxInFlight bounds how many changes are made at once; with
+         * OverflowMode.SHED changes beyond that fail rather than wait.
+         *
+         * @param value AsyncAPIClient
+         * @return Builder
+         */
+        public Builder setClient(AsyncAPIClient value) {
+            this.client = value;
+            return this;
+        }
+
+        /**
+         * Pages of schedules to fetch ahead while comparing. Defaults to 1.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setPrefetchPages(int value) {
+            this.prefetchPages = value;
+            return this;
+        }
+
+        /**
+         * Whether schedules on the API that match no local payload are
+         * deleted. Defaults to true.
+         *
+         * @param value boolean
+         * @return Builder
+         */
+        public Builder setDeleteUnmatched(boolean value) {
+            this.deleteUnmatched = value;
+            return this;
+        }
+
+        public ScheduleSync build() {
+            Preconditions.checkNotNull(client, "AsyncAPIClient needed to build ScheduleSync");
+            Preconditions.checkArgument(prefetchPages >= 0, "prefetchPages cannot be negative");
+
+            return new ScheduleSync(client, prefetchPages, deleteUnmatched);
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.SegmentInformation;
+import com.urbanairship.api.segments.model.AudienceSegment;
+import com.urbanairship.api.segments.model.Operator;
+import com.urbanairship.api.segments.model.OperatorChild;
+import com.urbanairship.api.segments.model.OperatorType;
+import com.urbanairship.api.segments.model.Predicate;
+import com.urbanairship.api.segments.model.TagPredicate;
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Brings the segments on the API in line with a set of segment definitions
+ * kept locally, making only the calls needed instead of changing every
+ * segment.
+ * <p>
+ * All segments are listed, and each local segment is matched with one of
+ * them by display name, so local display names must be unique. The
+ * definitions of matched segments are fetched in parallel while listing
+ * continues, and a matched segment is changed only when its criteria
+ * differ. Criteria are compared structurally: the operands of an AND or OR
+ * may be in any order, tag predicates compare their tag class as well as
+ * their tag, with no class the same as the device class, and counts are
+ * ignored. Unmatched local segments are created and, unless
+ * deleteUnmatched is turned off, unmatched segments on the API are deleted.
+ * <p>
+ * The calls are made in parallel through the AsyncAPIClient, whose
+ * maxInFlight bounds how many run at once, and every change is attempted
+ * even if others fail. A definition read that a shedding AsyncAPIClient
+ * rejects is made on the calling thread instead. plan works out the same
+ * changes without making them.
+ * <p>
+ * <pre>
+ * SegmentSync sync = SegmentSync.newBuilder()
+ *         .setClient(asyncClient)
+ *         .build();
+ * SyncReport&lt;AudienceSegment&gt; report = sync.sync(segments);
+ * </pre>
+ */
+public final class SegmentSync {
+
+    private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
+
+    private static final Comparator<SyncReport.Change<AudienceSegment>> ORDER =
+            new Comparator<SyncReport.Change<AudienceSegment>>() {
+                @Override
+                public int compare(SyncReport.Change<AudienceSegment> a, SyncReport.Change<AudienceSegment> b) {
+                    int action = a.getAction().compareTo(b.getAction());
+                    return action != 0 ? action : a.getName().compareTo(b.getName());
+                }
+            };
+
+    private final AsyncAPIClient client;
+    private final int prefetchPages;
+    private final boolean deleteUnmatched;
+
+    private SegmentSync(AsyncAPIClient client, int prefetchPages, boolean deleteUnmatched) {
+        this.client = client;
+        this.prefetchPages = prefetchPages;
+        this.deleteUnmatched = deleteUnmatched;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public AsyncAPIClient getClient() {
+        return client;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    public boolean isDeleteUnmatched() {
+        return deleteUnmatched;
+    }
+
+    /**
+     * Work out the changes needed without making them. Only the segment
+     * list and the definitions of matched segments are read.
+     *
+     * @param segments The segments there should be
+     * @return SyncReport marked as a dry run
+     * @throws IOException if the segments cannot be listed or read
+     */
+    public SyncReport<AudienceSegment> plan(Iterable<AudienceSegment> segments) throws IOException {
+        Map<String, AudienceSegment> byName = Maps.newHashMap();
+        for (AudienceSegment segment : segments) {
+            Preconditions.checkNotNull(segment, "Segments cannot be null");
+            Preconditions.checkArgument(segment.getDisplayName() != null,
+                    "Segments need a display name to be matched by");
+            Preconditions.checkArgument(byName.put(segment.getDisplayName(), segment) == null,
+                    "Segment name %s appears more than once", segment.getDisplayName());
+        }
+
+        List<SyncReport.Change<AudienceSegment>> changes = Lists.newArrayList();
+        List<Match> matches = Lists.newArrayList();
+
+        PageIterator<SegmentInformation> current = client.getClient().iterateSegments(prefetchPages);
+        try {
+            while (current.hasNext()) {
+                SegmentInformation existing = current.next();
+                AudienceSegment wanted = byName.remove(existing.getDisplayName());
+
+                if (wanted != null) {
+                    matches.add(new Match(existing.getId(), wanted, client.listSegment(existing.getId())));
+                } else if (deleteUnmatched) {
+                    changes.add(new SyncReport.Change<AudienceSegment>(SyncReport.Action.DELETE,
+                            existing.getDisplayName(), Optional.of(existing.getId()),
+                            Optional.<AudienceSegment>absent(), Optional.<Throwable>absent()));
+                }
+            }
+        } catch (PageFetchException e) {
+            throw e.getCause();
+        } finally {
+            current.close();
+        }
+
+        int unchanged = 0;
+        for (Match match : matches) {
+            AudienceSegment existing;
+            try {
+                existing = definition(match);
+            } catch (APIRequestException e) {
+                if (e.httpResponseStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                    // Gone from the API since it was listed
+                    byName.put(match.wanted.getDisplayName(), match.wanted);
+                    continue;
+                }
+                throw e;
+            }
+
+            if (sameCriteria(match.wanted, existing)) {
+                unchanged++;
+            } else {
+                changes.add(new SyncReport.Change<AudienceSegment>(SyncReport.Action.UPDATE,
+                        match.wanted.getDisplayName(), Optional.of(match.id), Optional.of(match.wanted),
+                        Optional.<Throwable>absent()));
+            }
+        }
+
+        for (AudienceSegment missing : byName.values()) {
+            changes.add(new SyncReport.Change<AudienceSegment>(SyncReport.Action.CREATE,
+                    missing.getDisplayName(), Optional.<String>absent(), Optional.of(missing),
+                    Optional.<Throwable>absent()));
+        }
+
+        Collections.sort(changes, ORDER);
+        return new SyncReport<AudienceSegment>(ImmutableList.copyOf(changes), unchanged, true);
+    }
+
+    /*
+    The definition read through the AsyncAPIClient, or read again on this
+    thread if a shedding AsyncAPIClient rejected the read.
+     */
+    private AudienceSegment definition(Match match) throws IOException {
+        try {
+            return Uninterruptibles.getUninterruptibly(match.existing).getApiResponse();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (!(cause instanceof RejectedExecutionException)) {
+                Throwables.propagateIfInstanceOf(cause, IOException.class);
+                throw Throwables.propagate(cause);
+            }
+        }
+
+        try {
+            return client.getClient().listSegment(match.id).getApiResponse();
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid segment id " + match.id, e);
+        }
+    }
+
+    /**
+     * Work out the changes needed and make them, waiting for all of them
+     * to complete.
+     *
+     * @param segments The segments there should be
+     * @return SyncReport with the outcome of each change
+     * @throws IOException if the segments cannot be listed or read
+     */
+    public SyncReport<AudienceSegment> sync(Iterable<AudienceSegment> segments) throws IOException {
+        SyncReport<AudienceSegment> plan = plan(segments);
+
+        List<ListenableFuture<?>> futures = Lists.newArrayList();
+        for (SyncReport.Change<AudienceSegment> change : plan.getChanges()) {
+            switch (change.getAction()) {
+                case CREATE:
+                    futures.add(client.createSegment(change.getDefinition().get()));
+                    break;
+                case UPDATE:
+                    futures.add(client.changeSegment(change.getId().get(), change.getDefinition().get()));
+                    break;
+                case DELETE:
+                    futures.add(client.deleteSegment(change.getId().get()));
+                    break;
+            }
+        }
+
+        ImmutableList.Builder<SyncReport.Change<AudienceSegment>> applied = ImmutableList.builder();
+        for (int i = 0; i < futures.size(); i++) {
+            SyncReport.Change<AudienceSegment> change = plan.getChanges().get(i);
+            try {
+                Uninterruptibles.getUninterruptibly(futures.get(i));
+                applied.add(change);
+            } catch (ExecutionException e) {
+                logger.warn(String.format("Segment sync could not apply %s", change), e.getCause());
+                applied.add(change.withFailure(e.getCause()));
+            }
+        }
+        return new SyncReport<AudienceSegment>(applied.build(), plan.getUnchangedCount(), false);
+    }
+
+    /**
+     * Whether two segments select the same audience, comparing their
+     * criteria structurally and ignoring display names and counts.
+     *
+     * @param a AudienceSegment
+     * @param b AudienceSegment
+     * @return boolean
+     */
+    static boolean sameCriteria(AudienceSegment a, AudienceSegment b) {
+        if (a.isOperatorRoot() != b.isOperatorRoot()) {
+            return false;
+        }
+        return a.isOperatorRoot() ?
+                same(a.getRootOperator(), b.getRootOperator()) :
+                same(a.getRootPredicate(), b.getRootPredicate());
+    }
+
+    private static boolean same(Operator a, Operator b) {
+        List<OperatorChild> children = a.getChildren();
+        if (a.getType() != b.getType() || children.size() != b.getChildren().size()) {
+            return false;
+        }
+
+        if (a.getType() == OperatorType.NOT) {
+            for (int i = 0; i < children.size(); i++) {
+                if (!same(children.get(i), b.getChildren().get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Operands in any order; each one must pair off with a distinct operand of the other
+        List<OperatorChild> unmatched = Lists.newLinkedList(b.getChildren());
+        for (OperatorChild child : children) {
+            boolean found = false;
+            Iterator<OperatorChild> candidates = unmatched.iterator();
+            while (candidates.hasNext()) {
+                if (same(child, candidates.next())) {
+                    candidates.remove();
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean same(OperatorChild a, OperatorChild b) {
+        if (a.isPredicateChild() != b.isPredicateChild()) {
+            return false;
+        }
+        return a.isPredicateChild() ?
+                same(a.getPredicate(), b.getPredicate()) :
+                same(a.getOperator(), b.getOperator());
+    }
+
+    /* TagPredicate.equals ignores the tag class, which changes who is selected */
+    private static boolean same(Predicate a, Predicate b) {
+        if (a instanceof TagPredicate && b instanceof TagPredicate) {
+            TagPredicate tagA = (TagPredicate) a;
+            TagPredicate tagB = (TagPredicate) b;
+            return Objects.equal(tagA.getTag(), tagB.getTag()) &&
+                    (tagA.isDefaultClass() ? tagB.isDefaultClass() :
+                            Objects.equal(tagA.getTagClass(), tagB.getTagClass()));
+        }
+        return Objects.equal(a, b);
+    }
+
+    private static final class Match {
+
+        private final String id;
+        private final AudienceSegment wanted;
+        private final ListenableFuture<APIClientResponse<AudienceSegment>> existing;
+
+        private Match(String id, AudienceSegment wanted, ListenableFuture<APIClientResponse<AudienceSegment>> existing) {
+            this.id = id;
+            this.wanted = wanted;
+            this.existing = existing;
+        }
+    }
+
+    public static class Builder {
+
+        private AsyncAPIClient client;
+        private int prefetchPages = 1;
+        private boolean deleteUnmatched = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the AsyncAPIClient segments are read and changed through.
+         * Its maxInFlight bounds how many reads and changes are made at
+         * once. With OverflowMode.SHED, reads beyond that are made on the
+         * calling thread, and changes beyond it fail rather than wait.
+         *
+         * @param value AsyncAPIClient
+         * @return Builder
+         */
+        public Builder setClient(AsyncAPIClient value) {
+            this.client = value;
+            return this;
+        }
+
+        /**
+         * Pages of segments to fetch ahead while comparing. Defaults to 1.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setPrefetchPages(int value) {
+            this.prefetchPages = value;
+            return this;
+        }
+
+        /**
+         * Whether segments on the API that match no local segment are
+         * deleted. Defaults to true.
+         *
+         * @param value boolean
+         * @return Builder
+         */
+        public Builder setDeleteUnmatched(boolean value) {
+            this.deleteUnmatched = value;
+            return this;
+        }
+
+        public SegmentSync build() {
+            Preconditions.checkNotNull(client, "AsyncAPIClient needed to build SegmentSync");
+            Preconditions.checkArgument(prefetchPages >= 0, "prefetchPages cannot be negative");
+
+            return new SegmentSync(client, prefetchPages, deleteUnmatched);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Charsets;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/*
+One file of a RequestSpool, memory mapped at its full size when opened.
+Records are laid out back to back from the start of the file:
+
+  int     length of the rest of the record
+  int     CRC32 of the rest of the record
+  short   length of the path in bytes
+  byte[]  path, UTF-8
+  byte[]  body
+
+New files are zero filled, so a length of zero marks the end of the
+records. The length is written last, and on open the records are checked
+in order up to the first one that is missing or does not match its CRC.
+Appending resumes there; if a torn record was left behind, the rest of the
+file is zeroed first so none of it can be mistaken for a record later.
+
+Not thread safe; the RequestSpool serializes access.
+ */
+final class SpoolSegment {
+
+    static final int HEADER_BYTES = 10;
+
+    private static final String PREFIX = "spool-";
+    private static final String SUFFIX = ".log";
+
+    private final long sequence;
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+
+    private SpoolSegment(long sequence, File file, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /*
+    Opens, or creates, the segment with the given sequence number. An
+    existing file is mapped at its own length, so segments written with a
+    different segment size are still read back whole.
+     */
+    static SpoolSegment open(File directory, long sequence, int capacity) throws IOException {
+        File file = fileFor(directory, sequence);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() == 0) {
+                raf.setLength(capacity);
+            }
+            FileChannel channel = raf.getChannel();
+            // The mapping stays valid once the channel is closed
+            SpoolSegment segment = new SpoolSegment(sequence, file,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            segment.recover();
+            return segment;
+        } finally {
+            raf.close();
+        }
+    }
+
+    static File fileFor(File directory, long sequence) {
+        return new File(directory, String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+    }
+
+    /* Sequence number of a segment file, or -1 for any other file */
+    static long sequenceOf(File file) {
+        String name = file.getName();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static int recordBytes(byte[] path, byte[] body) {
+        return HEADER_BYTES + path.length + body.length;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    /* Number of records at or after the given position */
+    int countFrom(int position) {
+        int count = 0;
+        while (position < writePosition) {
+            position += 8 + buffer.getInt(position);
+            count++;
+        }
+        return count;
+    }
+
+    /*
+    Appends a record, returning false when it does not fit in the space
+    left. The record becomes visible to readers once its length is written.
+     */
+    boolean append(byte[] path, byte[] body) {
+        int length = recordBytes(path, body) - 8;
+        if (writePosition + 8 + length > buffer.capacity()) {
+            return false;
+        }
+
+        ByteBuffer record = buffer.duplicate();
+        record.position(writePosition + 8);
+        record.putShort((short) path.length);
+        record.put(path);
+        record.put(body);
+
+        buffer.putInt(writePosition + 4, checksum(writePosition + 8, length));
+        buffer.putInt(writePosition, length);
+        writePosition += 8 + length;
+        return true;
+    }
+
+    /* The record at the given position, or null if none has been written there */
+    Record read(int position) {
+        if (position >= writePosition) {
+            return null;
+        }
+
+        int length = buffer.getInt(position);
+        ByteBuffer record = buffer.duplicate();
+        record.position(position + 8);
+        byte[] path = new byte[record.getShort()];
+        record.get(path);
+        byte[] body = new byte[length - 2 - path.length];
+        record.get(body);
+        return new Record(new String(path, Charsets.UTF_8), body, position + 8 + length);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    boolean delete() {
+        return file.delete();
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length < 2 || length > buffer.capacity() - position - 8) {
+                break;
+            }
+            int pathLength = buffer.getShort(position + 8);
+            if (pathLength < 0 || pathLength > length - 2 ||
+                    buffer.getInt(position + 4) != checksum(position + 8, length)) {
+                break;
+            }
+            position += 8 + length;
+        }
+        writePosition = position;
+
+        if (position + 4 <= buffer.capacity() && buffer.getInt(position) != 0) {
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private int checksum(int position, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer record = buffer.duplicate();
+        record.position(position);
+        byte[] chunk = new byte[Math.min(length, 8192)];
+        while (length > 0) {
+            int count = Math.min(length, chunk.length);
+            record.get(chunk, 0, count);
+            crc.update(chunk, 0, count);
+            length -= count;
+        }
+        return (int) crc.getValue();
+    }
+
+    static final class Record {
+        private final String path;
+        private final byte[] body;
+        private final int nextPosition;
+
+        private Record(String path, byte[] body, int nextPosition) {
+            this.path = path;
+            this.body = body;
+            this.nextPosition = nextPosition;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+
+        int getNextPosition() {
+            return nextPosition;
+        }
+    }
+}
@@ -17,7 +17,6 @@ import java.io.IOException;
 public final class StringAPIResponseHandler implements ResponseHandler<APIClientResponse<String>> {
 
     private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
-    private static final APIClientResponse.Builder<String> builder = APIClientResponse.newStringResponseBuilder();
 
     @Override
     public APIClientResponse<String> handleResponse(HttpResponse response) throws IOException {
@@ -48,6 +47,7 @@ public final class StringAPIResponseHandler implements ResponseHandler<APIClient
 
     private APIClientResponse<String> handleSuccessfulRequest(HttpResponse response) throws IOException {
 
+        APIClientResponse.Builder<String> builder = APIClientResponse.newStringResponseBuilder();
         builder.setHttpResponse(response);
 
         try {
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Outcome of reconciling definitions held locally with those on the API,
+ * such as by a ScheduleSync: the creates, updates and deletes that were
+ * needed, and, unless it was a dry run, whether each one succeeded.
+ * Definitions that already matched are only counted.
+ * <p>
+ * toString gives a diff, one change per line, suitable for logging or for
+ * reviewing a dry run:
+ * <pre>
+ * + Weekly digest
+ * ~ Renewal reminder (5c6d1c5e-...)
+ * - Old promotion (0f8c2d4a-...)
+ * </pre>
+ *
+ * @param <T> Definition type
+ */
+public final class SyncReport<T> {
+
+    /**
+     * What a change does to the definition on the API.
+     */
+    public enum Action {
+        CREATE('+'),
+        UPDATE('~'),
+        DELETE('-');
+
+        private final char symbol;
+
+        private Action(char symbol) {
+            this.symbol = symbol;
+        }
+
+        public char getSymbol() {
+            return symbol;
+        }
+    }
+
+    private final ImmutableList<Change<T>> changes;
+    private final int unchangedCount;
+    private final boolean dryRun;
+
+    SyncReport(ImmutableList<Change<T>> changes, int unchangedCount, boolean dryRun) {
+        this.changes = changes;
+        this.unchangedCount = unchangedCount;
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Every change, creates first, then updates, then deletes.
+     *
+     * @return ImmutableList of changes
+     */
+    public ImmutableList<Change<T>> getChanges() {
+        return changes;
+    }
+
+    public ImmutableList<Change<T>> getChanges(Action action) {
+        ImmutableList.Builder<Change<T>> matching = ImmutableList.builder();
+        for (Change<T> change : changes) {
+            if (change.getAction() == action) {
+                matching.add(change);
+            }
+        }
+        return matching.build();
+    }
+
+    /**
+     * Number of local definitions that already matched the API.
+     *
+     * @return int
+     */
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    /**
+     * Whether the changes were only worked out, and not made.
+     *
+     * @return boolean
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public ImmutableList<Change<T>> getFailures() {
+        ImmutableList.Builder<Change<T>> failures = ImmutableList.builder();
+        for (Change<T> change : changes) {
+            if (change.getFailure().isPresent()) {
+                failures.add(change);
+            }
+        }
+        return failures.build();
+    }
+
+    public boolean isSuccess() {
+        return getFailures().isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder diff = new StringBuilder();
+        for (Change<T> change : changes) {
+            diff.append(change).append('\n');
+        }
+        diff.append(String.format("%d to create, %d to update, %d to delete, %d unchanged%s",
+                getChanges(Action.CREATE).size(), getChanges(Action.UPDATE).size(),
+                getChanges(Action.DELETE).size(), unchangedCount, dryRun ? " (dry run)" : ""));
+        return diff.toString();
+    }
+
+    /**
+     * One create, update or delete.
+     *
+     * @param <T> Definition type
+     */
+    public static final class Change<T> {
+
+        private final Action action;
+        private final String name;
+        private final Optional<String> id;
+        private final Optional<T> definition;
+        private final Optional<Throwable> failure;
+
+        Change(Action action, String name, Optional<String> id, Optional<T> definition, Optional<Throwable> failure) {
+            this.action = action;
+            this.name = name;
+            this.id = id;
+            this.definition = definition;
+            this.failure = failure;
+        }
+
+        Change<T> withFailure(Throwable value) {
+            return new Change<T>(action, name, id, definition, Optional.of(value));
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        /**
+         * Name of the definition, as used to match local definitions with
+         * those on the API.
+         *
+         * @return String
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Id on the API of the definition updated or deleted. Absent for
+         * creates.
+         *
+         * @return Optional id
+         */
+        public Optional<String> getId() {
+            return id;
+        }
+
+        /**
+         * The local definition created or updated to. Absent for deletes.
+         *
+         * @return Optional definition
+         */
+        public Optional<T> getDefinition() {
+            return definition;
+        }
+
+        /**
+         * Why the change could not be made: an APIRequestException, an
+         * IOException, or a RejectedExecutionException from a shedding
+         * AsyncAPIClient.
+         *
+         * @return Optional Throwable
+         */
+        public Optional<Throwable> getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder().append(action.getSymbol()).append(' ').append(name);
+            if (id.isPresent()) {
+                line.append(" (").append(id.get()).append(')');
+            }
+            if (failure.isPresent()) {
+                line.append(" failed: ").append(failure.get().getMessage());
+            }
+            return line.toString();
+        }
+    }
+}
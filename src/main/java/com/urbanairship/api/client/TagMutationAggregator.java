@@ -0,0 +1,571 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.urbanairship.api.tag.model.AddRemoveDeviceFromTagPayload;
+import com.urbanairship.api.tag.model.AddRemoveSet;
+import com.urbanairship.api.tag.model.BatchModificationPayload;
+import com.urbanairship.api.tag.model.BatchTagSet;
+import org.apache.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write behind buffer for adding devices to and removing them from tags.
+ * Operations are collected and sent together, instead of one request per
+ * call, once flushSize operations are buffered or every flushIntervalMillis.
+ * <p>
+ * Operations on the same tag and device are coalesced while buffered: the
+ * latest one replaces the earlier ones, so an add followed by a remove sends
+ * only the remove, and its future completes the earlier ones too. An
+ * operation is never sent while an earlier one on the same tag and device
+ * is in flight, so they are applied in order.
+ * <p>
+ * Adds for iOS channels, device tokens and APIDs are sent as tag batch
+ * modifications, grouping the tags added to each device; removes, and adds
+ * for device PINs, are sent per tag. Each request carries at most
+ * maxDevicesPerRequest devices. Requests go through an AsyncAPIClient,
+ * whose maxInFlight bounds how many are sent at once.
+ * <p>
+ * At most maxPendingOperations operations may be buffered or in flight;
+ * adding more blocks the caller until earlier ones complete. Each operation
+ * returns a future that completes when its request succeeds, or fails with
+ * the request's exception. close sends everything still buffered and waits
+ * for it to complete.
+ */
+public final class TagMutationAggregator implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TagMutationAggregator.class);
+
+    public enum DeviceIdType {
+        IOS_CHANNEL,
+        DEVICE_TOKEN,
+        DEVICE_PIN,
+        APID
+    }
+
+    private final AsyncAPIClient client;
+    private final int flushSize;
+    private final long flushIntervalMillis;
+    private final int maxDevicesPerRequest;
+    private final int maxPendingOperations;
+    private final Semaphore pending;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<Key, Operation> buffered = Maps.newLinkedHashMap();
+    private final Set<Key> inFlight = Sets.newHashSet();
+    // Operations, buffered or sent, whose futures have not completed
+    private int uncompleted = 0;
+    private boolean flushRequested = false;
+    private boolean closed = false;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                sendBuffered();
+            } catch (RuntimeException e) {
+                logger.error("Error flushing tag mutations", e);
+            }
+        }
+    };
+
+    private TagMutationAggregator(AsyncAPIClient client, int flushSize, long flushIntervalMillis,
+                                  int maxDevicesPerRequest, int maxPendingOperations) {
+        this.client = client;
+        this.flushSize = flushSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxDevicesPerRequest = maxDevicesPerRequest;
+        this.maxPendingOperations = maxPendingOperations;
+        this.pending = new Semaphore(maxPendingOperations);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("ua-tag-aggregator-%d")
+                .build());
+        scheduler.scheduleWithFixedDelay(flushTask, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public int getMaxDevicesPerRequest() {
+        return maxDevicesPerRequest;
+    }
+
+    public int getMaxPendingOperations() {
+        return maxPendingOperations;
+    }
+
+    /**
+     * Number of operations buffered and not yet sent.
+     *
+     * @return int
+     */
+    public int getBufferedCount() {
+        synchronized (lock) {
+            return buffered.size();
+        }
+    }
+
+    /**
+     * Add a device to a tag.
+     *
+     * @param tag Tag
+     * @param type Type of the device id
+     * @param deviceId Device id
+     * @return Future that completes once the device has been added
+     */
+    public ListenableFuture<Void> addDevice(String tag, DeviceIdType type, String deviceId) {
+        return mutate(tag, type, deviceId, true);
+    }
+
+    /**
+     * Remove a device from a tag.
+     *
+     * @param tag Tag
+     * @param type Type of the device id
+     * @param deviceId Device id
+     * @return Future that completes once the device has been removed
+     */
+    public ListenableFuture<Void> removeDevice(String tag, DeviceIdType type, String deviceId) {
+        return mutate(tag, type, deviceId, false);
+    }
+
+    /**
+     * Send the buffered operations now, without waiting for the size or
+     * time threshold.
+     */
+    public void flush() {
+        requestFlush();
+    }
+
+    private ListenableFuture<Void> mutate(String tag, DeviceIdType type, String deviceId, boolean add) {
+        Preconditions.checkNotNull(tag, "tag cannot be null");
+        Preconditions.checkNotNull(type, "type cannot be null");
+        Preconditions.checkNotNull(deviceId, "deviceId cannot be null");
+
+        try {
+            pending.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Futures.immediateFailedFuture(e);
+        }
+
+        SettableFuture<Void> future = SettableFuture.create();
+        boolean flush = false;
+        synchronized (lock) {
+            if (closed) {
+                pending.release();
+                throw new IllegalStateException("TagMutationAggregator is closed");
+            }
+
+            Operation replaced = buffered.put(new Key(tag, type, deviceId), new Operation(add, future));
+            if (replaced != null) {
+                // The operation takes the replaced one's place, and permit
+                pending.release();
+                completeWith(replaced.future, future);
+            } else {
+                uncompleted++;
+            }
+            if (buffered.size() >= flushSize && !flushRequested) {
+                flushRequested = true;
+                flush = true;
+            }
+        }
+
+        if (flush) {
+            requestFlush();
+        }
+        return future;
+    }
+
+    private void requestFlush() {
+        try {
+            scheduler.execute(flushTask);
+        } catch (RuntimeException e) {
+            // Closing; close sends what is left
+            logger.debug("Flush not scheduled", e);
+        }
+    }
+
+    private static void completeWith(final SettableFuture<Void> replaced, ListenableFuture<Void> replacement) {
+        Futures.addCallback(replacement, new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                replaced.set(null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                replaced.setException(t);
+            }
+        });
+    }
+
+    /*
+    Sends every buffered operation whose tag and device has nothing in
+    flight; the others wait for a later flush.
+     */
+    private void sendBuffered() {
+        List<Map.Entry<Key, Operation>> operations = Lists.newArrayList();
+        synchronized (lock) {
+            flushRequested = false;
+            Iterator<Map.Entry<Key, Operation>> entries = buffered.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Key, Operation> entry = entries.next();
+                if (inFlight.add(entry.getKey())) {
+                    operations.add(Maps.immutableEntry(entry.getKey(), entry.getValue()));
+                    entries.remove();
+                }
+            }
+        }
+        if (operations.isEmpty()) {
+            return;
+        }
+
+        // Adds grouped by device for batch modification, everything else by tag
+        Map<Key, List<Map.Entry<Key, Operation>>> adds = Maps.newLinkedHashMap();
+        Map<String, List<Map.Entry<Key, Operation>>> byTag = Maps.newLinkedHashMap();
+        for (Map.Entry<Key, Operation> entry : operations) {
+            Key key = entry.getKey();
+            if (entry.getValue().add && key.type != DeviceIdType.DEVICE_PIN) {
+                Key device = new Key(null, key.type, key.deviceId);
+                if (!adds.containsKey(device)) {
+                    adds.put(device, Lists.<Map.Entry<Key, Operation>>newArrayList());
+                }
+                adds.get(device).add(entry);
+            } else {
+                if (!byTag.containsKey(key.tag)) {
+                    byTag.put(key.tag, Lists.<Map.Entry<Key, Operation>>newArrayList());
+                }
+                byTag.get(key.tag).add(entry);
+            }
+        }
+
+        for (List<List<Map.Entry<Key, Operation>>> devices :
+                Iterables.partition(adds.values(), maxDevicesPerRequest)) {
+            sendAdds(devices);
+        }
+        for (Map.Entry<String, List<Map.Entry<Key, Operation>>> tag : byTag.entrySet()) {
+            for (List<Map.Entry<Key, Operation>> part : Lists.partition(tag.getValue(), maxDevicesPerRequest)) {
+                sendTag(tag.getKey(), part);
+            }
+        }
+    }
+
+    private void sendAdds(List<List<Map.Entry<Key, Operation>>> devices) {
+        List<Map.Entry<Key, Operation>> operations = Lists.newArrayList();
+        for (List<Map.Entry<Key, Operation>> device : devices) {
+            operations.addAll(device);
+        }
+
+        ListenableFuture<HttpResponse> request;
+        try {
+            BatchModificationPayload.Builder payload = BatchModificationPayload.newBuilder();
+            for (List<Map.Entry<Key, Operation>> device : devices) {
+                Key first = device.get(0).getKey();
+                BatchTagSet.Builder tags = BatchTagSet.newBuilder().setDevice(batchType(first.type), first.deviceId);
+                for (Map.Entry<Key, Operation> entry : device) {
+                    tags.addTag(entry.getKey().tag);
+                }
+                payload.addBatchObject(tags.build());
+            }
+            request = client.batchModificationOfTags(payload.build());
+        } catch (RuntimeException e) {
+            // Such as a RejectedExecutionException once the AsyncAPIClient is closed
+            request = Futures.immediateFailedFuture(e);
+        }
+        complete(operations, request);
+    }
+
+    private void sendTag(String tag, List<Map.Entry<Key, Operation>> operations) {
+        ListenableFuture<HttpResponse> request;
+        try {
+            request = client.addRemoveDevicesFromTag(tag, tagPayload(operations));
+        } catch (RuntimeException e) {
+            request = Futures.immediateFailedFuture(e);
+        }
+        complete(operations, request);
+    }
+
+    private static AddRemoveDeviceFromTagPayload tagPayload(List<Map.Entry<Key, Operation>> operations) {
+        Map<DeviceIdType, AddRemoveSet.Builder> sets = Maps.newEnumMap(DeviceIdType.class);
+        for (Map.Entry<Key, Operation> entry : operations) {
+            Key key = entry.getKey();
+            if (!sets.containsKey(key.type)) {
+                sets.put(key.type, AddRemoveSet.newBuilder());
+            }
+            if (entry.getValue().add) {
+                sets.get(key.type).add(key.deviceId);
+            } else {
+                sets.get(key.type).remove(key.deviceId);
+            }
+        }
+
+        AddRemoveDeviceFromTagPayload.Builder payload = AddRemoveDeviceFromTagPayload.newBuilder();
+        for (Map.Entry<DeviceIdType, AddRemoveSet.Builder> set : sets.entrySet()) {
+            switch (set.getKey()) {
+                case IOS_CHANNEL:
+                    payload.setIOSChannels(set.getValue().build());
+                    break;
+                case DEVICE_TOKEN:
+                    payload.setDeviceTokens(set.getValue().build());
+                    break;
+                case DEVICE_PIN:
+                    payload.setDevicePins(set.getValue().build());
+                    break;
+                case APID:
+                    payload.setApids(set.getValue().build());
+                    break;
+            }
+        }
+        return payload.build();
+    }
+
+    private static BatchTagSet.DEVICEIDTYPES batchType(DeviceIdType type) {
+        switch (type) {
+            case IOS_CHANNEL:
+                return BatchTagSet.DEVICEIDTYPES.IOS_CHANNEL;
+            case DEVICE_TOKEN:
+                return BatchTagSet.DEVICEIDTYPES.DEVICE_TOKEN;
+            case APID:
+                return BatchTagSet.DEVICEIDTYPES.APID;
+            default:
+                throw new IllegalArgumentException("No batch modification for " + type);
+        }
+    }
+
+    private void complete(final List<Map.Entry<Key, Operation>> operations, ListenableFuture<HttpResponse> request) {
+        Futures.addCallback(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void onSuccess(HttpResponse result) {
+                release();
+                for (Map.Entry<Key, Operation> entry : operations) {
+                    entry.getValue().future.set(null);
+                }
+                completed();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                release();
+                for (Map.Entry<Key, Operation> entry : operations) {
+                    entry.getValue().future.setException(t);
+                }
+                completed();
+            }
+
+            /*
+            Before the futures complete, as their callbacks run on this thread
+            and may add operations, which could otherwise block for the
+            permits held here.
+             */
+            private void release() {
+                synchronized (lock) {
+                    for (Map.Entry<Key, Operation> entry : operations) {
+                        inFlight.remove(entry.getKey());
+                    }
+                    lock.notifyAll();
+                }
+                pending.release(operations.size());
+            }
+
+            private void completed() {
+                synchronized (lock) {
+                    uncompleted -= operations.size();
+                    lock.notifyAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops accepting operations, sends everything still buffered and waits
+     * for it to complete. The AsyncAPIClient is left open.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            while (true) {
+                sendBuffered();
+                synchronized (lock) {
+                    if (uncompleted == 0) {
+                        return;
+                    }
+                    // Nothing more can be sent until something in flight finishes
+                    if (!inFlight.isEmpty() || buffered.isEmpty()) {
+                        lock.wait();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn(String.format("Interrupted closing with %d tag mutations unsent", getBufferedCount()));
+        }
+    }
+
+    private static final class Key {
+        private final String tag;
+        private final DeviceIdType type;
+        private final String deviceId;
+
+        private Key(String tag, DeviceIdType type, String deviceId) {
+            this.tag = tag;
+            this.type = type;
+            this.deviceId = deviceId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(tag, type, deviceId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Objects.equal(this.tag, other.tag) && Objects.equal(this.type, other.type) &&
+                    Objects.equal(this.deviceId, other.deviceId);
+        }
+    }
+
+    private static final class Operation {
+        private final boolean add;
+        private final SettableFuture<Void> future;
+
+        private Operation(boolean add, SettableFuture<Void> future) {
+            this.add = add;
+            this.future = future;
+        }
+    }
+
+    public static class Builder {
+
+        private AsyncAPIClient client;
+        private int flushSize = 1000;
+        private long flushIntervalMillis = 1000;
+        private int maxDevicesPerRequest = 1000;
+        private int maxPendingOperations = 100000;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the AsyncAPIClient requests are sent through.
+         *
+         * @param value AsyncAPIClient
+         * @return Builder
+         */
+        public Builder setClient(AsyncAPIClient value) {
+            this.client = value;
+            return this;
+        }
+
+        /**
+         * Number of buffered operations that triggers a flush. Defaults to
+         * 1000.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setFlushSize(int value) {
+            this.flushSize = value;
+            return this;
+        }
+
+        /**
+         * Longest an operation stays buffered before it is sent, in
+         * milliseconds. Defaults to 1000.
+         *
+         * @param value long
+         * @return Builder
+         */
+        public Builder setFlushIntervalMillis(long value) {
+            this.flushIntervalMillis = value;
+            return this;
+        }
+
+        /**
+         * Maximum number of devices in one request. Defaults to 1000.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setMaxDevicesPerRequest(int value) {
+            this.maxDevicesPerRequest = value;
+            return this;
+        }
+
+        /**
+         * Maximum number of operations buffered or in flight before adding
+         * more blocks. Defaults to 100000.
+         *
+         * @param value int
+         * @return Builder
+         */
+        public Builder setMaxPendingOperations(int value) {
+            this.maxPendingOperations = value;
+            return this;
+        }
+
+        public TagMutationAggregator build() {
+            Preconditions.checkNotNull(client, "AsyncAPIClient needed to build TagMutationAggregator");
+            Preconditions.checkArgument(flushSize > 0, "flushSize must be positive");
+            Preconditions.checkArgument(flushIntervalMillis > 0, "flushIntervalMillis must be positive");
+            Preconditions.checkArgument(maxDevicesPerRequest > 0, "maxDevicesPerRequest must be positive");
+            Preconditions.checkArgument(maxPendingOperations >= flushSize,
+                    "maxPendingOperations cannot be less than flushSize");
+
+            return new TagMutationAggregator(client, flushSize, flushIntervalMillis, maxDevicesPerRequest,
+                    maxPendingOperations);
+        }
+    }
+}
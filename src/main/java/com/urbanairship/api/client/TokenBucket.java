@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Lock-free token bucket. Rather than a token count, the bucket tracks the
+time at which the next permit is due, as in the generic cell rate
+algorithm, which makes taking a permit a single compare-and-set. A permit
+may be taken early by up to the burst tolerance, and each permit taken
+pushes the due time one interval further out.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong nextDue;
+
+    TokenBucket(double permitsPerSecond, int burst) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstToleranceNanos = intervalNanos * (burst - 1);
+        this.nextDue = new AtomicLong(System.nanoTime());
+    }
+
+    /*
+    Takes a permit if one is available now, or within maxWaitNanos, and
+    returns how long the caller must wait before using it. Returns -1 and
+    takes nothing if the wait would be longer than maxWaitNanos.
+     */
+    long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long current = nextDue.get();
+            long due = Math.max(current, now);
+            long wait = due - burstToleranceNanos - now;
+
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (nextDue.compareAndSet(current, due + intervalNanos)) {
+                return Math.max(0L, wait);
+            }
+        }
+    }
+
+    /* How long a caller taking a permit now would have to wait */
+    long waitNanos() {
+        long now = System.nanoTime();
+        long due = Math.max(nextDue.get(), now);
+        return Math.max(0L, due - burstToleranceNanos - now);
+    }
+}
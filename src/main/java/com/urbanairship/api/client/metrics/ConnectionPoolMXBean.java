@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client.metrics;
+
+/**
+ * JMX view of an APIClient's connection pool, registered by
+ * JMXMetricsExporter. A pool with pending requests is saturated.
+ */
+public interface ConnectionPoolMXBean {
+
+    int getLeased();
+
+    int getAvailable();
+
+    int getPending();
+
+    int getMax();
+
+    /**
+     * Leased connections as a fraction of the pool's maximum.
+     *
+     * @return Utilization between 0 and 1
+     */
+    double getUtilization();
+}
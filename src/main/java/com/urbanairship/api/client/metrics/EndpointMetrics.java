@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import com.urbanairship.api.client.EndpointGroup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters and histograms for the requests to one endpoint group, kept
+ * by InMemoryAPIClientMetrics. Every value counts attempts, so a request
+ * that was retried once counts twice.
+ */
+public final class EndpointMetrics {
+
+    private final EndpointGroup group;
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong apiErrors = new AtomicLong();
+    private final ConcurrentMap<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<Integer, AtomicLong>();
+    private final ConcurrentMap<Long, AtomicLong> errorCodes = new ConcurrentHashMap<Long, AtomicLong>();
+    private final Histogram latencyNanos = new Histogram();
+    private final Histogram requestBytes = new Histogram();
+    private final Histogram responseBytes = new Histogram();
+
+    EndpointMetrics(EndpointGroup group) {
+        this.group = group;
+    }
+
+    public EndpointGroup getGroup() {
+        return group;
+    }
+
+    /**
+     * Number of attempts that received a response, whatever its status.
+     *
+     * @return Response count
+     */
+    public long getResponseCount() {
+        return latencyNanos.getCount();
+    }
+
+    /**
+     * Number of attempts that failed without a response.
+     *
+     * @return Failure count
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * Number of error responses that were parsed into an APIError, with or
+     * without an error code.
+     *
+     * @return API error count
+     */
+    public long getAPIErrorCount() {
+        return apiErrors.get();
+    }
+
+    /**
+     * Number of responses by HTTP status code.
+     *
+     * @return Map of status code to count
+     */
+    public ImmutableMap<Integer, Long> getStatusCodeCounts() {
+        return snapshot(statusCodes);
+    }
+
+    /**
+     * Number of API errors by their error code. Errors without an error
+     * code are only included in the API error count.
+     *
+     * @return Map of error code to count
+     */
+    public ImmutableMap<Long, Long> getErrorCodeCounts() {
+        return snapshot(errorCodes);
+    }
+
+    /**
+     * Time from sending each request until its response body was handled.
+     *
+     * @return Histogram of nanoseconds
+     */
+    public Histogram getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * Request body bytes sent per response, after any compression.
+     *
+     * @return Histogram of bytes
+     */
+    public Histogram getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * Response body bytes read per response, after any decompression.
+     *
+     * @return Histogram of bytes
+     */
+    public Histogram getResponseBytes() {
+        return responseBytes;
+    }
+
+    void recordResponse(int statusCode, long latency, long sent, long received) {
+        increment(statusCodes, statusCode);
+        requestBytes.record(sent);
+        responseBytes.record(received);
+        // Recorded last, since its count is the response count
+        latencyNanos.record(latency);
+    }
+
+    void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    void recordAPIError(Number errorCode) {
+        apiErrors.incrementAndGet();
+        if (errorCode != null) {
+            increment(errorCodes, errorCode.longValue());
+        }
+    }
+
+    private static <K> void increment(ConcurrentMap<K, AtomicLong> counts, K key) {
+        AtomicLong count = counts.get(key);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = counts.putIfAbsent(key, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private static <K> ImmutableMap<K, Long> snapshot(ConcurrentMap<K, AtomicLong> counts) {
+        ImmutableMap.Builder<K, Long> builder = ImmutableMap.builder();
+        for (Map.Entry<K, AtomicLong> entry : counts.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue().get());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointMetrics{" +
+                "group=" + group +
+                ", responses=" + getResponseCount() +
+                ", failures=" + failures +
+                ", retries=" + retries +
+                ", apiErrors=" + apiErrors +
+                ", statusCodes=" + getStatusCodeCounts() +
+                ", latencyNanos=" + latencyNanos +
+                '}';
+    }
+}
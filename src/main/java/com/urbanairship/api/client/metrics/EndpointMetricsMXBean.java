@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the EndpointMetrics of one endpoint group, registered by
+ * JMXMetricsExporter. Latencies are in milliseconds.
+ */
+public interface EndpointMetricsMXBean {
+
+    long getResponseCount();
+
+    long getFailureCount();
+
+    long getRetryCount();
+
+    long getAPIErrorCount();
+
+    Map<String, Long> getStatusCodeCounts();
+
+    Map<String, Long> getErrorCodeCounts();
+
+    double getLatencyMeanMillis();
+
+    double getLatency50thPercentileMillis();
+
+    double getLatency95thPercentileMillis();
+
+    double getLatency99thPercentileMillis();
+
+    double getLatencyMaxMillis();
+
+    long getRequestBytesTotal();
+
+    long getResponseBytesTotal();
+
+    long getResponseBytes99thPercentile();
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client.metrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.urbanairship.api.client.APIClientMetrics;
+import com.urbanairship.api.client.APIError;
+import com.urbanairship.api.client.EndpointGroup;
+
+import java.io.IOException;
+
+/**
+ * APIClientMetrics that keeps counters and histograms per endpoint group in
+ * memory, for inspection by the application or export over JMX with
+ * JMXMetricsExporter. Recording is lock free and allocates nothing once a
+ * status or error code has been seen.
+ * <p>
+ * One instance can be shared by several clients to aggregate their
+ * requests.
+ */
+public final class InMemoryAPIClientMetrics implements APIClientMetrics {
+
+    private final ImmutableMap<EndpointGroup, EndpointMetrics> endpoints;
+
+    public InMemoryAPIClientMetrics() {
+        ImmutableMap.Builder<EndpointGroup, EndpointMetrics> builder = ImmutableMap.builder();
+        for (EndpointGroup group : EndpointGroup.values()) {
+            builder.put(group, new EndpointMetrics(group));
+        }
+        this.endpoints = builder.build();
+    }
+
+    /**
+     * Returns the metrics for the endpoint group.
+     *
+     * @param group Endpoint group
+     * @return EndpointMetrics
+     */
+    public EndpointMetrics getEndpointMetrics(EndpointGroup group) {
+        Preconditions.checkNotNull(group, "group cannot be null");
+        return endpoints.get(group);
+    }
+
+    public ImmutableMap<EndpointGroup, EndpointMetrics> getAllEndpointMetrics() {
+        return endpoints;
+    }
+
+    @Override
+    public void onResponse(EndpointGroup group, String method, int statusCode, long latencyNanos, long requestBytes,
+                           long responseBytes) {
+        endpoints.get(group).recordResponse(statusCode, latencyNanos, requestBytes, responseBytes);
+    }
+
+    @Override
+    public void onFailure(EndpointGroup group, String method, IOException cause, long latencyNanos) {
+        endpoints.get(group).recordFailure();
+    }
+
+    @Override
+    public void onAPIError(EndpointGroup group, int statusCode, APIError error) {
+        endpoints.get(group).recordAPIError(error.getErrorCode().orNull());
+    }
+
+    @Override
+    public void onRetry(EndpointGroup group, String method, int attempt) {
+        endpoints.get(group).recordRetry();
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryAPIClientMetrics{" +
+                "endpoints=" + endpoints.values() +
+                '}';
+    }
+}
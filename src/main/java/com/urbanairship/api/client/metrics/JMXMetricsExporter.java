@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.client.metrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.urbanairship.api.client.APIClient;
+import com.urbanairship.api.client.EndpointGroup;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes an APIClient's InMemoryAPIClientMetrics and connection pool as
+ * MXBeans, so they can be read with any JMX console or collector. The
+ * beans are named
+ * <pre>
+ * com.urbanairship.api:type=APIClient,name=&lt;name&gt;,endpoint=&lt;group&gt;
+ * com.urbanairship.api:type=APIClient,name=&lt;name&gt;,component=ConnectionPool
+ * </pre>
+ * Values are read from the metrics when JMX asks for them; nothing is
+ * copied in the background. Closing the exporter unregisters the beans.
+ */
+public final class JMXMetricsExporter implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
+    private static final String DOMAIN = "com.urbanairship.api";
+
+    private final MBeanServer server;
+    private final ImmutableList<ObjectName> names;
+
+    private JMXMetricsExporter(MBeanServer server, ImmutableList<ObjectName> names) {
+        this.server = server;
+        this.names = names;
+    }
+
+    /**
+     * Registers the beans with the platform MBean server.
+     *
+     * @param name Name distinguishing this client's beans, a valid ObjectName value
+     * @param client APIClient whose connection pool is exported
+     * @param metrics Metrics set on the client
+     * @return JMXMetricsExporter
+     * @throws JMException if the beans cannot be registered, for example because the name is taken
+     */
+    public static JMXMetricsExporter register(String name, APIClient client, InMemoryAPIClientMetrics metrics)
+            throws JMException {
+        return register(ManagementFactory.getPlatformMBeanServer(), name, client, metrics);
+    }
+
+    public static JMXMetricsExporter register(MBeanServer server, String name, APIClient client,
+                                              InMemoryAPIClientMetrics metrics) throws JMException {
+        Preconditions.checkNotNull(server, "server cannot be null");
+        Preconditions.checkNotNull(name, "name cannot be null");
+        Preconditions.checkNotNull(client, "client cannot be null");
+        Preconditions.checkNotNull(metrics, "metrics cannot be null");
+
+        ImmutableList.Builder<ObjectName> registered = ImmutableList.builder();
+        try {
+            for (EndpointMetrics endpoint : metrics.getAllEndpointMetrics().values()) {
+                ObjectName objectName = endpointName(name, endpoint.getGroup());
+                server.registerMBean(new StandardMBean(new EndpointMetricsBean(endpoint),
+                        EndpointMetricsMXBean.class, true), objectName);
+                registered.add(objectName);
+            }
+
+            ObjectName poolName = new ObjectName(String.format("%s:type=APIClient,name=%s,component=ConnectionPool",
+                    DOMAIN, name));
+            server.registerMBean(new StandardMBean(new ConnectionPoolBean(client),
+                    ConnectionPoolMXBean.class, true), poolName);
+            registered.add(poolName);
+        } catch (JMException e) {
+            new JMXMetricsExporter(server, registered.build()).close();
+            throw e;
+        }
+
+        return new JMXMetricsExporter(server, registered.build());
+    }
+
+    static ObjectName endpointName(String name, EndpointGroup group) throws JMException {
+        return new ObjectName(String.format("%s:type=APIClient,name=%s,endpoint=%s",
+                DOMAIN, name, group.name().toLowerCase()));
+    }
+
+    public List<ObjectName> getObjectNames() {
+        return names;
+    }
+
+    @Override
+    public void close() {
+        for (ObjectName name : names) {
+            try {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                logger.warn(String.format("Unable to unregister %s", name), e);
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static <K> Map<String, Long> stringKeys(Map<K, Long> counts) {
+        ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
+        for (Map.Entry<K, Long> entry : counts.entrySet()) {
+            builder.put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    private static final class EndpointMetricsBean implements EndpointMetricsMXBean {
+
+        private final EndpointMetrics metrics;
+
+        private EndpointMetricsBean(EndpointMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public long getResponseCount() {
+            return metrics.getResponseCount();
+        }
+
+        @Override
+        public long getFailureCount() {
+            return metrics.getFailureCount();
+        }
+
+        @Override
+        public long getRetryCount() {
+            return metrics.getRetryCount();
+        }
+
+        @Override
+        public long getAPIErrorCount() {
+            return metrics.getAPIErrorCount();
+        }
+
+        @Override
+        public Map<String, Long> getStatusCodeCounts() {
+            return stringKeys(metrics.getStatusCodeCounts());
+        }
+
+        @Override
+        public Map<String, Long> getErrorCodeCounts() {
+            return stringKeys(metrics.getErrorCodeCounts());
+        }
+
+        @Override
+        public double getLatencyMeanMillis() {
+            return metrics.getLatencyNanos().getMean() / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        @Override
+        public double getLatency50thPercentileMillis() {
+            return millis(metrics.getLatencyNanos().getValueAtPercentile(50));
+        }
+
+        @Override
+        public double getLatency95thPercentileMillis() {
+            return millis(metrics.getLatencyNanos().getValueAtPercentile(95));
+        }
+
+        @Override
+        public double getLatency99thPercentileMillis() {
+            return millis(metrics.getLatencyNanos().getValueAtPercentile(99));
+        }
+
+        @Override
+        public double getLatencyMaxMillis() {
+            return millis(metrics.getLatencyNanos().getMax());
+        }
+
+        @Override
+        public long getRequestBytesTotal() {
+            return metrics.getRequestBytes().getSum();
+        }
+
+        @Override
+        public long getResponseBytesTotal() {
+            return metrics.getResponseBytes().getSum();
+        }
+
+        @Override
+        public long getResponseBytes99thPercentile() {
+            return metrics.getResponseBytes().getValueAtPercentile(99);
+        }
+    }
+
+    private static final class ConnectionPoolBean implements ConnectionPoolMXBean {
+
+        private final APIClient client;
+
+        private ConnectionPoolBean(APIClient client) {
+            this.client = client;
+        }
+
+        @Override
+        public int getLeased() {
+            return client.getConnectionPoolStats().getLeased();
+        }
+
+        @Override
+        public int getAvailable() {
+            return client.getConnectionPoolStats().getAvailable();
+        }
+
+        @Override
+        public int getPending() {
+            return client.getConnectionPoolStats().getPending();
+        }
+
+        @Override
+        public int getMax() {
+            return client.getConnectionPoolStats().getMax();
+        }
+
+        @Override
+        public double getUtilization() {
+            PoolStats stats = client.getConnectionPoolStats();
+            return stats.getMax() == 0 ? 0.0 : (double) stats.getLeased() / stats.getMax();
+        }
+    }
+}
@@ -5,7 +5,12 @@
 package com.urbanairship.api.common.model;
 
 import com.urbanairship.api.common.parse.CommonObjectMapper;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+
 import java.io.IOException;
+import java.io.OutputStream;
 
 public abstract class APIModelObject {
     public String toJSON() {
@@ -16,6 +21,27 @@ public abstract class APIModelObject {
         }
     }
 
+    /**
+     * Write this object as UTF-8 JSON directly to the given stream, without
+     * building an intermediate String. The stream is flushed but not closed.
+     *
+     * @param out OutputStream to write to
+     * @throws IOException
+     */
+    public void writeJSON(OutputStream out) throws IOException {
+        writeJSON(CommonObjectMapper.getInstance(), out);
+    }
+
+    protected final void writeJSON(ObjectMapper mapper, OutputStream out) throws IOException {
+        JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            mapper.writeValue(generator, this);
+        } finally {
+            generator.close();
+        }
+    }
+
     protected static String toJSON(Exception e) {
         return new StringBuffer()
             .append("{ \"exception\" : \"")
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.common.trace;
+
+/**
+ * A timed stage of an API call, started with {@link Tracing#begin}. The
+ * setters record attributes of the stage and return the span, and
+ * {@link #end()} completes it. When nothing is recording, the span is a
+ * shared instance that ignores all calls.
+ */
+public interface Span {
+
+    /**
+     * Whether the span is being recorded. Call sites check this before
+     * computing attributes that cost anything to produce.
+     *
+     * @return true if recording
+     */
+    boolean isRecording();
+
+    Span setEndpoint(String endpoint);
+
+    Span setMethod(String method);
+
+    Span setStatusCode(int statusCode);
+
+    /**
+     * Size of the payload serialized or read during the stage.
+     *
+     * @param bytes Size in bytes
+     * @return Span
+     */
+    Span setPayloadBytes(long bytes);
+
+    /**
+     * Free form detail, such as the payload type or response handler.
+     *
+     * @param detail Detail
+     * @return Span
+     */
+    Span setDetail(String detail);
+
+    void end();
+}
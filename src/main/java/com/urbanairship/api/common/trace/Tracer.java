@@ -0,0 +1,14 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.common.trace;
+
+/*
+Starts spans for a stage. The JDK 11+ build adds a tracer that emits JDK
+Flight Recorder events, see Tracing.
+ */
+interface Tracer {
+
+    Span begin(Tracing.Stage stage);
+}
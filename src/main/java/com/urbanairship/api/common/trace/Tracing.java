@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.common.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point for tracing the stages of an API call, so they can be lined
+ * up with GC pauses and thread stalls in a JDK Flight Recorder recording.
+ * <p>
+ * When the library is built on JDK 11 or later it includes a tracer that
+ * emits a Flight Recorder event per span, which is picked up here when the
+ * running JVM supports it. Otherwise, and whenever no recording has the
+ * events enabled, begin returns a shared span that does nothing.
+ */
+public final class Tracing {
+
+    /**
+     * Stages of an API call that are traced.
+     */
+    public enum Stage {
+        /** Building the request and its headers */
+        PROVISIONING,
+        /** Writing a push payload as JSON */
+        SERIALIZATION,
+        /** Sending the request and handling its response */
+        EXCHANGE,
+        /** Parsing the response body in its handler */
+        DESERIALIZATION
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger("com.urbanairship.api");
+    private static final String FLIGHT_RECORDER_TRACER = "com.urbanairship.api.common.trace.FlightRecorderTracer";
+
+    private Tracing() {
+    }
+
+    /**
+     * Starts a span for the stage. The span must be ended, typically in a
+     * finally block.
+     *
+     * @param stage Stage
+     * @return Span
+     */
+    public static Span begin(Stage stage) {
+        return TRACER.begin(stage);
+    }
+
+    private static Tracer loadTracer() {
+        try {
+            Tracer tracer = (Tracer) Class.forName(FLIGHT_RECORDER_TRACER).newInstance();
+            logger.debug("Tracing API calls with JDK Flight Recorder events");
+            return tracer;
+        } catch (ClassNotFoundException e) {
+            // Built without the JDK 11 profile
+            return NOOP_TRACER;
+        } catch (LinkageError e) {
+            // Running on a JVM without Flight Recorder, or older than the tracer
+            return NOOP_TRACER;
+        } catch (Exception e) {
+            logger.warn("Unable to load the Flight Recorder tracer", e);
+            return NOOP_TRACER;
+        }
+    }
+
+    static final Span NOOP_SPAN = new Span() {
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        public Span setEndpoint(String endpoint) {
+            return this;
+        }
+
+        @Override
+        public Span setMethod(String method) {
+            return this;
+        }
+
+        @Override
+        public Span setStatusCode(int statusCode) {
+            return this;
+        }
+
+        @Override
+        public Span setPayloadBytes(long bytes) {
+            return this;
+        }
+
+        @Override
+        public Span setDetail(String detail) {
+            return this;
+        }
+
+        @Override
+        public void end() {
+        }
+    };
+
+    private static final Tracer NOOP_TRACER = new Tracer() {
+        @Override
+        public Span begin(Stage stage) {
+            return NOOP_SPAN;
+        }
+    };
+
+    // Declared after the no-op instances it may fall back to
+    private static final Tracer TRACER = loadTracer();
+}
@@ -4,9 +4,15 @@
 
 package com.urbanairship.api.push.model;
 
+import com.google.common.io.CountingOutputStream;
 import com.urbanairship.api.common.model.APIModelObject;
+import com.urbanairship.api.common.trace.Span;
+import com.urbanairship.api.common.trace.Tracing;
 import com.urbanairship.api.push.parse.PushObjectMapper;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 public class PushModelObject extends APIModelObject {
     @Override
     public String toJSON() {
@@ -16,4 +22,22 @@ public class PushModelObject extends APIModelObject {
             return toJSON(e);
         }
     }
+
+    @Override
+    public void writeJSON(OutputStream out) throws IOException {
+        Span span = Tracing.begin(Tracing.Stage.SERIALIZATION);
+        if (!span.isRecording()) {
+            writeJSON(PushObjectMapper.getInstance(), out);
+            return;
+        }
+
+        CountingOutputStream counting = new CountingOutputStream(out);
+        try {
+            writeJSON(PushObjectMapper.getInstance(), counting);
+        } finally {
+            span.setDetail(getClass().getSimpleName())
+                    .setPayloadBytes(counting.getCount())
+                    .end();
+        }
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.common.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/*
+Fields shared by the Flight Recorder events of each stage of an API call.
+Attributes that do not apply to a stage are left empty.
+ */
+@Category({"Urban Airship", "API Client"})
+@StackTrace(false)
+abstract class APICallEvent extends Event {
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Method")
+    String method;
+
+    @Label("Status Code")
+    int statusCode;
+
+    @Label("Payload Size")
+    @DataAmount
+    long payloadBytes;
+
+    @Label("Detail")
+    String detail;
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.common.trace;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+Emits a JDK Flight Recorder event for each span. Compiled only by the jfr
+profile on JDK 11+, and loaded reflectively by Tracing.
+
+Each stage's EventType is looked up once and checked before an event is
+created, so while no recording has the event enabled nothing is allocated
+and the no-op span is returned.
+ */
+final class FlightRecorderTracer implements Tracer {
+
+    static final String PROVISIONING = "com.urbanairship.api.RequestProvisioning";
+    static final String SERIALIZATION = "com.urbanairship.api.PayloadSerialization";
+    static final String EXCHANGE = "com.urbanairship.api.HttpExchange";
+    static final String DESERIALIZATION = "com.urbanairship.api.ResponseDeserialization";
+
+    private final EventType provisioningType;
+    private final EventType serializationType;
+    private final EventType exchangeType;
+    private final EventType deserializationType;
+
+    FlightRecorderTracer() {
+        // Fails here, so Tracing falls back to the no-op tracer, on a JVM without the jdk.jfr module
+        FlightRecorder.isAvailable();
+        this.provisioningType = EventType.getEventType(RequestProvisioningEvent.class);
+        this.serializationType = EventType.getEventType(PayloadSerializationEvent.class);
+        this.exchangeType = EventType.getEventType(HttpExchangeEvent.class);
+        this.deserializationType = EventType.getEventType(ResponseDeserializationEvent.class);
+    }
+
+    @Override
+    public Span begin(Tracing.Stage stage) {
+        if (!typeOf(stage).isEnabled()) {
+            return Tracing.NOOP_SPAN;
+        }
+
+        APICallEvent event;
+        switch (stage) {
+            case PROVISIONING:
+                event = new RequestProvisioningEvent();
+                break;
+            case SERIALIZATION:
+                event = new PayloadSerializationEvent();
+                break;
+            case EXCHANGE:
+                event = new HttpExchangeEvent();
+                break;
+            default:
+                event = new ResponseDeserializationEvent();
+                break;
+        }
+
+        event.begin();
+        return new EventSpan(event);
+    }
+
+    private EventType typeOf(Tracing.Stage stage) {
+        switch (stage) {
+            case PROVISIONING:
+                return provisioningType;
+            case SERIALIZATION:
+                return serializationType;
+            case EXCHANGE:
+                return exchangeType;
+            default:
+                return deserializationType;
+        }
+    }
+
+    private static final class EventSpan implements Span {
+
+        private final APICallEvent event;
+
+        private EventSpan(APICallEvent event) {
+            this.event = event;
+        }
+
+        @Override
+        public boolean isRecording() {
+            return true;
+        }
+
+        @Override
+        public Span setEndpoint(String endpoint) {
+            event.endpoint = endpoint;
+            return this;
+        }
+
+        @Override
+        public Span setMethod(String method) {
+            event.method = method;
+            return this;
+        }
+
+        @Override
+        public Span setStatusCode(int statusCode) {
+            event.statusCode = statusCode;
+            return this;
+        }
+
+        @Override
+        public Span setPayloadBytes(long bytes) {
+            event.payloadBytes = bytes;
+            return this;
+        }
+
+        @Override
+        public Span setDetail(String detail) {
+            event.detail = detail;
+            return this;
+        }
+
+        @Override
+        public void end() {
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit();
+            }
+        }
+    }
+
+    @Name(PROVISIONING)
+    @Label("Request Provisioning")
+    @Description("Building an API request and its headers")
+    static final class RequestProvisioningEvent extends APICallEvent {
+    }
+
+    @Name(SERIALIZATION)
+    @Label("Payload Serialization")
+    @Description("Writing a push payload as JSON to the request body")
+    static final class PayloadSerializationEvent extends APICallEvent {
+    }
+
+    @Name(EXCHANGE)
+    @Label("HTTP Exchange")
+    @Description("Sending an API request and handling its response, once per attempt")
+    static final class HttpExchangeEvent extends APICallEvent {
+    }
+
+    @Name(DESERIALIZATION)
+    @Label("Response Deserialization")
+    @Description("Parsing an API response body in its handler")
+    static final class ResponseDeserializationEvent extends APICallEvent {
+    }
+}
@@ -0,0 +1,112 @@
+package com.urbanairship.api.channel.export;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.urbanairship.api.channel.information.model.ChannelView;
+import com.urbanairship.api.channel.information.model.DeviceType;
+import com.urbanairship.api.channel.information.model.ios.IosSettings;
+import com.urbanairship.api.channel.information.model.ios.QuietTime;
+import com.urbanairship.api.client.parse.APIResponseObjectMapper;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ChannelSinkTest {
+
+    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
+
+    private static ChannelView iosChannel() {
+        return ChannelView.newBuilder()
+                .setChannelId("9c36e8c7-5a73-47c0-9716-99fd3d4197d5")
+                .setDeviceType(DeviceType.IOS)
+                .setInstalled(true)
+                .setOptedIn(true)
+                .setBackground(true)
+                .setPushAddress("FE66489F304DC75B8D6E8200DFF8A456E8DAEACEC428B427E9518741C92C6660")
+                .setCreatedMillis(1402352559000L)
+                .setLastRegistrationMillis(1402352700000L)
+                .setAlias("your_user_id")
+                .addTag("tag1")
+                .addTag("tag2")
+                .setIosSettings(IosSettings.newBuilder()
+                        .setBadge(2)
+                        .setQuietTime(QuietTime.newBuilder().setStart("22:00").setEnd("8:00").build())
+                        .setTimeZone("America/Los_Angeles")
+                        .build())
+                .build();
+    }
+
+    private static ChannelView androidChannel() {
+        return ChannelView.newBuilder()
+                .setChannelId("00000000-0000-0000-0000-000000000000")
+                .setDeviceType(DeviceType.ANDROID)
+                .setInstalled(false)
+                .setOptedIn(false)
+                .setCreatedMillis(1338928657000L)
+                .setAlias("Smith, \"Jo\"")
+                .build();
+    }
+
+    @Test
+    public void testNDJSONRoundTrip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NDJSONChannelSink sink = new NDJSONChannelSink(out);
+        sink.write(iosChannel());
+        sink.write(androidChannel());
+        sink.close();
+
+        String ndjson = new String(out.toByteArray(), Charsets.UTF_8);
+        assertTrue(ndjson.endsWith("\n"));
+
+        List<String> lines = ImmutableList.copyOf(Splitter.on('\n').omitEmptyStrings().split(ndjson));
+        assertEquals(2, lines.size());
+        assertFalse(lines.get(0).startsWith(" "));
+        assertFalse(lines.get(1).startsWith(" "));
+        assertEquals(iosChannel(), mapper.readValue(lines.get(0), ChannelView.class));
+        assertEquals(androidChannel(), mapper.readValue(lines.get(1), ChannelView.class));
+    }
+
+    @Test
+    public void testNDJSONFlushReachesStream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NDJSONChannelSink sink = new NDJSONChannelSink(out);
+        sink.write(androidChannel());
+        sink.flush();
+
+        assertTrue(out.size() > 0);
+    }
+
+    @Test
+    public void testCSV() throws Exception {
+        StringWriter writer = new StringWriter();
+        CSVChannelSink sink = new CSVChannelSink(writer, true);
+        sink.write(iosChannel());
+        sink.write(androidChannel());
+        sink.close();
+
+        assertEquals(
+                "channel_id,device_type,installed,opt_in,background,push_address,created,last_registration,alias,tags\r\n" +
+                "9c36e8c7-5a73-47c0-9716-99fd3d4197d5,ios,true,true,true," +
+                        "FE66489F304DC75B8D6E8200DFF8A456E8DAEACEC428B427E9518741C92C6660," +
+                        "2014-06-09T22:22:39,2014-06-09T22:25:00,your_user_id,tag1;tag2\r\n" +
+                "00000000-0000-0000-0000-000000000000,android,false,false,,,2012-06-05T20:37:37,," +
+                        "\"Smith, \"\"Jo\"\"\",\r\n",
+                writer.toString());
+    }
+
+    @Test
+    public void testCSVWithoutHeader() throws Exception {
+        StringWriter writer = new StringWriter();
+        CSVChannelSink sink = new CSVChannelSink(writer, false);
+        sink.write(androidChannel());
+        sink.close();
+
+        assertTrue(writer.toString().startsWith("00000000-0000-0000-0000-000000000000,"));
+    }
+}
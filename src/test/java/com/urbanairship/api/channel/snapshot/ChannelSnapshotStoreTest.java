@@ -0,0 +1,181 @@
+package com.urbanairship.api.channel.snapshot;
+
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.urbanairship.api.channel.information.model.ChannelView;
+import com.urbanairship.api.channel.information.model.DeviceType;
+import com.urbanairship.api.client.APIClient;
+import org.apache.log4j.BasicConfigurator;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.*;
+
+public class ChannelSnapshotStoreTest {
+
+    static {
+        BasicConfigurator.configure();
+    }
+
+    @ClassRule
+    @Rule
+    public static WireMockClassRule wireMockClassRule = new WireMockClassRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ChannelView channel(String id, long created, Long lastRegistration, String alias) {
+        return ChannelView.newBuilder()
+                .setChannelId(id)
+                .setDeviceType(DeviceType.ANDROID)
+                .setInstalled(true)
+                .setOptedIn(true)
+                .setCreatedMillis(created)
+                .setLastRegistrationMillis(lastRegistration)
+                .setAlias(alias)
+                .build();
+    }
+
+    @Test
+    public void testOnlyNewerRegistrationsAreApplied() throws Exception {
+        ChannelSnapshotStore store = ChannelSnapshotStore.open(folder.getRoot());
+
+        store.write(channel("a", 1000L, null, "first"));
+        store.write(channel("a", 1000L, null, "same time"));
+        assertEquals("first", store.get("a").get().getAlias().get());
+
+        store.write(channel("a", 1000L, 5000L, "re-registered"));
+        assertEquals("re-registered", store.get("a").get().getAlias().get());
+
+        store.write(channel("a", 1000L, 3000L, "stale"));
+        assertEquals("re-registered", store.get("a").get().getAlias().get());
+
+        assertEquals(1, store.size());
+        assertEquals(5000L, store.getWatermarkMillis());
+        store.close();
+    }
+
+    @Test
+    public void testReopenRestoresChannels() throws Exception {
+        ChannelSnapshotStore store = ChannelSnapshotStore.open(folder.getRoot());
+        store.write(channel("a", 1000L, null, null));
+        store.write(channel("b", 2000L, 4000L, null));
+        store.flush();
+
+        // Not closed, as after a crash: the log alone is replayed
+        ChannelSnapshotStore reopened = ChannelSnapshotStore.open(folder.getRoot());
+        assertEquals(2, reopened.size());
+        assertEquals(4000L, reopened.getWatermarkMillis());
+        reopened.close();
+        store.close();
+
+        reopened = ChannelSnapshotStore.open(folder.getRoot());
+        assertEquals(2, reopened.size());
+        assertTrue(reopened.get("b").isPresent());
+        reopened.close();
+    }
+
+    @Test
+    public void testCompactionEmptiesLog() throws Exception {
+        ChannelSnapshotStore store = ChannelSnapshotStore.open(folder.getRoot());
+        for (int i = 0; i < 10; i++) {
+            store.write(channel("a", 1000L, 1000L + i, null));
+        }
+        store.compact();
+
+        File snapshot = new File(folder.getRoot(), ChannelSnapshotStore.SNAPSHOT_FILE);
+        File log = new File(folder.getRoot(), ChannelSnapshotStore.LOG_FILE);
+        assertEquals(1, Files.readLines(snapshot, Charsets.UTF_8).size());
+        assertEquals(0, log.length());
+        store.close();
+    }
+
+    @Test
+    public void testSnapshotRecoveredAfterCrashDuringCompaction() throws Exception {
+        ChannelSnapshotStore store = ChannelSnapshotStore.open(folder.getRoot());
+        store.write(channel("a", 1000L, null, null));
+        store.write(channel("b", 2000L, null, null));
+        store.compact();
+        store.write(channel("c", 3000L, null, null));
+        store.flush();
+
+        // As if the crash came after the old snapshot was deleted but before the new one was renamed
+        File snapshot = new File(folder.getRoot(), ChannelSnapshotStore.SNAPSHOT_FILE);
+        File tmp = new File(folder.getRoot(), ChannelSnapshotStore.SNAPSHOT_TEMP_FILE);
+        Files.move(snapshot, tmp);
+
+        ChannelSnapshotStore reopened = ChannelSnapshotStore.open(folder.getRoot());
+        assertEquals(3, reopened.size());
+        assertTrue(snapshot.exists());
+        assertFalse(tmp.exists());
+        reopened.close();
+        store.close();
+    }
+
+    @Test
+    public void testIncompleteLastRecordIsIgnored() throws Exception {
+        ChannelSnapshotStore store = ChannelSnapshotStore.open(folder.getRoot());
+        store.write(channel("a", 1000L, null, null));
+        store.flush();
+
+        File log = new File(folder.getRoot(), ChannelSnapshotStore.LOG_FILE);
+        Files.append("{\"channel_id\":\"b\",\"device_ty", log, Charsets.UTF_8);
+
+        ChannelSnapshotStore reopened = ChannelSnapshotStore.open(folder.getRoot());
+        assertEquals(1, reopened.size());
+        reopened.write(channel("c", 2000L, null, null));
+        reopened.close();
+
+        reopened = ChannelSnapshotStore.open(folder.getRoot());
+        assertEquals(2, reopened.size());
+        reopened.close();
+        store.close();
+    }
+
+    @Test
+    public void testRefreshAppliesOnlyChanges() throws Exception {
+        String page = "{\"ok\":true,\"channels\":[" +
+                "{\"channel_id\":\"a\",\"device_type\":\"ios\",\"installed\":true,\"opt_in\":true," +
+                "\"created\":\"2014-03-06T18:52:59\",\"last_registration\":\"%s\",\"tags\":[]}," +
+                "{\"channel_id\":\"b\",\"device_type\":\"android\",\"installed\":true,\"opt_in\":false," +
+                "\"created\":\"2014-03-06T18:52:59\",\"last_registration\":null,\"tags\":[]}]}";
+        stubFor(get(urlEqualTo("/api/channels/"))
+                .willReturn(aResponse()
+                        .withHeader("Content-type", "application/json")
+                        .withBody(String.format(page, "2014-10-07T21:28:35"))
+                        .withStatus(200)));
+
+        APIClient client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:8080")
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+
+        try {
+            ChannelSnapshotStore store = ChannelSnapshotStore.open(folder.getRoot());
+            assertEquals(2, store.refresh(client));
+            assertEquals(0, store.refresh(client));
+
+            stubFor(get(urlEqualTo("/api/channels/"))
+                    .willReturn(aResponse()
+                            .withHeader("Content-type", "application/json")
+                            .withBody(String.format(page, "2014-10-08T09:00:00"))
+                            .withStatus(200)));
+            assertEquals(1, store.refresh(client));
+            store.close();
+
+            ChannelSnapshotStore reopened = ChannelSnapshotStore.open(folder.getRoot());
+            assertEquals(2, reopened.size());
+            assertEquals(store.getWatermarkMillis(), reopened.getWatermarkMillis());
+            reopened.close();
+        } finally {
+            client.close();
+        }
+    }
+}
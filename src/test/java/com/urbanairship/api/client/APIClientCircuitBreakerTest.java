@@ -0,0 +1,180 @@
+package com.urbanairship.api.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIListAllChannelsResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+Runs the client against a local server that can be switched into an outage,
+where it answers every request with a 503 or stalls before answering.
+ */
+public class APIClientCircuitBreakerTest {
+
+    private static final String CHANNELS_JSON = "{\"ok\":true,\"channels\":[]}";
+
+    private enum Outage { NONE, ERRORS, SLOW }
+
+    private HttpServer server;
+    private volatile Outage outage = Outage.NONE;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> transitions = new CopyOnWriteArrayList<String>();
+    private final AtomicInteger rejections = new AtomicInteger();
+    private APIClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+
+                int status = 200;
+                byte[] body = CHANNELS_JSON.getBytes("UTF-8");
+                if (outage == Outage.ERRORS) {
+                    status = 503;
+                    body = "{\"message\":\"Service Unavailable\"}".getBytes("UTF-8");
+                } else if (outage == Outage.SLOW) {
+                    try {
+                        Thread.sleep(150);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+
+        client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + server.getAddress().getPort())
+                .setKey("key")
+                .setSecret("secret")
+                .setCircuitBreakerConfig(CircuitBreakerConfig.newBuilder()
+                        .setWindowSize(4)
+                        .setMinimumCalls(4)
+                        .setSlowCallDurationMillis(100)
+                        .setOpenDurationMillis(200)
+                        .setHalfOpenProbes(1)
+                        .build())
+                .setCircuitBreakerListener(new CircuitBreakerListener() {
+                    @Override
+                    public void onStateChange(EndpointGroup group, CircuitState from, CircuitState to) {
+                        transitions.add(group + ":" + to);
+                    }
+
+                    @Override
+                    public void onRequestRejected(EndpointGroup group) {
+                        rejections.incrementAndGet();
+                    }
+                })
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    private void failRequests(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            try {
+                client.listAllChannels();
+                fail("Expected APIRequestException");
+            } catch (APIRequestException e) {
+                assertEquals(503, e.httpResponseStatusCode());
+            }
+        }
+    }
+
+    @Test
+    public void testCircuitsAreClosedByDefault() {
+        APIClient plain = APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + server.getAddress().getPort())
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+
+        assertFalse(plain.getCircuitBreakerConfig().isPresent());
+        assertEquals(CircuitState.CLOSED, plain.getCircuitState(EndpointGroup.CHANNELS));
+        plain.close();
+    }
+
+    @Test
+    public void testOutageOpensCircuitAndFailsFast() throws Exception {
+        outage = Outage.ERRORS;
+        failRequests(4);
+        assertEquals(CircuitState.OPEN, client.getCircuitState(EndpointGroup.CHANNELS));
+
+        try {
+            client.listAllChannels();
+            fail("Expected CircuitOpenException");
+        } catch (CircuitOpenException e) {
+            assertEquals(EndpointGroup.CHANNELS, e.getEndpointGroup());
+        }
+
+        assertEquals(4, requests.get());
+        assertEquals(1, rejections.get());
+        assertEquals(0, client.getConnectionPoolStats().getLeased());
+
+        // Other endpoint groups are unaffected
+        assertEquals(CircuitState.CLOSED, client.getCircuitState(EndpointGroup.PUSH));
+    }
+
+    @Test
+    public void testCircuitClosesAfterRecovery() throws Exception {
+        outage = Outage.ERRORS;
+        failRequests(4);
+        outage = Outage.NONE;
+        Thread.sleep(250);
+
+        APIClientResponse<APIListAllChannelsResponse> response = client.listAllChannels();
+        assertTrue(response.getApiResponse().getChannelObjects().isEmpty());
+
+        assertEquals(CircuitState.CLOSED, client.getCircuitState(EndpointGroup.CHANNELS));
+        assertEquals("CHANNELS:OPEN", transitions.get(0));
+        assertEquals("CHANNELS:HALF_OPEN", transitions.get(1));
+        assertEquals("CHANNELS:CLOSED", transitions.get(2));
+    }
+
+    @Test
+    public void testFailedProbeReopensCircuit() throws Exception {
+        outage = Outage.ERRORS;
+        failRequests(4);
+        Thread.sleep(250);
+        failRequests(1);
+
+        assertEquals(CircuitState.OPEN, client.getCircuitState(EndpointGroup.CHANNELS));
+        assertEquals(5, requests.get());
+    }
+
+    @Test
+    public void testSlowResponsesOpenCircuit() throws Exception {
+        outage = Outage.SLOW;
+        for (int i = 0; i < 4; i++) {
+            client.listAllChannels();
+        }
+
+        assertEquals(CircuitState.OPEN, client.getCircuitState(EndpointGroup.CHANNELS));
+    }
+}
@@ -0,0 +1,209 @@
+package com.urbanairship.api.client;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIListAllChannelsResponse;
+import com.urbanairship.api.client.model.APIPushResponse;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import org.apache.http.HttpEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/*
+Runs the client against a local HTTP server that records the raw request,
+since the stub has to see the body exactly as it was sent on the wire.
+ */
+public class APIClientCompressionTest {
+
+    private static final String PUSH_JSON = "{\"ok\" : true,\"operation_id\" : \"df6a6b50\", \"push_ids\":[\"PushID\"]}";
+    private static final String CHANNELS_JSON = "{\"ok\":true,\"channels\":[{" +
+            "\"channel_id\":\"abcdef01-2345-6789-abcd-ef0123456789\"," +
+            "\"device_type\":\"ios\",\"installed\":true,\"opt_in\":true,\"background\":true," +
+            "\"push_address\":null,\"created\":\"2014-03-06T18:52:59\"," +
+            "\"last_registration\":\"2014-10-07T21:28:35\",\"alias\":null,\"tags\":[]}]}";
+
+    private HttpServer server;
+    private volatile String requestContentEncoding;
+    private volatile String requestAcceptEncoding;
+    private volatile String requestContentLength;
+    private volatile byte[] requestBody;
+    private volatile String responseContentEncoding;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestContentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                requestAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                requestContentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+                requestBody = ByteStreams.toByteArray(exchange.getRequestBody());
+
+                boolean push = exchange.getRequestURI().getPath().startsWith("/api/push");
+                byte[] body = (push ? PUSH_JSON : CHANNELS_JSON).getBytes("UTF-8");
+                if (responseContentEncoding != null) {
+                    body = gzip(body);
+                    exchange.getResponseHeaders().add("Content-Encoding", responseContentEncoding);
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(push ? 202 : 200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private APIClient newClient(Integer compressionThreshold) {
+        APIClient.Builder builder = APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + server.getAddress().getPort())
+                .setKey("key")
+                .setSecret("secret");
+        if (compressionThreshold != null) {
+            builder.setRequestCompressionThreshold(compressionThreshold);
+        }
+        return builder.build();
+    }
+
+    private static PushPayload payload(int tokens) {
+        List<String> deviceTokens = new ArrayList<String>(tokens);
+        for (int i = 0; i < tokens; i++) {
+            deviceTokens.add(String.format("%064X", i));
+        }
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.deviceTokens(deviceTokens))
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Foo"))
+                .build();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(bytes);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        return new String(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(bytes))), "UTF-8");
+    }
+
+    @Test
+    public void testLargeBodyIsCompressed() throws Exception {
+        PushPayload payload = payload(5000);
+        APIClient client = newClient(1024);
+
+        try {
+            APIClientResponse<APIPushResponse> response = client.push(payload);
+            assertEquals("df6a6b50", response.getApiResponse().getOperationId().get());
+
+            assertEquals("gzip", requestContentEncoding);
+            assertEquals(payload.toJSON(), gunzip(requestBody));
+            assertTrue("Compressed body should be smaller", requestBody.length < payload.toJSON().getBytes("UTF-8").length);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testSmallBodyIsNotCompressed() throws Exception {
+        PushPayload payload = payload(1);
+        APIClient client = newClient(1024);
+
+        try {
+            client.push(payload);
+
+            assertNull(requestContentEncoding);
+            assertEquals(payload.toJSON(), new String(requestBody, "UTF-8"));
+            assertEquals(String.valueOf(requestBody.length), requestContentLength);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testCompressionIsOffByDefault() throws Exception {
+        PushPayload payload = payload(5000);
+        APIClient client = newClient(null);
+
+        try {
+            assertFalse(client.getRequestCompressionThreshold().isPresent());
+            client.push(payload);
+
+            assertNull(requestContentEncoding);
+            assertEquals(payload.toJSON(), new String(requestBody, "UTF-8"));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testCompressedResponseIsInflated() throws Exception {
+        responseContentEncoding = "gzip";
+        APIClient client = newClient(null);
+
+        try {
+            APIClientResponse<APIListAllChannelsResponse> response = client.listAllChannels();
+
+            assertNotNull(requestAcceptEncoding);
+            assertTrue(requestAcceptEncoding.contains("gzip"));
+            assertEquals(1, response.getApiResponse().getChannelObjects().size());
+            assertEquals(0, client.getConnectionPoolStats().getLeased());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeThreshold() {
+        newClient(-1);
+    }
+
+    @Test
+    public void testCompressIfLarger() throws Exception {
+        PushPayload payload = payload(10);
+        int size = payload.toJSON().getBytes("UTF-8").length;
+
+        HttpEntity below = GzipJSONRequestEntity.compressIfLarger(payload, size + 1);
+        assertNull(below.getContentEncoding());
+        assertEquals(size, below.getContentLength());
+        assertEquals(payload.toJSON(), new String(ByteStreams.toByteArray(below.getContent()), "UTF-8"));
+
+        HttpEntity atThreshold = GzipJSONRequestEntity.compressIfLarger(payload, size);
+        assertEquals("gzip", atThreshold.getContentEncoding().getValue());
+        assertTrue(atThreshold.isRepeatable());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        atThreshold.writeTo(out);
+        assertEquals(payload.toJSON(), gunzip(out.toByteArray()));
+        assertEquals(payload.toJSON(), gunzip(ByteStreams.toByteArray(atThreshold.getContent())));
+    }
+}
@@ -0,0 +1,208 @@
+package com.urbanairship.api.client;
+
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIListSingleChannelResponse;
+import com.urbanairship.api.client.model.APIPushResponse;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.log4j.BasicConfigurator;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.*;
+
+/*
+Stress tests for sharing one APIClient, and one instance of each response
+handler, between many sender threads.
+ */
+public class APIClientConcurrencyTest {
+
+    private static final int CHANNELS = 32;
+
+    static {
+        BasicConfigurator.configure();
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(APIClientConcurrencyTest.class);
+
+    @ClassRule
+    @Rule
+    public static WireMockClassRule wireMockClassRule = new WireMockClassRule();
+
+    private static String channelId(int i) {
+        return String.format("01234567-890a-bcde-f012-%012d", i);
+    }
+
+    private static String channelJSON(String channelId) {
+        return "{\"channel\":{" +
+                "\"channel_id\":\"" + channelId + "\"," +
+                "\"device_type\":\"android\"," +
+                "\"installed\":true," +
+                "\"opt_in\":false," +
+                "\"push_address\":null," +
+                "\"created\":\"2014-07-12T00:45:01\"," +
+                "\"last_registration\":\"2014-08-06T00:33:25\"," +
+                "\"alias\":null," +
+                "\"tags\":[]}}";
+    }
+
+    private static void stubChannels(int delayMillis) {
+        for (int i = 0; i < CHANNELS; i++) {
+            stubFor(get(urlEqualTo("/api/channels/" + channelId(i)))
+                    .willReturn(aResponse()
+                            .withHeader("Content-type", "application/json")
+                            .withBody(channelJSON(channelId(i)))
+                            .withFixedDelay(delayMillis)
+                            .withStatus(200)));
+        }
+    }
+
+    private static APIClient newClient() {
+        return APIClient.newBuilder()
+                .setBaseURI("http://localhost:8080")
+                .setKey("key")
+                .setSecret("secret")
+                .setConnectionPoolConfig(ConnectionPoolConfig.newBuilder()
+                        .setMaxConnectionsTotal(16)
+                        .setMaxConnectionsPerRoute(16)
+                        .build())
+                .build();
+    }
+
+    /* Runs the task on the given number of threads, released together, and returns the elapsed nanos */
+    private static long runConcurrently(int threads, final Callable<Void> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        return task.call();
+                    }
+                }));
+            }
+
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - begin;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSharedHandlerDoesNotMixResponses() throws Exception {
+        final PushAPIResponseHandler handler = new PushAPIResponseHandler();
+
+        runConcurrently(16, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for (int i = 0; i < 2000; i++) {
+                    String operationId = Thread.currentThread().getName() + "-" + i;
+                    String json = "{\"ok\":true,\"operation_id\":\"" + operationId + "\",\"push_ids\":[\"id\"]}";
+                    HttpResponse httpResponse = new BasicHttpResponse(new BasicStatusLine(
+                            new ProtocolVersion("HTTP", 1, 1), 202, "Accepted"));
+                    httpResponse.setEntity(new InputStreamEntity(new ByteArrayInputStream(json.getBytes()),
+                            json.getBytes().length));
+
+                    APIClientResponse<APIPushResponse> response = handler.handleResponse(httpResponse);
+
+                    assertSame(httpResponse, response.getHttpResponse());
+                    assertEquals(operationId, response.getApiResponse().getOperationId().get());
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testSharedClientDoesNotMixResponses() throws Exception {
+        stubChannels(0);
+        final APIClient client = newClient();
+
+        try {
+            runConcurrently(16, new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = 0; i < 100; i++) {
+                        String channelId = channelId((int) (Math.random() * CHANNELS));
+                        APIClientResponse<APIListSingleChannelResponse> response = client.listChannel(channelId);
+                        assertEquals(channelId, response.getApiResponse().getChannelObject().getChannelId());
+                    }
+                    return null;
+                }
+            });
+
+            assertEquals(0, client.getConnectionPoolStats().getLeased());
+        } finally {
+            client.close();
+        }
+    }
+
+    /*
+    With a fixed server latency the work is dominated by waiting on the
+    network, so a single shared client should scale close to linearly with
+    sender threads up to the size of its connection pool.
+     */
+    @Test
+    public void testThroughputScalesWithThreads() throws Exception {
+        stubChannels(20);
+        final APIClient client = newClient();
+        final int requestsPerThread = 25;
+
+        try {
+            double singleThreadThroughput = 0;
+            double lastThroughput = 0;
+
+            for (int threads = 1; threads <= 8; threads *= 2) {
+                long elapsed = runConcurrently(threads, new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < requestsPerThread; i++) {
+                            String channelId = channelId(i % CHANNELS);
+                            assertEquals(channelId,
+                                    client.listChannel(channelId).getApiResponse().getChannelObject().getChannelId());
+                        }
+                        return null;
+                    }
+                });
+
+                lastThroughput = threads * requestsPerThread / (elapsed / 1e9);
+                if (threads == 1) {
+                    singleThreadThroughput = lastThroughput;
+                }
+                logger.info(String.format("%d threads: %.1f requests/s (%.2fx single thread)",
+                        threads, lastThroughput, lastThroughput / singleThreadThroughput));
+            }
+
+            // Ideal scaling at 8 threads is 8x; leave generous headroom for slow build machines.
+            assertTrue("Shared client did not scale with threads", lastThroughput > 2 * singleThreadThroughput);
+        } finally {
+            client.close();
+        }
+    }
+}
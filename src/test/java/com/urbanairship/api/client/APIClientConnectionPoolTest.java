@@ -0,0 +1,172 @@
+package com.urbanairship.api.client;
+
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIPushResponse;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import org.apache.http.HttpHost;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
+import org.apache.http.pool.PoolStats;
+import org.apache.log4j.BasicConfigurator;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.*;
+
+public class APIClientConnectionPoolTest {
+
+    private static final int REQUESTS = 500;
+    private static final String PUSH_JSON = "{\"ok\" : true,\"operation_id\" : \"df6a6b50\", \"push_ids\":[\"PushID\"]}";
+
+    static {
+        BasicConfigurator.configure();
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(APIClientConnectionPoolTest.class);
+
+    @ClassRule
+    @Rule
+    public static WireMockClassRule wireMockClassRule = new WireMockClassRule();
+
+    private static PushPayload payload() {
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.all())
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Foo"))
+                .build();
+    }
+
+    private static void stubPush() {
+        stubFor(post(urlEqualTo("/api/push/"))
+                .willReturn(aResponse()
+                        .withHeader("Content-type", "application/json")
+                        .withBody(PUSH_JSON)
+                        .withStatus(202)));
+    }
+
+    @Test
+    public void testDefaultConnectionPoolConfig() {
+        APIClient client = APIClient.newBuilder()
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+
+        assertEquals(ConnectionPoolConfig.newBuilder().build(), client.getConnectionPoolConfig());
+        client.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPerRouteCannotExceedTotal() {
+        ConnectionPoolConfig.newBuilder()
+                .setMaxConnectionsTotal(5)
+                .setMaxConnectionsPerRoute(10)
+                .build();
+    }
+
+    @Test
+    public void testConnectionsAreReturnedToThePool() throws Exception {
+        APIClient client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:8080")
+                .setKey("key")
+                .setSecret("secret")
+                .setConnectionPoolConfig(ConnectionPoolConfig.newBuilder()
+                        .setMaxConnectionsTotal(4)
+                        .setMaxConnectionsPerRoute(4)
+                        .build())
+                .build();
+
+        stubPush();
+
+        try {
+            for (int i = 0; i < 20; i++) {
+                APIClientResponse<APIPushResponse> response = client.push(payload());
+                assertNotNull(response.getApiResponse());
+            }
+
+            PoolStats stats = client.getConnectionPoolStats();
+            assertEquals(0, stats.getLeased());
+            assertEquals(0, stats.getPending());
+            assertTrue(stats.getAvailable() <= 4);
+            assertEquals(4, stats.getMax());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedClientRejectsRequests() throws Exception {
+        APIClient client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:8080")
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+
+        stubPush();
+        client.close();
+        client.push(payload());
+    }
+
+    /*
+    Compares the shared pooled transport with the previous behaviour of
+    provisioning a fresh fluent Executor, with its own auth registration,
+    for every request. Results are logged rather than asserted, since
+    timings on shared build machines are too noisy to gate on.
+     */
+    @Test
+    public void testThroughputAgainstPerCallExecutor() throws Exception {
+        APIClient client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:8080")
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+
+        stubPush();
+
+        PushPayload payload = payload();
+        URI pushURI = URI.create("http://localhost:8080/api/push/");
+        HttpHost host = new HttpHost("localhost", 443, "https");
+
+        try {
+            // Warm up both paths
+            for (int i = 0; i < 50; i++) {
+                client.push(payload);
+                Executor.newInstance().auth(host, "key", "secret").authPreemptive(host)
+                        .execute(Request.Post(pushURI).bodyString(payload.toJSON(), ContentType.APPLICATION_JSON))
+                        .discardContent();
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                Executor.newInstance().auth(host, "key", "secret").authPreemptive(host)
+                        .execute(Request.Post(pushURI).bodyString(payload.toJSON(), ContentType.APPLICATION_JSON))
+                        .handleResponse(new PushAPIResponseHandler());
+            }
+            long perCallNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                assertNotNull(client.push(payload).getApiResponse());
+            }
+            long pooledNanos = System.nanoTime() - start;
+
+            logger.info(String.format("Per call executor: %.1f requests/s, shared pool: %.1f requests/s",
+                    REQUESTS / (perCallNanos / 1e9), REQUESTS / (pooledNanos / 1e9)));
+
+            assertEquals(0, client.getConnectionPoolStats().getLeased());
+        } finally {
+            client.close();
+        }
+    }
+}
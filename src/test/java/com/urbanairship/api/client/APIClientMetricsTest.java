@@ -0,0 +1,222 @@
+package com.urbanairship.api.client;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.urbanairship.api.client.metrics.EndpointMetrics;
+import com.urbanairship.api.client.metrics.InMemoryAPIClientMetrics;
+import com.urbanairship.api.client.metrics.JMXMetricsExporter;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/*
+Runs the client against a local server that answers with scripted statuses
+and checks what the client reports to its metrics.
+ */
+public class APIClientMetricsTest {
+
+    private static final String PUSH_JSON = "{\"ok\" : true,\"operation_id\" : \"df6a6b50\", \"push_ids\":[\"PushID\"]}";
+    private static final String ERROR_JSON = "{\"ok\":false,\"operation_id\":\"df6a6b50\"," +
+            "\"error\":\"Invalid push content\",\"error_code\":40001}";
+
+    private HttpServer server;
+    private final Queue<Integer> statuses = new ConcurrentLinkedQueue<Integer>();
+    private final List<Integer> requestBodySizes = new CopyOnWriteArrayList<Integer>();
+    private final InMemoryAPIClientMetrics metrics = new InMemoryAPIClientMetrics();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestBodySizes.add(ByteStreams.toByteArray(exchange.getRequestBody()).length);
+
+                Integer scripted = statuses.poll();
+                int status = scripted == null ? 202 : scripted;
+                byte[] body;
+                if (status == 400) {
+                    body = ERROR_JSON.getBytes("UTF-8");
+                    exchange.getResponseHeaders().add("Content-Type", "application/vnd.urbanairship+json");
+                } else {
+                    body = PUSH_JSON.getBytes("UTF-8");
+                    exchange.getResponseHeaders().add("Content-Type", "application/json");
+                }
+
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private APIClient.Builder clientBuilder(int port) {
+        return APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + port)
+                .setKey("key")
+                .setSecret("secret")
+                .setMetrics(metrics);
+    }
+
+    private APIClient client() {
+        return clientBuilder(server.getAddress().getPort()).build();
+    }
+
+    private static PushPayload payload() {
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.deviceTokens("ABCDEF", "012345"))
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Foo"))
+                .build();
+    }
+
+    @Test
+    public void testMetricsAreOffByDefault() {
+        APIClient client = APIClient.newBuilder()
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+
+        try {
+            assertFalse(client.getMetrics().isPresent());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testResponseIsMeasured() throws Exception {
+        APIClient client = client();
+
+        try {
+            client.push(payload());
+
+            EndpointMetrics push = metrics.getEndpointMetrics(EndpointGroup.PUSH);
+            assertEquals(1, push.getResponseCount());
+            assertEquals(ImmutableMap.of(202, 1L), push.getStatusCodeCounts());
+            assertEquals((long) requestBodySizes.get(0), push.getRequestBytes().getSum());
+            assertEquals(PUSH_JSON.length(), push.getResponseBytes().getSum());
+            assertTrue(push.getLatencyNanos().getMax() > 0);
+            assertEquals(0, metrics.getEndpointMetrics(EndpointGroup.TAGS).getResponseCount());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testAPIErrorIsCountedByCode() throws Exception {
+        statuses.add(400);
+        APIClient client = client();
+
+        try {
+            client.push(payload());
+            fail("Expected APIRequestException");
+        } catch (APIRequestException e) {
+            EndpointMetrics push = metrics.getEndpointMetrics(EndpointGroup.PUSH);
+            assertEquals(1, push.getAPIErrorCount());
+            assertEquals(ImmutableMap.of(40001L, 1L), push.getErrorCodeCounts());
+            assertEquals(ImmutableMap.of(400, 1L), push.getStatusCodeCounts());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testRetriesAreCounted() throws Exception {
+        statuses.add(429);
+        statuses.add(429);
+        APIClient client = clientBuilder(server.getAddress().getPort())
+                .setRetryPolicy(RetryPolicy.newBuilder()
+                        .setMaxAttempts(3)
+                        .setInitialBackoffMillis(10)
+                        .setMaxBackoffMillis(50)
+                        .build())
+                .build();
+
+        try {
+            client.push(payload());
+
+            EndpointMetrics push = metrics.getEndpointMetrics(EndpointGroup.PUSH);
+            assertEquals(2, push.getRetryCount());
+            assertEquals(3, push.getResponseCount());
+            assertEquals(ImmutableMap.of(429, 2L, 202, 1L), push.getStatusCodeCounts());
+            // The buffered body is sent, and counted, once per attempt
+            assertEquals(3L * requestBodySizes.get(0), push.getRequestBytes().getSum());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testConnectionFailureIsCounted() throws Exception {
+        int port = server.getAddress().getPort();
+        server.stop(0);
+        APIClient client = clientBuilder(port).build();
+
+        try {
+            client.push(payload());
+            fail("Expected IOException");
+        } catch (IOException e) {
+            EndpointMetrics push = metrics.getEndpointMetrics(EndpointGroup.PUSH);
+            assertEquals(1, push.getFailureCount());
+            assertEquals(0, push.getResponseCount());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testJMXExport() throws Exception {
+        MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+        APIClient client = client();
+
+        JMXMetricsExporter exporter = JMXMetricsExporter.register(mbeanServer, "test", client, metrics);
+        try {
+            client.push(payload());
+
+            ObjectName push = new ObjectName("com.urbanairship.api:type=APIClient,name=test,endpoint=push");
+            ObjectName pool = new ObjectName("com.urbanairship.api:type=APIClient,name=test,component=ConnectionPool");
+            assertEquals(EndpointGroup.values().length + 1, exporter.getObjectNames().size());
+            assertEquals(1L, mbeanServer.getAttribute(push, "ResponseCount"));
+            assertTrue((Double) mbeanServer.getAttribute(push, "Latency99thPercentileMillis") > 0.0);
+            assertEquals(0, mbeanServer.getAttribute(pool, "Leased"));
+            assertEquals(client.getConnectionPoolConfig().getMaxConnectionsTotal(),
+                    mbeanServer.getAttribute(pool, "Max"));
+
+            exporter.close();
+            assertFalse(mbeanServer.isRegistered(push));
+            assertFalse(mbeanServer.isRegistered(pool));
+        } finally {
+            exporter.close();
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.urbanairship.api.client;
+
+import com.google.common.collect.ImmutableList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIListTagsResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/*
+Runs the client against a local server that tags its responses with an
+ETag and answers conditional requests with 304 while the ETag matches.
+ */
+public class APIClientResponseCacheTest {
+
+    private static final String TAGS_JSON = "{\"tags\":[\"Puppies\",\"Kitties\"]}";
+    private static final String SEGMENTS_JSON = "{\"segments\":[]}";
+
+    private HttpServer server;
+    private volatile String etag = "\"v1\"";
+    private final List<String> requests = new CopyOnWriteArrayList<String>();
+    private final List<String> conditions = new CopyOnWriteArrayList<String>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+                String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                if (ifNoneMatch != null) {
+                    conditions.add(ifNoneMatch);
+                }
+
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    etag = "\"v" + requests.size() + "\"";
+                    exchange.sendResponseHeaders(201, -1);
+                    exchange.close();
+                    return;
+                }
+
+                exchange.getResponseHeaders().add("ETag", etag);
+                if (etag.equals(ifNoneMatch)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+
+                byte[] body = (exchange.getRequestURI().getPath().startsWith("/api/tags") ? TAGS_JSON : SEGMENTS_JSON)
+                        .getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private APIClient client(ResponseCacheConfig config) {
+        return APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + server.getAddress().getPort())
+                .setKey("key")
+                .setSecret("secret")
+                .setResponseCacheConfig(config)
+                .build();
+    }
+
+    @Test
+    public void testCacheIsOffByDefault() throws Exception {
+        APIClient client = client(null);
+
+        try {
+            client.listTags();
+            client.listTags();
+
+            assertEquals(2, requests.size());
+            assertFalse(client.getResponseCacheStats().isPresent());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromCache() throws Exception {
+        APIClient client = client(ResponseCacheConfig.newBuilder().build());
+
+        try {
+            APIClientResponse<APIListTagsResponse> first = client.listTags();
+            APIClientResponse<APIListTagsResponse> second = client.listTags();
+
+            assertEquals(1, requests.size());
+            assertEquals(ImmutableList.of("Puppies", "Kitties"), second.getApiResponse().getTags());
+            assertEquals(first.getApiResponse(), second.getApiResponse());
+            assertEquals(200, second.getHttpResponse().getStatusLine().getStatusCode());
+
+            ResponseCacheStats stats = client.getResponseCacheStats().get();
+            assertEquals(1, stats.getHitCount());
+            assertEquals(1, stats.getMissCount());
+            assertEquals(1, stats.getSize());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testStaleResponseIsRevalidated() throws Exception {
+        APIClient client = client(ResponseCacheConfig.newBuilder()
+                .setTtlMillis(EndpointGroup.TAGS, 50)
+                .build());
+
+        try {
+            client.listTags();
+            Thread.sleep(100);
+            APIClientResponse<APIListTagsResponse> revalidated = client.listTags();
+            // Fresh again after the 304
+            client.listTags();
+
+            assertEquals(2, requests.size());
+            assertEquals(ImmutableList.of("\"v1\""), conditions);
+            assertEquals(ImmutableList.of("Puppies", "Kitties"), revalidated.getApiResponse().getTags());
+
+            ResponseCacheStats stats = client.getResponseCacheStats().get();
+            assertEquals(1, stats.getRevalidatedCount());
+            assertEquals(1, stats.getHitCount());
+            assertEquals(1, stats.getMissCount());
+            assertEquals(0, client.getConnectionPoolStats().getLeased());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testWriteInvalidatesGroup() throws Exception {
+        APIClient client = client(ResponseCacheConfig.newBuilder().build());
+
+        try {
+            client.listTags();
+            client.listAllSegments();
+            client.createTag("Birds");
+            client.listTags();
+            client.listAllSegments();
+
+            assertEquals(ImmutableList.of("GET /api/tags/", "GET /api/segments/", "PUT /api/tags/Birds",
+                    "GET /api/tags/"), requests);
+
+            ResponseCacheStats stats = client.getResponseCacheStats().get();
+            assertEquals(1, stats.getInvalidationCount());
+            assertEquals(1, stats.getHitCount());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testGroupWithoutTtlIsNotCached() throws Exception {
+        APIClient client = client(ResponseCacheConfig.newBuilder()
+                .setTtlMillis(EndpointGroup.TAGS, 0)
+                .build());
+
+        try {
+            client.listTags();
+            client.listTags();
+
+            assertEquals(2, requests.size());
+            assertEquals(0, client.getResponseCacheStats().get().getMissCount());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        APIClient client = client(ResponseCacheConfig.newBuilder()
+                .setMaxEntries(1)
+                .build());
+
+        try {
+            client.listTags();
+            client.listAllSegments();
+            client.listTags();
+
+            assertEquals(3, requests.size());
+            ResponseCacheStats stats = client.getResponseCacheStats().get();
+            assertEquals(2, stats.getEvictionCount());
+            assertEquals(1, stats.getSize());
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.urbanairship.api.client;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIListAllChannelsResponse;
+import com.urbanairship.api.client.model.APIPushResponse;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import org.apache.http.HttpResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/*
+Runs the client against a local server that fails requests with scripted
+responses before answering normally.
+ */
+public class APIClientRetryTest {
+
+    private static final String PUSH_JSON = "{\"ok\" : true,\"operation_id\" : \"df6a6b50\", \"push_ids\":[\"PushID\"]}";
+    private static final String CHANNELS_JSON = "{\"ok\":true,\"channels\":[]}";
+
+    private HttpServer server;
+    private final Queue<Fault> faults = new ConcurrentLinkedQueue<Fault>();
+    private final List<byte[]> requestBodies = new CopyOnWriteArrayList<byte[]>();
+
+    private static final class Fault {
+        private final int status;
+        private final String contentType;
+        private final String body;
+        private final String retryAfter;
+
+        private Fault(int status, String contentType, String body, String retryAfter) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    private void failNext(int times, int status) {
+        for (int i = 0; i < times; i++) {
+            faults.add(new Fault(status, "application/json", "{\"message\":\"Service Unavailable\"}", null));
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestBodies.add(ByteStreams.toByteArray(exchange.getRequestBody()));
+
+                Fault fault = faults.poll();
+                int status;
+                byte[] body;
+                if (fault != null) {
+                    status = fault.status;
+                    body = fault.body.getBytes("UTF-8");
+                    exchange.getResponseHeaders().add("Content-Type", fault.contentType);
+                    if (fault.retryAfter != null) {
+                        exchange.getResponseHeaders().add("Retry-After", fault.retryAfter);
+                    }
+                } else {
+                    boolean push = exchange.getRequestURI().getPath().startsWith("/api/push");
+                    status = push ? 202 : 200;
+                    body = (push ? PUSH_JSON : CHANNELS_JSON).getBytes("UTF-8");
+                    exchange.getResponseHeaders().add("Content-Type", "application/json");
+                }
+
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private APIClient.Builder clientBuilder(RetryPolicy retryPolicy) {
+        return APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + server.getAddress().getPort())
+                .setKey("key")
+                .setSecret("secret")
+                .setRetryPolicy(retryPolicy);
+    }
+
+    private static RetryPolicy.Builder fastRetries() {
+        return RetryPolicy.newBuilder()
+                .setMaxAttempts(3)
+                .setInitialBackoffMillis(10)
+                .setMaxBackoffMillis(50);
+    }
+
+    private static PushPayload payload() {
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.deviceTokens("ABCDEF", "012345"))
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Foo"))
+                .build();
+    }
+
+    @Test
+    public void testNoRetriesByDefault() throws Exception {
+        failNext(1, 503);
+        APIClient client = clientBuilder(null).build();
+
+        try {
+            assertEquals(RetryPolicy.noRetries(), client.getRetryPolicy());
+            client.listAllChannels();
+            fail("Expected APIRequestException");
+        } catch (APIRequestException e) {
+            assertEquals(503, e.httpResponseStatusCode());
+            assertEquals(1, requestBodies.size());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testGetIsRetriedUntilSuccess() throws Exception {
+        failNext(2, 503);
+        APIClient client = clientBuilder(fastRetries().build()).build();
+
+        try {
+            APIClientResponse<APIListAllChannelsResponse> response = client.listAllChannels();
+            assertTrue(response.getApiResponse().getChannelObjects().isEmpty());
+            assertEquals(3, requestBodies.size());
+            assertEquals(0, client.getConnectionPoolStats().getLeased());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testLastErrorIsThrownWhenAttemptsAreExhausted() throws Exception {
+        failNext(5, 502);
+        APIClient client = clientBuilder(fastRetries().build()).build();
+
+        try {
+            client.listAllChannels();
+            fail("Expected APIRequestException");
+        } catch (APIRequestException e) {
+            assertEquals(502, e.httpResponseStatusCode());
+            assertEquals("Service Unavailable", e.getError().get().getError());
+            assertEquals(3, requestBodies.size());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testPostIsNotRetriedOnServerError() throws Exception {
+        failNext(1, 503);
+        APIClient client = clientBuilder(fastRetries().build()).build();
+
+        try {
+            client.push(payload());
+            fail("Expected APIRequestException");
+        } catch (APIRequestException e) {
+            assertEquals(503, e.httpResponseStatusCode());
+            assertEquals(1, requestBodies.size());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testThrottledPostIsRetriedWithSameBody() throws Exception {
+        failNext(2, 429);
+        APIClient client = clientBuilder(fastRetries().build())
+                .setRequestCompressionThreshold(0)
+                .build();
+
+        try {
+            APIClientResponse<APIPushResponse> response = client.push(payload());
+            assertEquals("df6a6b50", response.getApiResponse().getOperationId().get());
+
+            assertEquals(3, requestBodies.size());
+            assertTrue(requestBodies.get(0).length > 0);
+            assertArrayEquals(requestBodies.get(0), requestBodies.get(1));
+            assertArrayEquals(requestBodies.get(0), requestBodies.get(2));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testRetryAfterIsHonored() throws Exception {
+        faults.add(new Fault(429, "application/json", "{\"message\":\"Slow down\"}", "1"));
+        APIClient client = clientBuilder(fastRetries().build()).build();
+
+        try {
+            long start = System.currentTimeMillis();
+            client.push(payload());
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertEquals(2, requestBodies.size());
+            assertTrue("Retried after " + elapsed + " ms", elapsed >= 1000);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testRetryAfterLongerThanMaximumIsNotWaitedFor() throws Exception {
+        faults.add(new Fault(429, "application/json", "{\"message\":\"Slow down\"}", "3600"));
+        APIClient client = clientBuilder(fastRetries().setMaxRetryAfterMillis(5000).build()).build();
+
+        try {
+            client.push(payload());
+            fail("Expected APIRequestException");
+        } catch (APIRequestException e) {
+            assertEquals(429, e.httpResponseStatusCode());
+            assertEquals(1, requestBodies.size());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testRetryableErrorCode() throws Exception {
+        faults.add(new Fault(400, "application/vnd.urbanairship+json",
+                "{\"error\":\"Try again\",\"error_code\":40099}", null));
+        APIClient client = clientBuilder(fastRetries()
+                .setRetryableErrorCodes(ImmutableSet.of(40099))
+                .build()).build();
+
+        try {
+            client.listAllChannels();
+            assertEquals(2, requestBodies.size());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testOtherErrorCodeIsNotRetried() throws Exception {
+        faults.add(new Fault(400, "application/vnd.urbanairship+json",
+                "{\"error\":\"Bad request\",\"error_code\":40001}", null));
+        APIClient client = clientBuilder(fastRetries()
+                .setRetryableErrorCodes(ImmutableSet.of(40099))
+                .build()).build();
+
+        try {
+            client.listAllChannels();
+            fail("Expected APIRequestException");
+        } catch (APIRequestException e) {
+            assertEquals(40001, e.getError().get().getErrorCode().get().intValue());
+            assertEquals(1, requestBodies.size());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testRawResponseMethodsAreRetried() throws Exception {
+        failNext(1, 504);
+        APIClient client = clientBuilder(fastRetries().build()).build();
+
+        try {
+            HttpResponse response = client.deleteTag("tag");
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            assertEquals(2, requestBodies.size());
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.urbanairship.api.client;
+
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import org.apache.log4j.BasicConfigurator;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.*;
+
+public class APIRateLimiterTest {
+
+    static {
+        BasicConfigurator.configure();
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(APIRateLimiterTest.class);
+
+    @ClassRule
+    @Rule
+    public static WireMockClassRule wireMockClassRule = new WireMockClassRule();
+
+    @Test
+    public void testEndpointGroupForPath() {
+        assertEquals(EndpointGroup.PUSH, EndpointGroup.forPath("/api/push/"));
+        assertEquals(EndpointGroup.PUSH, EndpointGroup.forPath("/api/push/validate/"));
+        assertEquals(EndpointGroup.REPORTS, EndpointGroup.forPath("/api/push/stats/"));
+        assertEquals(EndpointGroup.SCHEDULES, EndpointGroup.forPath("/api/schedules"));
+        assertEquals(EndpointGroup.TAGS, EndpointGroup.forPath("/api/tags/batch/"));
+        assertEquals(EndpointGroup.CHANNELS, EndpointGroup.forPath("/api/channels/abc"));
+        assertEquals(EndpointGroup.SEGMENTS, EndpointGroup.forPath("/api/segments/abc"));
+        assertEquals(EndpointGroup.LOCATION, EndpointGroup.forPath("/api/location/"));
+        assertEquals(EndpointGroup.REPORTS, EndpointGroup.forPath("/api/reports/perpush/detail/abc"));
+        assertEquals(EndpointGroup.OTHER, EndpointGroup.forPath("/api/unknown"));
+        assertEquals(EndpointGroup.OTHER, EndpointGroup.forPath(null));
+    }
+
+    @Test
+    public void testBurstThenBlock() throws Exception {
+        APIRateLimiter limiter = APIRateLimiter.newBuilder()
+                .setLimit(EndpointGroup.PUSH, APIRateLimiter.Limit.of(10, 5))
+                .build();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("key", EndpointGroup.PUSH);
+        }
+        assertTrue((System.nanoTime() - start) / 1000000 < 50);
+        assertTrue(limiter.getWaitMillis("key", EndpointGroup.PUSH) > 0);
+
+        limiter.acquire("key", EndpointGroup.PUSH);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("Waited " + elapsedMillis + " ms", elapsedMillis >= 90);
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+        APIRateLimiter limiter = APIRateLimiter.newBuilder()
+                .setMode(APIRateLimiter.Mode.FAIL_FAST)
+                .setLimit(EndpointGroup.TAGS, APIRateLimiter.Limit.of(1, 2))
+                .build();
+
+        limiter.acquire("key", EndpointGroup.TAGS);
+        limiter.acquire("key", EndpointGroup.TAGS);
+        try {
+            limiter.acquire("key", EndpointGroup.TAGS);
+            fail("Expected RateLimitExceededException");
+        } catch (RateLimitExceededException e) {
+            assertEquals(EndpointGroup.TAGS, e.getEndpointGroup());
+            assertTrue(e.getWaitMillis() > 0 && e.getWaitMillis() <= 1000);
+        }
+    }
+
+    @Test
+    public void testBlockingGivesUpAfterMaxWait() throws Exception {
+        APIRateLimiter limiter = APIRateLimiter.newBuilder()
+                .setMaxWaitMillis(100)
+                .setLimit(EndpointGroup.REPORTS, APIRateLimiter.Limit.of(1, 1))
+                .build();
+
+        limiter.acquire("key", EndpointGroup.REPORTS);
+        try {
+            limiter.acquire("key", EndpointGroup.REPORTS);
+            fail("Expected RateLimitExceededException");
+        } catch (RateLimitExceededException e) {
+            assertEquals(EndpointGroup.REPORTS, e.getEndpointGroup());
+        }
+    }
+
+    @Test
+    public void testLimitsArePerAppKeyAndGroup() throws Exception {
+        APIRateLimiter limiter = APIRateLimiter.newBuilder()
+                .setMode(APIRateLimiter.Mode.FAIL_FAST)
+                .setLimit(EndpointGroup.PUSH, APIRateLimiter.Limit.of(1, 1))
+                .setLimit("big", EndpointGroup.PUSH, APIRateLimiter.Limit.of(1, 3))
+                .build();
+
+        limiter.acquire("one", EndpointGroup.PUSH);
+        limiter.acquire("two", EndpointGroup.PUSH);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("big", EndpointGroup.PUSH);
+        }
+
+        // Channels are not limited
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire("one", EndpointGroup.CHANNELS);
+        }
+        assertEquals(0, limiter.getWaitMillis("one", EndpointGroup.CHANNELS));
+        assertFalse(limiter.getLimit("one", EndpointGroup.CHANNELS).isPresent());
+        assertEquals(APIRateLimiter.Limit.of(1, 3), limiter.getLimit("big", EndpointGroup.PUSH).get());
+
+        try {
+            limiter.acquire("one", EndpointGroup.PUSH);
+            fail("Expected RateLimitExceededException");
+        } catch (RateLimitExceededException expected) {
+        }
+    }
+
+    @Test
+    public void testRateIsHeldAcrossThreads() throws Exception {
+        final APIRateLimiter limiter = APIRateLimiter.newBuilder()
+                .setLimit(EndpointGroup.PUSH, APIRateLimiter.Limit.of(200, 1))
+                .build();
+        final int perThread = 25;
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+            long start = System.nanoTime();
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < perThread; i++) {
+                            limiter.acquire("key", EndpointGroup.PUSH);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+            // 100 permits at 200/s with no burst take at least 99 intervals of 5 ms
+            assertTrue("Took " + elapsedMillis + " ms", elapsedMillis >= 490);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClientFailsFastWithoutSending() throws Exception {
+        stubFor(post(urlEqualTo("/api/push/"))
+                .willReturn(aResponse()
+                        .withHeader("Content-type", "application/json")
+                        .withBody("{\"ok\" : true,\"operation_id\" : \"df6a6b50\", \"push_ids\":[\"PushID\"]}")
+                        .withStatus(202)));
+
+        APIRateLimiter limiter = APIRateLimiter.newBuilder()
+                .setMode(APIRateLimiter.Mode.FAIL_FAST)
+                .setLimit(EndpointGroup.PUSH, APIRateLimiter.Limit.of(0.1, 1))
+                .build();
+        APIClient client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:8080")
+                .setKey("limitedKey")
+                .setSecret("secret")
+                .setRateLimiter(limiter)
+                .build();
+
+        PushPayload payload = PushPayload.newBuilder()
+                .setAudience(Selectors.all())
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Foo"))
+                .build();
+
+        try {
+            client.push(payload);
+            assertTrue(client.getRateLimitWaitMillis(EndpointGroup.PUSH) > 0);
+            assertEquals(0, client.getRateLimitWaitMillis(EndpointGroup.CHANNELS));
+
+            try {
+                client.push(payload);
+                fail("Expected RateLimitExceededException");
+            } catch (RateLimitExceededException e) {
+                assertEquals(EndpointGroup.PUSH, e.getEndpointGroup());
+            }
+
+            verify(1, postRequestedFor(urlEqualTo("/api/push/")));
+        } finally {
+            client.close();
+        }
+    }
+
+    /*
+    Measures the cost of taking a permit when the limit is never reached,
+    against the same loop without a limiter.
+     */
+    @Test
+    public void testOverheadUnderLimit() throws Exception {
+        final APIRateLimiter limiter = APIRateLimiter.newBuilder()
+                .setLimit(EndpointGroup.PUSH, APIRateLimiter.Limit.of(1e9, 1000000))
+                .build();
+        final int iterations = 2000000;
+
+        Callable<Long> acquire = new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    limiter.acquire("key", EndpointGroup.PUSH);
+                }
+                return System.nanoTime() - start;
+            }
+        };
+
+        acquire.call();
+        long singleThreadNanos = acquire.call();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        long contendedNanos = 0;
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(pool.submit(acquire));
+            }
+            for (Future<Long> future : futures) {
+                contendedNanos = Math.max(contendedNanos, future.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double singleThreadPerOp = (double) singleThreadNanos / iterations;
+        double contendedPerOp = (double) contendedNanos / iterations;
+        logger.info(String.format("Rate limiter under limit: %.1f ns/op single thread, %.1f ns/op with 4 threads",
+                singleThreadPerOp, contendedPerOp));
+
+        // A request takes milliseconds; a microsecond per permit is negligible
+        assertTrue(singleThreadPerOp < 1000);
+        assertTrue(contendedPerOp < 1000);
+    }
+}
@@ -0,0 +1,258 @@
+package com.urbanairship.api.client;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIListAllChannelsResponse;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selector;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/*
+Fails when a change makes a hot path allocate more bytes per operation than
+its budget below, as measured by the calling thread's allocation counter.
+
+Budgets are recorded measurements plus headroom for JIT and JVM version
+noise. Each measurement is logged; after an optimization lowers a path's
+allocations, lower its budget to match so the gain is kept, and only raise
+one when the extra allocation is intended.
+ */
+public class AllocationBudgetTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationBudgetTest.class);
+
+    private static final long TO_JSON_BUDGET = 8 * 1024;
+    private static final long AUDIENCE_1_BUDGET = 6 * 1024;
+    private static final long AUDIENCE_100_BUDGET = 32 * 1024;
+    private static final long AUDIENCE_1000_BUDGET = 256 * 1024;
+    private static final long CHANNEL_PAGE_BUDGET = 1024 * 1024;
+    private static final long PUSH_BUDGET = 128 * 1024;
+
+    private static final String PUSH_JSON = "{\"ok\" : true,\"operation_id\" : \"df6a6b50\", \"push_ids\":[\"PushID\"]}";
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private static volatile Object sink;
+
+    private interface Operation {
+        Object run() throws Exception;
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Object bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /* Mean bytes allocated by the calling thread per run, once warmed up */
+    private static long allocatedBytesPerOperation(Operation operation, int iterations) throws Exception {
+        for (int i = 0; i < iterations * 5; i++) {
+            sink = operation.run();
+        }
+
+        long threadID = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadID);
+        for (int i = 0; i < iterations; i++) {
+            sink = operation.run();
+        }
+        long after = threads.getThreadAllocatedBytes(threadID);
+        return (after - before) / iterations;
+    }
+
+    /*
+    Measured at INFO, since tests that call BasicConfigurator leave the root
+    logger at DEBUG for the rest of the run, and HTTP wire logging would
+    otherwise count against the budget depending on test order.
+     */
+    private static void assertWithinBudget(String name, long budget, Operation operation, int iterations)
+            throws Exception {
+        Level level = LogManager.getRootLogger().getLevel();
+        LogManager.getRootLogger().setLevel(Level.INFO);
+        long allocated;
+        try {
+            allocated = allocatedBytesPerOperation(operation, iterations);
+        } finally {
+            LogManager.getRootLogger().setLevel(level);
+        }
+        log.info(String.format("%s: %d bytes/op (budget %d)", name, allocated, budget));
+        assertTrue(String.format("%s allocated %d bytes/op, over its budget of %d bytes/op",
+                name, allocated, budget), allocated <= budget);
+    }
+
+    private static List<String> tokens(int size) {
+        Random random = new Random(42);
+        List<String> tokens = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(String.format("%016X%016X%016X%016X",
+                    random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()));
+        }
+        return tokens;
+    }
+
+    private static PushPayload payload(Selector audience) {
+        return PushPayload.newBuilder()
+                .setAudience(audience)
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS, DeviceType.ANDROID))
+                .setNotification(Notifications.alert("Your order has shipped"))
+                .build();
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    private static void assertAudienceWithinBudget(int size, long budget, int iterations) throws Exception {
+        final List<String> tokens = tokens(size);
+        final OutputStream discard = new DiscardingOutputStream();
+        assertWithinBudget("audience of " + size, budget, new Operation() {
+            @Override
+            public Object run() throws Exception {
+                PushPayload payload = payload(Selectors.deviceTokens(tokens));
+                payload.writeJSON(discard);
+                return payload;
+            }
+        }, iterations);
+    }
+
+    private static byte[] channelPage(int size) throws IOException {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("{\"ok\":true,\"channels\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format("{\"channel_id\":\"%08x-0000-4000-8000-%012x\",", random.nextInt(), i))
+                    .append("\"device_type\":\"ios\",\"installed\":true,\"opt_in\":true,\"background\":true,")
+                    .append(String.format("\"push_address\":\"%016X%016X%016X%016X\",",
+                            random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()))
+                    .append("\"created\":\"2014-07-09T18:08:37\",\"last_registration\":\"2014-10-02T01:41:42\",")
+                    .append("\"alias\":null,\"tags\":[\"version_1.5.0\",\"vip\"],")
+                    .append("\"ios\":{\"badge\":1,\"quiettime\":{\"start\":\"17:00\",\"end\":\"9:00\"},")
+                    .append("\"tz\":\"America/Los_Angeles\"}}");
+        }
+        json.append("],\"next_page\":\"https://go.urbanairship.com/api/channels?start=x\"}");
+        return json.toString().getBytes("UTF-8");
+    }
+
+    @Test
+    public void testMeterCountsAllocations() throws Exception {
+        long allocated = allocatedBytesPerOperation(new Operation() {
+            @Override
+            public Object run() {
+                return new byte[4096];
+            }
+        }, 1000);
+        assertTrue("Measured " + allocated + " bytes/op", allocated >= 4096);
+    }
+
+    @Test
+    public void testPayloadToJSON() throws Exception {
+        final PushPayload payload = payload(Selectors.deviceToken(tokens(1).get(0)));
+        assertWithinBudget("PushPayload.toJSON", TO_JSON_BUDGET, new Operation() {
+            @Override
+            public Object run() {
+                return payload.toJSON();
+            }
+        }, 2000);
+    }
+
+    @Test
+    public void testAudiences() throws Exception {
+        assertAudienceWithinBudget(1, AUDIENCE_1_BUDGET, 2000);
+        assertAudienceWithinBudget(100, AUDIENCE_100_BUDGET, 500);
+        assertAudienceWithinBudget(1000, AUDIENCE_1000_BUDGET, 100);
+    }
+
+    @Test
+    public void testChannelPageParsing() throws Exception {
+        final byte[] page = channelPage(100);
+        final ListAllChannelsAPIResponseHandler handler = new ListAllChannelsAPIResponseHandler();
+        assertWithinBudget("channel page of 100", CHANNEL_PAGE_BUDGET, new Operation() {
+            @Override
+            public Object run() throws Exception {
+                HttpResponse response = new BasicHttpResponse(new BasicStatusLine(
+                        new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+                response.setEntity(new ByteArrayEntity(page));
+                APIClientResponse<APIListAllChannelsResponse> parsed = handler.handleResponse(response);
+                return parsed.getApiResponse();
+            }
+        }, 200);
+    }
+
+    /*
+    Only the calling thread is measured, not the stub's. Each call is a real
+    round trip, so the run is kept short; raise allocation.pushIterations
+    for a steadier figure.
+     */
+    @Test
+    public void testPush() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                ByteStreams.toByteArray(exchange.getRequestBody());
+                byte[] body = PUSH_JSON.getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(202, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+
+        final APIClient client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + server.getAddress().getPort())
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+        final PushPayload payload = payload(Selectors.deviceToken(tokens(1).get(0)));
+        try {
+            assertWithinBudget("APIClient.push", PUSH_BUDGET, new Operation() {
+                @Override
+                public Object run() throws Exception {
+                    return client.push(payload);
+                }
+            }, Integer.getInteger("allocation.pushIterations", 20));
+        } finally {
+            client.close();
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.urbanairship.api.client;
+
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIPushResponse;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import com.urbanairship.api.tag.model.BatchModificationPayload;
+import com.urbanairship.api.tag.model.BatchTagSet;
+import org.apache.http.HttpResponse;
+import org.apache.log4j.BasicConfigurator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.*;
+
+public class AsyncAPIClientTest {
+
+    public final static String CONTENT_TYPE_KEY = "Content-type";
+    public final static String PUSH_JSON = "{\"ok\" : true,\"operation_id\" : \"df6a6b50\", \"push_ids\":[\"PushID\"]}";
+
+    static {
+        BasicConfigurator.configure();
+    }
+
+    @ClassRule
+    @Rule
+    public static WireMockClassRule wireMockClassRule = new WireMockClassRule();
+
+    private APIClient client;
+
+    @Before
+    public void setUp() {
+        client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:8080")
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+    }
+
+    private static PushPayload payload() {
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.all())
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Foo"))
+                .build();
+    }
+
+    @Test
+    public void testDefaultMaxInFlightMatchesConnectionPool() {
+        AsyncAPIClient asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .build();
+
+        assertEquals(client.getConnectionPoolConfig().getMaxConnectionsPerRoute(), asyncClient.getMaxInFlight());
+        assertEquals(0, asyncClient.getInFlightCount());
+        asyncClient.close();
+    }
+
+    @Test
+    public void testPush() throws Exception {
+        stubFor(post(urlEqualTo("/api/push/"))
+                .willReturn(aResponse()
+                        .withHeader(CONTENT_TYPE_KEY, "application/json")
+                        .withBody(PUSH_JSON)
+                        .withStatus(202)));
+
+        AsyncAPIClient asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .build();
+
+        try {
+            APIClientResponse<APIPushResponse> response = asyncClient.push(payload()).get();
+            assertEquals("df6a6b50", response.getApiResponse().getOperationId().get());
+        } finally {
+            asyncClient.close();
+        }
+    }
+
+    @Test
+    public void testPushErrorFailsFutureWithAPIRequestException() throws Exception {
+        stubFor(post(urlEqualTo("/api/push/"))
+                .willReturn(aResponse()
+                        .withHeader(CONTENT_TYPE_KEY, "application/json")
+                        .withBody("{\"message\":\"Unauthorized\"}")
+                        .withStatus(401)));
+
+        AsyncAPIClient asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .build();
+
+        try {
+            asyncClient.push(payload()).get();
+            fail("Future should have failed");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof APIRequestException);
+            APIRequestException requestException = (APIRequestException) ex.getCause();
+            assertEquals(401, requestException.httpResponseStatusCode());
+            assertEquals("Unauthorized", requestException.getError().get().getError());
+        } finally {
+            asyncClient.close();
+        }
+    }
+
+    @Test
+    public void testBatchModificationOfTagsErrorFailsFuture() throws Exception {
+        stubFor(post(urlEqualTo("/api/tags/batch/"))
+                .willReturn(aResponse()
+                        .withHeader(CONTENT_TYPE_KEY, "application/json")
+                        .withBody("{\"message\":\"Bad Request\"}")
+                        .withStatus(400)));
+
+        AsyncAPIClient asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .build();
+
+        BatchModificationPayload payload = BatchModificationPayload.newBuilder()
+                .addBatchObject(BatchTagSet.newBuilder()
+                        .setDevice(BatchTagSet.DEVICEIDTYPES.IOS_CHANNEL, "channel1")
+                        .addTag("tag1")
+                        .build())
+                .build();
+
+        try {
+            asyncClient.batchModificationOfTags(payload).get();
+            fail("Future should have failed");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof APIRequestException);
+            assertEquals(400, ((APIRequestException) ex.getCause()).httpResponseStatusCode());
+        } finally {
+            asyncClient.close();
+        }
+    }
+
+    @Test
+    public void testInFlightRequestsAreCapped() throws Exception {
+        stubFor(post(urlEqualTo("/api/push/"))
+                .willReturn(aResponse()
+                        .withHeader(CONTENT_TYPE_KEY, "application/json")
+                        .withBody(PUSH_JSON)
+                        .withFixedDelay(100)
+                        .withStatus(202)));
+
+        AsyncAPIClient asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .setMaxInFlight(2)
+                .build();
+
+        try {
+            List<ListenableFuture<APIClientResponse<APIPushResponse>>> futures =
+                    new ArrayList<ListenableFuture<APIClientResponse<APIPushResponse>>>();
+            for (int i = 0; i < 6; i++) {
+                futures.add(asyncClient.push(payload()));
+                assertTrue(asyncClient.getInFlightCount() <= 2);
+            }
+
+            for (ListenableFuture<APIClientResponse<APIPushResponse>> future : futures) {
+                assertNotNull(future.get().getApiResponse());
+            }
+            assertEquals(0, asyncClient.getInFlightCount());
+        } finally {
+            asyncClient.close();
+        }
+    }
+
+    @Test
+    public void testOverflowIsShedWhenQueueIsFull() throws Exception {
+        stubFor(post(urlEqualTo("/api/push/"))
+                .willReturn(aResponse()
+                        .withHeader(CONTENT_TYPE_KEY, "application/json")
+                        .withBody(PUSH_JSON)
+                        .withFixedDelay(200)
+                        .withStatus(202)));
+
+        AsyncAPIClient asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .setMaxInFlight(1)
+                .setQueueCapacity(1)
+                .setOverflowMode(AsyncAPIClient.OverflowMode.SHED)
+                .build();
+
+        try {
+            ListenableFuture<APIClientResponse<APIPushResponse>> running = asyncClient.push(payload());
+            ListenableFuture<APIClientResponse<APIPushResponse>> queued = asyncClient.push(payload());
+            ListenableFuture<APIClientResponse<APIPushResponse>> shed = asyncClient.push(payload());
+
+            assertTrue(shed.isDone());
+            try {
+                shed.get();
+                fail("Future should have failed");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof RejectedExecutionException);
+            }
+            assertEquals(1, asyncClient.getShedCount());
+
+            assertNotNull(running.get().getApiResponse());
+            assertNotNull(queued.get().getApiResponse());
+            verify(2, postRequestedFor(urlEqualTo("/api/push/")));
+        } finally {
+            asyncClient.close();
+        }
+    }
+}
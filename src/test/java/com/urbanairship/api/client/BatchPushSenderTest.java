@@ -0,0 +1,249 @@
+package com.urbanairship.api.client;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.urbanairship.api.client.model.APIPushResponse;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/*
+Runs batches against a local server that answers each array with the alerts
+of its payloads as push ids, and rejects arrays with a FAIL alert.
+ */
+public class BatchPushSenderTest {
+
+    private static final Pattern ALERT = Pattern.compile("\"alert\":\"([^\"]*)\"");
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private APIClient client;
+    private AsyncAPIClient asyncClient;
+    private final List<String> requestBodies = new CopyOnWriteArrayList<String>();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private volatile long delayMillis = 0;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int running = concurrent.incrementAndGet();
+                try {
+                    while (true) {
+                        int max = maxConcurrent.get();
+                        if (running <= max || maxConcurrent.compareAndSet(max, running)) {
+                            break;
+                        }
+                    }
+                    String request = new String(ByteStreams.toByteArray(exchange.getRequestBody()), "UTF-8");
+                    requestBodies.add(request);
+                    Thread.sleep(delayMillis);
+
+                    int status = 202;
+                    StringBuilder body = new StringBuilder("{\"ok\":true,\"operation_id\":\"op\",\"push_ids\":[");
+                    Matcher alerts = ALERT.matcher(request);
+                    for (int i = 0; alerts.find(); i++) {
+                        if (alerts.group(1).equals("FAIL")) {
+                            status = 400;
+                        }
+                        body.append(i > 0 ? "," : "").append('"').append(alerts.group(1)).append('"');
+                    }
+                    body.append("]}");
+
+                    byte[] bytes;
+                    if (status == 202) {
+                        bytes = body.toString().getBytes("UTF-8");
+                        exchange.getResponseHeaders().add("Content-Type", "application/json");
+                    } else {
+                        bytes = "{\"ok\":false,\"error\":\"Could not parse request body\",\"error_code\":40000}"
+                                .getBytes("UTF-8");
+                        exchange.getResponseHeaders().add("Content-Type",
+                                "application/vnd.urbanairship+json; version=3");
+                    }
+                    exchange.sendResponseHeaders(status, bytes.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(bytes);
+                    out.close();
+                } catch (InterruptedException e) {
+                    exchange.close();
+                } finally {
+                    concurrent.decrementAndGet();
+                }
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + server.getAddress().getPort())
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+        asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .setMaxInFlight(2)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        asyncClient.close();
+        client.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private static List<PushPayload> payloads(int count) {
+        List<PushPayload> payloads = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            payloads.add(payload("p" + i));
+        }
+        return payloads;
+    }
+
+    private static PushPayload payload(String alert) {
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.deviceToken("ABCDEF"))
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert(alert))
+                .build();
+    }
+
+    @Test
+    public void testArrayPush() throws Exception {
+        APIPushResponse response = client.push(payloads(3)).getApiResponse();
+
+        assertEquals(Lists.newArrayList("p0", "p1", "p2"), response.getPushIds().get());
+        String body = requestBodies.get(0);
+        assertTrue(body.startsWith("[{"));
+        assertTrue(body.endsWith("}]"));
+    }
+
+    @Test
+    public void testPushIdsMapBackToPayloads() throws Exception {
+        BatchPushSender sender = BatchPushSender.newBuilder()
+                .setClient(asyncClient)
+                .setMaxBatchSize(100)
+                .build();
+
+        BatchPushResult result = sender.send(payloads(250));
+
+        assertTrue(result.isSuccess());
+        assertEquals(250, result.getPayloadCount());
+        assertEquals(3, result.getBatchCount());
+        assertEquals(3, requestBodies.size());
+        assertEquals(3, result.getOperationIds().size());
+        for (int i = 0; i < 250; i++) {
+            assertEquals("p" + i, result.getPushId(i).get());
+        }
+    }
+
+    @Test
+    public void testBatchesAreCappedBySize() throws Exception {
+        int payloadBytes = PushBatch.serialize(payload("p100")).length;
+        long maxBatchBytes = 10 * payloadBytes;
+        BatchPushSender sender = BatchPushSender.newBuilder()
+                .setClient(asyncClient)
+                .setMaxBatchBytes(maxBatchBytes)
+                .build();
+
+        BatchPushResult result = sender.send(payloads(200));
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.getBatchCount() >= 20);
+        for (String body : requestBodies) {
+            assertTrue(body.getBytes("UTF-8").length <= maxBatchBytes);
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals("p" + i, result.getPushId(i).get());
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsReportedWithItsPayloads() throws Exception {
+        List<PushPayload> payloads = payloads(300);
+        payloads.set(150, payload("FAIL"));
+        BatchPushSender sender = BatchPushSender.newBuilder()
+                .setClient(asyncClient)
+                .build();
+
+        BatchPushResult result = sender.send(payloads);
+
+        assertFalse(result.isSuccess());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(100, result.getFailedPayloadCount());
+
+        BatchPushResult.Failure failure = result.getFailures().get(0);
+        assertEquals(100, failure.getFirstIndex());
+        assertEquals(payloads.subList(100, 200), failure.getPayloads());
+        assertTrue(failure.getCause() instanceof APIRequestException);
+        assertEquals(400, ((APIRequestException) failure.getCause()).httpResponseStatusCode());
+
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i < 100 || i >= 200, result.getPushId(i).isPresent());
+        }
+    }
+
+    @Test
+    public void testPayloadsAfterOneThatCannotBeSerializedAreReported() throws Exception {
+        List<PushPayload> payloads = payloads(300);
+        payloads.set(150, null);
+        BatchPushSender sender = BatchPushSender.newBuilder()
+                .setClient(asyncClient)
+                .build();
+
+        BatchPushResult result = sender.send(payloads);
+
+        assertEquals(2, result.getBatchCount());
+        assertEquals(300, result.getPayloadCount());
+        assertEquals(1, result.getFailures().size());
+        BatchPushResult.Failure failure = result.getFailures().get(0);
+        assertEquals(150, failure.getFirstIndex());
+        assertEquals(payloads.subList(150, 300), failure.getPayloads());
+        assertTrue(failure.getCause() instanceof NullPointerException);
+
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i < 150, result.getPushId(i).isPresent());
+        }
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        delayMillis = 50;
+        BatchPushSender sender = BatchPushSender.newBuilder()
+                .setClient(asyncClient)
+                .setMaxBatchSize(10)
+                .build();
+
+        BatchPushResult result = sender.send(payloads(100));
+
+        assertTrue(result.isSuccess());
+        assertEquals(10, result.getBatchCount());
+        assertEquals(2, maxConcurrent.get());
+    }
+}
@@ -0,0 +1,212 @@
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    private final List<String> events = new CopyOnWriteArrayList<String>();
+
+    private final CircuitBreakerListener listener = new CircuitBreakerListener() {
+        @Override
+        public void onStateChange(EndpointGroup group, CircuitState from, CircuitState to) {
+            events.add(group + ":" + from + "->" + to);
+        }
+
+        @Override
+        public void onRequestRejected(EndpointGroup group) {
+            events.add(group + ":rejected");
+        }
+    };
+
+    private CircuitBreaker breaker(long openDurationMillis) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.newBuilder()
+                .setWindowSize(10)
+                .setMinimumCalls(4)
+                .setFailureRateThreshold(0.5)
+                .setSlowCallDurationMillis(1000)
+                .setSlowCallRateThreshold(0.75)
+                .setOpenDurationMillis(openDurationMillis)
+                .setHalfOpenProbes(2)
+                .build();
+        return new CircuitBreaker(EndpointGroup.PUSH, config, Optional.of(listener));
+    }
+
+    private static void call(CircuitBreaker breaker, boolean failure, long durationNanos) {
+        breaker.onResult(breaker.acquirePermission(), failure, durationNanos);
+    }
+
+    @Test
+    public void testStaysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = breaker(30000);
+
+        for (int i = 0; i < 3; i++) {
+            call(breaker, true, FAST);
+        }
+
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        CircuitBreaker breaker = breaker(30000);
+
+        call(breaker, false, FAST);
+        call(breaker, false, FAST);
+        call(breaker, true, FAST);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        call(breaker, true, FAST);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertEquals("PUSH:CLOSED->OPEN", events.get(0));
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        CircuitBreaker breaker = breaker(30000);
+
+        call(breaker, false, FAST);
+        call(breaker, false, SLOW);
+        call(breaker, false, SLOW);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        call(breaker, false, SLOW);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testOldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = breaker(30000);
+
+        for (int i = 0; i < 10; i++) {
+            call(breaker, false, FAST);
+        }
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, FAST);
+        }
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+
+        // 5 of the last 10 failed, though only 5 of all 15
+        call(breaker, true, FAST);
+        assertEquals(CircuitState.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testOpenCircuitRejectsRequests() {
+        CircuitBreaker breaker = breaker(30000);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, FAST);
+        }
+
+        try {
+            breaker.acquirePermission();
+            fail("Expected CircuitOpenException");
+        } catch (CircuitOpenException e) {
+            assertEquals(EndpointGroup.PUSH, e.getEndpointGroup());
+            assertTrue(e.getRetryAfterMillis() > 0 && e.getRetryAfterMillis() <= 30000);
+        }
+        assertEquals("PUSH:rejected", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testHalfOpenProbesCloseTheCircuit() throws Exception {
+        CircuitBreaker breaker = breaker(50);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, FAST);
+        }
+        Thread.sleep(100);
+
+        long first = breaker.acquirePermission();
+        long second = breaker.acquirePermission();
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+
+        try {
+            breaker.acquirePermission();
+            fail("Expected CircuitOpenException");
+        } catch (CircuitOpenException e) {
+            assertEquals(0L, e.getRetryAfterMillis());
+        }
+
+        breaker.onResult(first, false, FAST);
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+        breaker.onResult(second, false, FAST);
+
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertTrue(events.contains("PUSH:OPEN->HALF_OPEN"));
+        assertEquals("PUSH:HALF_OPEN->CLOSED", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testFailedProbeReopensTheCircuit() throws Exception {
+        CircuitBreaker breaker = breaker(50);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, FAST);
+        }
+        Thread.sleep(100);
+
+        long probe = breaker.acquirePermission();
+        breaker.onResult(probe, false, SLOW);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertEquals("PUSH:HALF_OPEN->OPEN", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testReleasedProbeCanBeTakenAgain() throws Exception {
+        CircuitBreaker breaker = breaker(50);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, FAST);
+        }
+        Thread.sleep(100);
+
+        long first = breaker.acquirePermission();
+        breaker.acquirePermission();
+        breaker.release(first);
+        breaker.acquirePermission();
+
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testListenerFailureDoesNotBreakTheCircuit() {
+        CircuitBreakerListener failing = new CircuitBreakerListener() {
+            @Override
+            public void onStateChange(EndpointGroup group, CircuitState from, CircuitState to) {
+                throw new IllegalStateException("boom");
+            }
+
+            @Override
+            public void onRequestRejected(EndpointGroup group) {
+                throw new IllegalStateException("boom");
+            }
+        };
+        CircuitBreaker breaker = new CircuitBreaker(EndpointGroup.TAGS,
+                CircuitBreakerConfig.newBuilder().setWindowSize(2).setMinimumCalls(1).build(),
+                Optional.of(failing));
+
+        call(breaker, true, FAST);
+        assertEquals(CircuitState.OPEN, breaker.getState());
+
+        try {
+            breaker.acquirePermission();
+            fail("Expected CircuitOpenException");
+        } catch (CircuitOpenException e) {
+            assertEquals(EndpointGroup.TAGS, e.getEndpointGroup());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMinimumCallsCannotExceedWindow() {
+        CircuitBreakerConfig.newBuilder().setWindowSize(5).setMinimumCalls(6).build();
+    }
+}
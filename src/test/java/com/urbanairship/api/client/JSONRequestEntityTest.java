@@ -0,0 +1,141 @@
+package com.urbanairship.api.client;
+
+import com.google.common.io.ByteStreams;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import com.urbanairship.api.segments.model.AudienceSegment;
+import com.urbanairship.api.segments.model.TagPredicateBuilder;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JSONRequestEntityTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(JSONRequestEntityTest.class);
+
+    private static PushPayload largePayload(int tokens) {
+        List<String> deviceTokens = new ArrayList<String>(tokens);
+        for (int i = 0; i < tokens; i++) {
+            deviceTokens.add(String.format("%064X", i));
+        }
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.deviceTokens(deviceTokens))
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Foo"))
+                .build();
+    }
+
+    @Test
+    public void testWritesSameJSONAsToJSON() throws Exception {
+        PushPayload payload = largePayload(10);
+        JSONRequestEntity entity = new JSONRequestEntity(payload);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+
+        assertEquals(payload.toJSON(), out.toString("UTF-8"));
+        assertEquals(ContentType.APPLICATION_JSON.toString(), entity.getContentType().getValue());
+    }
+
+    @Test
+    public void testEntityIsRepeatable() throws Exception {
+        JSONRequestEntity entity = new JSONRequestEntity(largePayload(10));
+        assertTrue(entity.isRepeatable());
+        assertFalse(entity.isStreaming());
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        entity.writeTo(first);
+        entity.writeTo(second);
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+        assertArrayEquals(first.toByteArray(), ByteStreams.toByteArray(entity.getContent()));
+    }
+
+    @Test
+    public void testWritesAPIResponseModelObjects() throws Exception {
+        AudienceSegment segment = AudienceSegment.newBuilder()
+                .setDisplayName("test")
+                .setRootPredicate(TagPredicateBuilder.newInstance().setTag("tag").build())
+                .build();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JSONRequestEntity(segment).writeTo(out);
+
+        assertEquals(segment.toJSON(), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testDoesNotCloseTargetStream() throws Exception {
+        final boolean[] closed = {false};
+        OutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        new JSONRequestEntity(largePayload(1)).writeTo(out);
+        assertFalse(closed[0]);
+    }
+
+    /*
+    Compares bytes allocated to send a 50,000 token audience through the
+    streaming entity and through the previous toJSON/bodyString path.
+     */
+    @Test
+    public void testStreamingAllocatesLessThanBodyString() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        PushPayload payload = largePayload(50000);
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        long threadId = Thread.currentThread().getId();
+        int iterations = 10;
+
+        for (int i = 0; i < iterations; i++) {
+            new JSONRequestEntity(payload).writeTo(sink);
+            new StringEntity(payload.toJSON(), ContentType.APPLICATION_JSON).writeTo(sink);
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            new JSONRequestEntity(payload).writeTo(sink);
+        }
+        long streaming = (threadBean.getThreadAllocatedBytes(threadId) - before) / iterations;
+
+        before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            new StringEntity(payload.toJSON(), ContentType.APPLICATION_JSON).writeTo(sink);
+        }
+        long bodyString = (threadBean.getThreadAllocatedBytes(threadId) - before) / iterations;
+
+        logger.info(String.format("50,000 token push: streaming %d bytes/op, bodyString %d bytes/op",
+                streaming, bodyString));
+        assertTrue("Streaming entity should allocate less than bodyString", streaming < bodyString);
+    }
+}
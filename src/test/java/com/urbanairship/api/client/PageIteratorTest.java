@@ -0,0 +1,248 @@
+package com.urbanairship.api.client;
+
+import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.urbanairship.api.channel.information.model.ChannelView;
+import com.urbanairship.api.client.model.SegmentInformation;
+import org.apache.log4j.BasicConfigurator;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.*;
+
+public class PageIteratorTest {
+
+    static {
+        BasicConfigurator.configure();
+    }
+
+    @ClassRule
+    @Rule
+    public static WireMockClassRule wireMockClassRule = new WireMockClassRule();
+
+    /* Serves pages of consecutive integers, counting fetches */
+    private static final class CountingFetcher implements PageIterator.PageFetcher<Integer> {
+        private final int pages;
+        private final int pageSize;
+        private final AtomicInteger fetches = new AtomicInteger();
+        private final int failAtPage;
+
+        private CountingFetcher(int pages, int pageSize, int failAtPage) {
+            this.pages = pages;
+            this.pageSize = pageSize;
+            this.failAtPage = failAtPage;
+        }
+
+        @Override
+        public PageIterator.Page<Integer> fetch(Optional<String> nextPage) throws IOException {
+            int page = nextPage.isPresent() ? Integer.parseInt(nextPage.get()) : 0;
+            fetches.incrementAndGet();
+            if (page == failAtPage) {
+                throw new IOException("Connection reset");
+            }
+
+            List<Integer> items = Lists.newArrayList();
+            for (int i = 0; i < pageSize; i++) {
+                items.add(page * pageSize + i);
+            }
+            Optional<String> next = page + 1 < pages ? Optional.of(String.valueOf(page + 1)) : Optional.<String>absent();
+            return PageIterator.Page.of(items, next);
+        }
+    }
+
+    private static List<Integer> drain(PageIterator<Integer> iterator) {
+        List<Integer> items = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            items.add(iterator.next());
+        }
+        return items;
+    }
+
+    @Test
+    public void testFollowsAllPagesWithoutPrefetch() {
+        CountingFetcher fetcher = new CountingFetcher(4, 3, -1);
+        PageIterator<Integer> iterator = new PageIterator<Integer>(fetcher, 0);
+
+        assertEquals(0, fetcher.fetches.get());
+        List<Integer> items = drain(iterator);
+
+        assertEquals(12, items.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(i, items.get(i).intValue());
+        }
+        assertEquals(4, fetcher.fetches.get());
+    }
+
+    @Test
+    public void testFollowsAllPagesWithPrefetch() {
+        CountingFetcher fetcher = new CountingFetcher(50, 10, -1);
+        PageIterator<Integer> iterator = new PageIterator<Integer>(fetcher, 3);
+
+        List<Integer> items = drain(iterator);
+
+        assertEquals(500, items.size());
+        assertEquals(499, items.get(499).intValue());
+        assertEquals(50, fetcher.fetches.get());
+    }
+
+    @Test
+    public void testPrefetchIsBounded() throws Exception {
+        CountingFetcher fetcher = new CountingFetcher(100, 1, -1);
+        PageIterator<Integer> iterator = new PageIterator<Integer>(fetcher, 2);
+
+        assertEquals(0, iterator.next().intValue());
+        Thread.sleep(200);
+
+        // The consumed page, two queued pages and one waiting to be queued
+        assertTrue("Fetched " + fetcher.fetches.get(), fetcher.fetches.get() <= 4);
+        iterator.close();
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testPrefetchOverlapsSlowPages() throws Exception {
+        final CountDownLatch secondPageFetched = new CountDownLatch(1);
+        PageIterator.PageFetcher<Integer> fetcher = new PageIterator.PageFetcher<Integer>() {
+            @Override
+            public PageIterator.Page<Integer> fetch(Optional<String> nextPage) throws IOException {
+                if (!nextPage.isPresent()) {
+                    return PageIterator.Page.<Integer>of(ImmutableList.of(1), Optional.of("2"));
+                }
+                secondPageFetched.countDown();
+                return PageIterator.Page.<Integer>of(ImmutableList.of(2), Optional.<String>absent());
+            }
+        };
+        PageIterator<Integer> iterator = new PageIterator<Integer>(fetcher, 1);
+
+        assertEquals(1, iterator.next().intValue());
+        // The second page is fetched before it is asked for
+        assertTrue(secondPageFetched.await(5, TimeUnit.SECONDS));
+        assertEquals(2, iterator.next().intValue());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testEmptyPagesAreSkipped() {
+        PageIterator.PageFetcher<Integer> fetcher = new PageIterator.PageFetcher<Integer>() {
+            @Override
+            public PageIterator.Page<Integer> fetch(Optional<String> nextPage) throws IOException {
+                if (!nextPage.isPresent()) {
+                    return PageIterator.Page.<Integer>of(ImmutableList.<Integer>of(), Optional.of("2"));
+                }
+                return PageIterator.Page.<Integer>of(ImmutableList.of(7), Optional.<String>absent());
+            }
+        };
+
+        assertEquals(ImmutableList.of(7), drain(new PageIterator<Integer>(fetcher, 0)));
+    }
+
+    @Test
+    public void testTransportErrorIsThrownAfterPrecedingItems() {
+        for (int prefetch = 0; prefetch <= 2; prefetch++) {
+            PageIterator<Integer> iterator = new PageIterator<Integer>(new CountingFetcher(5, 2, 2), prefetch);
+            int seen = 0;
+            try {
+                while (iterator.hasNext()) {
+                    iterator.next();
+                    seen++;
+                }
+                fail("Expected PageFetchException");
+            } catch (PageFetchException e) {
+                assertEquals("Connection reset", e.getCause().getMessage());
+            }
+            assertEquals(4, seen);
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextPastEndThrows() {
+        PageIterator<Integer> iterator = new PageIterator<Integer>(new CountingFetcher(1, 1, -1), 1);
+        iterator.next();
+        iterator.next();
+    }
+
+    @Test
+    public void testIterateChannels() throws Exception {
+        String channel = "{\"channel_id\":\"%s\",\"device_type\":\"ios\",\"installed\":true,\"opt_in\":true," +
+                "\"push_address\":null,\"created\":\"2014-03-06T18:52:59\",\"last_registration\":null," +
+                "\"alias\":null,\"tags\":[]}";
+        stubFor(get(urlEqualTo("/api/channels/"))
+                .willReturn(aResponse()
+                        .withHeader("Content-type", "application/json")
+                        .withBody("{\"ok\":true,\"channels\":[" + String.format(channel, "00000000-0000-0000-0000-000000000001") +
+                                "],\"next_page\":\"http://localhost:8080/api/channels/?start=2\"}")
+                        .withStatus(200)));
+        stubFor(get(urlEqualTo("/api/channels/?start=2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-type", "application/json")
+                        .withBody("{\"ok\":true,\"channels\":[" + String.format(channel, "00000000-0000-0000-0000-000000000002") +
+                                "]}")
+                        .withStatus(200)));
+
+        APIClient client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:8080")
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+
+        try {
+            List<String> ids = Lists.newArrayList();
+            PageIterator<ChannelView> channels = client.iterateChannels(2);
+            while (channels.hasNext()) {
+                ids.add(channels.next().getChannelId());
+            }
+
+            assertEquals(ImmutableList.of("00000000-0000-0000-0000-000000000001",
+                    "00000000-0000-0000-0000-000000000002"), ids);
+            verify(1, getRequestedFor(urlEqualTo("/api/channels/?start=2")));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testIterateSegments() throws Exception {
+        stubFor(get(urlEqualTo("/api/segments/"))
+                .willReturn(aResponse()
+                        .withHeader("Content-type", "application/json")
+                        .withBody("{\"segments\":[{\"creation_date\":1,\"display_name\":\"a\",\"id\":\"1\"," +
+                                "\"modification_date\":1}],\"next_page\":\"http://localhost:8080/api/segments/?start=1\"}")
+                        .withStatus(200)));
+        stubFor(get(urlEqualTo("/api/segments/?start=1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-type", "application/json")
+                        .withBody("{\"segments\":[{\"creation_date\":2,\"display_name\":\"b\",\"id\":\"2\"," +
+                                "\"modification_date\":2}]}")
+                        .withStatus(200)));
+
+        APIClient client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:8080")
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+
+        try {
+            List<String> names = Lists.newArrayList();
+            PageIterator<SegmentInformation> segments = client.iterateSegments(0);
+            while (segments.hasNext()) {
+                names.add(segments.next().getDisplayName());
+            }
+
+            assertEquals(ImmutableList.of("a", "b"), names);
+        } finally {
+            client.close();
+        }
+    }
+}
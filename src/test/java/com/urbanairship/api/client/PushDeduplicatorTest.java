@@ -0,0 +1,85 @@
+package com.urbanairship.api.client;
+
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PushDeduplicatorTest {
+
+    private static PushPayload payload(String alert) {
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.tag("vip"))
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert(alert))
+                .build();
+    }
+
+    @Test
+    public void testDuplicatesAreSuppressedWithinWindow() {
+        PushDeduplicator deduplicator = PushDeduplicator.newBuilder().build();
+
+        assertTrue(deduplicator.shouldSend(payload("Hello")));
+        assertFalse(deduplicator.shouldSend(payload("Hello")));
+        assertTrue(deduplicator.shouldSend(payload("Goodbye")));
+        assertEquals(1, deduplicator.getSuppressedCount());
+        assertEquals(2, deduplicator.size());
+    }
+
+    @Test
+    public void testPushesAreForgottenAfterWindow() throws Exception {
+        PushDeduplicator deduplicator = PushDeduplicator.newBuilder().setWindowMillis(50).build();
+
+        assertTrue(deduplicator.shouldSend(payload("Hello")));
+        Thread.sleep(100);
+        assertTrue(deduplicator.shouldSend(payload("Hello")));
+        assertEquals(1, deduplicator.size());
+    }
+
+    @Test
+    public void testForgottenPushIsSentAgain() {
+        PushDeduplicator deduplicator = PushDeduplicator.newBuilder().build();
+
+        assertTrue(deduplicator.shouldSend(payload("Hello")));
+        deduplicator.forget(payload("Hello"));
+        assertTrue(deduplicator.shouldSend(payload("Hello")));
+        assertFalse(deduplicator.shouldSend(payload("Hello")));
+    }
+
+    @Test
+    public void testOldestPushIsDroppedWhenFull() {
+        PushDeduplicator deduplicator = PushDeduplicator.newBuilder().setMaxEntries(100).build();
+
+        for (long hash = 0; hash < 150; hash++) {
+            assertTrue(deduplicator.shouldSend(hash));
+        }
+        assertEquals(100, deduplicator.size());
+        // The first 50 were dropped to make room, the rest are still suppressed
+        for (long hash = 0; hash < 50; hash++) {
+            assertTrue(deduplicator.shouldSend(hash));
+        }
+        for (long hash = 100; hash < 150; hash++) {
+            assertFalse(deduplicator.shouldSend(hash));
+        }
+    }
+
+    @Test
+    public void testRemovalKeepsCollidingEntries() {
+        PushDeduplicator deduplicator = PushDeduplicator.newBuilder().setMaxEntries(4).build();
+
+        // More hashes than slots over time, forgetting some, so entries are shifted back on removal
+        for (long hash = 0; hash < 1000; hash++) {
+            assertTrue(deduplicator.shouldSend(hash));
+            if (hash % 3 == 0) {
+                deduplicator.forget(hash);
+                assertTrue(deduplicator.shouldSend(hash));
+            }
+            assertFalse(deduplicator.shouldSend(hash));
+        }
+        assertTrue(deduplicator.size() <= 4);
+    }
+}
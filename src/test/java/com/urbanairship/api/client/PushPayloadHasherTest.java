@@ -0,0 +1,131 @@
+package com.urbanairship.api.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushExpiry;
+import com.urbanairship.api.push.model.PushOptions;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selector;
+import com.urbanairship.api.push.model.audience.SelectorType;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notification;
+import com.urbanairship.api.push.model.notification.Notifications;
+import com.urbanairship.api.push.model.notification.ios.IOSDevicePayload;
+import com.urbanairship.api.push.model.notification.richpush.RichPushMessage;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PushPayloadHasherTest {
+
+    private static PushPayload payload(Selector audience, Notification notification) {
+        return PushPayload.newBuilder()
+                .setAudience(audience)
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS, DeviceType.ANDROID))
+                .setNotification(notification)
+                .build();
+    }
+
+    @Test
+    public void testOperandOrderDoesNotMatter() {
+        List<String> tokens = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            tokens.add(String.format("%064X", i));
+        }
+        Selector forward = Selectors.compound(SelectorType.AND,
+                Selectors.deviceTokens(tokens), Selectors.not(Selectors.tag("opted_out")));
+        Selector backward = Selectors.compound(SelectorType.AND,
+                Selectors.not(Selectors.tag("opted_out")), Selectors.deviceTokens(Lists.reverse(tokens)));
+
+        assertEquals(PushPayloadHasher.hash(forward), PushPayloadHasher.hash(backward));
+        assertEquals(PushPayloadHasher.hash(payload(forward, Notifications.alert("Hello"))),
+                PushPayloadHasher.hash(payload(backward, Notifications.alert("Hello"))));
+    }
+
+    @Test
+    public void testDeviceTypeOrderDoesNotMatter() {
+        PushPayload first = PushPayload.newBuilder()
+                .setAudience(Selectors.all())
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS, DeviceType.ANDROID))
+                .setNotification(Notifications.alert("Hello"))
+                .build();
+        PushPayload second = PushPayload.newBuilder()
+                .setAudience(Selectors.all())
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.ANDROID, DeviceType.IOS))
+                .setNotification(Notifications.alert("Hello"))
+                .build();
+
+        assertEquals(PushPayloadHasher.hash(first), PushPayloadHasher.hash(second));
+    }
+
+    @Test
+    public void testOverrideFieldOrderDoesNotMatter() {
+        IOSDevicePayload first = IOSDevicePayload.newBuilder()
+                .setAlert("Hello")
+                .addExtraEntry("order_id", "A-10029")
+                .addExtraEntry("url", "https://example.com/orders/A-10029")
+                .build();
+        IOSDevicePayload second = IOSDevicePayload.newBuilder()
+                .setAlert("Hello")
+                .addExtraEntry("url", "https://example.com/orders/A-10029")
+                .addExtraEntry("order_id", "A-10029")
+                .build();
+
+        assertEquals(PushPayloadHasher.hash(payload(Selectors.all(), Notifications.notification("Hello", first))),
+                PushPayloadHasher.hash(payload(Selectors.all(), Notifications.notification("Hello", second))));
+    }
+
+    @Test
+    public void testEveryPartOfThePayloadCounts() {
+        PushPayload base = payload(Selectors.tag("vip"), Notifications.alert("Hello"));
+        RichPushMessage message = RichPushMessage.newBuilder().setTitle("Title").setBody("Body").build();
+        List<PushPayload> variants = ImmutableList.of(
+                base,
+                payload(Selectors.tag("VIP"), Notifications.alert("Hello")),
+                payload(Selectors.alias("vip"), Notifications.alert("Hello")),
+                payload(Selectors.tag("vip"), Notifications.alert("Hello!")),
+                payload(Selectors.tag("vip"), Notifications.notification("Hello", Notifications.iosAlert("Hi"))),
+                PushPayload.newBuilder()
+                        .setAudience(Selectors.tag("vip"))
+                        .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                        .setNotification(Notifications.alert("Hello"))
+                        .build(),
+                PushPayload.newBuilder()
+                        .setAudience(Selectors.tag("vip"))
+                        .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS, DeviceType.ANDROID))
+                        .setNotification(Notifications.alert("Hello"))
+                        .setMessage(message)
+                        .build(),
+                PushPayload.newBuilder()
+                        .setAudience(Selectors.tag("vip"))
+                        .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS, DeviceType.ANDROID))
+                        .setNotification(Notifications.alert("Hello"))
+                        .setPushOptions(PushOptions.newBuilder()
+                                .setExpiry(PushExpiry.newBuilder().setExpirySeconds(3600).build())
+                                .build())
+                        .build());
+
+        for (int i = 0; i < variants.size(); i++) {
+            for (int j = i + 1; j < variants.size(); j++) {
+                assertFalse("Payloads " + i + " and " + j + " hash the same",
+                        PushPayloadHasher.hash(variants.get(i)) == PushPayloadHasher.hash(variants.get(j)));
+            }
+        }
+    }
+
+    @Test
+    public void testAndIsNotOr() {
+        assertFalse(PushPayloadHasher.hash(Selectors.compound(SelectorType.AND, Selectors.tag("a"), Selectors.tag("b"))) ==
+                PushPayloadHasher.hash(Selectors.compound(SelectorType.OR, Selectors.tag("a"), Selectors.tag("b"))));
+    }
+
+    @Test
+    public void testEqualPayloadsHashTheSame() {
+        assertEquals(PushPayloadHasher.hash(payload(Selectors.tag("vip"), Notifications.alert("Hello"))),
+                PushPayloadHasher.hash(payload(Selectors.tag("vip"), Notifications.alert("Hello"))));
+    }
+}
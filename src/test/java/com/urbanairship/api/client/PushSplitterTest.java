@@ -0,0 +1,145 @@
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.CompoundSelector;
+import com.urbanairship.api.push.model.audience.Selector;
+import com.urbanairship.api.push.model.audience.SelectorType;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import com.urbanairship.api.simulator.APISimulator;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PushSplitterTest {
+
+    private static List<String> tokens(int count) {
+        List<String> tokens = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            tokens.add(String.format("%064X", i));
+        }
+        return tokens;
+    }
+
+    private static PushPayload payload(Selector audience) {
+        return PushPayload.newBuilder()
+                .setAudience(audience)
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Hello"))
+                .build();
+    }
+
+    private static List<Selector> children(Selector selector) {
+        return ImmutableList.copyOf(((CompoundSelector) selector).getChildren());
+    }
+
+    @Test
+    public void testSmallAudienceIsNotSplit() {
+        PushPayload payload = payload(Selectors.deviceTokens(tokens(1000)));
+        PushSplitter splitter = PushSplitter.newBuilder().setMaxAudienceSize(1000).build();
+
+        assertEquals(ImmutableList.of(payload), splitter.split(payload));
+    }
+
+    @Test
+    public void testDeviceListIsPartitioned() {
+        Selector audience = Selectors.deviceTokens(tokens(2500));
+        PushPayload payload = payload(audience);
+        PushSplitter splitter = PushSplitter.newBuilder().setMaxAudienceSize(1000).build();
+
+        List<PushPayload> parts = splitter.split(payload);
+
+        assertEquals(3, parts.size());
+        List<Selector> values = Lists.newArrayList();
+        for (PushPayload part : parts) {
+            assertEquals(SelectorType.OR, part.getAudience().getType());
+            assertEquals(payload.getNotification(), part.getNotification());
+            assertEquals(payload.getDeviceTypes(), part.getDeviceTypes());
+            values.addAll(children(part.getAudience()));
+        }
+        assertEquals(1000, children(parts.get(0).getAudience()).size());
+        assertEquals(500, children(parts.get(2).getAudience()).size());
+        assertEquals(children(audience), values);
+    }
+
+    @Test
+    public void testDeviceListIsPartitionedByBytes() {
+        PushPayload payload = payload(Selectors.deviceTokens(tokens(100)));
+        // Each token is 64 characters, plus "device_token" and the JSON around it
+        PushSplitter splitter = PushSplitter.newBuilder().setMaxAudienceBytes(10 * 84).build();
+
+        List<PushPayload> parts = splitter.split(payload);
+
+        assertEquals(10, parts.size());
+        for (PushPayload part : parts) {
+            assertEquals(10, children(part.getAudience()).size());
+        }
+    }
+
+    @Test
+    public void testOtherOperandsOfAndAreRepeated() {
+        Selector optedOut = Selectors.not(Selectors.tag("opted_out"));
+        PushPayload payload = payload(Selectors.compound(SelectorType.AND,
+                Selectors.deviceTokens(tokens(1500)), optedOut));
+        PushSplitter splitter = PushSplitter.newBuilder().setMaxAudienceSize(1000).build();
+
+        List<PushPayload> parts = splitter.split(payload);
+
+        assertEquals(2, parts.size());
+        for (PushPayload part : parts) {
+            List<Selector> operands = children(part.getAudience());
+            assertEquals(SelectorType.AND, part.getAudience().getType());
+            assertEquals(2, operands.size());
+            assertEquals(SelectorType.OR, operands.get(0).getType());
+            assertEquals(optedOut, operands.get(1));
+        }
+    }
+
+    @Test
+    public void testTagListIsNotSplit() {
+        PushPayload payload = payload(Selectors.tags(tokens(2000)));
+        PushSplitter splitter = PushSplitter.newBuilder().setMaxAudienceSize(1000).build();
+
+        assertEquals(ImmutableList.of(payload), splitter.split(payload));
+    }
+
+    @Test
+    public void testPushSendsEveryPart() throws Exception {
+        APISimulator simulator = APISimulator.newBuilder().build();
+        simulator.start();
+        APIClient client = APIClient.newBuilder()
+                .setBaseURI(simulator.getBaseURI())
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+        AsyncAPIClient asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .setMaxInFlight(4)
+                .build();
+        try {
+            PushSplitter splitter = PushSplitter.newBuilder()
+                    .setClient(asyncClient)
+                    .setMaxAudienceSize(1000)
+                    .build();
+
+            BatchPushResult result = splitter.push(payload(Selectors.deviceTokens(tokens(3500))));
+
+            assertTrue(result.isSuccess());
+            assertEquals(4, result.getPayloadCount());
+            assertEquals(4, simulator.getRequestCount());
+            assertFalse(Iterables.contains(result.getPushIds(), Optional.<String>absent()));
+        } finally {
+            asyncClient.close();
+            client.close();
+            simulator.close();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.urbanairship.api.client;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import com.urbanairship.api.simulator.APISimulator;
+import com.urbanairship.api.simulator.Fault;
+import com.urbanairship.api.simulator.FaultRule;
+import com.urbanairship.api.simulator.RecordedRequest;
+import com.urbanairship.api.tag.model.AddRemoveDeviceFromTagPayload;
+import com.urbanairship.api.tag.model.AddRemoveSet;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RequestSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<RequestSpool> spools = Lists.newArrayList();
+    private final List<APIClient> clients = Lists.newArrayList();
+    private APISimulator simulator;
+
+    @After
+    public void tearDown() {
+        for (RequestSpool spool : spools) {
+            spool.close();
+        }
+        for (APIClient client : clients) {
+            client.close();
+        }
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    /* A port nothing is listening on, until the simulator is started on it */
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private void startSimulator(APISimulator.Builder builder) throws IOException {
+        simulator = builder.build();
+        simulator.start();
+    }
+
+    private RequestSpool start(File directory, int port, RequestSpool.Builder builder) throws IOException {
+        APIClient client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + port)
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+        clients.add(client);
+        RequestSpool spool = builder
+                .setClient(client)
+                .setDirectory(directory)
+                .setRecoveryIntervalMillis(20)
+                .build();
+        spools.add(spool);
+        spool.start();
+        return spool;
+    }
+
+    private RequestSpool start(File directory, int port) throws IOException {
+        return start(directory, port, RequestSpool.newBuilder());
+    }
+
+    private static PushPayload payload(int i) {
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.deviceToken(String.format("%064X", i)))
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("message-" + i))
+                .build();
+    }
+
+    private void assertPushesSent(int count) {
+        List<RecordedRequest> requests = Lists.newArrayList();
+        for (RecordedRequest request : simulator.getRecordedRequests()) {
+            if (request.getPath().equals("/api/push/")) {
+                requests.add(request);
+            }
+        }
+        assertEquals(count, requests.size());
+        for (int i = 0; i < count; i++) {
+            assertTrue(requests.get(i).getBodyAsString().contains("\"message-" + i + "\""));
+        }
+    }
+
+    @Test
+    public void testRequestsSpooledDuringOutageAreSentInOrder() throws Exception {
+        int port = freePort();
+        RequestSpool spool = start(folder.getRoot(), port);
+
+        for (int i = 0; i < 5; i++) {
+            spool.push(payload(i));
+        }
+        spool.addRemoveDevicesFromTag("vip", AddRemoveDeviceFromTagPayload.newBuilder()
+                .setDeviceTokens(AddRemoveSet.newBuilder().add("token-1").build())
+                .build());
+        Thread.sleep(100);
+        assertEquals(6, spool.getPendingCount());
+
+        startSimulator(APISimulator.newBuilder().setPort(port));
+
+        assertTrue(spool.awaitEmpty(10, TimeUnit.SECONDS));
+        assertEquals(6, spool.getDeliveredCount());
+        assertPushesSent(5);
+        List<RecordedRequest> requests = simulator.getRecordedRequests();
+        assertEquals("/api/tags/vip", requests.get(requests.size() - 1).getPath());
+    }
+
+    @Test
+    public void testUnsentRequestsSurviveRestart() throws Exception {
+        int port = freePort();
+        RequestSpool spool = start(folder.getRoot(), port);
+        for (int i = 0; i < 3; i++) {
+            spool.push(payload(i));
+        }
+        spool.close();
+
+        startSimulator(APISimulator.newBuilder().setPort(port));
+        RequestSpool restarted = start(folder.getRoot(), port);
+
+        assertTrue(restarted.awaitEmpty(10, TimeUnit.SECONDS));
+        assertPushesSent(3);
+    }
+
+    @Test
+    public void testTornRecordIsDiscardedAfterCrash() throws Exception {
+        int port = freePort();
+        File spoolDirectory = folder.newFolder("spool");
+        RequestSpool spool = start(spoolDirectory, port);
+        for (int i = 0; i < 3; i++) {
+            spool.push(payload(i));
+        }
+
+        // Copying the files of a running spool leaves what a crash would
+        File crashDirectory = folder.newFolder("crash");
+        File segment = null;
+        for (File file : spoolDirectory.listFiles()) {
+            File copy = new File(crashDirectory, file.getName());
+            Files.copy(file, copy);
+            if (SpoolSegment.sequenceOf(file) >= 0) {
+                segment = copy;
+            }
+        }
+
+        // A record whose length was written but not its contents
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            int position = 0;
+            raf.seek(position);
+            for (int length = raf.readInt(); length != 0; length = raf.readInt()) {
+                position += 8 + length;
+                raf.seek(position);
+            }
+            raf.seek(position);
+            raf.writeInt(500);
+            raf.writeInt(12345);
+        } finally {
+            raf.close();
+        }
+        spool.close();
+
+        startSimulator(APISimulator.newBuilder().setPort(port));
+        RequestSpool recovered = start(crashDirectory, port);
+        assertEquals(3, recovered.getPendingCount());
+        recovered.push(payload(3));
+
+        assertTrue(recovered.awaitEmpty(10, TimeUnit.SECONDS));
+        assertPushesSent(4);
+    }
+
+    @Test
+    public void testSegmentsRollAndSentSegmentsAreDeleted() throws Exception {
+        int port = freePort();
+        RequestSpool spool = start(folder.getRoot(), port, RequestSpool.newBuilder()
+                .setSegmentBytes(4096)
+                .setSyncPolicy(RequestSpool.SyncPolicy.EVERY_RECORD));
+
+        for (int i = 0; i < 100; i++) {
+            spool.push(payload(i));
+        }
+        assertTrue(spool.getSegmentCount() > 1);
+
+        startSimulator(APISimulator.newBuilder().setPort(port));
+
+        assertTrue(spool.awaitEmpty(10, TimeUnit.SECONDS));
+        assertPushesSent(100);
+        assertEquals(1, spool.getSegmentCount());
+        int segmentFiles = 0;
+        for (File file : folder.getRoot().listFiles()) {
+            if (SpoolSegment.sequenceOf(file) >= 0) {
+                segmentFiles++;
+            }
+        }
+        assertEquals(1, segmentFiles);
+    }
+
+    @Test
+    public void testRejectedRequestsAreDropped() throws Exception {
+        int port = freePort();
+        startSimulator(APISimulator.newBuilder()
+                .setPort(port)
+                .addFaultRule(FaultRule.newBuilder()
+                        .setEndpointGroup(EndpointGroup.PUSH)
+                        .setFault(Fault.status(400))
+                        .build()));
+        RequestSpool spool = start(folder.getRoot(), port);
+
+        spool.push(payload(0));
+        spool.push(payload(1));
+
+        assertTrue(spool.awaitEmpty(10, TimeUnit.SECONDS));
+        assertEquals(2, spool.getDroppedCount());
+        assertEquals(0, spool.getDeliveredCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequestLargerThanSegmentIsRejected() throws Exception {
+        RequestSpool spool = start(folder.getRoot(), freePort(), RequestSpool.newBuilder().setSegmentBytes(1024));
+        List<String> tokens = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            tokens.add(String.format("%064X", i));
+        }
+        spool.push(PushPayload.newBuilder()
+                .setAudience(Selectors.deviceTokens(tokens))
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Hello"))
+                .build());
+    }
+}
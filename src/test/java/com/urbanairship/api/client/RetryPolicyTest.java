@@ -0,0 +1,143 @@
+package com.urbanairship.api.client;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+
+    private static HttpResponse response(int status) {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "");
+    }
+
+    private static final Optional<Number> NO_ERROR_CODE = Optional.absent();
+
+    @Test
+    public void testBackoffGrowsUntilMaximum() {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                .setMaxAttempts(10)
+                .setInitialBackoffMillis(100)
+                .setMaxBackoffMillis(1000)
+                .setJitterFactor(0)
+                .build();
+
+        assertEquals(100, policy.backoffMillis(1));
+        assertEquals(200, policy.backoffMillis(2));
+        assertEquals(400, policy.backoffMillis(3));
+        assertEquals(800, policy.backoffMillis(4));
+        assertEquals(1000, policy.backoffMillis(5));
+        assertEquals(1000, policy.backoffMillis(9));
+    }
+
+    @Test
+    public void testJitterStaysWithinRange() {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                .setInitialBackoffMillis(1000)
+                .setJitterFactor(0.5)
+                .build();
+
+        for (int i = 0; i < 1000; i++) {
+            long backoff = policy.backoffMillis(1);
+            assertTrue(backoff >= 500 && backoff <= 1000);
+        }
+    }
+
+    @Test
+    public void testRetryableStatusesAndMethods() {
+        RetryPolicy policy = RetryPolicy.newBuilder().build();
+
+        assertTrue(policy.retryDelayMillis("GET", 1, response(503), NO_ERROR_CODE) >= 0);
+        assertTrue(policy.retryDelayMillis("DELETE", 1, response(502), NO_ERROR_CODE) >= 0);
+        assertTrue(policy.retryDelayMillis("POST", 1, response(429), NO_ERROR_CODE) >= 0);
+
+        assertEquals(-1, policy.retryDelayMillis("POST", 1, response(503), NO_ERROR_CODE));
+        assertEquals(-1, policy.retryDelayMillis("GET", 1, response(400), NO_ERROR_CODE));
+        assertEquals(-1, policy.retryDelayMillis("GET", 1, response(500), NO_ERROR_CODE));
+        assertEquals(-1, policy.retryDelayMillis("GET", 3, response(503), NO_ERROR_CODE));
+    }
+
+    @Test
+    public void testRetryAfterSeconds() {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                .setInitialBackoffMillis(10)
+                .setMaxBackoffMillis(10)
+                .setMaxRetryAfterMillis(5000)
+                .build();
+
+        HttpResponse response = response(429);
+        response.addHeader("Retry-After", "2");
+        assertEquals(2000, policy.retryDelayMillis("POST", 1, response, NO_ERROR_CODE));
+
+        HttpResponse tooLong = response(429);
+        tooLong.addHeader("Retry-After", "60");
+        assertEquals(-1, policy.retryDelayMillis("POST", 1, tooLong, NO_ERROR_CODE));
+
+        HttpResponse invalid = response(429);
+        invalid.addHeader("Retry-After", "soon");
+        long delay = policy.retryDelayMillis("POST", 1, invalid, NO_ERROR_CODE);
+        assertTrue(delay >= 5 && delay <= 10);
+    }
+
+    @Test
+    public void testRetryAfterDate() {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                .setInitialBackoffMillis(0)
+                .setMaxBackoffMillis(0)
+                .build();
+
+        HttpResponse past = response(503);
+        past.addHeader("Retry-After", "Wed, 21 Oct 2015 07:28:00 GMT");
+        assertEquals(0, policy.retryDelayMillis("GET", 1, past, NO_ERROR_CODE));
+    }
+
+    @Test
+    public void testRetryableErrorCodes() {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                .setRetryableErrorCodes(ImmutableSet.of(40099))
+                .build();
+
+        Optional<Number> retryable = Optional.<Number>of(40099);
+        Optional<Number> other = Optional.<Number>of(40001);
+
+        assertTrue(policy.retryDelayMillis("GET", 1, response(400), retryable) >= 0);
+        assertEquals(-1, policy.retryDelayMillis("GET", 1, response(400), other));
+        assertEquals(-1, policy.retryDelayMillis("POST", 1, response(400), retryable));
+    }
+
+    @Test
+    public void testExceptions() {
+        RetryPolicy policy = RetryPolicy.newBuilder().build();
+
+        assertTrue(policy.retryDelayMillis("POST", 1, new ConnectException()) >= 0);
+        assertTrue(policy.retryDelayMillis("POST", 1, new ConnectTimeoutException()) >= 0);
+        assertTrue(policy.retryDelayMillis("GET", 1, new NoHttpResponseException("")) >= 0);
+
+        assertEquals(-1, policy.retryDelayMillis("POST", 1, new NoHttpResponseException("")));
+        assertEquals(-1, policy.retryDelayMillis("GET", 1, new UnknownHostException()));
+        assertEquals(-1, policy.retryDelayMillis("GET", 3, new ConnectException()));
+    }
+
+    @Test
+    public void testNoRetries() {
+        RetryPolicy policy = RetryPolicy.noRetries();
+
+        assertEquals(1, policy.getMaxAttempts());
+        assertEquals(-1, policy.retryDelayMillis("GET", 1, response(503), NO_ERROR_CODE));
+        assertEquals(-1, policy.retryDelayMillis("GET", 1, new ConnectException()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidJitter() {
+        RetryPolicy.newBuilder().setJitterFactor(1.5).build();
+    }
+}
@@ -0,0 +1,212 @@
+package com.urbanairship.api.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import com.urbanairship.api.schedule.model.Schedule;
+import com.urbanairship.api.schedule.model.SchedulePayload;
+import com.urbanairship.api.simulator.APISimulator;
+import com.urbanairship.api.simulator.Fault;
+import com.urbanairship.api.simulator.FaultRule;
+import com.urbanairship.api.simulator.RecordedRequest;
+import com.urbanairship.api.simulator.SimulatedData;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScheduleSyncTest {
+
+    private APISimulator simulator;
+    private APIClient client;
+    private AsyncAPIClient asyncClient;
+
+    private ScheduleSync start(APISimulator.Builder simulatorBuilder, ScheduleSync.Builder builder) throws IOException {
+        simulator = simulatorBuilder
+                .setData(SimulatedData.newBuilder()
+                        .setScheduleCount(30)
+                        .setPageSize(20)
+                        .build())
+                .build();
+        simulator.start();
+        client = APIClient.newBuilder()
+                .setBaseURI(simulator.getBaseURI())
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+        asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .setMaxInFlight(4)
+                .build();
+        return builder.setClient(asyncClient).build();
+    }
+
+    private ScheduleSync start(ScheduleSync.Builder builder) throws IOException {
+        return start(APISimulator.newBuilder(), builder);
+    }
+
+    @After
+    public void tearDown() {
+        asyncClient.close();
+        client.close();
+        simulator.close();
+    }
+
+    private List<SchedulePayload> current() {
+        return Lists.newArrayList(client.iterateSchedules(0));
+    }
+
+    /*
+    The schedules on the simulator with the first renamed, the second sending
+    a different alert, the third and fourth removed, the fifth matched by name
+    rather than url, and one new schedule.
+     */
+    private List<SchedulePayload> desired() {
+        List<SchedulePayload> schedules = current();
+        SchedulePayload renamed = schedules.get(0);
+        SchedulePayload realerted = schedules.get(1);
+        SchedulePayload byName = schedules.get(4);
+        PushPayload push = realerted.getPushPayload();
+
+        List<SchedulePayload> desired = Lists.newArrayList(schedules.subList(5, schedules.size()));
+        desired.add(SchedulePayload.newBuilder()
+                .setUrl(renamed.getUrl().get())
+                .setName("Renamed")
+                .setSchedule(renamed.getSchedule())
+                .setPushPayload(renamed.getPushPayload())
+                .build());
+        desired.add(SchedulePayload.newBuilder()
+                .setUrl(realerted.getUrl().get())
+                .setName(realerted.getName().get())
+                .setSchedule(realerted.getSchedule())
+                .setPushPayload(PushPayload.newBuilder()
+                        .setAudience(push.getAudience())
+                        .setDeviceTypes(push.getDeviceTypes())
+                        .setNotification(Notifications.alert("Changed"))
+                        .build())
+                .build());
+        desired.add(SchedulePayload.newBuilder()
+                .setName(byName.getName().get())
+                .setSchedule(byName.getSchedule())
+                .setPushPayload(byName.getPushPayload())
+                .build());
+        desired.add(SchedulePayload.newBuilder()
+                .setName("New schedule")
+                .setSchedule(Schedule.newBuilder().setScheduledTimestamp(new DateTime().plusDays(1)).build())
+                .setPushPayload(PushPayload.newBuilder()
+                        .setAudience(Selectors.all())
+                        .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                        .setNotification(Notifications.alert("New"))
+                        .build())
+                .build());
+        return desired;
+    }
+
+    private List<RecordedRequest> requests(String method) {
+        List<RecordedRequest> requests = Lists.newArrayList();
+        for (RecordedRequest request : simulator.getRecordedRequests()) {
+            if (request.getMethod().equals(method)) {
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+
+    @Test
+    public void testPlanMakesNoChanges() throws Exception {
+        ScheduleSync sync = start(ScheduleSync.newBuilder());
+        List<SchedulePayload> desired = desired();
+        simulator.clearRecordedRequests();
+
+        SyncReport<SchedulePayload> report = sync.plan(desired);
+
+        assertTrue(report.isDryRun());
+        assertEquals(1, report.getChanges(SyncReport.Action.CREATE).size());
+        assertEquals("New schedule", report.getChanges(SyncReport.Action.CREATE).get(0).getName());
+        assertEquals(2, report.getChanges(SyncReport.Action.UPDATE).size());
+        assertEquals(2, report.getChanges(SyncReport.Action.DELETE).size());
+        assertEquals(26, report.getUnchangedCount());
+        assertEquals(simulator.getRecordedRequests().size(), requests("GET").size());
+    }
+
+    @Test
+    public void testSyncMakesOnlyTheChangesNeeded() throws Exception {
+        ScheduleSync sync = start(ScheduleSync.newBuilder());
+        List<SchedulePayload> schedules = current();
+        List<SchedulePayload> desired = desired();
+        simulator.clearRecordedRequests();
+
+        SyncReport<SchedulePayload> report = sync.sync(desired);
+
+        assertTrue(report.isSuccess());
+        assertFalse(report.isDryRun());
+        assertEquals(1, requests("POST").size());
+        assertEquals(2, requests("PUT").size());
+        List<String> deleted = Lists.newArrayList();
+        for (RecordedRequest request : requests("DELETE")) {
+            deleted.add(request.getPath());
+        }
+        assertEquals(2, deleted.size());
+        assertEquals(ImmutableSet.of(
+                "/api/schedules/" + ScheduleSync.idOf(schedules.get(2).getUrl().get()),
+                "/api/schedules/" + ScheduleSync.idOf(schedules.get(3).getUrl().get())),
+                ImmutableSet.copyOf(deleted));
+    }
+
+    @Test
+    public void testUnmatchedSchedulesCanBeKept() throws Exception {
+        ScheduleSync sync = start(ScheduleSync.newBuilder().setDeleteUnmatched(false));
+
+        SyncReport<SchedulePayload> report = sync.plan(desired());
+
+        assertTrue(report.getChanges(SyncReport.Action.DELETE).isEmpty());
+        assertEquals(3, report.getChanges().size());
+    }
+
+    @Test
+    public void testFailedChangesAreReported() throws Exception {
+        ScheduleSync sync = start(APISimulator.newBuilder()
+                        .addFaultRule(FaultRule.newBuilder()
+                                .setEndpointGroup(EndpointGroup.SCHEDULES)
+                                .setMethod("DELETE")
+                                .setFault(Fault.status(400))
+                                .build()),
+                ScheduleSync.newBuilder());
+
+        SyncReport<SchedulePayload> report = sync.sync(desired());
+
+        assertFalse(report.isSuccess());
+        assertEquals(2, report.getFailures().size());
+        for (SyncReport.Change<SchedulePayload> failure : report.getFailures()) {
+            assertEquals(SyncReport.Action.DELETE, failure.getAction());
+            assertEquals(400, ((APIRequestException) failure.getFailure().get()).httpResponseStatusCode());
+        }
+        assertEquals(1, requests("POST").size());
+        assertEquals(2, requests("PUT").size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateNamesAreRejected() throws Exception {
+        ScheduleSync sync = start(ScheduleSync.newBuilder());
+        SchedulePayload schedule = SchedulePayload.newBuilder()
+                .setName("Twice")
+                .setSchedule(Schedule.newBuilder().setScheduledTimestamp(new DateTime().plusDays(1)).build())
+                .setPushPayload(PushPayload.newBuilder()
+                        .setAudience(Selectors.all())
+                        .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                        .setNotification(Notifications.alert("Twice"))
+                        .build())
+                .build();
+
+        sync.plan(ImmutableList.of(schedule, schedule));
+    }
+}
@@ -0,0 +1,280 @@
+package com.urbanairship.api.client;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.urbanairship.api.client.model.SegmentInformation;
+import com.urbanairship.api.segments.model.AudienceSegment;
+import com.urbanairship.api.segments.model.Operator;
+import com.urbanairship.api.segments.model.OperatorChild;
+import com.urbanairship.api.segments.model.OperatorType;
+import com.urbanairship.api.segments.model.TagPredicateBuilder;
+import com.urbanairship.api.simulator.APISimulator;
+import com.urbanairship.api.simulator.Fault;
+import com.urbanairship.api.simulator.FaultRule;
+import com.urbanairship.api.simulator.RecordedRequest;
+import com.urbanairship.api.simulator.SimulatedData;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SegmentSyncTest {
+
+    private APISimulator simulator;
+    private APIClient client;
+    private AsyncAPIClient asyncClient;
+
+    private SegmentSync start(APISimulator.Builder simulatorBuilder, SegmentSync.Builder builder) throws IOException {
+        simulator = simulatorBuilder
+                .setData(SimulatedData.newBuilder()
+                        .setSegmentCount(25)
+                        .setPageSize(10)
+                        .build())
+                .build();
+        simulator.start();
+        client = APIClient.newBuilder()
+                .setBaseURI(simulator.getBaseURI())
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+        asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .setMaxInFlight(4)
+                .build();
+        return builder.setClient(asyncClient).build();
+    }
+
+    private SegmentSync start(SegmentSync.Builder builder) throws IOException {
+        return start(APISimulator.newBuilder(), builder);
+    }
+
+    @After
+    public void tearDown() {
+        if (simulator != null) {
+            asyncClient.close();
+            client.close();
+            simulator.close();
+        }
+    }
+
+    private List<SegmentInformation> listed() {
+        return Lists.newArrayList(client.iterateSegments(0));
+    }
+
+    private AudienceSegment definition(SegmentInformation segment) throws Exception {
+        return client.listSegment(segment.getId()).getApiResponse();
+    }
+
+    private static Operator reversed(Operator operator) {
+        Operator.Builder builder = Operator.newBuilder(operator.getType());
+        for (OperatorChild child : Lists.reverse(operator.getChildren())) {
+            if (child.isPredicateChild()) {
+                builder.addPredicate(child.getPredicate());
+            } else {
+                builder.addOperator(child.getOperator());
+            }
+        }
+        return builder.build();
+    }
+
+    /*
+    The segments on the simulator with the operands of the first reordered,
+    which is no change, the second also selecting a tag, the third and fourth
+    removed, and one new segment.
+     */
+    private List<AudienceSegment> desired(List<SegmentInformation> segments) throws Exception {
+        List<AudienceSegment> desired = Lists.newArrayList();
+        for (SegmentInformation segment : segments.subList(4, segments.size())) {
+            desired.add(definition(segment));
+        }
+
+        AudienceSegment reordered = definition(segments.get(0));
+        desired.add(reordered.toBuilder()
+                .setRootOperator(reversed(reordered.getRootOperator()))
+                .build());
+
+        AudienceSegment narrowed = definition(segments.get(1));
+        Operator.Builder operator = Operator.newBuilder(OperatorType.AND);
+        for (OperatorChild child : narrowed.getRootOperator().getChildren()) {
+            if (child.isPredicateChild()) {
+                operator.addPredicate(child.getPredicate());
+            } else {
+                operator.addOperator(child.getOperator());
+            }
+        }
+        operator.addPredicate(TagPredicateBuilder.newInstance().setTag("vip").build());
+        desired.add(narrowed.toBuilder().setRootOperator(operator.build()).build());
+
+        desired.add(AudienceSegment.newBuilder()
+                .setDisplayName("New segment")
+                .setRootPredicate(TagPredicateBuilder.newInstance().setTag("new").build())
+                .build());
+        return desired;
+    }
+
+    private List<RecordedRequest> requests(String method) {
+        List<RecordedRequest> requests = Lists.newArrayList();
+        for (RecordedRequest request : simulator.getRecordedRequests()) {
+            if (request.getMethod().equals(method)) {
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+
+    @Test
+    public void testPlanMakesNoChanges() throws Exception {
+        SegmentSync sync = start(SegmentSync.newBuilder());
+        List<AudienceSegment> desired = desired(listed());
+        simulator.clearRecordedRequests();
+
+        SyncReport<AudienceSegment> report = sync.plan(desired);
+
+        assertTrue(report.isDryRun());
+        assertEquals(1, report.getChanges(SyncReport.Action.CREATE).size());
+        assertEquals("New segment", report.getChanges(SyncReport.Action.CREATE).get(0).getName());
+        assertEquals(1, report.getChanges(SyncReport.Action.UPDATE).size());
+        assertEquals(2, report.getChanges(SyncReport.Action.DELETE).size());
+        assertEquals(22, report.getUnchangedCount());
+        assertEquals(simulator.getRecordedRequests().size(), requests("GET").size());
+    }
+
+    @Test
+    public void testSyncMakesOnlyTheChangesNeeded() throws Exception {
+        SegmentSync sync = start(SegmentSync.newBuilder());
+        List<SegmentInformation> segments = listed();
+        List<AudienceSegment> desired = desired(segments);
+        simulator.clearRecordedRequests();
+
+        SyncReport<AudienceSegment> report = sync.sync(desired);
+
+        assertTrue(report.isSuccess());
+        assertFalse(report.isDryRun());
+        assertEquals(1, requests("POST").size());
+        List<RecordedRequest> changed = requests("PUT");
+        assertEquals(1, changed.size());
+        assertEquals("/api/segments/" + segments.get(1).getId(), changed.get(0).getPath());
+        List<String> deleted = Lists.newArrayList();
+        for (RecordedRequest request : requests("DELETE")) {
+            deleted.add(request.getPath());
+        }
+        assertEquals(2, deleted.size());
+        assertEquals(ImmutableSet.of(
+                "/api/segments/" + segments.get(2).getId(),
+                "/api/segments/" + segments.get(3).getId()),
+                ImmutableSet.copyOf(deleted));
+    }
+
+    @Test
+    public void testReadsShedByTheClientAreMadeDirectly() throws Exception {
+        start(SegmentSync.newBuilder());
+        AsyncAPIClient shedding = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .setMaxInFlight(1)
+                .setOverflowMode(AsyncAPIClient.OverflowMode.SHED)
+                .build();
+        try {
+            SegmentSync sync = SegmentSync.newBuilder().setClient(shedding).build();
+
+            SyncReport<AudienceSegment> report = sync.plan(desired(listed()));
+
+            assertEquals(1, report.getChanges(SyncReport.Action.UPDATE).size());
+            assertEquals(22, report.getUnchangedCount());
+        } finally {
+            shedding.close();
+        }
+    }
+
+    @Test
+    public void testUnmatchedSegmentsCanBeKept() throws Exception {
+        SegmentSync sync = start(SegmentSync.newBuilder().setDeleteUnmatched(false));
+
+        SyncReport<AudienceSegment> report = sync.plan(desired(listed()));
+
+        assertTrue(report.getChanges(SyncReport.Action.DELETE).isEmpty());
+        assertEquals(2, report.getChanges().size());
+    }
+
+    @Test
+    public void testFailedChangesAreReported() throws Exception {
+        SegmentSync sync = start(APISimulator.newBuilder()
+                        .addFaultRule(FaultRule.newBuilder()
+                                .setEndpointGroup(EndpointGroup.SEGMENTS)
+                                .setMethod("DELETE")
+                                .setFault(Fault.status(400))
+                                .build()),
+                SegmentSync.newBuilder());
+
+        SyncReport<AudienceSegment> report = sync.sync(desired(listed()));
+
+        assertFalse(report.isSuccess());
+        assertEquals(2, report.getFailures().size());
+        for (SyncReport.Change<AudienceSegment> failure : report.getFailures()) {
+            assertEquals(SyncReport.Action.DELETE, failure.getAction());
+            assertEquals(400, ((APIRequestException) failure.getFailure().get()).httpResponseStatusCode());
+        }
+        assertEquals(1, requests("POST").size());
+        assertEquals(1, requests("PUT").size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateNamesAreRejected() throws Exception {
+        SegmentSync sync = start(SegmentSync.newBuilder());
+        AudienceSegment segment = AudienceSegment.newBuilder()
+                .setDisplayName("Twice")
+                .setRootPredicate(TagPredicateBuilder.newInstance().setTag("tag").build())
+                .build();
+
+        sync.plan(Lists.newArrayList(segment, segment));
+    }
+
+    @Test
+    public void testCriteriaComparedStructurally() {
+        AudienceSegment segment = AudienceSegment.newBuilder()
+                .setDisplayName("Segment")
+                .setRootOperator(Operator.newBuilder(OperatorType.OR)
+                        .addPredicate(TagPredicateBuilder.newInstance().setTag("a").build())
+                        .addOperator(Operator.newBuilder(OperatorType.NOT)
+                                .addPredicate(TagPredicateBuilder.newInstance().setTag("b").build())
+                                .build())
+                        .build())
+                .setCount(10L)
+                .build();
+        AudienceSegment reordered = AudienceSegment.newBuilder()
+                .setDisplayName("Segment")
+                .setRootOperator(Operator.newBuilder(OperatorType.OR)
+                        .addOperator(Operator.newBuilder(OperatorType.NOT)
+                                .addPredicate(TagPredicateBuilder.newInstance().setTag("b").build())
+                                .build())
+                        .addPredicate(TagPredicateBuilder.newInstance().setTag("a").setTagClass("device").build())
+                        .build())
+                .build();
+        AudienceSegment otherClass = AudienceSegment.newBuilder()
+                .setDisplayName("Segment")
+                .setRootOperator(Operator.newBuilder(OperatorType.OR)
+                        .addPredicate(TagPredicateBuilder.newInstance().setTag("a").setTagClass("autogroup").build())
+                        .addOperator(Operator.newBuilder(OperatorType.NOT)
+                                .addPredicate(TagPredicateBuilder.newInstance().setTag("b").build())
+                                .build())
+                        .build())
+                .build();
+        AudienceSegment repeated = AudienceSegment.newBuilder()
+                .setDisplayName("Segment")
+                .setRootOperator(Operator.newBuilder(OperatorType.OR)
+                        .addPredicate(TagPredicateBuilder.newInstance().setTag("a").build())
+                        .addPredicate(TagPredicateBuilder.newInstance().setTag("a").build())
+                        .build())
+                .build();
+
+        assertTrue(SegmentSync.sameCriteria(segment, reordered));
+        assertFalse(SegmentSync.sameCriteria(segment, otherClass));
+        assertFalse(SegmentSync.sameCriteria(segment, repeated));
+        assertFalse(SegmentSync.sameCriteria(segment, AudienceSegment.newBuilder()
+                .setDisplayName("Segment")
+                .setRootPredicate(TagPredicateBuilder.newInstance().setTag("a").build())
+                .build()));
+    }
+}
@@ -0,0 +1,148 @@
+package com.urbanairship.api.client;
+
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIListAllChannelsResponse;
+import com.urbanairship.api.client.parse.APIResponseObjectMapper;
+import com.urbanairship.api.reports.model.PerPushSeriesResponse;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+Measures bytes allocated by the calling thread while handling large
+responses, comparing the streaming handlers against reading the entity into
+a String first and parsing that, which is what the handlers used to do.
+ */
+public class StreamingResponseAllocationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingResponseAllocationTest.class);
+    private static final ObjectMapper mapper = APIResponseObjectMapper.getInstance();
+    private static final int ITERATIONS = 20;
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(sunBean.isThreadAllocatedMemorySupported());
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+        return sunBean;
+    }
+
+    private static String channelPage(int channels) {
+        StringBuilder json = new StringBuilder("{\"ok\":true,\"channels\":[");
+        for (int i = 0; i < channels; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"channel_id\":\"").append(String.format("00662346-9e39-4f5f-80e7-%012d", i)).append("\",")
+                    .append("\"device_type\":\"android\",\"installed\":true,\"opt_in\":true,\"background\":true,")
+                    .append("\"push_address\":\"APA91bFPOUF6KNHXjoG0vaQSP4VLXirGDpy0_CRcb6Jhvnrya2bdRmlUoMiJ12JJevjONZzUwFETYa8uzyiE\",")
+                    .append("\"created\":\"2014-03-06T18:52:59\",\"last_registration\":\"2014-10-07T21:28:35\",")
+                    .append("\"alias\":\"alias-").append(i).append("\",\"tags\":[\"tag1\",\"tag2\",\"tag3\"]}");
+        }
+        json.append("],\"next_page\":\"https://go.urbanairship.com/api/channels?start=next\"}");
+        return json.toString();
+    }
+
+    private static String perPushSeries(int hours) {
+        StringBuilder json = new StringBuilder("{\"app_key\":\"some_app_key\",")
+                .append("\"push_id\":\"57ef3728-79dc-46b1-a6b9-20081e561f97\",")
+                .append("\"start\":\"2013-07-01 00:00:00\",\"end\":\"2013-07-31 00:00:00\",")
+                .append("\"precision\":\"HOURLY\",\"counts\":[");
+        for (int i = 0; i < hours; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"push_platforms\":{")
+                    .append("\"all\":{\"direct_responses\":").append(i).append(",\"influenced_responses\":2,\"sends\":58},")
+                    .append("\"android\":{\"direct_responses\":3,\"influenced_responses\":4,\"sends\":22},")
+                    .append("\"ios\":{\"direct_responses\":5,\"influenced_responses\":6,\"sends\":36}},")
+                    .append("\"rich_push_platforms\":{\"all\":{\"responses\":7,\"sends\":8}},")
+                    .append(String.format("\"time\":\"2013-07-%02d %02d:00:00\"}", 1 + i / 24, i % 24));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static HttpResponse response(byte[] body) {
+        HttpResponse httpResponse = new BasicHttpResponse(new BasicStatusLine(
+                new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+        httpResponse.setEntity(new InputStreamEntity(new ByteArrayInputStream(body), body.length));
+        return httpResponse;
+    }
+
+    /* Average bytes allocated per call, after a warm up pass */
+    private static long allocatedPerCall(com.sun.management.ThreadMXBean bean, ResponseHandler<?> handler, byte[] body)
+            throws Exception {
+        for (int i = 0; i < ITERATIONS; i++) {
+            handler.handleResponse(response(body));
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            handler.handleResponse(response(body));
+        }
+        return (bean.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+    }
+
+    /* The previous handler behaviour: buffer the entity as a String, then parse it */
+    private static <T> ResponseHandler<T> stringBufferingHandler(final Class<T> type) {
+        return new ResponseHandler<T>() {
+            @Override
+            public T handleResponse(HttpResponse response) throws java.io.IOException {
+                String jsonPayload = EntityUtils.toString(response.getEntity());
+                return mapper.readValue(jsonPayload, type);
+            }
+        };
+    }
+
+    @Test
+    public void testStreamingChannelPageAllocatesLess() throws Exception {
+        com.sun.management.ThreadMXBean bean = threadBean();
+        byte[] body = channelPage(2000).getBytes("UTF-8");
+
+        APIClientResponse<APIListAllChannelsResponse> parsed =
+                new ListAllChannelsAPIResponseHandler().handleResponse(response(body));
+        assertEquals(2000, parsed.getApiResponse().getChannelObjects().size());
+
+        long streaming = allocatedPerCall(bean, new ListAllChannelsAPIResponseHandler(), body);
+        long buffered = allocatedPerCall(bean, stringBufferingHandler(APIListAllChannelsResponse.class), body);
+
+        logger.info(String.format("Channel page of %d bytes: streaming %d bytes/op, string buffered %d bytes/op",
+                body.length, streaming, buffered));
+        assertTrue("Streaming parse should allocate less than buffering the body", streaming < buffered);
+    }
+
+    @Test
+    public void testStreamingPerPushSeriesAllocatesLess() throws Exception {
+        com.sun.management.ThreadMXBean bean = threadBean();
+        byte[] body = perPushSeries(720).getBytes("UTF-8");
+
+        APIClientResponse<PerPushSeriesResponse> parsed =
+                new ListPerPushSeriesResponseHandler().handleResponse(response(body));
+        assertEquals(720, parsed.getApiResponse().getCounts().size());
+
+        long streaming = allocatedPerCall(bean, new ListPerPushSeriesResponseHandler(), body);
+        long buffered = allocatedPerCall(bean, stringBufferingHandler(PerPushSeriesResponse.class), body);
+
+        logger.info(String.format("Per push series of %d bytes: streaming %d bytes/op, string buffered %d bytes/op",
+                body.length, streaming, buffered));
+        assertTrue("Streaming parse should allocate less than buffering the body", streaming < buffered);
+    }
+}
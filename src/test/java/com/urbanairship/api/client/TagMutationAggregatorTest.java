@@ -0,0 +1,183 @@
+package com.urbanairship.api.client;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.urbanairship.api.simulator.APISimulator;
+import com.urbanairship.api.simulator.Fault;
+import com.urbanairship.api.simulator.FaultRule;
+import com.urbanairship.api.simulator.RecordedRequest;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.urbanairship.api.client.TagMutationAggregator.DeviceIdType.APID;
+import static com.urbanairship.api.client.TagMutationAggregator.DeviceIdType.DEVICE_TOKEN;
+import static com.urbanairship.api.client.TagMutationAggregator.DeviceIdType.IOS_CHANNEL;
+import static org.junit.Assert.*;
+
+public class TagMutationAggregatorTest {
+
+    private APISimulator simulator;
+    private APIClient client;
+    private AsyncAPIClient asyncClient;
+
+    private TagMutationAggregator start(APISimulator.Builder simulatorBuilder,
+                                        TagMutationAggregator.Builder builder) throws IOException {
+        simulator = simulatorBuilder.build();
+        simulator.start();
+        client = APIClient.newBuilder()
+                .setBaseURI(simulator.getBaseURI())
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+        asyncClient = AsyncAPIClient.newBuilder()
+                .setClient(client)
+                .setMaxInFlight(2)
+                .build();
+        return builder.setClient(asyncClient).build();
+    }
+
+    private TagMutationAggregator start(TagMutationAggregator.Builder builder) throws IOException {
+        return start(APISimulator.newBuilder(), builder);
+    }
+
+    @After
+    public void tearDown() {
+        asyncClient.close();
+        client.close();
+        simulator.close();
+    }
+
+    private List<RecordedRequest> requests(String path) {
+        List<RecordedRequest> requests = Lists.newArrayList();
+        for (RecordedRequest request : simulator.getRecordedRequests()) {
+            if (request.getPath().equals(path)) {
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+
+    @Test
+    public void testOpposingOperationsAreCoalesced() throws Exception {
+        TagMutationAggregator aggregator = start(TagMutationAggregator.newBuilder()
+                .setFlushIntervalMillis(60000));
+
+        ListenableFuture<Void> add = aggregator.addDevice("vip", IOS_CHANNEL, "channel-1");
+        ListenableFuture<Void> remove = aggregator.removeDevice("vip", IOS_CHANNEL, "channel-1");
+        assertEquals(1, aggregator.getBufferedCount());
+        aggregator.close();
+
+        assertTrue(add.isDone());
+        assertTrue(remove.isDone());
+        assertEquals(1, simulator.getRequestCount());
+        RecordedRequest request = requests("/api/tags/vip").get(0);
+        assertTrue(request.getBodyAsString().contains("{\"remove\":[\"channel-1\"]}"));
+    }
+
+    @Test
+    public void testFlushOnSize() throws Exception {
+        TagMutationAggregator aggregator = start(TagMutationAggregator.newBuilder()
+                .setFlushSize(10)
+                .setFlushIntervalMillis(60000));
+
+        List<ListenableFuture<Void>> futures = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            futures.add(aggregator.addDevice("tag-" + (i % 3), DEVICE_TOKEN, "token-" + (i % 5)));
+        }
+        for (ListenableFuture<Void> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        // Five devices, each with its tags, in one batch modification
+        assertEquals(1, simulator.getRequestCount());
+        String body = requests("/api/tags/batch/").get(0).getBodyAsString();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(body.contains("\"device_token\":\"token-" + i + "\""));
+        }
+        aggregator.close();
+    }
+
+    @Test
+    public void testRemovesAreSentPerTagWithinLimit() throws Exception {
+        TagMutationAggregator aggregator = start(TagMutationAggregator.newBuilder()
+                .setMaxDevicesPerRequest(10)
+                .setFlushIntervalMillis(60000));
+
+        for (int i = 0; i < 25; i++) {
+            aggregator.removeDevice("lapsed", APID, "apid-" + i);
+        }
+        aggregator.removeDevice("beta", APID, "apid-0");
+        aggregator.close();
+
+        assertEquals(3, requests("/api/tags/lapsed").size());
+        assertEquals(1, requests("/api/tags/beta").size());
+        assertEquals(0, aggregator.getBufferedCount());
+    }
+
+    @Test
+    public void testFlushOnInterval() throws Exception {
+        TagMutationAggregator aggregator = start(TagMutationAggregator.newBuilder()
+                .setFlushIntervalMillis(50));
+
+        aggregator.addDevice("vip", IOS_CHANNEL, "channel-1").get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, requests("/api/tags/batch/").size());
+        aggregator.close();
+    }
+
+    @Test
+    public void testFailuresReachEveryOperation() throws Exception {
+        TagMutationAggregator aggregator = start(APISimulator.newBuilder()
+                        .addFaultRule(FaultRule.newBuilder()
+                                .setEndpointGroup(EndpointGroup.TAGS)
+                                .setFault(Fault.status(400))
+                                .build()),
+                TagMutationAggregator.newBuilder().setFlushIntervalMillis(60000));
+
+        ListenableFuture<Void> replaced = aggregator.addDevice("vip", IOS_CHANNEL, "channel-1");
+        ListenableFuture<Void> remove = aggregator.removeDevice("vip", IOS_CHANNEL, "channel-1");
+        aggregator.close();
+
+        for (ListenableFuture<Void> future : Lists.newArrayList(replaced, remove)) {
+            try {
+                future.get();
+                fail("Expected ExecutionException");
+            } catch (ExecutionException e) {
+                assertEquals(400, ((APIRequestException) e.getCause()).httpResponseStatusCode());
+            }
+        }
+    }
+
+    @Test
+    public void testOperationsFailWhenClientIsClosed() throws Exception {
+        TagMutationAggregator aggregator = start(TagMutationAggregator.newBuilder().setFlushIntervalMillis(60000));
+
+        ListenableFuture<Void> add = aggregator.addDevice("vip", IOS_CHANNEL, "channel-1");
+        ListenableFuture<Void> remove = aggregator.removeDevice("lapsed", APID, "apid-1");
+        asyncClient.close();
+        aggregator.close();
+
+        for (ListenableFuture<Void> future : Lists.newArrayList(add, remove)) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("Expected ExecutionException");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+        assertEquals(0, simulator.getRequestCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedAggregatorRejectsOperations() throws Exception {
+        TagMutationAggregator aggregator = start(TagMutationAggregator.newBuilder());
+        aggregator.close();
+        aggregator.addDevice("vip", IOS_CHANNEL, "channel-1");
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.simulator;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpServer;
+import com.urbanairship.api.client.EndpointGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process simulator of the Urban Airship API, for load and fault
+ * testing senders and the client without touching the real API.
+ * <p>
+ * The simulator serves the push, validate, schedules, tags, segments,
+ * channels, reports and location endpoints over HTTP on a local port, with
+ * data generated at the scale set by SimulatedData. Paginated listings
+ * return next_page links back to the simulator, so an APIClient pointed at
+ * getBaseURI() pages through them as it would the API.
+ * <p>
+ * Each response waits for a delay drawn from the endpoint group's
+ * LatencyDistribution, and FaultRules can replace responses with error
+ * statuses, slow or truncated bodies, or dropped connections. Received
+ * requests are recorded, up to maxRecordedRequests, for assertions.
+ * <p>
+ * <pre>
+ * APISimulator simulator = APISimulator.newBuilder()
+ *         .setData(SimulatedData.newBuilder().setChannelCount(1000000).build())
+ *         .setLatency(LatencyDistribution.logNormal(40, 0.5))
+ *         .addFaultRule(FaultRule.newBuilder()
+ *                 .setEndpointGroup(EndpointGroup.PUSH)
+ *                 .setProbability(0.01)
+ *                 .setFault(Fault.status(503))
+ *                 .build())
+ *         .build();
+ * simulator.start();
+ *
+ * APIClient client = APIClient.newBuilder()
+ *         .setBaseURI(simulator.getBaseURI())
+ *         ...
+ * </pre>
+ */
+public final class APISimulator implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(APISimulator.class);
+
+    private final int port;
+    private final SimulatedData data;
+    private final LatencyDistribution latency;
+    private final ImmutableMap<EndpointGroup, LatencyDistribution> groupLatency;
+    private final ImmutableList<FaultRule> faultRules;
+    private final int maxRecordedRequests;
+    private final Random random;
+
+    private final ArrayDeque<RecordedRequest> recorded = new ArrayDeque<RecordedRequest>();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String baseURI;
+
+    private APISimulator(int port, SimulatedData data, LatencyDistribution latency,
+                         ImmutableMap<EndpointGroup, LatencyDistribution> groupLatency,
+                         ImmutableList<FaultRule> faultRules, int maxRecordedRequests, long seed) {
+        this.port = port;
+        this.data = data;
+        this.latency = latency;
+        this.groupLatency = groupLatency;
+        this.faultRules = faultRules;
+        this.maxRecordedRequests = maxRecordedRequests;
+        this.random = new Random(seed);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Start serving requests.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        Preconditions.checkState(server == null, "Simulator already started");
+
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/", new SimulatorHandler(this, new DataGenerator(data)));
+        // Latency is simulated by sleeping, so each request in flight needs its own thread
+        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("APISimulator-%d")
+                .setDaemon(true)
+                .build());
+        server.setExecutor(executor);
+        server.start();
+
+        baseURI = "http://localhost:" + server.getAddress().getPort();
+        logger.info(String.format("API simulator listening at %s with %s", baseURI, data));
+    }
+
+    /**
+     * Stop serving requests, dropping any in flight.
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Base URI to configure an APIClient with, e.g. http://localhost:52431
+     *
+     * @return String
+     */
+    public String getBaseURI() {
+        Preconditions.checkState(baseURI != null, "Simulator not started");
+        return baseURI;
+    }
+
+    public SimulatedData getData() {
+        return data;
+    }
+
+    /**
+     * Number of requests received since the simulator started, including
+     * those no longer recorded.
+     *
+     * @return long
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Requests received, oldest first. Only the most recent
+     * maxRecordedRequests are kept.
+     *
+     * @return ImmutableList of RecordedRequest
+     */
+    public ImmutableList<RecordedRequest> getRecordedRequests() {
+        synchronized (recorded) {
+            return ImmutableList.copyOf(recorded);
+        }
+    }
+
+    public void clearRecordedRequests() {
+        synchronized (recorded) {
+            recorded.clear();
+        }
+    }
+
+    Random getRandom() {
+        return random;
+    }
+
+    LatencyDistribution latencyFor(EndpointGroup group) {
+        LatencyDistribution distribution = groupLatency.get(group);
+        return distribution == null ? latency : distribution;
+    }
+
+    Optional<Fault> pickFault(EndpointGroup group, String method) {
+        for (FaultRule rule : faultRules) {
+            if (rule.matches(group, method) && random.nextDouble() < rule.getProbability()) {
+                return Optional.of(rule.getFault());
+            }
+        }
+        return Optional.absent();
+    }
+
+    void record(RecordedRequest request) {
+        requestCount.incrementAndGet();
+        if (maxRecordedRequests == 0) {
+            return;
+        }
+        synchronized (recorded) {
+            if (recorded.size() == maxRecordedRequests) {
+                recorded.removeFirst();
+            }
+            recorded.addLast(request);
+        }
+    }
+
+    public static class Builder {
+
+        private int port = 0;
+        private SimulatedData data = SimulatedData.newBuilder().build();
+        private LatencyDistribution latency = LatencyDistribution.none();
+        private final Map<EndpointGroup, LatencyDistribution> groupLatency = Maps.newEnumMap(EndpointGroup.class);
+        private final ImmutableList.Builder<FaultRule> faultRules = ImmutableList.builder();
+        private int maxRecordedRequests = 10000;
+        private long seed = 0L;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the local port to listen on. Defaults to 0, any free port.
+         *
+         * @param value Port
+         * @return Builder
+         */
+        public Builder setPort(int value) {
+            this.port = value;
+            return this;
+        }
+
+        public Builder setData(SimulatedData value) {
+            this.data = value;
+            return this;
+        }
+
+        /**
+         * Set the latency of every endpoint group without its own.
+         *
+         * @param value LatencyDistribution
+         * @return Builder
+         */
+        public Builder setLatency(LatencyDistribution value) {
+            this.latency = value;
+            return this;
+        }
+
+        /**
+         * Set the latency of one endpoint group, e.g. slower reports.
+         *
+         * @param group EndpointGroup
+         * @param value LatencyDistribution
+         * @return Builder
+         */
+        public Builder setLatency(EndpointGroup group, LatencyDistribution value) {
+            Preconditions.checkNotNull(group, "group cannot be null");
+            Preconditions.checkNotNull(value, "latency cannot be null");
+            groupLatency.put(group, value);
+            return this;
+        }
+
+        public Builder addFaultRule(FaultRule value) {
+            faultRules.add(value);
+            return this;
+        }
+
+        public Builder addAllFaultRules(List<FaultRule> values) {
+            faultRules.addAll(values);
+            return this;
+        }
+
+        /**
+         * Set how many received requests are kept for getRecordedRequests.
+         * Zero disables recording.
+         *
+         * @param value Number of requests
+         * @return Builder
+         */
+        public Builder setMaxRecordedRequests(int value) {
+            this.maxRecordedRequests = value;
+            return this;
+        }
+
+        /**
+         * Set the seed for latencies and faults. Data is seeded by
+         * SimulatedData.
+         *
+         * @param value Seed
+         * @return Builder
+         */
+        public Builder setSeed(long value) {
+            this.seed = value;
+            return this;
+        }
+
+        public APISimulator build() {
+            Preconditions.checkNotNull(data, "data cannot be null");
+            Preconditions.checkNotNull(latency, "latency cannot be null");
+            Preconditions.checkArgument(port >= 0 && port <= 65535, "port must be between 0 and 65535");
+            Preconditions.checkArgument(maxRecordedRequests >= 0, "maxRecordedRequests cannot be negative");
+
+            return new APISimulator(port, data, latency, ImmutableMap.copyOf(groupLatency), faultRules.build(),
+                    maxRecordedRequests, seed);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.urbanairship.api.simulator;
+
+import com.google.common.collect.ImmutableList;
+import com.urbanairship.api.channel.information.model.ChannelView;
+import com.urbanairship.api.client.APIClient;
+import com.urbanairship.api.client.APIRequestException;
+import com.urbanairship.api.client.EndpointGroup;
+import com.urbanairship.api.client.PageIterator;
+import com.urbanairship.api.client.RetryPolicy;
+import com.urbanairship.api.client.model.APIClientResponse;
+import com.urbanairship.api.client.model.APIListAllSchedulesResponse;
+import com.urbanairship.api.client.model.APIPushResponse;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import com.urbanairship.api.reports.model.PerPushSeriesResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class APISimulatorTest {
+
+    private APISimulator simulator;
+    private APIClient client;
+
+    private void start(APISimulator.Builder builder) throws IOException {
+        simulator = builder.build();
+        simulator.start();
+        client = APIClient.newBuilder()
+                .setBaseURI(simulator.getBaseURI())
+                .setKey("key")
+                .setSecret("secret")
+                .setRetryPolicy(RetryPolicy.noRetries())
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    private static PushPayload payload() {
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.deviceTokens("ABCDEF", "012345"))
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Foo"))
+                .build();
+    }
+
+    @Test
+    public void testPushIsAcceptedAndRecorded() throws Exception {
+        start(APISimulator.newBuilder());
+
+        APIClientResponse<APIPushResponse> response = client.push(payload());
+        assertEquals(202, response.getHttpResponse().getStatusLine().getStatusCode());
+        assertEquals(1, response.getApiResponse().getPushIds().get().size());
+
+        ImmutableList<RecordedRequest> requests = simulator.getRecordedRequests();
+        assertEquals(1, requests.size());
+        RecordedRequest request = requests.get(0);
+        assertEquals("POST", request.getMethod());
+        assertEquals("/api/push/", request.getPath());
+        assertEquals(EndpointGroup.PUSH, request.getEndpointGroup());
+        assertEquals(202, request.getStatus());
+        assertTrue(request.getHeader("authorization").get().startsWith("Basic "));
+        assertTrue(request.getBodyAsString().contains("\"alert\":\"Foo\""));
+        assertFalse(request.getFault().isPresent());
+    }
+
+    @Test
+    public void testIterateChannelsFollowsPages() throws Exception {
+        start(APISimulator.newBuilder()
+                .setData(SimulatedData.newBuilder()
+                        .setChannelCount(250)
+                        .setPageSize(100)
+                        .build()));
+
+        Set<String> ids = new HashSet<String>();
+        PageIterator<ChannelView> channels = client.iterateChannels(0);
+        while (channels.hasNext()) {
+            assertTrue(ids.add(channels.next().getChannelId()));
+        }
+        assertEquals(250, ids.size());
+        assertEquals(3, simulator.getRequestCount());
+
+        String id = ids.iterator().next();
+        assertEquals(id, client.listChannel(id).getApiResponse().getChannelObject().getChannelId());
+    }
+
+    @Test
+    public void testUnknownChannelIsNotFound() throws Exception {
+        start(APISimulator.newBuilder());
+
+        try {
+            client.listChannel("00000000-0000-0000-0000-0000ffffffff");
+            fail("Expected APIRequestException");
+        } catch (APIRequestException e) {
+            assertEquals(404, e.httpResponseStatusCode());
+            assertTrue(e.getError().isPresent());
+        }
+    }
+
+    @Test
+    public void testListSchedules() throws Exception {
+        start(APISimulator.newBuilder()
+                .setData(SimulatedData.newBuilder()
+                        .setScheduleCount(30)
+                        .setPageSize(20)
+                        .build()));
+
+        APIListAllSchedulesResponse first = client.listAllSchedules().getApiResponse();
+        assertEquals(20, first.getCount());
+        assertEquals(30, first.getTotal_Count());
+        assertNotNull(first.getNext_Page());
+
+        APIListAllSchedulesResponse second = client.listAllSchedules(first.getNext_Page()).getApiResponse();
+        assertEquals(10, second.getCount());
+        assertNull(second.getNext_Page());
+    }
+
+    @Test
+    public void testPerPushSeries() throws Exception {
+        start(APISimulator.newBuilder());
+
+        String pushID = "df6a6b50-9843-11e4-a5b2-00163e4f3fea";
+        PerPushSeriesResponse series = client.listPerPushSeries(pushID).getApiResponse();
+        assertEquals(pushID, series.getPushID().toString());
+        assertFalse(series.getCounts().isEmpty());
+    }
+
+    @Test
+    public void testStatusFault() throws Exception {
+        start(APISimulator.newBuilder()
+                .addFaultRule(FaultRule.newBuilder()
+                        .setEndpointGroup(EndpointGroup.CHANNELS)
+                        .setFault(Fault.status(503, 2))
+                        .build()));
+
+        try {
+            client.listAllChannels();
+            fail("Expected APIRequestException");
+        } catch (APIRequestException e) {
+            assertEquals(503, e.httpResponseStatusCode());
+            assertEquals("2", e.getHttpResponse().getFirstHeader("Retry-After").getValue());
+        }
+
+        // Only channels are faulted
+        assertEquals(202, client.push(payload()).getHttpResponse().getStatusLine().getStatusCode());
+
+        RecordedRequest faulted = simulator.getRecordedRequests().get(0);
+        assertEquals(503, faulted.getStatus());
+        assertEquals(Fault.status(503, 2), faulted.getFault().get());
+    }
+
+    @Test
+    public void testConnectionResetFault() throws Exception {
+        start(APISimulator.newBuilder()
+                .addFaultRule(FaultRule.newBuilder()
+                        .setFault(Fault.connectionReset())
+                        .build()));
+
+        try {
+            client.listAllChannels();
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+        assertEquals(0, simulator.getRecordedRequests().get(0).getStatus());
+    }
+
+    @Test
+    public void testSameSeedServesSameData() throws Exception {
+        SimulatedData data = SimulatedData.newBuilder().setSeed(7).setChannelCount(10).build();
+        start(APISimulator.newBuilder().setData(data));
+        String first = client.listAllChannels().getApiResponse().toString();
+        tearDown();
+
+        start(APISimulator.newBuilder().setData(data));
+        assertEquals(first, client.listAllChannels().getApiResponse().toString());
+    }
+
+    @Test
+    public void testRecordingIsBounded() throws Exception {
+        start(APISimulator.newBuilder().setMaxRecordedRequests(2));
+
+        for (int i = 0; i < 5; i++) {
+            client.listAllChannels();
+        }
+        assertEquals(5, simulator.getRequestCount());
+        assertEquals(2, simulator.getRecordedRequests().size());
+
+        simulator.clearRecordedRequests();
+        assertTrue(simulator.getRecordedRequests().isEmpty());
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.simulator;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.io.IOException;
+
+/*
+Writes the simulated objects as the API returns them. Every object is a pure
+function of the seed, its kind and its index, and its ID encodes the index,
+so a lookup by ID or a page starting at an ID needs no stored state.
+ */
+final class DataGenerator {
+
+    static final int CHANNEL = 1;
+    static final int SCHEDULE = 2;
+    static final int SEGMENT = 3;
+    static final int PUSH = 4;
+
+    private static final DateTimeFormatter ISO_SECONDS =
+            DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss").withZoneUTC();
+    private static final DateTimeFormatter REPORT_TIME =
+            DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss").withZoneUTC();
+    private static final long EPOCH_MILLIS = new DateTime(2014, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+
+    static final long HOUR_MILLIS = 60L * 60 * 1000;
+    static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    /* The simulated present: pushes were sent before it, schedules are after it */
+    static final long NOW_MILLIS = EPOCH_MILLIS + 365 * DAY_MILLIS;
+    static final long PUSH_INTERVAL_MILLIS = 10 * 60 * 1000L;
+    private static final String[] STATES = {"CA", "OR", "WA", "NY", "TX", "IL", "MA", "CO"};
+
+    private final SimulatedData data;
+
+    DataGenerator(SimulatedData data) {
+        this.data = data;
+    }
+
+    SimulatedData getData() {
+        return data;
+    }
+
+    /* SplitMix64 finalizer: well mixed bits for nearby inputs */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private long random(int kind, long index, int salt) {
+        return mix(data.getSeed() + 0x9e3779b97f4a7c15L * (kind * 1000003L + salt) + index);
+    }
+
+    /* Non negative random int below bound for the object */
+    private int random(int kind, long index, int salt, int bound) {
+        return (int) ((random(kind, index, salt) >>> 1) % bound);
+    }
+
+    String id(int kind, long index) {
+        long bits = random(kind, index, 0);
+        return String.format("%08x-%04x-4%03x-%04x-%012x", bits >>> 32, (bits >>> 16) & 0xffff, bits & 0xfff,
+                0x8000 | ((bits >>> 48) & 0x3fff), index);
+    }
+
+    /* Index of the object with the ID, or -1 if there is no such object */
+    int indexOf(int kind, String id, int count) {
+        if (id == null || id.length() != 36) {
+            return -1;
+        }
+        long index;
+        try {
+            index = Long.parseLong(id.substring(24), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (index >= count || !id.equals(id(kind, index))) {
+            return -1;
+        }
+        return (int) index;
+    }
+
+    String tag(int index) {
+        return "tag-" + index;
+    }
+
+    private String time(long millis) {
+        return ISO_SECONDS.print(millis);
+    }
+
+    /* Channels */
+
+    void writeChannel(JsonGenerator json, int index) throws IOException {
+        int platform = random(CHANNEL, index, 1, 10);
+        String deviceType = platform < 5 ? "ios" : platform < 9 ? "android" : "amazon";
+        long created = EPOCH_MILLIS + random(CHANNEL, index, 2, 300) * DAY_MILLIS;
+
+        json.writeStartObject();
+        json.writeStringField("channel_id", id(CHANNEL, index));
+        json.writeStringField("device_type", deviceType);
+        json.writeBooleanField("installed", random(CHANNEL, index, 3, 20) != 0);
+        json.writeBooleanField("opt_in", random(CHANNEL, index, 4, 10) < 7);
+        json.writeBooleanField("background", random(CHANNEL, index, 5, 2) == 0);
+        if ("ios".equals(deviceType)) {
+            json.writeStringField("push_address", String.format("%016X%016X%016X%016X",
+                    random(CHANNEL, index, 6), random(CHANNEL, index, 7), random(CHANNEL, index, 8),
+                    random(CHANNEL, index, 9)));
+        } else {
+            json.writeStringField("push_address", String.format("APA91b%016x%016x",
+                    random(CHANNEL, index, 6), random(CHANNEL, index, 7)));
+        }
+        json.writeStringField("created", time(created));
+        json.writeStringField("last_registration", time(created + random(CHANNEL, index, 10, 60) * DAY_MILLIS));
+        if (random(CHANNEL, index, 11, 3) == 0) {
+            json.writeNullField("alias");
+        } else {
+            json.writeStringField("alias", "alias-" + index);
+        }
+        json.writeArrayFieldStart("tags");
+        if (data.getTagCount() > 0) {
+            int tags = random(CHANNEL, index, 12, 4);
+            int first = random(CHANNEL, index, 13, data.getTagCount());
+            for (int i = 0; i < Math.min(tags, data.getTagCount()); i++) {
+                json.writeString(tag((first + i) % data.getTagCount()));
+            }
+        }
+        json.writeEndArray();
+        if ("ios".equals(deviceType)) {
+            json.writeObjectFieldStart("ios");
+            json.writeNumberField("badge", random(CHANNEL, index, 14, 10));
+            json.writeObjectFieldStart("quiettime");
+            json.writeStringField("start", "22:00");
+            json.writeStringField("end", "08:00");
+            json.writeEndObject();
+            json.writeStringField("tz", "America/Los_Angeles");
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+    }
+
+    /* Schedules */
+
+    void writeSchedule(JsonGenerator json, String baseURI, int index) throws IOException {
+        String id = id(SCHEDULE, index);
+        long scheduled = NOW_MILLIS + random(SCHEDULE, index, 1, 365 * 24) * HOUR_MILLIS;
+
+        json.writeStartObject();
+        json.writeStringField("url", baseURI + "/api/schedules/" + id);
+        json.writeObjectFieldStart("schedule");
+        json.writeStringField("scheduled_time", time(scheduled));
+        json.writeEndObject();
+        json.writeStringField("name", "Scheduled push " + index);
+        json.writeObjectFieldStart("push");
+        if (data.getTagCount() > 0) {
+            json.writeObjectFieldStart("audience");
+            json.writeStringField("tag", tag(random(SCHEDULE, index, 2, data.getTagCount())));
+            json.writeEndObject();
+        } else {
+            json.writeStringField("audience", "all");
+        }
+        json.writeArrayFieldStart("device_types");
+        json.writeString("ios");
+        json.writeString("android");
+        json.writeEndArray();
+        json.writeObjectFieldStart("notification");
+        json.writeStringField("alert", "Scheduled push " + index);
+        json.writeEndObject();
+        json.writeEndObject();
+        json.writeArrayFieldStart("push_ids");
+        json.writeString(id(PUSH, index));
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    /* Segments */
+
+    void writeSegmentInformation(JsonGenerator json, int index) throws IOException {
+        long created = EPOCH_MILLIS + random(SEGMENT, index, 1, 300) * DAY_MILLIS;
+
+        json.writeStartObject();
+        json.writeNumberField("creation_date", created);
+        json.writeStringField("display_name", "Segment " + index);
+        json.writeStringField("id", id(SEGMENT, index));
+        json.writeNumberField("modification_date", created + random(SEGMENT, index, 2, 30) * DAY_MILLIS);
+        json.writeEndObject();
+    }
+
+    void writeSegment(JsonGenerator json, int index) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("display_name", "Segment " + index);
+        json.writeObjectFieldStart("criteria");
+        json.writeArrayFieldStart("and");
+        json.writeStartObject();
+        json.writeObjectFieldStart("location");
+        json.writeStringField("us_state", STATES[random(SEGMENT, index, 3, STATES.length)]);
+        json.writeObjectFieldStart("date");
+        json.writeObjectFieldStart("recent");
+        json.writeNumberField("months", 1 + random(SEGMENT, index, 4, 6));
+        json.writeEndObject();
+        json.writeEndObject();
+        json.writeEndObject();
+        json.writeEndObject();
+        if (data.getTagCount() > 0) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("or");
+            for (int i = 0; i < 2; i++) {
+                json.writeStartObject();
+                json.writeStringField("tag", tag(random(SEGMENT, index, 5 + i, data.getTagCount())));
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        json.writeStartObject();
+        json.writeObjectFieldStart("not");
+        json.writeStringField("tag", "opted_out");
+        json.writeEndObject();
+        json.writeEndObject();
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    /* Reports */
+
+    String pushTime(int index) {
+        // Newest first, as the listing returns them
+        return REPORT_TIME.print(NOW_MILLIS - index * PUSH_INTERVAL_MILLIS);
+    }
+
+    void writePushInfo(JsonGenerator json, int index) throws IOException {
+        int sends = 100 + random(PUSH, index, 1, 100000);
+
+        json.writeStartObject();
+        json.writeStringField("push_uuid", id(PUSH, index));
+        json.writeStringField("push_time", pushTime(index));
+        json.writeStringField("push_type", random(PUSH, index, 2, 4) == 0 ? "UNICAST_PUSH" : "BROADCAST_PUSH");
+        json.writeNumberField("direct_responses", sends / (20 + random(PUSH, index, 3, 80)));
+        json.writeNumberField("sends", sends);
+        json.writeStringField("group_id", id(PUSH, index));
+        json.writeEndObject();
+    }
+
+    void writePerPushDetail(JsonGenerator json, String pushId, long index) throws IOException {
+        int iosSends = random(PUSH, index, 4, 50000);
+        int androidSends = random(PUSH, index, 5, 50000);
+
+        json.writeStartObject();
+        json.writeStringField("app_key", "simulated_app_key");
+        json.writeStringField("push_id", pushId);
+        json.writeStringField("created", REPORT_TIME.print(EPOCH_MILLIS + random(PUSH, index, 6, 365) * DAY_MILLIS));
+        json.writeStringField("push_body", "eyJhdWRpZW5jZSI6ImFsbCJ9");
+        json.writeNumberField("rich_deletions", 0);
+        json.writeNumberField("rich_responses", 0);
+        json.writeNumberField("rich_sends", 0);
+        json.writeNumberField("sends", iosSends + androidSends);
+        json.writeNumberField("direct_responses", (iosSends + androidSends) / 40);
+        json.writeNumberField("influenced_responses", (iosSends + androidSends) / 15);
+        json.writeObjectFieldStart("platforms");
+        writePlatformCounts(json, "android", androidSends);
+        writePlatformCounts(json, "ios", iosSends);
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private static void writePlatformCounts(JsonGenerator json, String platform, int sends) throws IOException {
+        json.writeObjectFieldStart(platform);
+        json.writeNumberField("direct_responses", sends / 40);
+        json.writeNumberField("influenced_responses", sends / 15);
+        json.writeNumberField("sends", sends);
+        json.writeEndObject();
+    }
+
+    void writePerPushSeries(JsonGenerator json, String pushId, long index, String precision, long startMillis,
+                            long stepMillis, int points) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("app_key", "simulated_app_key");
+        json.writeStringField("push_id", pushId);
+        json.writeStringField("start", REPORT_TIME.print(startMillis));
+        json.writeStringField("end", REPORT_TIME.print(startMillis + points * stepMillis));
+        json.writeStringField("precision", precision);
+        json.writeArrayFieldStart("counts");
+        for (int i = 0; i < points; i++) {
+            // Responses decay through the series, as they do after a push
+            int sends = i == 0 ? 1000 + random(PUSH, index, 7, 50000) : 0;
+            int responses = random(PUSH, index, 100 + i, 50) / (1 + i);
+
+            json.writeStartObject();
+            json.writeObjectFieldStart("push_platforms");
+            json.writeObjectFieldStart("all");
+            json.writeNumberField("direct_responses", responses);
+            json.writeNumberField("influenced_responses", responses * 2);
+            json.writeNumberField("sends", sends);
+            json.writeEndObject();
+            writePlatformCounts(json, "android", sends / 2);
+            writePlatformCounts(json, "ios", sends - sends / 2);
+            json.writeEndObject();
+            json.writeObjectFieldStart("rich_push_platforms");
+            json.writeObjectFieldStart("all");
+            json.writeNumberField("responses", 0);
+            json.writeNumberField("sends", 0);
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeStringField("time", REPORT_TIME.print(startMillis + i * stepMillis));
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    void writeAppStats(JsonGenerator json, long startMillis, int hours) throws IOException {
+        json.writeStartArray();
+        for (int i = 0; i < hours; i++) {
+            long hour = startMillis / HOUR_MILLIS + i;
+            json.writeStartObject();
+            json.writeStringField("start", REPORT_TIME.print(hour * HOUR_MILLIS));
+            json.writeNumberField("messages", random(PUSH, hour, 8, 500));
+            json.writeNumberField("gcm_messages", random(PUSH, hour, 9, 500));
+            json.writeNumberField("android_messages", 0);
+            json.writeNumberField("c2dm_messages", 0);
+            json.writeNumberField("wns_messages", random(PUSH, hour, 10, 20));
+            json.writeNumberField("mpns_messages", 0);
+            json.writeNumberField("bb_messages", 0);
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    void writeAppStatsCSV(StringBuilder csv, long startMillis, int hours) {
+        for (int i = 0; i < hours; i++) {
+            long hour = startMillis / HOUR_MILLIS + i;
+            csv.append(REPORT_TIME.print(hour * HOUR_MILLIS)).append(',')
+                    .append(random(PUSH, hour, 8, 500)).append(",0,0,")
+                    .append(random(PUSH, hour, 9, 500)).append(',')
+                    .append(random(PUSH, hour, 10, 20)).append(",0,0\n");
+        }
+    }
+
+    void writeOpens(JsonGenerator json, String field, boolean timeInApp, long startMillis, long stepMillis,
+                    int points) throws IOException {
+        json.writeStartObject();
+        json.writeArrayFieldStart(field);
+        for (int i = 0; i < points; i++) {
+            long time = startMillis + i * stepMillis;
+            int salt = timeInApp ? 20 : 10;
+            json.writeStartObject();
+            json.writeStringField("date", REPORT_TIME.print(time));
+            if (timeInApp) {
+                json.writeNumberField("ios", random(PUSH, time, salt, 20000000) / 100.0);
+                json.writeNumberField("android", random(PUSH, time, salt + 1, 20000000) / 100.0);
+            } else {
+                json.writeNumberField("ios", random(PUSH, time, salt, 5000));
+                json.writeNumberField("android", random(PUSH, time, salt + 1, 5000));
+            }
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    /* Location */
+
+    void writeLocations(JsonGenerator json, String query) throws IOException {
+        long salt = query.hashCode();
+        json.writeStartObject();
+        json.writeArrayFieldStart("features");
+        for (int i = 0; i < data.getLocationCount(); i++) {
+            double latitude = 25 + random(0, salt, i, 2300) / 100.0;
+            double longitude = -124 + random(0, salt, i + 1000, 5500) / 100.0;
+
+            json.writeStartObject();
+            json.writeStringField("type", "Feature");
+            json.writeStringField("id", String.format("%022x", random(0, salt, i + 2000) >>> 1));
+            json.writeObjectFieldStart("properties");
+            json.writeStringField("source", "tiger.census.gov");
+            json.writeStringField("boundary_type_string", "City/Place");
+            json.writeStringField("name", query + " " + i);
+            json.writeObjectFieldStart("context");
+            json.writeStringField("us_state", STATES[random(0, salt, i + 3000, STATES.length)]);
+            json.writeEndObject();
+            json.writeStringField("boundary_type", "city");
+            json.writeEndObject();
+            json.writeArrayFieldStart("bounds");
+            json.writeNumber(latitude - 0.15);
+            json.writeNumber(longitude - 0.25);
+            json.writeNumber(latitude + 0.15);
+            json.writeNumber(longitude + 0.25);
+            json.writeEndArray();
+            json.writeArrayFieldStart("centroid");
+            json.writeNumber(latitude);
+            json.writeNumber(longitude);
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+}
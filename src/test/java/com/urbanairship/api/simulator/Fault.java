@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.simulator;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * A failure an APISimulator injects in place of a normal response.
+ */
+public final class Fault {
+
+    public enum Type {
+        /* An error response with the given status and an API error body */
+        STATUS,
+        /* The normal response, with its body sent a few bytes at a time */
+        SLOW_BODY,
+        /* The connection closed before any response is sent */
+        CONNECTION_RESET,
+        /* The normal response's headers and half its body, then the connection closed */
+        TRUNCATED_BODY
+    }
+
+    private final Type type;
+    private final int status;
+    private final Optional<Integer> retryAfterSeconds;
+    private final int bytesPerChunk;
+    private final long chunkDelayMillis;
+
+    private Fault(Type type, int status, Optional<Integer> retryAfterSeconds, int bytesPerChunk,
+                  long chunkDelayMillis) {
+        this.type = type;
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.bytesPerChunk = bytesPerChunk;
+        this.chunkDelayMillis = chunkDelayMillis;
+    }
+
+    /**
+     * Answer with an error status, such as 429, 500 or 503.
+     *
+     * @param status HTTP status code, 400 or above
+     * @return Fault
+     */
+    public static Fault status(int status) {
+        Preconditions.checkArgument(status >= 400 && status < 600, "status must be a 4xx or 5xx code");
+        return new Fault(Type.STATUS, status, Optional.<Integer>absent(), 0, 0L);
+    }
+
+    /**
+     * Answer with an error status and a Retry-After header, as the API does
+     * when it throttles a request.
+     *
+     * @param status HTTP status code, 400 or above
+     * @param retryAfterSeconds Retry-After value in seconds
+     * @return Fault
+     */
+    public static Fault status(int status, int retryAfterSeconds) {
+        Preconditions.checkArgument(status >= 400 && status < 600, "status must be a 4xx or 5xx code");
+        Preconditions.checkArgument(retryAfterSeconds >= 0, "retryAfterSeconds cannot be negative");
+        return new Fault(Type.STATUS, status, Optional.of(retryAfterSeconds), 0, 0L);
+    }
+
+    /**
+     * Send the normal response, writing bytesPerChunk bytes of the body and
+     * then waiting chunkDelayMillis, until it is all sent.
+     *
+     * @param bytesPerChunk Bytes written at a time
+     * @param chunkDelayMillis Wait between writes in milliseconds
+     * @return Fault
+     */
+    public static Fault slowBody(int bytesPerChunk, long chunkDelayMillis) {
+        Preconditions.checkArgument(bytesPerChunk > 0, "bytesPerChunk must be positive");
+        Preconditions.checkArgument(chunkDelayMillis >= 0, "chunkDelayMillis cannot be negative");
+        return new Fault(Type.SLOW_BODY, 0, Optional.<Integer>absent(), bytesPerChunk, chunkDelayMillis);
+    }
+
+    /**
+     * Close the connection without answering. The client sees the request
+     * fail with an IOException.
+     *
+     * @return Fault
+     */
+    public static Fault connectionReset() {
+        return new Fault(Type.CONNECTION_RESET, 0, Optional.<Integer>absent(), 0, 0L);
+    }
+
+    /**
+     * Send the normal response's headers and the first half of its body,
+     * then close the connection.
+     *
+     * @return Fault
+     */
+    public static Fault truncatedBody() {
+        return new Fault(Type.TRUNCATED_BODY, 0, Optional.<Integer>absent(), 0, 0L);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Status of a STATUS fault, 0 for other types.
+     *
+     * @return int
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    public Optional<Integer> getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public int getBytesPerChunk() {
+        return bytesPerChunk;
+    }
+
+    public long getChunkDelayMillis() {
+        return chunkDelayMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Fault{" +
+                "type=" + type +
+                ", status=" + status +
+                ", retryAfterSeconds=" + retryAfterSeconds +
+                ", bytesPerChunk=" + bytesPerChunk +
+                ", chunkDelayMillis=" + chunkDelayMillis +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(type, status, retryAfterSeconds, bytesPerChunk, chunkDelayMillis);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final Fault other = (Fault) obj;
+        return Objects.equal(this.type, other.type) &&
+                Objects.equal(this.status, other.status) &&
+                Objects.equal(this.retryAfterSeconds, other.retryAfterSeconds) &&
+                Objects.equal(this.bytesPerChunk, other.bytesPerChunk) &&
+                Objects.equal(this.chunkDelayMillis, other.chunkDelayMillis);
+    }
+}
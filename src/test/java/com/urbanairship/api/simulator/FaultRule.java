@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.simulator;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.urbanairship.api.client.EndpointGroup;
+
+/**
+ * Injects a fault into a share of the requests an APISimulator receives,
+ * optionally only those to one endpoint group or with one method. Rules are
+ * tried in the order they were added, and the first one that fires decides
+ * the response.
+ */
+public final class FaultRule {
+
+    private final Optional<EndpointGroup> endpointGroup;
+    private final Optional<String> method;
+    private final double probability;
+    private final Fault fault;
+
+    private FaultRule(Optional<EndpointGroup> endpointGroup, Optional<String> method, double probability,
+                      Fault fault) {
+        this.endpointGroup = endpointGroup;
+        this.method = method;
+        this.probability = probability;
+        this.fault = fault;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public Optional<EndpointGroup> getEndpointGroup() {
+        return endpointGroup;
+    }
+
+    public Optional<String> getMethod() {
+        return method;
+    }
+
+    /**
+     * Share of matching requests that get the fault, between 0 and 1.
+     *
+     * @return double
+     */
+    public double getProbability() {
+        return probability;
+    }
+
+    public Fault getFault() {
+        return fault;
+    }
+
+    boolean matches(EndpointGroup group, String requestMethod) {
+        return (!endpointGroup.isPresent() || endpointGroup.get() == group) &&
+                (!method.isPresent() || method.get().equalsIgnoreCase(requestMethod));
+    }
+
+    @Override
+    public String toString() {
+        return "FaultRule{" +
+                "endpointGroup=" + endpointGroup +
+                ", method=" + method +
+                ", probability=" + probability +
+                ", fault=" + fault +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(endpointGroup, method, probability, fault);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final FaultRule other = (FaultRule) obj;
+        return Objects.equal(this.endpointGroup, other.endpointGroup) &&
+                Objects.equal(this.method, other.method) &&
+                Objects.equal(this.probability, other.probability) &&
+                Objects.equal(this.fault, other.fault);
+    }
+
+    public static class Builder {
+
+        private EndpointGroup endpointGroup = null;
+        private String method = null;
+        private double probability = 1.0;
+        private Fault fault = null;
+
+        private Builder() {
+        }
+
+        /**
+         * Only inject the fault into requests to this endpoint group.
+         *
+         * @param value EndpointGroup
+         * @return Builder
+         */
+        public Builder setEndpointGroup(EndpointGroup value) {
+            this.endpointGroup = value;
+            return this;
+        }
+
+        /**
+         * Only inject the fault into requests with this method, e.g. "POST".
+         *
+         * @param value HTTP method
+         * @return Builder
+         */
+        public Builder setMethod(String value) {
+            this.method = value;
+            return this;
+        }
+
+        /**
+         * Set the share of matching requests that get the fault. Defaults
+         * to all of them.
+         *
+         * @param value Probability between 0 and 1
+         * @return Builder
+         */
+        public Builder setProbability(double value) {
+            this.probability = value;
+            return this;
+        }
+
+        public Builder setFault(Fault value) {
+            this.fault = value;
+            return this;
+        }
+
+        public FaultRule build() {
+            Preconditions.checkNotNull(fault, "fault cannot be null");
+            Preconditions.checkArgument(probability >= 0 && probability <= 1, "probability must be between 0 and 1");
+
+            return new FaultRule(Optional.fromNullable(endpointGroup), Optional.fromNullable(method), probability,
+                    fault);
+        }
+    }
+}
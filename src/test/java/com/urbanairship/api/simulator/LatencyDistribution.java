@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.simulator;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Random;
+
+/**
+ * How long an APISimulator waits before answering a request. Production
+ * API latencies are closer to log-normal than uniform: most requests are
+ * fast, with a long tail, which is what exposes head of line blocking and
+ * undersized connection pools.
+ */
+public abstract class LatencyDistribution {
+
+    private static final LatencyDistribution NONE = fixed(0);
+
+    /**
+     * Delay for the next request.
+     *
+     * @param random Source of randomness, seeded by the simulator
+     * @return Delay in milliseconds, never negative
+     */
+    public abstract long nextDelayMillis(Random random);
+
+    /**
+     * Answer immediately.
+     *
+     * @return LatencyDistribution
+     */
+    public static LatencyDistribution none() {
+        return NONE;
+    }
+
+    /**
+     * Always wait the same time.
+     *
+     * @param millis Delay in milliseconds
+     * @return LatencyDistribution
+     */
+    public static LatencyDistribution fixed(final long millis) {
+        Preconditions.checkArgument(millis >= 0, "millis cannot be negative");
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayMillis(Random random) {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed(" + millis + "ms)";
+            }
+        };
+    }
+
+    /**
+     * Wait between minMillis and maxMillis, inclusive, with every delay
+     * equally likely.
+     *
+     * @param minMillis Shortest delay in milliseconds
+     * @param maxMillis Longest delay in milliseconds
+     * @return LatencyDistribution
+     */
+    public static LatencyDistribution uniform(final long minMillis, final long maxMillis) {
+        Preconditions.checkArgument(minMillis >= 0, "minMillis cannot be negative");
+        Preconditions.checkArgument(maxMillis >= minMillis, "maxMillis cannot be less than minMillis");
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayMillis(Random random) {
+                return minMillis + (long) (random.nextDouble() * (maxMillis - minMillis + 1));
+            }
+
+            @Override
+            public String toString() {
+                return "uniform(" + minMillis + "ms, " + maxMillis + "ms)";
+            }
+        };
+    }
+
+    /**
+     * Wait a log-normally distributed time. Half the delays are below
+     * medianMillis; sigma sets the length of the tail, with 0.5 putting the
+     * 99th percentile at about three times the median and 1.0 at about ten
+     * times.
+     *
+     * @param medianMillis Median delay in milliseconds
+     * @param sigma Standard deviation of the delay's natural logarithm
+     * @return LatencyDistribution
+     */
+    public static LatencyDistribution logNormal(final long medianMillis, final double sigma) {
+        Preconditions.checkArgument(medianMillis > 0, "medianMillis must be positive");
+        Preconditions.checkArgument(sigma >= 0, "sigma cannot be negative");
+        final double mu = Math.log(medianMillis);
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayMillis(Random random) {
+                return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+            }
+
+            @Override
+            public String toString() {
+                return "logNormal(" + medianMillis + "ms, " + sigma + ")";
+            }
+        };
+    }
+
+    /**
+     * Wait an exponentially distributed time, as between independent
+     * arrivals.
+     *
+     * @param meanMillis Mean delay in milliseconds
+     * @return LatencyDistribution
+     */
+    public static LatencyDistribution exponential(final long meanMillis) {
+        Preconditions.checkArgument(meanMillis > 0, "meanMillis must be positive");
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayMillis(Random random) {
+                return Math.round(-meanMillis * Math.log(1.0 - random.nextDouble()));
+            }
+
+            @Override
+            public String toString() {
+                return "exponential(" + meanMillis + "ms)";
+            }
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package com.urbanairship.api.simulator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyDistributionTest {
+
+    private static final int SAMPLES = 10000;
+
+    private static long[] sample(LatencyDistribution distribution) {
+        Random random = new Random(42);
+        long[] delays = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            delays[i] = distribution.nextDelayMillis(random);
+        }
+        Arrays.sort(delays);
+        return delays;
+    }
+
+    @Test
+    public void testNoneAndFixed() {
+        long[] none = sample(LatencyDistribution.none());
+        assertEquals(0, none[0]);
+        assertEquals(0, none[SAMPLES - 1]);
+
+        long[] fixed = sample(LatencyDistribution.fixed(25));
+        assertEquals(25, fixed[0]);
+        assertEquals(25, fixed[SAMPLES - 1]);
+    }
+
+    @Test
+    public void testUniformStaysInBounds() {
+        long[] delays = sample(LatencyDistribution.uniform(10, 20));
+        assertEquals(10, delays[0]);
+        assertEquals(20, delays[SAMPLES - 1]);
+    }
+
+    @Test
+    public void testLogNormalMedian() {
+        long[] delays = sample(LatencyDistribution.logNormal(40, 0.5));
+        assertEquals(40, delays[SAMPLES / 2], 2);
+        assertTrue(delays[SAMPLES * 99 / 100] > 80);
+    }
+
+    @Test
+    public void testExponentialMean() {
+        long[] delays = sample(LatencyDistribution.exponential(50));
+        long total = 0;
+        for (long delay : delays) {
+            total += delay;
+        }
+        assertEquals(50, total / SAMPLES, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUniformRejectsInvertedBounds() {
+        LatencyDistribution.uniform(20, 10);
+    }
+}
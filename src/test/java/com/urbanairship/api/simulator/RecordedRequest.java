@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.simulator;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableListMultimap;
+import com.urbanairship.api.client.EndpointGroup;
+
+import java.util.List;
+
+/**
+ * A request received by an APISimulator, with the response it was given.
+ */
+public final class RecordedRequest {
+
+    private final long receivedAtMillis;
+    private final String method;
+    private final String path;
+    private final Optional<String> query;
+    private final ImmutableListMultimap<String, String> headers;
+    private final byte[] body;
+    private final int status;
+    private final Optional<Fault> fault;
+
+    RecordedRequest(long receivedAtMillis, String method, String path, Optional<String> query,
+                    ImmutableListMultimap<String, String> headers, byte[] body, int status, Optional<Fault> fault) {
+        this.receivedAtMillis = receivedAtMillis;
+        this.method = method;
+        this.path = path;
+        this.query = query;
+        this.headers = headers;
+        this.body = body;
+        this.status = status;
+        this.fault = fault;
+    }
+
+    public long getReceivedAtMillis() {
+        return receivedAtMillis;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Optional<String> getQuery() {
+        return query;
+    }
+
+    public EndpointGroup getEndpointGroup() {
+        return EndpointGroup.forPath(path);
+    }
+
+    /**
+     * Request headers, keyed by lower case name.
+     *
+     * @return ImmutableListMultimap
+     */
+    public ImmutableListMultimap<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * First value of a request header.
+     *
+     * @param name Header name, in any case
+     * @return Optional value
+     */
+    public Optional<String> getHeader(String name) {
+        List<String> values = headers.get(name.toLowerCase());
+        return values.isEmpty() ? Optional.<String>absent() : Optional.of(values.get(0));
+    }
+
+    /**
+     * Request body, decompressed if the client gzipped it.
+     *
+     * @return byte[]
+     */
+    public byte[] getBody() {
+        return body.clone();
+    }
+
+    public String getBodyAsString() {
+        return new String(body, Charsets.UTF_8);
+    }
+
+    /**
+     * Status of the response, or 0 if the connection was closed before one
+     * was sent.
+     *
+     * @return int
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * The fault injected into the response, if there was one.
+     *
+     * @return Optional Fault
+     */
+    public Optional<Fault> getFault() {
+        return fault;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordedRequest{" +
+                "method=" + method +
+                ", path=" + path +
+                ", query=" + query +
+                ", bodyBytes=" + body.length +
+                ", status=" + status +
+                ", fault=" + fault +
+                '}';
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.simulator;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * The scale of the data an APISimulator serves. Channels, schedules,
+ * segments, tags and push reports are generated from their index and the
+ * seed when they are requested, so a simulator with millions of channels
+ * costs no more memory than one with ten, and two simulators with the same
+ * settings serve identical data.
+ * <p>
+ * Writes are validated and acknowledged but never change the generated data,
+ * which keeps repeated runs comparable.
+ */
+public final class SimulatedData {
+
+    private final long seed;
+    private final int channelCount;
+    private final int scheduleCount;
+    private final int segmentCount;
+    private final int tagCount;
+    private final int pushCount;
+    private final int locationCount;
+    private final int pageSize;
+
+    private SimulatedData(long seed, int channelCount, int scheduleCount, int segmentCount, int tagCount,
+                          int pushCount, int locationCount, int pageSize) {
+        this.seed = seed;
+        this.channelCount = channelCount;
+        this.scheduleCount = scheduleCount;
+        this.segmentCount = segmentCount;
+        this.tagCount = tagCount;
+        this.pushCount = pushCount;
+        this.locationCount = locationCount;
+        this.pageSize = pageSize;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Seed the data is generated from.
+     *
+     * @return long
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public int getScheduleCount() {
+        return scheduleCount;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public int getTagCount() {
+        return tagCount;
+    }
+
+    /**
+     * Number of pushes in the push response report listing.
+     *
+     * @return int
+     */
+    public int getPushCount() {
+        return pushCount;
+    }
+
+    /**
+     * Number of features returned for each location query.
+     *
+     * @return int
+     */
+    public int getLocationCount() {
+        return locationCount;
+    }
+
+    /**
+     * Number of items in a page of a paginated listing when the request does
+     * not set a limit.
+     *
+     * @return int
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public String toString() {
+        return "SimulatedData{" +
+                "seed=" + seed +
+                ", channelCount=" + channelCount +
+                ", scheduleCount=" + scheduleCount +
+                ", segmentCount=" + segmentCount +
+                ", tagCount=" + tagCount +
+                ", pushCount=" + pushCount +
+                ", locationCount=" + locationCount +
+                ", pageSize=" + pageSize +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(seed, channelCount, scheduleCount, segmentCount, tagCount, pushCount,
+                locationCount, pageSize);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final SimulatedData other = (SimulatedData) obj;
+        return Objects.equal(this.seed, other.seed) &&
+                Objects.equal(this.channelCount, other.channelCount) &&
+                Objects.equal(this.scheduleCount, other.scheduleCount) &&
+                Objects.equal(this.segmentCount, other.segmentCount) &&
+                Objects.equal(this.tagCount, other.tagCount) &&
+                Objects.equal(this.pushCount, other.pushCount) &&
+                Objects.equal(this.locationCount, other.locationCount) &&
+                Objects.equal(this.pageSize, other.pageSize);
+    }
+
+    public static class Builder {
+
+        private long seed = 0L;
+        private int channelCount = 1000;
+        private int scheduleCount = 100;
+        private int segmentCount = 100;
+        private int tagCount = 100;
+        private int pushCount = 1000;
+        private int locationCount = 5;
+        private int pageSize = 100;
+
+        private Builder() {
+        }
+
+        public Builder setSeed(long value) {
+            this.seed = value;
+            return this;
+        }
+
+        public Builder setChannelCount(int value) {
+            this.channelCount = value;
+            return this;
+        }
+
+        public Builder setScheduleCount(int value) {
+            this.scheduleCount = value;
+            return this;
+        }
+
+        public Builder setSegmentCount(int value) {
+            this.segmentCount = value;
+            return this;
+        }
+
+        public Builder setTagCount(int value) {
+            this.tagCount = value;
+            return this;
+        }
+
+        public Builder setPushCount(int value) {
+            this.pushCount = value;
+            return this;
+        }
+
+        public Builder setLocationCount(int value) {
+            this.locationCount = value;
+            return this;
+        }
+
+        public Builder setPageSize(int value) {
+            this.pageSize = value;
+            return this;
+        }
+
+        public SimulatedData build() {
+            Preconditions.checkArgument(channelCount >= 0, "channelCount cannot be negative");
+            Preconditions.checkArgument(scheduleCount >= 0, "scheduleCount cannot be negative");
+            Preconditions.checkArgument(segmentCount >= 0, "segmentCount cannot be negative");
+            Preconditions.checkArgument(tagCount >= 0, "tagCount cannot be negative");
+            Preconditions.checkArgument(pushCount >= 0, "pushCount cannot be negative");
+            Preconditions.checkArgument(locationCount >= 0, "locationCount cannot be negative");
+            Preconditions.checkArgument(pageSize > 0, "pageSize must be positive");
+
+            return new SimulatedData(seed, channelCount, scheduleCount, segmentCount, tagCount, pushCount,
+                    locationCount, pageSize);
+        }
+    }
+}
@@ -0,0 +1,815 @@
+/*
+ * Copyright (c) 2013-2014.  Urban Airship and Contributors
+ */
+
+package com.urbanairship.api.simulator;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.urbanairship.api.client.EndpointGroup;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/*
+Answers every request an APISimulator receives: waits out the simulated
+latency, injects a fault if a rule fires, and otherwise routes the request
+to the endpoint it names.
+ */
+final class SimulatorHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulatorHandler.class);
+
+    private static final String JSON = "application/json";
+    private static final String UA_JSON = "application/vnd.urbanairship+json; version=3";
+    private static final int MAX_SERIES_POINTS = 10000;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final APISimulator simulator;
+    private final DataGenerator generator;
+    private final SimulatedData data;
+    private final AtomicLong operations = new AtomicLong();
+
+    SimulatorHandler(APISimulator simulator, DataGenerator generator) {
+        this.simulator = simulator;
+        this.generator = generator;
+        this.data = generator.getData();
+    }
+
+    /* A response to send, before any fault is applied */
+    static final class SimulatedResponse {
+
+        final int status;
+        final Optional<String> contentType;
+        final byte[] body;
+        final Map<String, String> headers = new HashMap<String, String>();
+
+        SimulatedResponse(int status, Optional<String> contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        SimulatedResponse header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+    }
+
+    /* Writes a response body with a streaming generator */
+    private interface BodyWriter {
+        void write(JsonGenerator json) throws IOException;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        long receivedAt = System.currentTimeMillis();
+        String method = exchange.getRequestMethod().toUpperCase();
+        String path = exchange.getRequestURI().getRawPath();
+        Optional<String> query = Optional.fromNullable(exchange.getRequestURI().getRawQuery());
+        EndpointGroup group = EndpointGroup.forPath(path);
+        byte[] body = readBody(exchange);
+
+        int status = 0;
+        Optional<Fault> fault = Optional.absent();
+        boolean recorded = false;
+        try {
+            if (!sleep(simulator.latencyFor(group).nextDelayMillis(simulator.getRandom()))) {
+                exchange.close();
+                return;
+            }
+
+            fault = simulator.pickFault(group, method);
+            if (fault.isPresent() && fault.get().getType() == Fault.Type.CONNECTION_RESET) {
+                // Closing an exchange before its headers are sent drops the connection
+                exchange.close();
+                return;
+            }
+
+            SimulatedResponse response;
+            if (fault.isPresent() && fault.get().getType() == Fault.Type.STATUS) {
+                response = error(fault.get().getStatus(), "Simulated failure");
+                if (fault.get().getRetryAfterSeconds().isPresent()) {
+                    response.header("Retry-After", fault.get().getRetryAfterSeconds().get().toString());
+                }
+            } else {
+                response = route(exchange, method, path, parseQuery(query), body);
+            }
+            status = response.status;
+            // Recorded before the response goes out, so a client that has its response sees its request
+            recorded = true;
+            record(exchange, receivedAt, method, path, query, body, status, fault);
+            send(exchange, response, fault);
+        } catch (IOException e) {
+            // The client went away, or a fault cut the response short
+            logger.debug(String.format("Simulated %s %s ended early: %s", method, path, e.getMessage()));
+            exchange.close();
+        } catch (RuntimeException e) {
+            logger.warn(String.format("Simulator failed on %s %s", method, path), e);
+            status = 500;
+            send(exchange, error(500, "Simulator error: " + e.getMessage()), Optional.<Fault>absent());
+        } finally {
+            if (!recorded) {
+                record(exchange, receivedAt, method, path, query, body, status, fault);
+            }
+        }
+    }
+
+    private void record(HttpExchange exchange, long receivedAt, String method, String path, Optional<String> query,
+                        byte[] body, int status, Optional<Fault> fault) {
+        simulator.record(new RecordedRequest(receivedAt, method, path, query, headers(exchange), body, status,
+                fault));
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        try {
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            if (encoding != null && encoding.equalsIgnoreCase("gzip")) {
+                in = new GZIPInputStream(in);
+            }
+            return ByteStreams.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static ImmutableListMultimap<String, String> headers(HttpExchange exchange) {
+        ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            headers.putAll(header.getKey().toLowerCase(), header.getValue());
+        }
+        return headers.build();
+    }
+
+    /* Returns false if the thread was interrupted, which happens when the simulator closes */
+    private static boolean sleep(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Map<String, String> parseQuery(Optional<String> query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<String, String>();
+        if (!query.isPresent()) {
+            return params;
+        }
+        for (String pair : query.get().split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            } else if (!pair.isEmpty()) {
+                params.put(URLDecoder.decode(pair, "UTF-8"), "");
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, SimulatedResponse response, Optional<Fault> fault)
+            throws IOException {
+        if (response.contentType.isPresent()) {
+            exchange.getResponseHeaders().set("Content-Type", response.contentType.get());
+        }
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+            exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+        }
+
+        if (response.body.length == 0) {
+            exchange.sendResponseHeaders(response.status, -1);
+            exchange.close();
+            return;
+        }
+
+        Fault.Type type = fault.isPresent() ? fault.get().getType() : null;
+        if (type == Fault.Type.SLOW_BODY) {
+            exchange.sendResponseHeaders(response.status, response.body.length);
+            OutputStream out = exchange.getResponseBody();
+            int chunk = fault.get().getBytesPerChunk();
+            for (int offset = 0; offset < response.body.length; offset += chunk) {
+                out.write(response.body, offset, Math.min(chunk, response.body.length - offset));
+                out.flush();
+                if (offset + chunk < response.body.length && !sleep(fault.get().getChunkDelayMillis())) {
+                    break;
+                }
+            }
+            out.close();
+        } else if (type == Fault.Type.TRUNCATED_BODY) {
+            exchange.sendResponseHeaders(response.status, response.body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(response.body, 0, response.body.length / 2);
+            out.flush();
+            // Closing short of the declared length closes the connection, throwing IOException
+            exchange.close();
+        } else {
+            exchange.sendResponseHeaders(response.status, response.body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(response.body);
+            out.close();
+        }
+    }
+
+    /* Responses */
+
+    private static SimulatedResponse json(int status, BodyWriter writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator json = JSON_FACTORY.createJsonGenerator(out, JsonEncoding.UTF8);
+        writer.write(json);
+        json.close();
+        return new SimulatedResponse(status, Optional.of(JSON), out.toByteArray());
+    }
+
+    private static SimulatedResponse empty(int status) {
+        return new SimulatedResponse(status, Optional.<String>absent(), new byte[0]);
+    }
+
+    static SimulatedResponse error(final int status, final String message) {
+        try {
+            SimulatedResponse json = json(status, new BodyWriter() {
+                @Override
+                public void write(JsonGenerator json) throws IOException {
+                    json.writeStartObject();
+                    json.writeBooleanField("ok", false);
+                    json.writeStringField("operation_id", "simulated-error");
+                    json.writeStringField("error", message);
+                    json.writeNumberField("error_code", status * 100);
+                    json.writeEndObject();
+                }
+            });
+            return new SimulatedResponse(status, Optional.of(UA_JSON), json.body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String operationId() {
+        return generator.id(0, operations.incrementAndGet());
+    }
+
+    private SimulatedResponse route(HttpExchange exchange, String method, String rawPath, Map<String, String> params,
+                                    byte[] body) throws IOException {
+        String auth = exchange.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.startsWith("Basic ")) {
+            return error(401, "Unauthorized");
+        }
+
+        String path = rawPath.endsWith("/") ? rawPath.substring(0, rawPath.length() - 1) : rawPath;
+        String[] parts = path.split("/");
+        // parts[0] is empty, parts[1] is "api"
+        if (parts.length < 3 || !parts[1].equals("api")) {
+            return error(404, "Not found");
+        }
+        String resource = parts[2];
+        String id = parts.length > 3 ? URLDecoder.decode(parts[3], "UTF-8") : null;
+
+        if (resource.equals("push")) {
+            if (id == null) {
+                return method.equals("POST") ? push(body, false) : error(405, "Method not allowed");
+            } else if (id.equals("validate")) {
+                return method.equals("POST") ? push(body, true) : error(405, "Method not allowed");
+            } else if (id.equals("stats")) {
+                return method.equals("GET") ? pushStatistics(params) : error(405, "Method not allowed");
+            }
+        } else if (resource.equals("schedules")) {
+            return schedules(method, id, params, body);
+        } else if (resource.equals("tags")) {
+            return tags(method, id, body);
+        } else if (resource.equals("segments")) {
+            return segments(method, id, params, body);
+        } else if (resource.equals("channels")) {
+            if (!method.equals("GET")) {
+                return error(405, "Method not allowed");
+            }
+            return id == null ? listChannels(params) : channel(id);
+        } else if (resource.equals("reports")) {
+            return method.equals("GET") ? reports(parts, params) : error(405, "Method not allowed");
+        } else if (resource.equals("location")) {
+            return method.equals("GET") ? location(id, params) : error(405, "Method not allowed");
+        }
+        return error(404, "Not found");
+    }
+
+    /* Parses a JSON request body, or returns absent if it is not an object or array */
+    private static Optional<JsonNode> parse(byte[] body) {
+        try {
+            JsonNode node = MAPPER.readTree(new String(body, Charsets.UTF_8));
+            return node != null && (node.isObject() || node.isArray()) ? Optional.of(node) : Optional.<JsonNode>absent();
+        } catch (IOException e) {
+            return Optional.absent();
+        }
+    }
+
+    private static boolean hasFields(JsonNode node, String... fields) {
+        for (String field : fields) {
+            if (!node.has(field)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int limit(Map<String, String> params) {
+        String limit = params.get("limit");
+        if (limit == null) {
+            return data.getPageSize();
+        }
+        try {
+            return Math.max(1, Integer.parseInt(limit));
+        } catch (NumberFormatException e) {
+            return data.getPageSize();
+        }
+    }
+
+    /* Index a listing starts at, from an ID in the start parameter */
+    private int start(Map<String, String> params, String param, int kind, int count) {
+        String start = params.get(param);
+        if (start == null) {
+            return 0;
+        }
+        return Math.max(0, generator.indexOf(kind, start, count));
+    }
+
+    private String nextPage(String path, Map<String, String> params, String startParam, String start)
+            throws UnsupportedEncodingException {
+        StringBuilder next = new StringBuilder(simulator.getBaseURI()).append(path).append('?');
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            if (!param.getKey().equals(startParam)) {
+                next.append(URLEncoder.encode(param.getKey(), "UTF-8")).append('=')
+                        .append(URLEncoder.encode(param.getValue(), "UTF-8")).append('&');
+            }
+        }
+        return next.append(startParam).append('=').append(URLEncoder.encode(start, "UTF-8")).toString();
+    }
+
+    /* Push */
+
+    private SimulatedResponse push(byte[] body, final boolean validateOnly) throws IOException {
+        Optional<JsonNode> payload = parse(body);
+        if (!payload.isPresent()) {
+            return error(400, "Could not parse request body.");
+        }
+
+        // A single payload or an array of them
+        List<JsonNode> nodes = payload.get().isArray() ? Lists.newArrayList(payload.get()) :
+                Collections.singletonList(payload.get());
+        for (JsonNode node : nodes) {
+            if (!node.isObject() || !hasFields(node, "audience", "notification", "device_types")) {
+                return error(400, "Push payload requires audience, notification and device_types.");
+            }
+        }
+        final int payloads = nodes.size();
+
+        return json(validateOnly ? 200 : 202, new BodyWriter() {
+            @Override
+            public void write(JsonGenerator json) throws IOException {
+                json.writeStartObject();
+                json.writeBooleanField("ok", true);
+                json.writeStringField("operation_id", operationId());
+                json.writeArrayFieldStart("push_ids");
+                if (!validateOnly) {
+                    for (int i = 0; i < payloads; i++) {
+                        // Past the report listing, but valid for per push reports
+                        json.writeString(generator.id(DataGenerator.PUSH, data.getPushCount() + operations.incrementAndGet()));
+                    }
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        });
+    }
+
+    /* Schedules */
+
+    private SimulatedResponse schedules(String method, String id, Map<String, String> params, byte[] body)
+            throws IOException {
+        if (id == null) {
+            if (method.equals("GET")) {
+                return listSchedules(params);
+            } else if (method.equals("POST")) {
+                return saveSchedule(201, generator.id(DataGenerator.SCHEDULE, data.getScheduleCount() +
+                        operations.incrementAndGet()), body);
+            }
+            return error(405, "Method not allowed");
+        }
+
+        final int index = generator.indexOf(DataGenerator.SCHEDULE, id, data.getScheduleCount());
+        if (index < 0) {
+            return error(404, "Schedule not found");
+        }
+        if (method.equals("GET")) {
+            return json(200, new BodyWriter() {
+                @Override
+                public void write(JsonGenerator json) throws IOException {
+                    generator.writeSchedule(json, simulator.getBaseURI(), index);
+                }
+            });
+        } else if (method.equals("PUT")) {
+            return saveSchedule(200, id, body);
+        } else if (method.equals("DELETE")) {
+            return empty(204);
+        }
+        return error(405, "Method not allowed");
+    }
+
+    private SimulatedResponse saveSchedule(int status, String id, byte[] body) throws IOException {
+        Optional<JsonNode> payload = parse(body);
+        if (!payload.isPresent() || !payload.get().isObject() || !hasFields(payload.get(), "schedule", "push")) {
+            return error(400, "Schedule payload requires schedule and push.");
+        }
+
+        final String url = simulator.getBaseURI() + "/api/schedules/" + id;
+        final ObjectNode schedule = (ObjectNode) payload.get();
+        schedule.put("url", url);
+        return json(status, new BodyWriter() {
+            @Override
+            public void write(JsonGenerator json) throws IOException {
+                json.writeStartObject();
+                json.writeBooleanField("ok", true);
+                json.writeStringField("operation_id", operationId());
+                json.writeArrayFieldStart("schedule_urls");
+                json.writeString(url);
+                json.writeEndArray();
+                json.writeArrayFieldStart("schedules");
+                MAPPER.writeTree(json, schedule);
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        });
+    }
+
+    private SimulatedResponse listSchedules(Map<String, String> params) throws IOException {
+        final int count = data.getScheduleCount();
+        final int start = start(params, "start", DataGenerator.SCHEDULE, count);
+        final int end = Math.min(count, start + limit(params));
+        final Optional<String> next = end < count ?
+                Optional.of(nextPage("/api/schedules", params, "start", generator.id(DataGenerator.SCHEDULE, end))) :
+                Optional.<String>absent();
+
+        return json(200, new BodyWriter() {
+            @Override
+            public void write(JsonGenerator json) throws IOException {
+                json.writeStartObject();
+                json.writeBooleanField("ok", true);
+                json.writeNumberField("count", end - start);
+                json.writeNumberField("total_count", count);
+                if (next.isPresent()) {
+                    json.writeStringField("next_page", next.get());
+                }
+                json.writeArrayFieldStart("schedules");
+                for (int i = start; i < end; i++) {
+                    generator.writeSchedule(json, simulator.getBaseURI(), i);
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        });
+    }
+
+    /* Tags */
+
+    private SimulatedResponse tags(String method, String tag, byte[] body) throws IOException {
+        if (tag == null) {
+            if (!method.equals("GET")) {
+                return error(405, "Method not allowed");
+            }
+            return json(200, new BodyWriter() {
+                @Override
+                public void write(JsonGenerator json) throws IOException {
+                    json.writeStartObject();
+                    json.writeArrayFieldStart("tags");
+                    for (int i = 0; i < data.getTagCount(); i++) {
+                        json.writeString(generator.tag(i));
+                    }
+                    json.writeEndArray();
+                    json.writeEndObject();
+                }
+            });
+        }
+
+        if (method.equals("PUT")) {
+            return empty(201);
+        } else if (method.equals("DELETE")) {
+            return empty(204);
+        } else if (method.equals("POST")) {
+            // Adding and removing devices, or a batch modification for the batch "tag"
+            return parse(body).isPresent() ? empty(200) : error(400, "Could not parse request body.");
+        }
+        return error(405, "Method not allowed");
+    }
+
+    /* Segments */
+
+    private SimulatedResponse segments(String method, String id, Map<String, String> params, byte[] body)
+            throws IOException {
+        if (id == null) {
+            if (method.equals("GET")) {
+                return listSegments(params);
+            } else if (method.equals("POST")) {
+                if (!validSegment(body)) {
+                    return error(400, "Segment payload requires display_name and criteria.");
+                }
+                String created = generator.id(DataGenerator.SEGMENT, data.getSegmentCount() + operations.incrementAndGet());
+                return empty(201).header("Location", simulator.getBaseURI() + "/api/segments/" + created);
+            }
+            return error(405, "Method not allowed");
+        }
+
+        final int index = generator.indexOf(DataGenerator.SEGMENT, id, data.getSegmentCount());
+        if (index < 0) {
+            return error(404, "Segment not found");
+        }
+        if (method.equals("GET")) {
+            return json(200, new BodyWriter() {
+                @Override
+                public void write(JsonGenerator json) throws IOException {
+                    generator.writeSegment(json, index);
+                }
+            });
+        } else if (method.equals("PUT")) {
+            return validSegment(body) ? empty(200) : error(400, "Segment payload requires display_name and criteria.");
+        } else if (method.equals("DELETE")) {
+            return empty(204);
+        }
+        return error(405, "Method not allowed");
+    }
+
+    private static boolean validSegment(byte[] body) {
+        Optional<JsonNode> payload = parse(body);
+        return payload.isPresent() && payload.get().isObject() && hasFields(payload.get(), "display_name", "criteria");
+    }
+
+    private SimulatedResponse listSegments(Map<String, String> params) throws IOException {
+        final int count = data.getSegmentCount();
+        final int start = start(params, "start", DataGenerator.SEGMENT, count);
+        final int end = Math.min(count, start + limit(params));
+        final Optional<String> next = end < count ?
+                Optional.of(nextPage("/api/segments", params, "start", generator.id(DataGenerator.SEGMENT, end))) :
+                Optional.<String>absent();
+
+        return json(200, new BodyWriter() {
+            @Override
+            public void write(JsonGenerator json) throws IOException {
+                json.writeStartObject();
+                if (next.isPresent()) {
+                    json.writeStringField("next_page", next.get());
+                }
+                json.writeArrayFieldStart("segments");
+                for (int i = start; i < end; i++) {
+                    generator.writeSegmentInformation(json, i);
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        });
+    }
+
+    /* Channels */
+
+    private SimulatedResponse listChannels(Map<String, String> params) throws IOException {
+        final int count = data.getChannelCount();
+        final int start = start(params, "start", DataGenerator.CHANNEL, count);
+        final int end = Math.min(count, start + limit(params));
+        final Optional<String> next = end < count ?
+                Optional.of(nextPage("/api/channels/", params, "start", generator.id(DataGenerator.CHANNEL, end))) :
+                Optional.<String>absent();
+
+        return json(200, new BodyWriter() {
+            @Override
+            public void write(JsonGenerator json) throws IOException {
+                json.writeStartObject();
+                json.writeBooleanField("ok", true);
+                json.writeArrayFieldStart("channels");
+                for (int i = start; i < end; i++) {
+                    generator.writeChannel(json, i);
+                }
+                json.writeEndArray();
+                if (next.isPresent()) {
+                    json.writeStringField("next_page", next.get());
+                }
+                json.writeEndObject();
+            }
+        });
+    }
+
+    private SimulatedResponse channel(String id) throws IOException {
+        final int index = generator.indexOf(DataGenerator.CHANNEL, id, data.getChannelCount());
+        if (index < 0) {
+            return error(404, "Channel not found");
+        }
+        return json(200, new BodyWriter() {
+            @Override
+            public void write(JsonGenerator json) throws IOException {
+                json.writeStartObject();
+                json.writeBooleanField("ok", true);
+                json.writeFieldName("channel");
+                generator.writeChannel(json, index);
+                json.writeEndObject();
+            }
+        });
+    }
+
+    /* Reports */
+
+    private static Optional<Long> time(Map<String, String> params, String param) {
+        String value = params.get(param);
+        if (value == null) {
+            return Optional.absent();
+        }
+        try {
+            return Optional.of(LocalDateTime.parse(value).toDateTime(DateTimeZone.UTC).getMillis());
+        } catch (IllegalArgumentException e) {
+            return Optional.absent();
+        }
+    }
+
+    private static long step(String precision) {
+        if (precision.equals("DAILY")) {
+            return DataGenerator.DAY_MILLIS;
+        } else if (precision.equals("MONTHLY")) {
+            return 30 * DataGenerator.DAY_MILLIS;
+        }
+        return DataGenerator.HOUR_MILLIS;
+    }
+
+    private static int points(long startMillis, long endMillis, long stepMillis) {
+        return (int) Math.max(0, Math.min(MAX_SERIES_POINTS, (endMillis - startMillis) / stepMillis));
+    }
+
+    /* A push ID's index, for the per push reports; any well formed ID is a push */
+    private static long pushIndex(String id) {
+        return id.length() == 36 ? id.hashCode() & 0x7fffffffL : -1;
+    }
+
+    private SimulatedResponse reports(String[] parts, final Map<String, String> params) throws IOException {
+        String report = parts.length > 3 ? parts[3] : "";
+        final String precision = params.containsKey("precision") ? params.get("precision").toUpperCase() : "HOURLY";
+        Optional<Long> start = time(params, "start");
+        Optional<Long> end = time(params, "end");
+
+        if (report.equals("perpush") && parts.length == 6) {
+            final String pushId = URLDecoder.decode(parts[5], "UTF-8");
+            final long index = pushIndex(pushId);
+            if (index < 0) {
+                return error(404, "Push not found");
+            }
+            if (parts[4].equals("detail")) {
+                return json(200, new BodyWriter() {
+                    @Override
+                    public void write(JsonGenerator json) throws IOException {
+                        generator.writePerPushDetail(json, pushId, index);
+                    }
+                });
+            } else if (parts[4].equals("series")) {
+                final long step = step(precision);
+                final long from = start.isPresent() ? start.get() : DataGenerator.NOW_MILLIS - 12 * step;
+                final int points = end.isPresent() ? points(from, end.get(), step) : 12;
+                return json(200, new BodyWriter() {
+                    @Override
+                    public void write(JsonGenerator json) throws IOException {
+                        generator.writePerPushSeries(json, pushId, index, precision, from, step, points);
+                    }
+                });
+            }
+        } else if (report.equals("responses") && parts.length == 5) {
+            if (parts[4].equals("list")) {
+                return listPushes(params, start, end);
+            }
+            final int index = generator.indexOf(DataGenerator.PUSH, parts[4], data.getPushCount());
+            if (index < 0) {
+                return error(404, "Push not found");
+            }
+            return json(200, new BodyWriter() {
+                @Override
+                public void write(JsonGenerator json) throws IOException {
+                    generator.writePushInfo(json, index);
+                }
+            });
+        } else if ((report.equals("opens") || report.equals("timeinapp")) && parts.length == 4) {
+            if (!start.isPresent() || !end.isPresent()) {
+                return error(400, "start and end are required.");
+            }
+            final boolean timeInApp = report.equals("timeinapp");
+            final long from = start.get();
+            final long step = step(precision);
+            final int points = points(from, end.get(), step);
+            return json(200, new BodyWriter() {
+                @Override
+                public void write(JsonGenerator json) throws IOException {
+                    generator.writeOpens(json, timeInApp ? "timeinapp" : "opens", timeInApp, from, step, points);
+                }
+            });
+        }
+        return error(404, "Not found");
+    }
+
+    private SimulatedResponse listPushes(Map<String, String> params, Optional<Long> start, Optional<Long> end)
+            throws IOException {
+        if (!start.isPresent() || !end.isPresent()) {
+            return error(400, "start and end are required.");
+        }
+
+        // Pushes are newest first, one every PUSH_INTERVAL_MILLIS back from NOW_MILLIS
+        long interval = DataGenerator.PUSH_INTERVAL_MILLIS;
+        long newest = Math.max(0, (DataGenerator.NOW_MILLIS - end.get() + interval - 1) / interval);
+        final int last = (int) Math.max(0, Math.min(data.getPushCount(),
+                (DataGenerator.NOW_MILLIS - start.get()) / interval + 1));
+        int first = (int) Math.min(newest, last);
+        if (params.containsKey("push_id_start")) {
+            first = Math.max(first, start(params, "push_id_start", DataGenerator.PUSH, data.getPushCount()));
+        }
+        final int from = first;
+        final int to = Math.min(last, first + limit(params));
+        final Optional<String> next = to < last ?
+                Optional.of(nextPage("/api/reports/responses/list", params, "push_id_start",
+                        generator.id(DataGenerator.PUSH, to))) :
+                Optional.<String>absent();
+
+        return json(200, new BodyWriter() {
+            @Override
+            public void write(JsonGenerator json) throws IOException {
+                json.writeStartObject();
+                if (next.isPresent()) {
+                    json.writeStringField("next_page", next.get());
+                }
+                json.writeArrayFieldStart("pushes");
+                for (int i = from; i < to; i++) {
+                    generator.writePushInfo(json, i);
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        });
+    }
+
+    private SimulatedResponse pushStatistics(Map<String, String> params) throws IOException {
+        Optional<Long> start = time(params, "start");
+        Optional<Long> end = time(params, "end");
+        if (!start.isPresent() || !end.isPresent()) {
+            return error(400, "start and end are required.");
+        }
+
+        final long from = start.get();
+        final int hours = points(from, end.get(), DataGenerator.HOUR_MILLIS);
+        if ("csv".equals(params.get("format"))) {
+            StringBuilder csv = new StringBuilder();
+            generator.writeAppStatsCSV(csv, from, hours);
+            return new SimulatedResponse(200, Optional.of("text/csv"), csv.toString().getBytes(Charsets.UTF_8));
+        }
+        return json(200, new BodyWriter() {
+            @Override
+            public void write(JsonGenerator json) throws IOException {
+                generator.writeAppStats(json, from, hours);
+            }
+        });
+    }
+
+    /* Location */
+
+    private SimulatedResponse location(String coordinates, Map<String, String> params) throws IOException {
+        final String query = coordinates != null ? coordinates : params.get("q");
+        if (query == null || query.isEmpty()) {
+            return error(400, "A query or coordinates are required.");
+        }
+        return json(200, new BodyWriter() {
+            @Override
+            public void write(JsonGenerator json) throws IOException {
+                generator.writeLocations(json, query);
+            }
+        });
+    }
+}
@@ -0,0 +1,150 @@
+package com.urbanairship.api.common.trace;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.urbanairship.api.client.APIClient;
+import com.urbanairship.api.push.model.DeviceType;
+import com.urbanairship.api.push.model.DeviceTypeData;
+import com.urbanairship.api.push.model.PushPayload;
+import com.urbanairship.api.push.model.audience.Selectors;
+import com.urbanairship.api.push.model.notification.Notifications;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+Records a push to a local server with the API client events enabled, then
+reads the recording back.
+ */
+public class FlightRecorderTracerTest {
+
+    private static final String PUSH_JSON = "{\"ok\" : true,\"operation_id\" : \"df6a6b50\", \"push_ids\":[\"PushID\"]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private final AtomicInteger requestBodySize = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestBodySize.set(ByteStreams.toByteArray(exchange.getRequestBody()).length);
+
+                byte[] body = PUSH_JSON.getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(202, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static PushPayload payload() {
+        return PushPayload.newBuilder()
+                .setAudience(Selectors.deviceTokens("ABCDEF", "012345"))
+                .setDeviceTypes(DeviceTypeData.of(DeviceType.IOS))
+                .setNotification(Notifications.alert("Foo"))
+                .build();
+    }
+
+    private static List<RecordedEvent> eventsNamed(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> named = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                named.add(event);
+            }
+        }
+        return named;
+    }
+
+    @Test
+    public void testSpansAreNoOpsWhenNotRecording() {
+        Span span = Tracing.begin(Tracing.Stage.EXCHANGE);
+
+        assertFalse(span.isRecording());
+        assertSame(Tracing.NOOP_SPAN, span);
+    }
+
+    @Test
+    public void testPushIsRecorded() throws Exception {
+        APIClient client = APIClient.newBuilder()
+                .setBaseURI("http://localhost:" + server.getAddress().getPort())
+                .setKey("key")
+                .setSecret("secret")
+                .build();
+
+        Recording recording = new Recording();
+        for (String name : new String[]{FlightRecorderTracer.PROVISIONING, FlightRecorderTracer.SERIALIZATION,
+                FlightRecorderTracer.EXCHANGE, FlightRecorderTracer.DESERIALIZATION}) {
+            recording.enable(name);
+        }
+
+        Path file = folder.newFile("push.jfr").toPath();
+        try {
+            recording.start();
+            client.push(payload());
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            recording.close();
+            client.close();
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+        List<RecordedEvent> provisioning = eventsNamed(events, FlightRecorderTracer.PROVISIONING);
+        assertEquals(1, provisioning.size());
+        assertEquals("PUSH", provisioning.get(0).getString("endpoint"));
+        assertEquals("POST", provisioning.get(0).getString("method"));
+
+        List<RecordedEvent> serialization = eventsNamed(events, FlightRecorderTracer.SERIALIZATION);
+        assertEquals(1, serialization.size());
+        assertEquals("PushPayload", serialization.get(0).getString("detail"));
+        assertEquals(requestBodySize.get(), serialization.get(0).getLong("payloadBytes"));
+
+        List<RecordedEvent> exchange = eventsNamed(events, FlightRecorderTracer.EXCHANGE);
+        assertEquals(1, exchange.size());
+        assertEquals("PUSH", exchange.get(0).getString("endpoint"));
+        assertEquals(202, exchange.get(0).getInt("statusCode"));
+        assertEquals("attempt 1", exchange.get(0).getString("detail"));
+
+        List<RecordedEvent> deserialization = eventsNamed(events, FlightRecorderTracer.DESERIALIZATION);
+        assertEquals(1, deserialization.size());
+        assertEquals(202, deserialization.get(0).getInt("statusCode"));
+        assertEquals(PUSH_JSON.length(), deserialization.get(0).getLong("payloadBytes"));
+        assertEquals("com.urbanairship.api.client.PushAPIResponseHandler",
+                deserialization.get(0).getString("detail"));
+
+        // Serialization and deserialization happen within the exchange
+        assertFalse(serialization.get(0).getStartTime().isBefore(exchange.get(0).getStartTime()));
+        assertFalse(deserialization.get(0).getEndTime().isAfter(exchange.get(0).getEndTime()));
+    }
+}